@@ -2,6 +2,14 @@ package asia.liuyunxuan.ioc.aspect;
 
 import org.aopalliance.intercept.MethodInterceptor;
 
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
 /**
  * AOP代理配置的核心支持类，持有目标对象、拦截器和方法匹配器等AOP代理所需的全部配置信息。
  * <p>
@@ -11,7 +19,12 @@ import org.aopalliance.intercept.MethodInterceptor;
  *     <li>持有和管理目标对象（{@link TargetSource}）</li>
  *     <li>配置方法拦截器（{@link MethodInterceptor}）</li>
  *     <li>设置方法匹配器（{@link MethodMatcher}）用于切点判断</li>
+ *     <li>维护有序的通知器列表（{@link AspectAdvisor}），一层代理即可应用多个通知</li>
+ *     <li>按方法和目标类型缓存拦截器链，代理调用时不再重复执行切点匹配</li>
  * </ul>
+ * <p>
+ * 通过{@link #setMethodInterceptor}和{@link #setMethodMatcher}配置的拦截器位于拦截器链的最前面，
+ * 之后按添加顺序排列通知器列表中匹配的通知。
  * 
  * @author liuyunxuan
  * @see TargetSource
@@ -20,11 +33,19 @@ import org.aopalliance.intercept.MethodInterceptor;
  * @since 1.0
  */
 public class AdvisedSupport {
+
+    private static final MethodInterceptor[] NO_INTERCEPTORS = new MethodInterceptor[0];
+
     /** 
      * 标记是否使用CGLIB代理，true表示使用CGLIB代理，false表示使用JDK动态代理
      */
     private boolean proxyTargetClass = false;
 
+    /**
+     * 是否在每个线程上复用方法调用对象，开启后拦截器不能在调用结束后继续持有调用对象
+     */
+    private boolean reuseInvocation = false;
+
     /** 
      * 被代理的目标对象，封装了目标对象及其类型信息
      */
@@ -40,6 +61,16 @@ public class AdvisedSupport {
      */
     private MethodMatcher methodMatcher;
 
+    /**
+     * 有序的通知器列表，按添加顺序组成拦截器链
+     */
+    private final List<AspectAdvisor> advisors = new CopyOnWriteArrayList<>();
+
+    /**
+     * 拦截器链缓存，key为目标类型，value为该类型下每个方法对应的拦截器链
+     */
+    private final Map<Class<?>, Map<Method, MethodInterceptor[]>> methodCache = new ConcurrentHashMap<>();
+
     /**
      * 获取是否使用CGLIB代理的标记
      *
@@ -58,6 +89,27 @@ public class AdvisedSupport {
         this.proxyTargetClass = proxyTargetClass;
     }
 
+    /**
+     * 获取是否复用方法调用对象
+     *
+     * @return 如果返回true表示每个线程复用同一个调用对象
+     */
+    public boolean isReuseInvocation() {
+        return reuseInvocation;
+    }
+
+    /**
+     * 设置是否复用方法调用对象。
+     * <p>
+     * 开启后有通知的调用不再为每次调用分配调用对象，
+     * 适用于拦截器只在{@code invoke}内部使用调用对象的场景，嵌套调用会自动退回为新建调用对象。
+     *
+     * @param reuseInvocation true表示每个线程复用同一个调用对象
+     */
+    public void setReuseInvocation(boolean reuseInvocation) {
+        this.reuseInvocation = reuseInvocation;
+    }
+
     /**
      * 获取被代理的目标对象源
      *
@@ -92,6 +144,7 @@ public class AdvisedSupport {
      */
     public void setMethodInterceptor(MethodInterceptor methodInterceptor) {
         this.methodInterceptor = methodInterceptor;
+        this.methodCache.clear();
     }
 
     /**
@@ -110,5 +163,65 @@ public class AdvisedSupport {
      */
     public void setMethodMatcher(MethodMatcher methodMatcher) {
         this.methodMatcher = methodMatcher;
+        this.methodCache.clear();
+    }
+
+    /**
+     * 在通知器列表末尾添加一个通知器
+     *
+     * @param advisor 通知器，其通知必须是{@link MethodInterceptor}
+     */
+    public void addAdvisor(AspectAdvisor advisor) {
+        this.advisors.add(advisor);
+        this.methodCache.clear();
+    }
+
+    /**
+     * 获取有序的通知器列表
+     *
+     * @return 只读的通知器列表
+     */
+    public List<AspectAdvisor> getAdvisors() {
+        return Collections.unmodifiableList(advisors);
+    }
+
+    /**
+     * 获取目标方法的拦截器链。
+     * <p>
+     * 切点匹配只在方法第一次调用时执行，结果按目标类型和方法缓存，
+     * 修改拦截器、方法匹配器或通知器列表时缓存会被清空。
+     *
+     * @param method 被调用的方法
+     * @param targetClass 目标对象的类型
+     * @return 拦截器链，方法不匹配任何切点时返回空数组
+     */
+    public MethodInterceptor[] getInterceptors(Method method, Class<?> targetClass) {
+        Map<Method, MethodInterceptor[]> cache = methodCache.get(targetClass);
+        if (cache == null) {
+            cache = methodCache.computeIfAbsent(targetClass, key -> new ConcurrentHashMap<>());
+        }
+        MethodInterceptor[] interceptors = cache.get(method);
+        if (interceptors == null) {
+            interceptors = buildInterceptors(method, targetClass);
+            cache.put(method, interceptors);
+        }
+        return interceptors;
+    }
+
+    private MethodInterceptor[] buildInterceptors(Method method, Class<?> targetClass) {
+        List<MethodInterceptor> interceptors = new ArrayList<>();
+        if (methodInterceptor != null && (methodMatcher == null || methodMatcher.matches(method, targetClass))) {
+            interceptors.add(methodInterceptor);
+        }
+        for (AspectAdvisor advisor : advisors) {
+            if (advisor instanceof PointcutAspectAdvisor) {
+                JoinPointSelector pointcut = ((PointcutAspectAdvisor) advisor).getPointcut();
+                if (!pointcut.getClassFilter().matches(targetClass) || !pointcut.getMethodMatcher().matches(method, targetClass)) {
+                    continue;
+                }
+            }
+            interceptors.add((MethodInterceptor) advisor.getAdvice());
+        }
+        return interceptors.isEmpty() ? NO_INTERCEPTORS : interceptors.toArray(NO_INTERCEPTORS);
     }
 }
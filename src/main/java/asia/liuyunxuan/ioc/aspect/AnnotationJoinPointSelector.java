@@ -0,0 +1,91 @@
+package asia.liuyunxuan.ioc.aspect;
+
+import asia.liuyunxuan.ioc.component.container.support.MethodAnnotationIndex;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Method;
+
+/**
+ * 注解切点，匹配标注了指定注解的方法。
+ *
+ * <p>持有容器的{@link MethodAnnotationIndex}时，类过滤和方法匹配都只是索引中的一次集合查询，
+ * 没有注解方法的类不会触发任何反射；没有索引时（例如手工组装代理）退回为读取方法上的注解。
+ *
+ * @see AnnotationPointcutAspectAdvisor
+ * @see MethodAnnotationIndex
+ */
+public class AnnotationJoinPointSelector implements JoinPointSelector, ClassFilter, MethodMatcher {
+
+    /**
+     * 要匹配的注解类型
+     */
+    private final Class<? extends Annotation> annotationType;
+
+    /**
+     * 容器的方法注解索引，可以为null
+     */
+    private final MethodAnnotationIndex index;
+
+    /**
+     * 创建一个不使用索引的注解切点。
+     *
+     * @param annotationType 要匹配的注解类型
+     */
+    public AnnotationJoinPointSelector(Class<? extends Annotation> annotationType) {
+        this(annotationType, null);
+    }
+
+    /**
+     * 创建一个注解切点。
+     *
+     * @param annotationType 要匹配的注解类型
+     * @param index 容器的方法注解索引，为null时通过反射读取注解
+     */
+    public AnnotationJoinPointSelector(Class<? extends Annotation> annotationType, MethodAnnotationIndex index) {
+        this.annotationType = annotationType;
+        this.index = index;
+    }
+
+    /**
+     * 判断给定的类是否包含标注了注解的方法。
+     *
+     * @param clazz 待匹配的目标类
+     * @return 如果类包含标注了注解的方法返回true，否则返回false
+     */
+    @Override
+    public boolean matches(Class<?> clazz) {
+        if (index != null) return index.hasAnnotatedMethods(annotationType, clazz);
+        for (Method method : clazz.getMethods()) {
+            if (matches(method, clazz)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * 判断给定的方法是否标注了注解，接口方法和目标类上的实现方法任意一个标注即可。
+     *
+     * @param method 待匹配的方法
+     * @param targetClass 方法所属的目标类
+     * @return 如果方法标注了注解返回true，否则返回false
+     */
+    @Override
+    public boolean matches(Method method, Class<?> targetClass) {
+        if (index != null) return index.isAnnotated(annotationType, method, targetClass);
+        if (method.isAnnotationPresent(annotationType)) return true;
+        try {
+            return targetClass.getMethod(method.getName(), method.getParameterTypes()).isAnnotationPresent(annotationType);
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    @Override
+    public ClassFilter getClassFilter() {
+        return this;
+    }
+
+    @Override
+    public MethodMatcher getMethodMatcher() {
+        return this;
+    }
+}
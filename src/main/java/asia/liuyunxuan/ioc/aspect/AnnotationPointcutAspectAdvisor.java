@@ -0,0 +1,117 @@
+package asia.liuyunxuan.ioc.aspect;
+
+import asia.liuyunxuan.ioc.common.ClassUtils;
+import asia.liuyunxuan.ioc.component.ComponentException;
+import asia.liuyunxuan.ioc.component.container.ComponentFactoryAware;
+import asia.liuyunxuan.ioc.component.container.ComponentProvider;
+import asia.liuyunxuan.ioc.component.container.support.DefaultRegistry;
+import asia.liuyunxuan.ioc.component.container.support.MethodAnnotationIndex;
+import org.aopalliance.aop.Advice;
+
+import java.lang.annotation.Annotation;
+
+/**
+ * 注解切面通知器，为标注了指定注解的方法应用通知。
+ *
+ * <p>通知器从容器获取{@link MethodAnnotationIndex}，自动代理创建器判断Bean是否需要代理时只查询索引：
+ * <pre>
+ * &lt;bean id="timedAdvisor" class="asia.liuyunxuan.ioc.aspect.AnnotationPointcutAspectAdvisor"&gt;
+ *     &lt;property name="annotationType" value="com.example.Timed"/&gt;
+ *     &lt;property name="advice" ref="timingInterceptor"/&gt;
+ * &lt;/bean&gt;
+ * </pre>
+ *
+ * @see AnnotationJoinPointSelector
+ * @see PointcutAspectAdvisor
+ */
+public class AnnotationPointcutAspectAdvisor implements PointcutAspectAdvisor, ComponentFactoryAware {
+
+    /**
+     * 切点对象，第一次获取时创建
+     */
+    private volatile AnnotationJoinPointSelector pointcut;
+
+    /**
+     * 通知对象，封装了要在切点处执行的增强逻辑
+     */
+    private Advice advice;
+
+    /**
+     * 注解类型的全限定名
+     */
+    private String annotationType;
+
+    /**
+     * 通知器的顺序，值越小越先执行，相同时按Bean名称排序
+     */
+    private int order = Integer.MAX_VALUE;
+
+    /**
+     * 容器的方法注解索引
+     */
+    private MethodAnnotationIndex index;
+
+    @Override
+    public void setBeanFactory(ComponentProvider componentProvider) throws ComponentException {
+        if (componentProvider instanceof DefaultRegistry) {
+            this.index = ((DefaultRegistry) componentProvider).getMethodAnnotationIndex();
+        }
+    }
+
+    public synchronized void setAnnotationType(String annotationType) {
+        this.annotationType = annotationType;
+        this.pointcut = null;
+    }
+
+    /**
+     * 获取切点，第一次调用时加载注解类型，并发调用时只会创建一次。
+     *
+     * @return 切点对象
+     * @throws ComponentException 注解类型不存在时抛出
+     */
+    @Override
+    public JoinPointSelector getPointcut() {
+        AnnotationJoinPointSelector pointcut = this.pointcut;
+        if (null == pointcut) {
+            synchronized (this) {
+                pointcut = this.pointcut;
+                if (null == pointcut) {
+                    pointcut = new AnnotationJoinPointSelector(loadAnnotationType(), index);
+                    this.pointcut = pointcut;
+                }
+            }
+        }
+        return pointcut;
+    }
+
+    private Class<? extends Annotation> loadAnnotationType() {
+        try {
+            Class<?> type = Class.forName(annotationType, false, ClassUtils.getDefaultClassLoader());
+            if (!type.isAnnotation()) {
+                throw new ComponentException("[" + annotationType + "] is not an annotation type");
+            }
+            return type.asSubclass(Annotation.class);
+        } catch (ClassNotFoundException e) {
+            throw new ComponentException("Annotation type [" + annotationType + "] not found", e);
+        }
+    }
+
+    @Override
+    public Advice getAdvice() {
+        return advice;
+    }
+
+    public void setAdvice(Advice advice) {
+        this.advice = advice;
+    }
+
+    @Override
+    public int getOrder() {
+        return order;
+    }
+
+    public void setOrder(int order) {
+        this.order = order;
+    }
+
+}
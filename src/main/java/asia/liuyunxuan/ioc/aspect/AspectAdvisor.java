@@ -27,4 +27,13 @@ public interface AspectAdvisor {
      */
     Advice getAdvice();
 
+    /**
+     * 获取顾问的顺序，值越小越先执行
+     *
+     * @return 顾问的顺序，默认排在最后
+     */
+    default int getOrder() {
+        return Integer.MAX_VALUE;
+    }
+
 }
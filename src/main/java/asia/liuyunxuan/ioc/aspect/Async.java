@@ -0,0 +1,28 @@
+package asia.liuyunxuan.ioc.aspect;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 标记方法异步执行。
+ * <p>
+ * 方法的返回类型应该是void或者{@link java.util.concurrent.CompletableFuture}，
+ * 配合{@link AnnotationPointcutAspectAdvisor}和{@link AsyncExecutionInterceptor}使用：
+ * <pre>
+ * &lt;bean id="asyncAdvisor" class="asia.liuyunxuan.ioc.aspect.AnnotationPointcutAspectAdvisor"&gt;
+ *     &lt;property name="annotationType" value="asia.liuyunxuan.ioc.aspect.Async"/&gt;
+ *     &lt;property name="advice" ref="asyncExecutionInterceptor"/&gt;
+ * &lt;/bean&gt;
+ * </pre>
+ *
+ * @author liuyunxuan
+ * @since 1.0
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface Async {
+}
@@ -0,0 +1,205 @@
+package asia.liuyunxuan.ioc.aspect;
+
+import asia.liuyunxuan.ioc.common.ErrorReporter;
+import asia.liuyunxuan.ioc.common.VirtualThreads;
+import asia.liuyunxuan.ioc.component.container.DisposableComponent;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 异步执行方法的拦截器，调用线程提交任务后立即返回。
+ * <p>
+ * 按被调用方法的返回类型处理结果：
+ * <ul>
+ *     <li>void：提交任务后返回，任务抛出的异常交给{@link ErrorReporter}</li>
+ *     <li>{@link CompletableFuture}、{@link CompletionStage}或{@link Future}：立即返回一个{@link CompletableFuture}，
+ *     目标方法返回的future完成后以相同的结果完成</li>
+ *     <li>其它返回类型（包括{@link Object}）无法异步返回结果，在调用线程上同步执行</li>
+ * </ul>
+ * 任务的执行器在第一次调用时创建：
+ * <ul>
+ *     <li>设置了executor时使用指定的执行器</li>
+ *     <li>poolSize大于0时使用固定大小的线程池，排队任务数不超过queueCapacity，超出时拒绝提交</li>
+ *     <li>否则运行时支持虚拟线程（JDK 21及以上）时每个任务使用一个虚拟线程，不支持时使用大小为处理器数量两倍的线程池</li>
+ * </ul>
+ * 拦截器实现了{@link DisposableComponent}，容器关闭时关闭自己创建的执行器，并在shutdownTimeout毫秒内等待已提交的任务完成，
+ * 通过executor指定的执行器由调用方负责关闭。
+ * <p>
+ * 拦截器会在另一个线程上继续执行调用链，因此不能与调用对象复用（reuseInvocation）以及调用结束后归还目标对象的非静态目标源一起使用。
+ *
+ * @author liuyunxuan
+ * @see Async
+ * @since 1.0
+ */
+public class AsyncExecutionInterceptor implements MethodInterceptor, DisposableComponent {
+
+    private ExecutorService executor;
+
+    private int poolSize;
+
+    private int queueCapacity = Integer.MAX_VALUE;
+
+    private long shutdownTimeout = 10_000;
+
+    private String threadNamePrefix = "async-";
+
+    /**
+     * 实际使用的执行器，第一次调用时创建
+     */
+    private volatile ExecutorService activeExecutor;
+
+    /**
+     * 执行器是否由拦截器创建，关闭时只关闭自己创建的执行器
+     */
+    private boolean ownsExecutor;
+
+    private volatile boolean destroyed;
+
+    @Override
+    public Object invoke(MethodInvocation invocation) throws Throwable {
+        Method method = invocation.getMethod();
+        Class<?> returnType = method.getReturnType();
+        if (returnType == void.class) {
+            getExecutor().execute(() -> {
+                try {
+                    invocation.proceed();
+                } catch (Throwable e) {
+                    ErrorReporter.report("Unexpected exception in async method " + method, e);
+                }
+            });
+            return null;
+        }
+        if (!isFutureType(returnType)) {
+            return invocation.proceed();
+        }
+        CompletableFuture<Object> result = new CompletableFuture<>();
+        getExecutor().execute(() -> {
+            try {
+                complete(result, invocation.proceed());
+            } catch (Throwable e) {
+                result.completeExceptionally(e);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * 只有声明为future类型的返回值可以异步返回，返回Object的方法仍然同步执行
+     */
+    private static boolean isFutureType(Class<?> returnType) {
+        return returnType == CompletableFuture.class || returnType == CompletionStage.class || returnType == Future.class;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void complete(CompletableFuture<Object> result, Object value) throws Exception {
+        if (value instanceof CompletionStage) {
+            ((CompletionStage<Object>) value).whenComplete((resolved, e) -> {
+                if (e != null) {
+                    result.completeExceptionally(e);
+                } else {
+                    result.complete(resolved);
+                }
+            });
+        } else if (value instanceof Future) {
+            result.complete(((Future<?>) value).get());
+        } else {
+            result.complete(value);
+        }
+    }
+
+    /**
+     * 获取执行异步任务的执行器，第一次调用时创建，拦截器关闭之后抛出IllegalStateException
+     *
+     * @return 执行器
+     */
+    public ExecutorService getExecutor() {
+        ExecutorService executor = this.activeExecutor;
+        if (executor == null) {
+            synchronized (this) {
+                if (destroyed) {
+                    throw new IllegalStateException("AsyncExecutionInterceptor has been destroyed");
+                }
+                executor = this.activeExecutor;
+                if (executor == null) {
+                    if (this.executor != null) {
+                        executor = this.executor;
+                    } else {
+                        executor = createExecutor();
+                        ownsExecutor = true;
+                    }
+                    this.activeExecutor = executor;
+                }
+            }
+        }
+        return executor;
+    }
+
+    private ExecutorService createExecutor() {
+        if (poolSize <= 0) {
+            ExecutorService virtualThreadExecutor = VirtualThreads.newVirtualThreadPerTaskExecutor();
+            if (virtualThreadExecutor != null) {
+                return virtualThreadExecutor;
+            }
+        }
+        int threads = poolSize > 0 ? poolSize : Runtime.getRuntime().availableProcessors() * 2;
+        AtomicInteger threadNumber = new AtomicInteger();
+        ThreadFactory threadFactory = runnable -> {
+            Thread thread = new Thread(runnable, threadNamePrefix + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+        return new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(queueCapacity), threadFactory);
+    }
+
+    /**
+     * 关闭自己创建的执行器，等待已提交的任务完成，超时后中断仍在执行的任务。
+     * 通过executor指定的执行器不会被关闭，关闭之后的异步调用抛出IllegalStateException，同步方法不受影响。
+     */
+    @Override
+    public void destroy() throws Exception {
+        ExecutorService executor;
+        boolean ownsExecutor;
+        synchronized (this) {
+            destroyed = true;
+            executor = this.activeExecutor;
+            ownsExecutor = this.ownsExecutor;
+            this.activeExecutor = null;
+        }
+        if (executor == null || !ownsExecutor) return;
+        executor.shutdown();
+        if (!executor.awaitTermination(shutdownTimeout, TimeUnit.MILLISECONDS)) {
+            executor.shutdownNow();
+        }
+    }
+
+    public void setExecutor(ExecutorService executor) {
+        this.executor = executor;
+    }
+
+    public void setPoolSize(int poolSize) {
+        this.poolSize = poolSize;
+    }
+
+    public void setQueueCapacity(int queueCapacity) {
+        this.queueCapacity = queueCapacity;
+    }
+
+    public void setShutdownTimeout(long shutdownTimeout) {
+        this.shutdownTimeout = shutdownTimeout;
+    }
+
+    public void setThreadNamePrefix(String threadNamePrefix) {
+        this.threadNamePrefix = threadNamePrefix;
+    }
+}
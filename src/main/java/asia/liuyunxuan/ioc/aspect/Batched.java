@@ -0,0 +1,38 @@
+package asia.liuyunxuan.ioc.aspect;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 标记单参数方法的调用可以合并为对批量方法的一次调用，由{@link MicroBatchingInterceptor}处理。
+ * <p>
+ * 批量方法声明在同一个类中，只有一个参数，参数类型可以接收{@link java.util.List}，返回值可以是：
+ * <ul>
+ *     <li>{@link java.util.Map}：key为单个调用的参数，value为该调用的结果</li>
+ *     <li>{@link java.util.List}：按参数列表的顺序排列的结果</li>
+ * </ul>
+ * <pre>
+ * &#64;Batched("loadAll")
+ * public User load(Long id) { ... }
+ *
+ * public Map&lt;Long, User&gt; loadAll(List&lt;Long&gt; ids) { ... }
+ * </pre>
+ *
+ * @author liuyunxuan
+ * @since 1.0
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface Batched {
+
+    /**
+     * 批量方法的名称
+     *
+     * @return 批量方法的名称
+     */
+    String value();
+}
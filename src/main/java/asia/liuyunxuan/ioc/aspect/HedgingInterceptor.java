@@ -0,0 +1,410 @@
+package asia.liuyunxuan.ioc.aspect;
+
+import asia.liuyunxuan.ioc.aspect.framework.weaving.WeavingSupport;
+import asia.liuyunxuan.ioc.aspect.metrics.LatencyHistogram;
+import asia.liuyunxuan.ioc.component.container.DisposableComponent;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 对冲调用的拦截器，用额外的调用换取更低的尾部耗时。
+ * <p>
+ * 标注了{@link Idempotent}的方法被调用时，第一次调用在线程池中执行，调用线程等待结果，如果超过对冲延迟仍未完成，
+ * 再发起一次相同参数的对冲调用，先完成的调用作为结果立即返回，另一个调用被取消（中断执行线程）。
+ * 不响应中断的调用（例如阻塞的磁盘读取或者计算）留在线程池中执行完，不再阻塞调用方。
+ * 某一次调用抛出异常时等待另一次调用，两次都失败时抛出先失败的异常。没有标注{@link Idempotent}的方法直接调用。
+ * <p>
+ * 每个方法维护一个{@link LatencyHistogram}，对冲延迟取该方法耗时的percentile百分位，
+ * 方法的样本数不足minSamples时不对冲，直接在调用线程上执行并记录耗时。
+ * 为了避免下游整体变慢时对冲放大负载，对冲调用数不超过总调用数的hedgeRatio，另外允许hedgeBurst次的余量。
+ * 默认线程池最多有maxThreads个线程，线程池已满时第一次调用在调用线程上执行且不对冲，对冲调用被拒绝时同样不对冲。
+ * 被取消的调用耗时不完整，不作为样本记录。
+ * <p>
+ * 可以配置的属性：
+ * <ul>
+ *     <li>percentile：对冲延迟取的百分位，默认95</li>
+ *     <li>minSamples：开始对冲前每个方法需要的样本数，默认20</li>
+ *     <li>minDelay：对冲延迟的下限，单位毫秒，默认1</li>
+ *     <li>hedgeRatio：对冲调用占总调用数的上限，默认0.1</li>
+ *     <li>hedgeBurst：对冲预算的余量，默认10</li>
+ *     <li>maxThreads：默认线程池的最大线程数，默认64</li>
+ *     <li>executor：执行调用的线程池，默认使用按需创建、最多maxThreads个的守护线程</li>
+ * </ul>
+ * 第一次调用沿调用链继续执行，对冲调用直接调用目标方法，不再经过调用链中后续的拦截器。
+ * 两次调用在其它线程上执行，因此不能与调用对象复用（reuseInvocation）以及非静态目标源一起使用。
+ *
+ * @author liuyunxuan
+ * @see Idempotent
+ * @since 1.0
+ */
+public class HedgingInterceptor implements MethodInterceptor, DisposableComponent {
+
+    private double percentile = 95;
+
+    private int minSamples = 20;
+
+    private long minDelay = 1;
+
+    private double hedgeRatio = 0.1;
+
+    private int hedgeBurst = 10;
+
+    private int maxThreads = 64;
+
+    private ExecutorService executor;
+
+    private volatile ExecutorService activeExecutor;
+
+    /**
+     * 线程池是否由拦截器创建，关闭时只关闭自己创建的线程池
+     */
+    private boolean ownsExecutor;
+
+    private volatile boolean destroyed;
+
+    /**
+     * 每个方法的耗时统计，key为被调用的方法
+     */
+    private final Map<Method, MethodStats> methodStats = new ConcurrentHashMap<>();
+
+    private final LongAdder callCount = new LongAdder();
+
+    private final LongAdder hedgeCount = new LongAdder();
+
+    private final LongAdder hedgeWinCount = new LongAdder();
+
+    @Override
+    public Object invoke(MethodInvocation invocation) throws Throwable {
+        if (destroyed) {
+            throw new IllegalStateException("HedgingInterceptor has been destroyed");
+        }
+        Method method = invocation.getMethod();
+        MethodStats stats = methodStats.get(method);
+        if (stats == null) {
+            boolean idempotent = isIdempotent(invocation.getThis().getClass(), method);
+            stats = methodStats.computeIfAbsent(method, key -> new MethodStats(idempotent));
+        }
+        if (!stats.idempotent) {
+            return invocation.proceed();
+        }
+        callCount.increment();
+        long delay = stats.getHedgeDelay();
+        if (delay < 0) {
+            return proceedAndRecord(invocation, stats);
+        }
+        HedgedCall call = new HedgedCall(stats);
+        ExecutorService executor = getExecutor();
+        Future<?> primary;
+        try {
+            primary = executor.submit(() -> call.attempt(invocation::proceed, false));
+        } catch (RejectedExecutionException e) {
+            // 线程池已满时在调用线程上执行，不对冲
+            return proceedAndRecord(invocation, stats);
+        }
+        Future<?> hedge = null;
+        try {
+            try {
+                return call.result.get(delay, TimeUnit.NANOSECONDS);
+            } catch (TimeoutException e) {
+                hedge = hedge(call, invocation, executor);
+                return call.result.get();
+            }
+        } catch (ExecutionException e) {
+            throw e.getCause();
+        } finally {
+            // 输掉的调用不响应中断时留在线程池中执行完，调用方不再等待
+            primary.cancel(true);
+            if (hedge != null) {
+                hedge.cancel(true);
+            }
+        }
+    }
+
+    private static Object proceedAndRecord(MethodInvocation invocation, MethodStats stats) throws Throwable {
+        long start = System.nanoTime();
+        try {
+            return invocation.proceed();
+        } finally {
+            stats.record(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * 发起对冲调用，预算用尽或者线程池已满时不对冲
+     *
+     * @return 对冲调用的future，没有对冲时返回null
+     */
+    private Future<?> hedge(HedgedCall call, MethodInvocation invocation, ExecutorService executor) {
+        if (!tryAcquireHedge()) {
+            return null;
+        }
+        if (!call.startHedge()) {
+            hedgeCount.decrement();
+            return null;
+        }
+        Object[] arguments = invocation.getArguments();
+        // 对冲调用直接调用目标方法，织入的对象不会再次进入拦截器链
+        MethodInvocation hedgeInvocation = WeavingSupport.newJoinpointInvocation(invocation.getThis(), invocation.getMethod(),
+                arguments == null ? null : arguments.clone());
+        try {
+            return executor.submit(() -> call.attempt(hedgeInvocation::proceed, true));
+        } catch (RejectedExecutionException e) {
+            hedgeCount.decrement();
+            call.finishAttempt();
+            return null;
+        }
+    }
+
+    /**
+     * 对冲调用数未超过预算时占用一次对冲
+     */
+    private boolean tryAcquireHedge() {
+        if (hedgeCount.sum() >= callCount.sum() * hedgeRatio + hedgeBurst) {
+            return false;
+        }
+        hedgeCount.increment();
+        return true;
+    }
+
+    /**
+     * 判断方法是否标注了{@link Idempotent}，JDK代理传入的接口方法同样查找实现类上的注解
+     */
+    private static boolean isIdempotent(Class<?> targetClass, Method method) {
+        if (method.isAnnotationPresent(Idempotent.class)) return true;
+        try {
+            return targetClass.getMethod(method.getName(), method.getParameterTypes()).isAnnotationPresent(Idempotent.class);
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    private ExecutorService getExecutor() {
+        ExecutorService executor = this.activeExecutor;
+        if (executor == null) {
+            synchronized (this) {
+                if (destroyed) {
+                    throw new IllegalStateException("HedgingInterceptor has been destroyed");
+                }
+                executor = this.activeExecutor;
+                if (executor == null) {
+                    if (this.executor != null) {
+                        executor = this.executor;
+                    } else {
+                        AtomicInteger threadNumber = new AtomicInteger();
+                        executor = new ThreadPoolExecutor(0, maxThreads, 60L, TimeUnit.SECONDS, new SynchronousQueue<>(), runnable -> {
+                            Thread thread = new Thread(runnable, "hedging-" + threadNumber.incrementAndGet());
+                            thread.setDaemon(true);
+                            return thread;
+                        });
+                        ownsExecutor = true;
+                    }
+                    this.activeExecutor = executor;
+                }
+            }
+        }
+        return executor;
+    }
+
+    /**
+     * 关闭拦截器创建的线程池，中断仍在执行的调用，通过setExecutor设置的线程池由调用方关闭。
+     * 关闭之后的调用抛出IllegalStateException
+     */
+    @Override
+    public void destroy() {
+        ExecutorService executor;
+        boolean ownsExecutor;
+        synchronized (this) {
+            destroyed = true;
+            executor = this.activeExecutor;
+            ownsExecutor = this.ownsExecutor;
+            this.activeExecutor = null;
+        }
+        if (executor != null && ownsExecutor) {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * 获取方法当前的对冲延迟
+     *
+     * @param method 被调用的方法，JDK代理时为接口方法
+     * @return 对冲延迟，单位纳秒，样本数不足或者方法不是幂等方法时返回-1
+     */
+    public long getHedgeDelay(Method method) {
+        MethodStats stats = methodStats.get(method);
+        return stats == null || !stats.idempotent ? -1 : stats.getHedgeDelay();
+    }
+
+    /**
+     * 获取幂等方法的调用次数
+     *
+     * @return 调用次数
+     */
+    public long getCallCount() {
+        return callCount.sum();
+    }
+
+    /**
+     * 获取发起的对冲调用次数
+     *
+     * @return 对冲调用次数
+     */
+    public long getHedgeCount() {
+        return hedgeCount.sum();
+    }
+
+    /**
+     * 获取对冲调用先于第一次调用完成的次数
+     *
+     * @return 对冲调用胜出的次数
+     */
+    public long getHedgeWinCount() {
+        return hedgeWinCount.sum();
+    }
+
+    public void setPercentile(double percentile) {
+        this.percentile = percentile;
+    }
+
+    public void setMinSamples(int minSamples) {
+        this.minSamples = minSamples;
+    }
+
+    public void setMinDelay(long minDelay) {
+        this.minDelay = minDelay;
+    }
+
+    public void setHedgeRatio(double hedgeRatio) {
+        this.hedgeRatio = hedgeRatio;
+    }
+
+    public void setHedgeBurst(int hedgeBurst) {
+        this.hedgeBurst = hedgeBurst;
+    }
+
+    public void setMaxThreads(int maxThreads) {
+        this.maxThreads = maxThreads;
+    }
+
+    public void setExecutor(ExecutorService executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * 一个方法的耗时统计，对冲延迟每记录64个样本重新计算一次
+     */
+    private final class MethodStats {
+
+        private static final int REFRESH_INTERVAL = 64;
+
+        private final boolean idempotent;
+
+        private final LatencyHistogram histogram = new LatencyHistogram();
+
+        private final AtomicInteger samples = new AtomicInteger();
+
+        private volatile long hedgeDelay = -1;
+
+        MethodStats(boolean idempotent) {
+            this.idempotent = idempotent;
+        }
+
+        void record(long nanos) {
+            histogram.record(nanos);
+            int count = samples.incrementAndGet();
+            if (count >= minSamples && (count == minSamples || count % REFRESH_INTERVAL == 0)) {
+                hedgeDelay = Math.max(TimeUnit.MILLISECONDS.toNanos(minDelay), histogram.getValueAtPercentile(percentile));
+            }
+        }
+
+        long getHedgeDelay() {
+            return hedgeDelay;
+        }
+    }
+
+    /**
+     * 一次被对冲的调用，两次调用中先正常完成的作为结果
+     */
+    private final class HedgedCall {
+
+        private final MethodStats stats;
+
+        private final CompletableFuture<Object> result = new CompletableFuture<>();
+
+        /**
+         * 尚未结束的调用数
+         */
+        private final AtomicInteger pending = new AtomicInteger(1);
+
+        private volatile Throwable firstFailure;
+
+        HedgedCall(MethodStats stats) {
+            this.stats = stats;
+        }
+
+        /**
+         * 第一次调用仍未结束时登记对冲调用
+         */
+        boolean startHedge() {
+            for (;;) {
+                int current = pending.get();
+                if (current == 0) return false;
+                if (pending.compareAndSet(current, current + 1)) return true;
+            }
+        }
+
+        void attempt(Attempt attempt, boolean hedge) {
+            long start = System.nanoTime();
+            Object value;
+            try {
+                value = attempt.proceed();
+            } catch (Throwable e) {
+                // 结果已经确定后的失败来自取消，耗时不完整
+                if (!result.isDone()) {
+                    stats.record(System.nanoTime() - start);
+                }
+                if (firstFailure == null) {
+                    firstFailure = e;
+                }
+                finishAttempt();
+                return;
+            }
+            if (result.complete(value)) {
+                stats.record(System.nanoTime() - start);
+                if (hedge) {
+                    hedgeWinCount.increment();
+                }
+            }
+            pending.decrementAndGet();
+        }
+
+        /**
+         * 一次调用失败或者没能执行，两次调用都结束时以先失败的异常作为结果
+         */
+        void finishAttempt() {
+            if (pending.decrementAndGet() == 0) {
+                result.completeExceptionally(firstFailure);
+            }
+        }
+    }
+
+    @FunctionalInterface
+    private interface Attempt {
+        Object proceed() throws Throwable;
+    }
+}
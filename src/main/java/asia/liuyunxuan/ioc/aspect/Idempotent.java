@@ -0,0 +1,21 @@
+package asia.liuyunxuan.ioc.aspect;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 标记方法是幂等的，重复调用不会产生额外的副作用。
+ * <p>
+ * {@link HedgingInterceptor}只对标注了该注解的方法发起对冲调用，注解可以声明在接口方法或者实现方法上。
+ *
+ * @author liuyunxuan
+ * @since 1.0
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface Idempotent {
+}
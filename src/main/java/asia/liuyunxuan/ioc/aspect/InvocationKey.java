@@ -0,0 +1,57 @@
+package asia.liuyunxuan.ioc.aspect;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+
+/**
+ * 方法调用的key，由目标对象、方法和参数组成，目标对象按引用比较，参数按{@link Arrays#deepEquals}比较。
+ * 同一个拦截器代理了同一类型的多个Bean时，不同Bean的调用不会被视为相同调用。
+ * <p>
+ * {@link KeyGenerator#DEFAULT}使用该类区分方法调用，缓存、请求合并等需要识别相同调用的拦截器共用。
+ *
+ * @author liuyunxuan
+ * @since 1.0
+ */
+public final class InvocationKey {
+
+    private final Object target;
+
+    private final Method method;
+
+    private final Object[] arguments;
+
+    private final int hashCode;
+
+    /**
+     * 构造方法调用的key
+     *
+     * @param target 目标对象
+     * @param method 被调用的方法
+     * @param arguments 方法参数，会被复制，没有参数时可以为null
+     */
+    public InvocationKey(Object target, Method method, Object[] arguments) {
+        this.target = target;
+        this.method = method;
+        this.arguments = arguments == null ? new Object[0] : arguments.clone();
+        this.hashCode = (System.identityHashCode(target) * 31 + method.hashCode()) * 31 + Arrays.deepHashCode(this.arguments);
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (this == other) return true;
+        if (!(other instanceof InvocationKey)) return false;
+        InvocationKey that = (InvocationKey) other;
+        return hashCode == that.hashCode && target == that.target && method.equals(that.method)
+                && Arrays.deepEquals(arguments, that.arguments);
+    }
+
+    @Override
+    public int hashCode() {
+        return hashCode;
+    }
+
+    @Override
+    public String toString() {
+        return target.getClass().getName() + "@" + Integer.toHexString(System.identityHashCode(target)) + "." + method.getName() + Arrays.deepToString(arguments);
+    }
+}
@@ -0,0 +1,26 @@
+package asia.liuyunxuan.ioc.aspect;
+
+import org.aopalliance.intercept.MethodInvocation;
+
+/**
+ * 为方法调用生成key，拦截器通过key判断两次调用是否相同。
+ *
+ * @author liuyunxuan
+ * @since 1.0
+ */
+@FunctionalInterface
+public interface KeyGenerator {
+
+    /**
+     * 默认的key生成器，目标对象、方法和参数都相同的调用视为相同调用
+     */
+    KeyGenerator DEFAULT = invocation -> new InvocationKey(invocation.getThis(), invocation.getMethod(), invocation.getArguments());
+
+    /**
+     * 生成方法调用的key
+     *
+     * @param invocation 方法调用
+     * @return 调用的key，需要正确实现equals和hashCode
+     */
+    Object generate(MethodInvocation invocation);
+}
@@ -0,0 +1,414 @@
+package asia.liuyunxuan.ioc.aspect;
+
+import asia.liuyunxuan.ioc.aspect.framework.weaving.WeavingSupport;
+import asia.liuyunxuan.ioc.component.container.DisposableComponent;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 把单个调用合并为批量调用的拦截器。
+ * <p>
+ * 标注了{@link Batched}的单参数方法被调用时，调用先进入该目标对象和方法的待处理批次：
+ * 批次中第一个调用到达maxDelay毫秒后，或者批次达到maxBatchSize个调用时，
+ * 通过{@link WeavingSupport#newJoinpointInvocation 不经过通知的调用}以所有调用的参数列表调用一次批量方法，再把各自的结果交给每个调用方。
+ * 单个方法的返回类型是{@link CompletableFuture}或{@link CompletionStage}时调用方立即得到future，
+ * 否则（包括返回{@link Object}的方法）调用线程等待批量调用完成。批量方法抛出的异常会交给批次中的每个调用方。
+ * <p>
+ * 批量方法直接在目标对象上调用，不再经过批量方法自身的通知。批次按目标对象区分，
+ * 因此适合静态的目标源，每次调用都换目标的目标源无法合并调用。批次只在有待处理的调用时保存在拦截器中，
+ * 批量调用开始后即被移除，拦截器不会长期持有原型、线程或者池化目标源产生的目标对象。
+ * 单个方法对应的批量方法按目标类型缓存在{@link ClassValue}中，不会阻止类的卸载。
+ * <p>
+ * 批量调用在拦截器的线程池中执行，线程数由dispatchThreads指定，默认等于处理器数量。
+ * 拦截器实现了{@link DisposableComponent}，容器关闭时处理完待处理的批次后关闭线程池，之后的调用抛出{@link IllegalStateException}。
+ *
+ * @author liuyunxuan
+ * @since 1.0
+ */
+public class MicroBatchingInterceptor implements MethodInterceptor, DisposableComponent {
+
+    private int maxBatchSize = 64;
+
+    private long maxDelay = 5;
+
+    private int dispatchThreads = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * 定时触发批次并执行批量调用的线程池，第一次调用时创建
+     */
+    private volatile ScheduledThreadPoolExecutor executor;
+
+    private volatile boolean destroyed;
+
+    /**
+     * 批量方法的占位对象，表示单个方法没有声明批量方法
+     */
+    private static final Method NO_BATCH_METHOD;
+
+    static {
+        try {
+            NO_BATCH_METHOD = Object.class.getMethod("toString");
+        } catch (NoSuchMethodException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * 按目标类型缓存的批量方法，key为单个方法
+     */
+    private static final ClassValue<Map<Method, Method>> BATCH_METHODS = new ClassValue<Map<Method, Method>>() {
+        @Override
+        protected Map<Method, Method> computeValue(Class<?> type) {
+            return new ConcurrentHashMap<>();
+        }
+    };
+
+    /**
+     * key为目标对象和单个方法，value为对应的待处理批次，批次开始执行后移除
+     */
+    private final Map<BatchKey, Batcher> batchers = new ConcurrentHashMap<>();
+
+    private final LongAdder batchCount = new LongAdder();
+
+    private final LongAdder itemCount = new LongAdder();
+
+    private final LongAdder waitNanos = new LongAdder();
+
+    @Override
+    public Object invoke(MethodInvocation invocation) throws Throwable {
+        if (destroyed) {
+            throw new IllegalStateException("MicroBatchingInterceptor has been destroyed");
+        }
+        Object target = invocation.getThis();
+        Method method = invocation.getMethod();
+        Method batchMethod = getBatchMethod(target.getClass(), method);
+        if (batchMethod == null) {
+            return invocation.proceed();
+        }
+        ScheduledThreadPoolExecutor executor = getExecutor();
+        BatchKey key = new BatchKey(target, method);
+        CompletableFuture<Object> result;
+        do {
+            Batcher batcher = batchers.computeIfAbsent(key, k -> new Batcher(k, batchMethod));
+            // 批次在取出之后不再接受调用，此时换一个新的批次
+            result = batcher.add(invocation.getArguments()[0], executor);
+        } while (result == null);
+        Class<?> returnType = method.getReturnType();
+        if (returnType == CompletableFuture.class || returnType == CompletionStage.class) {
+            return result;
+        }
+        try {
+            return result.get();
+        } catch (ExecutionException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static Method getBatchMethod(Class<?> targetClass, Method method) {
+        Map<Method, Method> batchMethods = BATCH_METHODS.get(targetClass);
+        Method batchMethod = batchMethods.get(method);
+        if (batchMethod == null) {
+            batchMethod = resolveBatchMethod(targetClass, method);
+            batchMethods.put(method, batchMethod == null ? NO_BATCH_METHOD : batchMethod);
+        }
+        return batchMethod == NO_BATCH_METHOD ? null : batchMethod;
+    }
+
+    /**
+     * 查找方法的{@link Batched}声明的批量方法，JDK代理传入的接口方法同样查找实现类上的注解
+     */
+    private static Method resolveBatchMethod(Class<?> targetClass, Method method) {
+        if (method.getParameterCount() != 1) return null;
+        Batched batched = method.getAnnotation(Batched.class);
+        if (batched == null) {
+            try {
+                batched = targetClass.getMethod(method.getName(), method.getParameterTypes()).getAnnotation(Batched.class);
+            } catch (NoSuchMethodException e) {
+                return null;
+            }
+        }
+        if (batched == null) return null;
+        for (Method candidate : targetClass.getMethods()) {
+            if (candidate.getName().equals(batched.value()) && candidate.getParameterCount() == 1
+                    && candidate.getParameterTypes()[0].isAssignableFrom(ArrayList.class)) {
+                Class<?> returnType = candidate.getReturnType();
+                if (Map.class.isAssignableFrom(returnType) || List.class.isAssignableFrom(returnType)) {
+                    return candidate;
+                }
+            }
+        }
+        throw new IllegalStateException("No batch method [" + batched.value() + "(List)] returning Map or List on " + targetClass.getName());
+    }
+
+    private ScheduledThreadPoolExecutor getExecutor() {
+        ScheduledThreadPoolExecutor executor = this.executor;
+        if (executor == null) {
+            synchronized (this) {
+                if (destroyed) {
+                    throw new IllegalStateException("MicroBatchingInterceptor has been destroyed");
+                }
+                executor = this.executor;
+                if (executor == null) {
+                    AtomicInteger threadNumber = new AtomicInteger();
+                    executor = new ScheduledThreadPoolExecutor(dispatchThreads, runnable -> {
+                        Thread thread = new Thread(runnable, "micro-batch-" + threadNumber.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+                    executor.setRemoveOnCancelPolicy(true);
+                    this.executor = executor;
+                }
+            }
+        }
+        return executor;
+    }
+
+    /**
+     * 处理完待处理的批次后关闭线程池，之后的调用会被拒绝
+     */
+    @Override
+    public void destroy() throws Exception {
+        ScheduledThreadPoolExecutor executor;
+        synchronized (this) {
+            destroyed = true;
+            executor = this.executor;
+            this.executor = null;
+        }
+        for (Batcher batcher : batchers.values()) {
+            batcher.flush();
+        }
+        if (executor != null) {
+            executor.shutdown();
+            executor.awaitTermination(10, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * 获取已执行的批量调用次数
+     *
+     * @return 批量调用次数
+     */
+    public long getBatchCount() {
+        return batchCount.sum();
+    }
+
+    /**
+     * 获取已处理的单个调用数
+     *
+     * @return 单个调用数
+     */
+    public long getItemCount() {
+        return itemCount.sum();
+    }
+
+    /**
+     * 获取平均每个批次包含的调用数
+     *
+     * @return 平均批次大小，没有批次时返回0
+     */
+    public double getAverageBatchSize() {
+        long batches = batchCount.sum();
+        return batches == 0 ? 0 : (double) itemCount.sum() / batches;
+    }
+
+    /**
+     * 获取调用从进入批次到开始批量调用的平均等待时间
+     *
+     * @return 平均等待时间，单位纳秒，没有调用时返回0
+     */
+    public long getAverageWaitNanos() {
+        long items = itemCount.sum();
+        return items == 0 ? 0 : waitNanos.sum() / items;
+    }
+
+    public void setMaxBatchSize(int maxBatchSize) {
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    public void setMaxDelay(long maxDelay) {
+        this.maxDelay = maxDelay;
+    }
+
+    public void setDispatchThreads(int dispatchThreads) {
+        this.dispatchThreads = dispatchThreads;
+    }
+
+    /**
+     * 一个目标对象上一个方法的一个批次，取出执行之后不再接受新的调用
+     */
+    private final class Batcher {
+
+        private final BatchKey key;
+
+        private final Object target;
+
+        private final Method batchMethod;
+
+        private final boolean mapResult;
+
+        private final List<Request> pending = new ArrayList<>();
+
+        private ScheduledFuture<?> timer;
+
+        private boolean taken;
+
+        Batcher(BatchKey key, Method batchMethod) {
+            this.key = key;
+            this.target = key.target;
+            this.batchMethod = batchMethod;
+            this.mapResult = Map.class.isAssignableFrom(batchMethod.getReturnType());
+        }
+
+        /**
+         * 加入一个调用
+         *
+         * @return 调用结果的future，批次已经被取出时返回null
+         */
+        CompletableFuture<Object> add(Object argument, ScheduledThreadPoolExecutor executor) {
+            Request request = new Request(argument);
+            boolean full;
+            synchronized (this) {
+                if (taken) return null;
+                if (pending.isEmpty()) {
+                    try {
+                        timer = executor.schedule(this::flush, maxDelay, TimeUnit.MILLISECONDS);
+                    } catch (RejectedExecutionException e) {
+                        take();
+                        throw new IllegalStateException("MicroBatchingInterceptor has been destroyed", e);
+                    }
+                }
+                pending.add(request);
+                full = pending.size() >= maxBatchSize;
+                if (full) {
+                    take();
+                }
+            }
+            if (full) {
+                try {
+                    executor.execute(() -> dispatch(pending));
+                } catch (RejectedExecutionException e) {
+                    // 关闭过程中在调用线程上执行
+                    dispatch(pending);
+                }
+            }
+            return request.future;
+        }
+
+        void flush() {
+            synchronized (this) {
+                if (taken) return;
+                take();
+            }
+            if (!pending.isEmpty()) {
+                dispatch(pending);
+            }
+        }
+
+        /**
+         * 取出批次，之后pending不再变化，可以在锁外读取
+         */
+        private void take() {
+            taken = true;
+            batchers.remove(key, this);
+            if (timer != null) {
+                timer.cancel(false);
+                timer = null;
+            }
+        }
+
+        private void dispatch(List<Request> batch) {
+            long start = System.nanoTime();
+            for (Request request : batch) {
+                waitNanos.add(start - request.enqueuedAt);
+            }
+            batchCount.increment();
+            itemCount.add(batch.size());
+            // 结果按参数返回时相同参数只查询一次
+            Collection<Object> distinct = mapResult ? new LinkedHashSet<>() : new ArrayList<>(batch.size());
+            for (Request request : batch) {
+                distinct.add(request.argument);
+            }
+            List<Object> arguments = distinct instanceof List ? (List<Object>) distinct : new ArrayList<>(distinct);
+            try {
+                Object result = WeavingSupport.newJoinpointInvocation(target, batchMethod, new Object[]{arguments}).proceed();
+                if (mapResult) {
+                    Map<?, ?> results = (Map<?, ?>) result;
+                    for (Request request : batch) {
+                        request.future.complete(results == null ? null : results.get(request.argument));
+                    }
+                    return;
+                }
+                List<?> results = (List<?>) result;
+                if (results == null || results.size() != batch.size()) {
+                    throw new IllegalStateException("Batch method " + batchMethod + " returned " + (results == null ? "null" : results.size() + " results")
+                            + " for " + batch.size() + " arguments");
+                }
+                for (int i = 0; i < batch.size(); i++) {
+                    batch.get(i).future.complete(results.get(i));
+                }
+            } catch (Throwable e) {
+                for (Request request : batch) {
+                    request.future.completeExceptionally(e);
+                }
+            }
+        }
+    }
+
+    private static final class Request {
+
+        private final Object argument;
+
+        private final CompletableFuture<Object> future = new CompletableFuture<>();
+
+        private final long enqueuedAt = System.nanoTime();
+
+        Request(Object argument) {
+            this.argument = argument;
+        }
+    }
+
+    /**
+     * 按目标对象的身份和方法区分批次
+     */
+    private static final class BatchKey {
+
+        private final Object target;
+
+        private final Method method;
+
+        BatchKey(Object target, Method method) {
+            this.target = target;
+            this.method = method;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (this == other) return true;
+            if (!(other instanceof BatchKey)) return false;
+            BatchKey that = (BatchKey) other;
+            return target == that.target && method.equals(that.method);
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(target) * 31 + method.hashCode();
+        }
+    }
+}
@@ -0,0 +1,467 @@
+package asia.liuyunxuan.ioc.aspect;
+
+import asia.liuyunxuan.ioc.common.ClassUtils;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 基于名称模式的轻量切点，不依赖AspectJ织入器。
+ *
+ * <p>支持AspectJ表达式中最常用的一部分写法，多个条件之间用{@code ||}连接：
+ * <pre>
+ * execution(* com.example.service..*Service.find*(..))
+ * within(com.example.dao.*)
+ * &#64;annotation(com.example.Timed)
+ * </pre>
+ *
+ * <p>表达式语法说明：
+ * <ul>
+ *     <li>execution：返回值只能是{@code *}，参数只能是{@code (..)}，按类型和方法名匹配，
+ *     类型可以是目标类本身，也可以是它的父类或接口</li>
+ *     <li>within：匹配目标类所在的类型，不考虑父类和接口</li>
+ *     <li>&#64;annotation：匹配标注了指定注解的方法，注解可以在接口方法上，也可以在目标类的实现方法上</li>
+ *     <li>类型模式：{@code pkg.Type}为具体类型，{@code pkg.*}为包内的类型，{@code pkg..*}包含子包，
+ *     类名和方法名都可以使用{@code *}通配</li>
+ * </ul>
+ *
+ * <p>表达式在创建时编译成预先计算好的匹配器：所有类型模式的包名合并成一棵按包名分段的前缀树，
+ * 不在这些包中的类只需查找一次前缀树即可排除；不带通配符的类名和方法名直接比较字符串，类型的包名和继承层次按类型缓存。
+ * 只需要这些语义的应用可以完全不加载AspectJ。
+ *
+ * @see NamePatternPointcutAspectAdvisor
+ * @see asia.liuyunxuan.ioc.aspect.aspectj.AspectJExpressionJoinPointSelector
+ */
+public class NamePatternJoinPointSelector implements JoinPointSelector, ClassFilter, MethodMatcher {
+
+    private static final String EXECUTION = "execution(";
+    private static final String WITHIN = "within(";
+    private static final String ANNOTATION = "@annotation(";
+
+    private static final ClassValue<TypeInfo> TYPE_INFOS = new ClassValue<TypeInfo>() {
+        @Override
+        protected TypeInfo computeValue(Class<?> type) {
+            return new TypeInfo(type);
+        }
+    };
+
+    /**
+     * 表达式中的全部条件，任意一个匹配即匹配
+     */
+    private final Term[] terms;
+
+    /**
+     * execution和within条件中所有类型模式的包名
+     */
+    private final PackageTrie packages = new PackageTrie();
+
+    /**
+     * 是否包含不受包名限制的条件
+     */
+    private final boolean hasAnnotationTerm;
+
+    /**
+     * 创建一个名称模式切点。
+     *
+     * @param expression 切点表达式，例如："execution(* com.example.service.*.*(..))"
+     * @throws IllegalArgumentException 表达式语法错误或注解类型不存在时抛出
+     */
+    public NamePatternJoinPointSelector(String expression) {
+        List<Term> terms = new ArrayList<>();
+        boolean hasAnnotationTerm = false;
+        int from = 0;
+        while (from <= expression.length()) {
+            int to = expression.indexOf("||", from);
+            if (to < 0) to = expression.length();
+            Term term = parseTerm(expression.substring(from, to).trim(), expression);
+            from = to + 2;
+            if (term instanceof AnnotationTerm) {
+                hasAnnotationTerm = true;
+            } else {
+                ((TypeTerm) term).typePattern.register(packages);
+            }
+            terms.add(term);
+        }
+        this.terms = terms.toArray(new Term[0]);
+        this.hasAnnotationTerm = hasAnnotationTerm;
+    }
+
+    /**
+     * 判断给定的类是否可能包含匹配的方法。
+     *
+     * @param clazz 待匹配的目标类
+     * @return 如果类可能包含匹配的方法返回true，否则返回false
+     */
+    @Override
+    public boolean matches(Class<?> clazz) {
+        if (!hasAnnotationTerm && !inRegisteredPackage(clazz)) return false;
+        for (Term term : terms) {
+            if (term.matches(clazz)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * 判断给定的方法是否匹配切点表达式。
+     *
+     * @param method 待匹配的方法
+     * @param targetClass 方法所属的目标类
+     * @return 如果方法匹配切点表达式返回true，否则返回false
+     */
+    @Override
+    public boolean matches(Method method, Class<?> targetClass) {
+        for (Term term : terms) {
+            if (term.matches(method, targetClass)) return true;
+        }
+        return false;
+    }
+
+    @Override
+    public ClassFilter getClassFilter() {
+        return this;
+    }
+
+    @Override
+    public MethodMatcher getMethodMatcher() {
+        return this;
+    }
+
+    /**
+     * 目标类及其父类、接口中是否有类型位于表达式涉及的包中
+     */
+    private boolean inRegisteredPackage(Class<?> clazz) {
+        for (Class<?> type : hierarchy(clazz)) {
+            if (packages.matches(packageName(type))) return true;
+        }
+        return false;
+    }
+
+    private static Term parseTerm(String term, String expression) {
+        if (term.startsWith(EXECUTION) && term.endsWith(")")) {
+            String body = term.substring(EXECUTION.length(), term.length() - 1).trim();
+            if (!body.startsWith("*") || !body.endsWith("(..)")) {
+                throw new IllegalArgumentException("Only 'execution(* type.method(..))' is supported in pointcut expression [" + expression + "]");
+            }
+            String signature = body.substring(1, body.length() - "(..)".length()).trim();
+            int methodStart = signature.lastIndexOf('.');
+            if (methodStart <= 0 || signature.charAt(methodStart - 1) == '.') {
+                throw new IllegalArgumentException("Missing type pattern in pointcut expression [" + expression + "]");
+            }
+            return new ExecutionTerm(TypePattern.parse(signature.substring(0, methodStart)), NamePattern.parse(signature.substring(methodStart + 1)));
+        }
+        if (term.startsWith(WITHIN) && term.endsWith(")")) {
+            return new WithinTerm(TypePattern.parse(term.substring(WITHIN.length(), term.length() - 1).trim()));
+        }
+        if (term.startsWith(ANNOTATION) && term.endsWith(")")) {
+            String annotationName = term.substring(ANNOTATION.length(), term.length() - 1).trim();
+            try {
+                Class<?> annotationType = Class.forName(annotationName, false, ClassUtils.getDefaultClassLoader());
+                if (!annotationType.isAnnotation()) {
+                    throw new IllegalArgumentException("[" + annotationName + "] is not an annotation type in pointcut expression [" + expression + "]");
+                }
+                return new AnnotationTerm(annotationType.asSubclass(Annotation.class));
+            } catch (ClassNotFoundException e) {
+                throw new IllegalArgumentException("Annotation type [" + annotationName + "] not found for pointcut expression [" + expression + "]", e);
+            }
+        }
+        throw new IllegalArgumentException("Unsupported pointcut term [" + term + "] in pointcut expression [" + expression + "]");
+    }
+
+    /**
+     * 目标类本身、所有父类和所有接口
+     */
+    private static Class<?>[] hierarchy(Class<?> clazz) {
+        return TYPE_INFOS.get(clazz).hierarchy;
+    }
+
+    private static String packageName(Class<?> type) {
+        return TYPE_INFOS.get(type).packageName;
+    }
+
+    private static String simpleName(Class<?> type) {
+        return TYPE_INFOS.get(type).simpleName;
+    }
+
+    /**
+     * 匹配时用到的类型信息，每个类型只计算一次
+     */
+    private static final class TypeInfo {
+
+        private final String packageName;
+
+        private final String simpleName;
+
+        private final Class<?>[] hierarchy;
+
+        TypeInfo(Class<?> type) {
+            String name = type.getName();
+            int index = name.lastIndexOf('.');
+            this.packageName = index < 0 ? "" : name.substring(0, index);
+            this.simpleName = name.substring(index + 1);
+            Set<Class<?>> types = new LinkedHashSet<>();
+            collectHierarchy(type, types);
+            this.hierarchy = types.toArray(new Class<?>[0]);
+        }
+
+        private static void collectHierarchy(Class<?> clazz, Set<Class<?>> types) {
+            if (clazz == null || !types.add(clazz)) return;
+            collectHierarchy(clazz.getSuperclass(), types);
+            for (Class<?> ifc : clazz.getInterfaces()) {
+                collectHierarchy(ifc, types);
+            }
+        }
+    }
+
+    /**
+     * 表达式中的一个条件
+     */
+    private interface Term {
+
+        boolean matches(Class<?> clazz);
+
+        boolean matches(Method method, Class<?> targetClass);
+    }
+
+    /**
+     * 带类型模式的条件
+     */
+    private abstract static class TypeTerm implements Term {
+
+        protected final TypePattern typePattern;
+
+        TypeTerm(TypePattern typePattern) {
+            this.typePattern = typePattern;
+        }
+    }
+
+    private static final class ExecutionTerm extends TypeTerm {
+
+        private final NamePattern methodPattern;
+
+        ExecutionTerm(TypePattern typePattern, NamePattern methodPattern) {
+            super(typePattern);
+            this.methodPattern = methodPattern;
+        }
+
+        @Override
+        public boolean matches(Class<?> clazz) {
+            for (Class<?> type : hierarchy(clazz)) {
+                if (typePattern.matches(type)) return true;
+            }
+            return false;
+        }
+
+        @Override
+        public boolean matches(Method method, Class<?> targetClass) {
+            if (!methodPattern.matches(method.getName())) return false;
+            for (Class<?> type : hierarchy(targetClass)) {
+                if (typePattern.matches(type) && declares(type, method)) return true;
+            }
+            for (Class<?> type : hierarchy(method.getDeclaringClass())) {
+                if (typePattern.matches(type) && declares(type, method)) return true;
+            }
+            return false;
+        }
+
+        private static boolean declares(Class<?> type, Method method) {
+            try {
+                type.getDeclaredMethod(method.getName(), method.getParameterTypes());
+                return true;
+            } catch (NoSuchMethodException e) {
+                return false;
+            }
+        }
+    }
+
+    private static final class WithinTerm extends TypeTerm {
+
+        WithinTerm(TypePattern typePattern) {
+            super(typePattern);
+        }
+
+        @Override
+        public boolean matches(Class<?> clazz) {
+            return typePattern.matches(clazz);
+        }
+
+        @Override
+        public boolean matches(Method method, Class<?> targetClass) {
+            return typePattern.matches(targetClass);
+        }
+    }
+
+    private static final class AnnotationTerm implements Term {
+
+        private final Class<? extends Annotation> annotationType;
+
+        AnnotationTerm(Class<? extends Annotation> annotationType) {
+            this.annotationType = annotationType;
+        }
+
+        @Override
+        public boolean matches(Class<?> clazz) {
+            for (Method method : clazz.getMethods()) {
+                if (matches(method, clazz)) return true;
+            }
+            return false;
+        }
+
+        @Override
+        public boolean matches(Method method, Class<?> targetClass) {
+            if (method.isAnnotationPresent(annotationType)) return true;
+            try {
+                return targetClass.getMethod(method.getName(), method.getParameterTypes()).isAnnotationPresent(annotationType);
+            } catch (NoSuchMethodException e) {
+                return false;
+            }
+        }
+    }
+
+    /**
+     * 类型模式，由包名条件和类名模式组成
+     */
+    private static final class TypePattern {
+
+        /** 包名，为null时不限制包 */
+        private final String packageName;
+
+        /** 是否包含子包 */
+        private final boolean includeSubpackages;
+
+        private final NamePattern simpleName;
+
+        private TypePattern(String packageName, boolean includeSubpackages, NamePattern simpleName) {
+            this.packageName = packageName;
+            this.includeSubpackages = includeSubpackages;
+            this.simpleName = simpleName;
+        }
+
+        static TypePattern parse(String pattern) {
+            int index = pattern.lastIndexOf('.');
+            if (index < 0) {
+                return new TypePattern(null, true, NamePattern.parse(pattern));
+            }
+            boolean includeSubpackages = index > 0 && pattern.charAt(index - 1) == '.';
+            String packageName = pattern.substring(0, includeSubpackages ? index - 1 : index);
+            if (packageName.isEmpty() || packageName.indexOf('*') >= 0) {
+                throw new IllegalArgumentException("Unsupported package pattern [" + pattern + "]");
+            }
+            return new TypePattern(packageName, includeSubpackages, NamePattern.parse(pattern.substring(index + 1)));
+        }
+
+        void register(PackageTrie packages) {
+            packages.add(packageName, includeSubpackages);
+        }
+
+        boolean matches(Class<?> type) {
+            if (packageName != null) {
+                String typePackage = packageName(type);
+                if (includeSubpackages) {
+                    if (!typePackage.startsWith(packageName)) return false;
+                    if (typePackage.length() != packageName.length() && typePackage.charAt(packageName.length()) != '.') return false;
+                } else if (!typePackage.equals(packageName)) {
+                    return false;
+                }
+            }
+            return simpleName.matches(simpleName(type));
+        }
+    }
+
+    /**
+     * 名称模式，不带通配符时直接比较字符串，否则按{@code *}切分后依次匹配
+     */
+    private static final class NamePattern {
+
+        private static final NamePattern ANY = new NamePattern(null, null);
+
+        /** 不带通配符的名称 */
+        private final String exact;
+
+        /** 按通配符切分后的片段，第一段必须是前缀，最后一段必须是后缀 */
+        private final String[] parts;
+
+        private NamePattern(String exact, String[] parts) {
+            this.exact = exact;
+            this.parts = parts;
+        }
+
+        static NamePattern parse(String pattern) {
+            if (pattern.isEmpty()) throw new IllegalArgumentException("Empty name pattern");
+            if ("*".equals(pattern)) return ANY;
+            if (pattern.indexOf('*') < 0) return new NamePattern(pattern, null);
+            return new NamePattern(null, pattern.split("\\*", -1));
+        }
+
+        boolean matches(String name) {
+            if (exact != null) return exact.equals(name);
+            if (parts == null) return true;
+            String prefix = parts[0];
+            String suffix = parts[parts.length - 1];
+            if (name.length() < prefix.length() + suffix.length() || !name.startsWith(prefix) || !name.endsWith(suffix)) {
+                return false;
+            }
+            int from = prefix.length();
+            int to = name.length() - suffix.length();
+            for (int i = 1; i < parts.length - 1; i++) {
+                int index = name.indexOf(parts[i], from);
+                if (index < 0 || index + parts[i].length() > to) return false;
+                from = index + parts[i].length();
+            }
+            return true;
+        }
+    }
+
+    /**
+     * 按包名分段的前缀树，节点可以只匹配包本身，也可以匹配包及其子包
+     */
+    private static final class PackageTrie {
+
+        private final Map<String, PackageTrie> children = new HashMap<>();
+
+        /** 包本身匹配 */
+        private boolean exact;
+
+        /** 包及其子包都匹配 */
+        private boolean subtree;
+
+        void add(String packageName, boolean includeSubpackages) {
+            PackageTrie node = this;
+            if (packageName != null) {
+                int from = 0;
+                while (from <= packageName.length()) {
+                    int to = packageName.indexOf('.', from);
+                    if (to < 0) to = packageName.length();
+                    node = node.children.computeIfAbsent(packageName.substring(from, to), key -> new PackageTrie());
+                    from = to + 1;
+                }
+            }
+            if (includeSubpackages) {
+                node.subtree = true;
+            } else {
+                node.exact = true;
+            }
+        }
+
+        boolean matches(String packageName) {
+            PackageTrie node = this;
+            if (node.subtree) return true;
+            if (packageName.isEmpty()) return node.exact;
+            int from = 0;
+            while (from <= packageName.length()) {
+                int to = packageName.indexOf('.', from);
+                if (to < 0) to = packageName.length();
+                node = node.children.get(packageName.substring(from, to));
+                if (node == null) return false;
+                if (node.subtree) return true;
+                from = to + 1;
+            }
+            return node.exact;
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package asia.liuyunxuan.ioc.aspect;
+
+import org.aopalliance.aop.Advice;
+
+/**
+ * 名称模式切面通知器，将{@link NamePatternJoinPointSelector}切点和通知组合在一起。
+ *
+ * <p>属性与{@link asia.liuyunxuan.ioc.aspect.aspectj.AspectJExpressionPointcutAspectAdvisor}一致，
+ * XML配置中替换class即可，不需要完整AspectJ语义的应用不会加载AspectJ织入器：
+ * <pre>
+ * &lt;bean id="pointcutAdvisor" class="asia.liuyunxuan.ioc.aspect.NamePatternPointcutAspectAdvisor"&gt;
+ *     &lt;property name="expression" value="execution(* com.example.service..*Service.find*(..))"/&gt;
+ *     &lt;property name="advice" ref="methodInterceptor"/&gt;
+ * &lt;/bean&gt;
+ * </pre>
+ *
+ * @see NamePatternJoinPointSelector
+ * @see PointcutAspectAdvisor
+ */
+public class NamePatternPointcutAspectAdvisor implements PointcutAspectAdvisor {
+
+    /**
+     * 切点对象，第一次获取时按表达式编译
+     */
+    private volatile NamePatternJoinPointSelector pointcut;
+
+    /**
+     * 通知对象，封装了要在切点处执行的增强逻辑
+     */
+    private Advice advice;
+
+    /**
+     * 名称模式切点表达式
+     */
+    private String expression;
+
+    /**
+     * 通知器的顺序，值越小越先执行，相同时按Bean名称排序
+     */
+    private int order = Integer.MAX_VALUE;
+
+    public synchronized void setExpression(String expression) {
+        this.expression = expression;
+        this.pointcut = null;
+    }
+
+    /**
+     * 获取切点，第一次调用时编译表达式，并发调用时只会编译一次。
+     *
+     * @return 切点对象
+     */
+    @Override
+    public JoinPointSelector getPointcut() {
+        NamePatternJoinPointSelector pointcut = this.pointcut;
+        if (null == pointcut) {
+            synchronized (this) {
+                pointcut = this.pointcut;
+                if (null == pointcut) {
+                    pointcut = new NamePatternJoinPointSelector(expression);
+                    this.pointcut = pointcut;
+                }
+            }
+        }
+        return pointcut;
+    }
+
+    @Override
+    public Advice getAdvice() {
+        return advice;
+    }
+
+    public void setAdvice(Advice advice) {
+        this.advice = advice;
+    }
+
+    @Override
+    public int getOrder() {
+        return order;
+    }
+
+    public void setOrder(int order) {
+        this.order = order;
+    }
+
+}
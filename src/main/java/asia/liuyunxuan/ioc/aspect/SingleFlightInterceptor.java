@@ -0,0 +1,103 @@
+package asia.liuyunxuan.ioc.aspect;
+
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 合并并发相同调用的拦截器。
+ * <p>
+ * 同一时刻有多个线程以相同的key调用方法时，只有第一个线程调用目标方法，
+ * 其余线程等待这次调用完成，得到同一个返回值或者同一个异常。调用完成之后的请求会重新调用目标方法，
+ * 拦截器不缓存结果，需要缓存时使用{@link asia.liuyunxuan.ioc.aspect.cache.CachingInterceptor}。
+ * <p>
+ * 可以配置的属性：
+ * <ul>
+ *     <li>keyGenerator：判断调用是否相同，默认按目标对象、方法和参数判断</li>
+ *     <li>timeout：等待其它线程调用结果的最长时间，单位毫秒，超时抛出{@link IllegalStateException}，默认一直等待</li>
+ * </ul>
+ * 所有等待的线程得到的是同一个返回对象，返回值可变时调用方不应修改它。
+ *
+ * @author liuyunxuan
+ * @since 1.0
+ */
+public class SingleFlightInterceptor implements MethodInterceptor {
+
+    private KeyGenerator keyGenerator = KeyGenerator.DEFAULT;
+
+    private long timeout;
+
+    /**
+     * 正在执行的调用，key为调用的key
+     */
+    private final Map<Object, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+
+    private final LongAdder executionCount = new LongAdder();
+
+    private final LongAdder coalescedCount = new LongAdder();
+
+    @Override
+    public Object invoke(MethodInvocation invocation) throws Throwable {
+        Object key = keyGenerator.generate(invocation);
+        CompletableFuture<Object> future = new CompletableFuture<>();
+        CompletableFuture<Object> leader = inFlight.putIfAbsent(key, future);
+        if (leader != null) {
+            coalescedCount.increment();
+            return await(leader, key);
+        }
+        executionCount.increment();
+        try {
+            Object result = invocation.proceed();
+            future.complete(result);
+            return result;
+        } catch (Throwable e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, future);
+        }
+    }
+
+    private Object await(CompletableFuture<Object> leader, Object key) throws Throwable {
+        try {
+            return timeout > 0 ? leader.get(timeout, TimeUnit.MILLISECONDS) : leader.get();
+        } catch (ExecutionException e) {
+            throw e.getCause();
+        } catch (TimeoutException e) {
+            throw new IllegalStateException("Timed out after " + timeout + "ms waiting for in-flight call " + key, e);
+        }
+    }
+
+    /**
+     * 获取实际调用目标方法的次数
+     *
+     * @return 调用次数
+     */
+    public long getExecutionCount() {
+        return executionCount.sum();
+    }
+
+    /**
+     * 获取被合并、没有调用目标方法的次数
+     *
+     * @return 合并次数
+     */
+    public long getCoalescedCount() {
+        return coalescedCount.sum();
+    }
+
+    public void setKeyGenerator(KeyGenerator keyGenerator) {
+        this.keyGenerator = keyGenerator;
+    }
+
+    public void setTimeout(long timeout) {
+        this.timeout = timeout;
+    }
+}
@@ -20,6 +20,10 @@ import asia.liuyunxuan.ioc.common.ClassUtils;
  *     <li>获取目标对象的接口信息</li>
  * </ul>
  *
+ * 该类本身始终返回同一个目标对象，子类可以改变目标对象的获取方式，
+ * 代理每次调用都会先{@link #getTarget()}获取目标，调用结束后对非静态的目标源{@link #releaseTarget(Object)}归还目标。
+ * 内置的实现位于{@code asia.liuyunxuan.ioc.aspect.target}包。
+ *
  * @author liuyunxuan
  * @see AdvisedSupport
  * @since 1.0
@@ -39,6 +43,41 @@ public class TargetSource {
         this.target = target;
     }
 
+    /**
+     * 供子类使用的构造函数，子类需要重写{@link #getTarget()}和{@link #getTargetType()}
+     */
+    protected TargetSource() {
+        this.target = null;
+    }
+
+    /**
+     * 获取目标对象的类型，创建代理时使用，不要求目标对象已经创建。
+     *
+     * @return 目标对象的类型
+     */
+    public Class<?> getTargetType() {
+        return this.target.getClass();
+    }
+
+    /**
+     * 判断是否每次调用都返回同一个目标对象。
+     * <p>
+     * 静态目标源的目标不需要归还，没有通知的方法也可以直接转发给目标对象。
+     *
+     * @return 如果始终返回同一个目标对象返回true
+     */
+    public boolean isStatic() {
+        return true;
+    }
+
+    /**
+     * 归还{@link #getTarget()}获取的目标对象，代理在每次调用结束后调用，默认不做任何处理。
+     *
+     * @param target 本次调用使用的目标对象
+     */
+    public void releaseTarget(Object target) {
+    }
+
     /**
      * 获取目标对象实现的接口数组。
      * <p>
@@ -51,7 +90,7 @@ public class TargetSource {
      * @return 目标对象实现的接口数组，如果没有实现任何接口则返回空数组
      */
     public Class<?>[] getTargetClass() {
-        Class<?> clazz = this.target.getClass();
+        Class<?> clazz = getTargetType();
         clazz = ClassUtils.isCglibProxyClass(clazz) ? clazz.getSuperclass() : clazz;
         return clazz.getInterfaces();
     }
@@ -7,9 +7,16 @@ import org.aspectj.weaver.tools.PointcutExpression;
 import org.aspectj.weaver.tools.PointcutParser;
 import org.aspectj.weaver.tools.PointcutPrimitive;
 
+import asia.liuyunxuan.ioc.common.ClassUtils;
+
+import java.lang.ref.WeakReference;
 import java.lang.reflect.Method;
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * AspectJ表达式切点解析器，用于解析和匹配AspectJ风格的切点表达式。
@@ -39,6 +46,12 @@ import java.util.Set;
  *     <li>(..)：表示方法参数</li>
  * </ul>
  *
+ * <p>每个类加载器共用一个{@link PointcutParser}，解析后的表达式按表达式文本缓存，
+ * 大量通知器使用相同表达式时只会解析一次，AspectJ的类型环境也只会初始化一次。
+ * 缓存以弱引用的方式按Bean的类加载器保存，只要还有切点在使用就不会被回收，
+ * 不再使用的类加载器可以正常卸载。AspectJ的类型环境不是线程安全的，
+ * 同一个类加载器下的解析和匹配串行执行。
+ *
  * @see JoinPointSelector
  * @see ClassFilter
  * @see MethodMatcher
@@ -54,19 +67,65 @@ public class AspectJExpressionJoinPointSelector implements JoinPointSelector, Cl
         SUPPORTED_PRIMITIVES.add(PointcutPrimitive.EXECUTION);
     }
 
+    /**
+     * 按类加载器共用的解析器和已解析的表达式，key和value都是弱引用，访问时需要持有该Map的监视器
+     */
+    private static final Map<ClassLoader, WeakReference<ExpressionCache>> EXPRESSION_CACHES = new WeakHashMap<>();
+
+    /**
+     * 实际执行的表达式解析次数
+     */
+    private static final AtomicLong PARSE_COUNT = new AtomicLong();
+
+    /**
+     * 表达式所在类加载器的缓存，匹配时用作锁，同时保证缓存在切点存活期间不被回收
+     */
+    private final ExpressionCache expressionCache;
+
     /**
      * AspectJ切点表达式对象，用于实际的切点匹配。
      */
     private final PointcutExpression pointcutExpression;
 
     /**
-     * 创建一个AspectJ表达式切点解析器。
+     * 创建一个AspectJ表达式切点解析器，使用默认的类加载器解析表达式中的类型。
      *
      * @param expression AspectJ切点表达式，例如："execution(* com.example.service.*.*(..))"。
      */
     public AspectJExpressionJoinPointSelector(String expression) {
-        PointcutParser pointcutParser = PointcutParser.getPointcutParserSupportingSpecifiedPrimitivesAndUsingSpecifiedClassLoaderForResolution(SUPPORTED_PRIMITIVES, this.getClass().getClassLoader());
-        pointcutExpression = pointcutParser.parsePointcutExpression(expression);
+        this(expression, ClassUtils.getDefaultClassLoader());
+    }
+
+    /**
+     * 创建一个AspectJ表达式切点解析器。
+     *
+     * @param expression AspectJ切点表达式，例如："execution(* com.example.service.*.*(..))"。
+     * @param classLoader 解析表达式中类型使用的类加载器，通常是Bean的类加载器
+     */
+    public AspectJExpressionJoinPointSelector(String expression, ClassLoader classLoader) {
+        expressionCache = getExpressionCache(classLoader);
+        pointcutExpression = expressionCache.getExpression(expression);
+    }
+
+    private static ExpressionCache getExpressionCache(ClassLoader classLoader) {
+        synchronized (EXPRESSION_CACHES) {
+            WeakReference<ExpressionCache> reference = EXPRESSION_CACHES.get(classLoader);
+            ExpressionCache expressionCache = reference == null ? null : reference.get();
+            if (expressionCache == null) {
+                expressionCache = new ExpressionCache(classLoader);
+                EXPRESSION_CACHES.put(classLoader, new WeakReference<>(expressionCache));
+            }
+            return expressionCache;
+        }
+    }
+
+    /**
+     * 获取实际解析过的表达式次数，命中缓存的表达式不计入。
+     *
+     * @return 表达式解析次数
+     */
+    public static long getParseCount() {
+        return PARSE_COUNT.get();
     }
 
     /**
@@ -77,7 +136,9 @@ public class AspectJExpressionJoinPointSelector implements JoinPointSelector, Cl
      */
     @Override
     public boolean matches(Class<?> clazz) {
-        return pointcutExpression.couldMatchJoinPointsInType(clazz);
+        synchronized (expressionCache) {
+            return pointcutExpression.couldMatchJoinPointsInType(clazz);
+        }
     }
 
     /**
@@ -89,7 +150,9 @@ public class AspectJExpressionJoinPointSelector implements JoinPointSelector, Cl
      */
     @Override
     public boolean matches(Method method, Class<?> targetClass) {
-        return pointcutExpression.matchesMethodExecution(method).alwaysMatches();
+        synchronized (expressionCache) {
+            return pointcutExpression.matchesMethodExecution(method).alwaysMatches();
+        }
     }
 
     @Override
@@ -101,4 +164,34 @@ public class AspectJExpressionJoinPointSelector implements JoinPointSelector, Cl
     public MethodMatcher getMethodMatcher() {
         return this;
     }
+
+    /**
+     * 某个类加载器下共用的解析器，以及按表达式文本缓存的解析结果。
+     * 解析器内部的类型环境不是线程安全的，解析和匹配都持有该对象的监视器
+     */
+    private static final class ExpressionCache {
+
+        private final PointcutParser pointcutParser;
+
+        private final Map<String, PointcutExpression> expressions = new ConcurrentHashMap<>();
+
+        ExpressionCache(ClassLoader classLoader) {
+            this.pointcutParser = PointcutParser.getPointcutParserSupportingSpecifiedPrimitivesAndUsingSpecifiedClassLoaderForResolution(SUPPORTED_PRIMITIVES, classLoader);
+        }
+
+        PointcutExpression getExpression(String expression) {
+            PointcutExpression pointcutExpression = expressions.get(expression);
+            if (pointcutExpression == null) {
+                synchronized (this) {
+                    pointcutExpression = expressions.get(expression);
+                    if (pointcutExpression == null) {
+                        pointcutExpression = pointcutParser.parsePointcutExpression(expression);
+                        PARSE_COUNT.incrementAndGet();
+                        expressions.put(expression, pointcutExpression);
+                    }
+                }
+            }
+            return pointcutExpression;
+        }
+    }
 }
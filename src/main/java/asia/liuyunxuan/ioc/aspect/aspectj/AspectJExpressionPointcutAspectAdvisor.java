@@ -3,6 +3,7 @@ package asia.liuyunxuan.ioc.aspect.aspectj;
 
 import asia.liuyunxuan.ioc.aspect.JoinPointSelector;
 import asia.liuyunxuan.ioc.aspect.PointcutAspectAdvisor;
+import asia.liuyunxuan.ioc.component.container.ComponentClassLoaderAware;
 import org.aopalliance.aop.Advice;
 
 /**
@@ -33,12 +34,12 @@ import org.aopalliance.aop.Advice;
  * @see AspectJExpressionJoinPointSelector
  * @see Advice
  */
-public class AspectJExpressionPointcutAspectAdvisor implements PointcutAspectAdvisor {
+public class AspectJExpressionPointcutAspectAdvisor implements PointcutAspectAdvisor, ComponentClassLoaderAware {
 
     /**
-     * 切点对象，用于存储和解析AspectJ表达式
+     * 切点对象，用于存储和解析AspectJ表达式，第一次获取时创建
      */
-    private AspectJExpressionJoinPointSelector pointcut;
+    private volatile AspectJExpressionJoinPointSelector pointcut;
 
     /**
      * 通知对象，封装了要在切点处执行的增强逻辑
@@ -50,14 +51,38 @@ public class AspectJExpressionPointcutAspectAdvisor implements PointcutAspectAdv
      */
     private String expression;
 
-    public void setExpression(String expression){
+    /**
+     * 通知器的顺序，值越小越先执行，相同时按Bean名称排序
+     */
+    private int order = Integer.MAX_VALUE;
+
+    /**
+     * 解析表达式使用的类加载器，由容器注入，为null时使用默认类加载器
+     */
+    private ClassLoader beanClassLoader;
+
+    public synchronized void setExpression(String expression){
         this.expression = expression;
+        this.pointcut = null;
     }
 
+    /**
+     * 获取切点，第一次调用时按表达式创建，并发调用时只会创建一次。
+     *
+     * @return 切点对象
+     */
     @Override
     public JoinPointSelector getPointcut() {
+        AspectJExpressionJoinPointSelector pointcut = this.pointcut;
         if (null == pointcut) {
-            pointcut = new AspectJExpressionJoinPointSelector(expression);
+            synchronized (this) {
+                pointcut = this.pointcut;
+                if (null == pointcut) {
+                    pointcut = beanClassLoader == null ? new AspectJExpressionJoinPointSelector(expression)
+                            : new AspectJExpressionJoinPointSelector(expression, beanClassLoader);
+                    this.pointcut = pointcut;
+                }
+            }
         }
         return pointcut;
     }
@@ -71,4 +96,19 @@ public class AspectJExpressionPointcutAspectAdvisor implements PointcutAspectAdv
         this.advice = advice;
     }
 
+    @Override
+    public int getOrder() {
+        return order;
+    }
+
+    public void setOrder(int order) {
+        this.order = order;
+    }
+
+    @Override
+    public synchronized void setBeanClassLoader(ClassLoader classLoader) {
+        this.beanClassLoader = classLoader;
+        this.pointcut = null;
+    }
+
 }
@@ -0,0 +1,115 @@
+package asia.liuyunxuan.ioc.aspect.cache;
+
+/**
+ * {@link ResultCache}统计信息的快照。
+ *
+ * @author liuyunxuan
+ * @since 1.0
+ */
+public final class CacheStats {
+
+    private final long hitCount;
+
+    private final long missCount;
+
+    private final long loadSuccessCount;
+
+    private final long loadFailureCount;
+
+    private final long coalescedLoadCount;
+
+    private final long evictionCount;
+
+    private final long expirationCount;
+
+    CacheStats(long hitCount, long missCount, long loadSuccessCount, long loadFailureCount,
+               long coalescedLoadCount, long evictionCount, long expirationCount) {
+        this.hitCount = hitCount;
+        this.missCount = missCount;
+        this.loadSuccessCount = loadSuccessCount;
+        this.loadFailureCount = loadFailureCount;
+        this.coalescedLoadCount = coalescedLoadCount;
+        this.evictionCount = evictionCount;
+        this.expirationCount = expirationCount;
+    }
+
+    /**
+     * 获取命中次数
+     *
+     * @return 命中次数
+     */
+    public long getHitCount() {
+        return hitCount;
+    }
+
+    /**
+     * 获取未命中次数，包括等待其它线程加载的请求
+     *
+     * @return 未命中次数
+     */
+    public long getMissCount() {
+        return missCount;
+    }
+
+    /**
+     * 获取成功加载的次数，即实际调用目标方法并缓存结果的次数
+     *
+     * @return 加载成功次数
+     */
+    public long getLoadSuccessCount() {
+        return loadSuccessCount;
+    }
+
+    /**
+     * 获取加载时抛出异常的次数，异常结果不会被缓存
+     *
+     * @return 加载失败次数
+     */
+    public long getLoadFailureCount() {
+        return loadFailureCount;
+    }
+
+    /**
+     * 获取未命中后等待其它线程加载同一个key、没有重复调用目标方法的次数
+     *
+     * @return 合并加载次数
+     */
+    public long getCoalescedLoadCount() {
+        return coalescedLoadCount;
+    }
+
+    /**
+     * 获取因为超过容量被淘汰的条目数
+     *
+     * @return 淘汰条目数
+     */
+    public long getEvictionCount() {
+        return evictionCount;
+    }
+
+    /**
+     * 获取因为过期被移除的条目数
+     *
+     * @return 过期条目数
+     */
+    public long getExpirationCount() {
+        return expirationCount;
+    }
+
+    /**
+     * 获取命中率
+     *
+     * @return 命中次数占请求次数的比例，没有请求时返回1
+     */
+    public double getHitRate() {
+        long requests = hitCount + missCount;
+        return requests == 0 ? 1.0 : (double) hitCount / requests;
+    }
+
+    @Override
+    public String toString() {
+        return "CacheStats{hitCount=" + hitCount + ", missCount=" + missCount + ", loadSuccessCount=" + loadSuccessCount
+                + ", loadFailureCount=" + loadFailureCount + ", coalescedLoadCount=" + coalescedLoadCount
+                + ", evictionCount=" + evictionCount + ", expirationCount=" + expirationCount + "}";
+    }
+}
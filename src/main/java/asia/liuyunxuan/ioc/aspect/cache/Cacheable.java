@@ -0,0 +1,28 @@
+package asia.liuyunxuan.ioc.aspect.cache;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 标记方法的返回结果可以缓存。
+ * <p>
+ * 注解本身不包含任何逻辑，配合{@link asia.liuyunxuan.ioc.aspect.AnnotationPointcutAspectAdvisor}
+ * 和{@link CachingInterceptor}使用：
+ * <pre>
+ * &lt;bean id="cacheAdvisor" class="asia.liuyunxuan.ioc.aspect.AnnotationPointcutAspectAdvisor"&gt;
+ *     &lt;property name="annotationType" value="asia.liuyunxuan.ioc.aspect.cache.Cacheable"/&gt;
+ *     &lt;property name="advice" ref="cachingInterceptor"/&gt;
+ * &lt;/bean&gt;
+ * </pre>
+ *
+ * @author liuyunxuan
+ * @since 1.0
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface Cacheable {
+}
@@ -0,0 +1,129 @@
+package asia.liuyunxuan.ioc.aspect.cache;
+
+import asia.liuyunxuan.ioc.aspect.KeyGenerator;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 缓存方法调用结果的拦截器。
+ * <p>
+ * 默认以目标对象、方法和参数作为key，把结果保存在{@link ResultCache}中，相同参数的重复调用直接返回缓存的结果，
+ * 也可以通过keyGenerator自定义key。
+ * 拦截器本身不决定缓存哪些方法，通过任意通知器接入：例如配合{@link Cacheable}注解和
+ * {@link asia.liuyunxuan.ioc.aspect.AnnotationPointcutAspectAdvisor}，或者使用切点表达式的通知器。
+ * <p>
+ * 缓存在第一次调用时按属性创建：
+ * <ul>
+ *     <li>maximumSize：最大条目数，默认1000</li>
+ *     <li>maximumWeight和weigher：按权重限制大小，设置了maximumWeight时替代maximumSize，
+ *     此时maximumSize只作为预计的条目数，用于确定tinylfu频率统计的大小</li>
+ *     <li>expireAfterWrite：写入后的存活时间，单位毫秒，默认不过期</li>
+ *     <li>evictionPolicy：淘汰策略，可选lru、lfu和tinylfu，默认tinylfu</li>
+ * </ul>
+ * 需要自定义淘汰策略时可以通过{@link #setCache}直接指定缓存。
+ *
+ * @author liuyunxuan
+ * @since 1.0
+ */
+public class CachingInterceptor implements MethodInterceptor {
+
+    private KeyGenerator keyGenerator = KeyGenerator.DEFAULT;
+
+    private long maximumSize = 1000;
+
+    private long maximumWeight;
+
+    private Weigher weigher;
+
+    private long expireAfterWrite;
+
+    private String evictionPolicy = "tinylfu";
+
+    private volatile ResultCache<Object> cache;
+
+    @Override
+    public Object invoke(MethodInvocation invocation) throws Throwable {
+        return getCache().get(keyGenerator.generate(invocation), invocation::proceed);
+    }
+
+    /**
+     * 获取缓存，第一次调用时按属性创建
+     *
+     * @return 保存方法调用结果的缓存
+     */
+    public ResultCache<Object> getCache() {
+        ResultCache<Object> cache = this.cache;
+        if (cache == null) {
+            synchronized (this) {
+                cache = this.cache;
+                if (cache == null) {
+                    cache = createCache();
+                    this.cache = cache;
+                }
+            }
+        }
+        return cache;
+    }
+
+    /**
+     * 获取缓存的统计信息
+     *
+     * @return 统计信息
+     */
+    public CacheStats getStats() {
+        return getCache().getStats();
+    }
+
+    private ResultCache<Object> createCache() {
+        long capacity = maximumWeight > 0 ? maximumWeight : maximumSize;
+        Weigher weigher = maximumWeight > 0 && this.weigher != null ? this.weigher : Weigher.SINGLETON;
+        // 频率统计按条目数而不是权重确定大小，避免按字节计的权重把统计表撑大
+        long expectedSize = Math.min(capacity, maximumSize);
+        return new ResultCache<>(createEvictionPolicy(expectedSize), capacity, weigher, expireAfterWrite, TimeUnit.MILLISECONDS);
+    }
+
+    private EvictionPolicy<Object> createEvictionPolicy(long expectedSize) {
+        String policy = evictionPolicy == null ? "tinylfu" : evictionPolicy.toLowerCase();
+        switch (policy) {
+            case "lru":
+                return new LruEvictionPolicy<>();
+            case "lfu":
+                return new LfuEvictionPolicy<>();
+            case "tinylfu":
+            case "w-tinylfu":
+                return new TinyLfuEvictionPolicy<>(expectedSize);
+            default:
+                throw new IllegalArgumentException("Unknown eviction policy [" + evictionPolicy + "]");
+        }
+    }
+
+    public void setKeyGenerator(KeyGenerator keyGenerator) {
+        this.keyGenerator = keyGenerator;
+    }
+
+    public synchronized void setCache(ResultCache<Object> cache) {
+        this.cache = cache;
+    }
+
+    public void setMaximumSize(long maximumSize) {
+        this.maximumSize = maximumSize;
+    }
+
+    public void setMaximumWeight(long maximumWeight) {
+        this.maximumWeight = maximumWeight;
+    }
+
+    public void setWeigher(Weigher weigher) {
+        this.weigher = weigher;
+    }
+
+    public void setExpireAfterWrite(long expireAfterWrite) {
+        this.expireAfterWrite = expireAfterWrite;
+    }
+
+    public void setEvictionPolicy(String evictionPolicy) {
+        this.evictionPolicy = evictionPolicy;
+    }
+}
@@ -0,0 +1,50 @@
+package asia.liuyunxuan.ioc.aspect.cache;
+
+/**
+ * 缓存淘汰策略，决定缓存超过容量时淘汰哪个条目。
+ * <p>
+ * {@link ResultCache}在持有锁的情况下调用这些方法，实现类不需要考虑线程安全。
+ * 内置的实现有{@link LruEvictionPolicy}、{@link LfuEvictionPolicy}和{@link TinyLfuEvictionPolicy}。
+ *
+ * @param <K> 缓存key的类型
+ * @author liuyunxuan
+ * @since 1.0
+ */
+public interface EvictionPolicy<K> {
+
+    /**
+     * 新条目写入缓存
+     *
+     * @param key 条目的key
+     */
+    void recordInsert(K key);
+
+    /**
+     * 缓存命中
+     *
+     * @param key 条目的key
+     */
+    void recordAccess(K key);
+
+    /**
+     * 缓存未命中，默认不做任何处理，基于访问频率的策略可以用来统计频率
+     *
+     * @param key 请求的key
+     */
+    default void recordMiss(K key) {
+    }
+
+    /**
+     * 条目因为过期、失效或者被替换而从缓存中移除
+     *
+     * @param key 条目的key
+     */
+    void recordRemoval(K key);
+
+    /**
+     * 选出一个需要淘汰的条目，并从策略中移除该条目
+     *
+     * @return 被淘汰条目的key，没有条目时返回null
+     */
+    K evict();
+}
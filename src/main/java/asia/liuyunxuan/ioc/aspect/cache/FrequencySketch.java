@@ -0,0 +1,71 @@
+package asia.liuyunxuan.ioc.aspect.cache;
+
+/**
+ * 估算key访问频率的Count-Min Sketch。
+ * <p>
+ * 每个key在四行计数器中各占一个位置，频率取四个计数器的最小值，计数器上限为15。
+ * 累计的访问次数达到宽度的10倍时所有计数器减半，使旧的访问频率逐渐失效。
+ */
+final class FrequencySketch {
+
+    private static final long[] SEEDS = {0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L};
+
+    private static final int MAX_COUNT = 15;
+
+    private final byte[][] table;
+
+    private final int mask;
+
+    private final int sampleSize;
+
+    private int additions;
+
+    FrequencySketch(long expectedSize) {
+        int width = 16;
+        while (width < expectedSize && width < (1 << 24)) {
+            width <<= 1;
+        }
+        this.table = new byte[SEEDS.length][width];
+        this.mask = width - 1;
+        this.sampleSize = width * 10;
+    }
+
+    int frequency(Object key) {
+        int hash = key.hashCode();
+        int frequency = MAX_COUNT;
+        for (int row = 0; row < table.length; row++) {
+            frequency = Math.min(frequency, table[row][indexOf(hash, row)]);
+        }
+        return frequency;
+    }
+
+    void increment(Object key) {
+        int hash = key.hashCode();
+        boolean added = false;
+        for (int row = 0; row < table.length; row++) {
+            int index = indexOf(hash, row);
+            if (table[row][index] < MAX_COUNT) {
+                table[row][index]++;
+                added = true;
+            }
+        }
+        if (added && ++additions >= sampleSize) {
+            reset();
+        }
+    }
+
+    private void reset() {
+        for (byte[] row : table) {
+            for (int i = 0; i < row.length; i++) {
+                row[i] = (byte) (row[i] >>> 1);
+            }
+        }
+        additions >>>= 1;
+    }
+
+    private int indexOf(int hash, int row) {
+        long h = (hash + SEEDS[row]) * SEEDS[row];
+        h += h >>> 32;
+        return (int) h & mask;
+    }
+}
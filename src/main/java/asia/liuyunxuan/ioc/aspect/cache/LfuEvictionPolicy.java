@@ -0,0 +1,89 @@
+package asia.liuyunxuan.ioc.aspect.cache;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 最不经常使用淘汰策略，淘汰命中次数最少的条目，次数相同时淘汰最早进入该次数的条目。
+ * <p>
+ * 条目按命中次数分桶，写入、命中和淘汰都是O(1)。命中次数只在条目留在缓存期间累计，
+ * 被淘汰之后重新写入的条目从1开始计数。
+ *
+ * @param <K> 缓存key的类型
+ * @author liuyunxuan
+ * @since 1.0
+ */
+public class LfuEvictionPolicy<K> implements EvictionPolicy<K> {
+
+    /**
+     * key为条目，value为条目的命中次数
+     */
+    private final Map<K, Integer> frequencies = new HashMap<>();
+
+    /**
+     * key为命中次数，value为该次数下的条目
+     */
+    private final Map<Integer, LinkedKeyDeque<K>> buckets = new HashMap<>();
+
+    /**
+     * 当前最小的命中次数，条目被移除后可能已经没有对应的桶，淘汰时重新计算
+     */
+    private int minFrequency;
+
+    @Override
+    public void recordInsert(K key) {
+        frequencies.put(key, 1);
+        bucket(1).addLast(key);
+        minFrequency = 1;
+    }
+
+    @Override
+    public void recordAccess(K key) {
+        Integer frequency = frequencies.get(key);
+        if (frequency == null) return;
+        removeFromBucket(key, frequency);
+        if (frequency == minFrequency && !buckets.containsKey(frequency)) {
+            minFrequency = frequency + 1;
+        }
+        int next = frequency == Integer.MAX_VALUE ? frequency : frequency + 1;
+        frequencies.put(key, next);
+        bucket(next).addLast(key);
+    }
+
+    @Override
+    public void recordRemoval(K key) {
+        Integer frequency = frequencies.remove(key);
+        if (frequency != null) {
+            removeFromBucket(key, frequency);
+        }
+    }
+
+    @Override
+    public K evict() {
+        if (frequencies.isEmpty()) return null;
+        LinkedKeyDeque<K> bucket = buckets.get(minFrequency);
+        if (bucket == null) {
+            minFrequency = Collections.min(buckets.keySet());
+            bucket = buckets.get(minFrequency);
+        }
+        K key = bucket.pollFirst();
+        if (bucket.isEmpty()) {
+            buckets.remove(minFrequency);
+        }
+        frequencies.remove(key);
+        return key;
+    }
+
+    private LinkedKeyDeque<K> bucket(int frequency) {
+        return buckets.computeIfAbsent(frequency, key -> new LinkedKeyDeque<>());
+    }
+
+    private void removeFromBucket(K key, int frequency) {
+        LinkedKeyDeque<K> bucket = buckets.get(frequency);
+        bucket.remove(key);
+        if (bucket.isEmpty()) {
+            buckets.remove(frequency);
+        }
+    }
+}
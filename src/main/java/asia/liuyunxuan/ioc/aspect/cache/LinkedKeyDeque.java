@@ -0,0 +1,107 @@
+package asia.liuyunxuan.ioc.aspect.cache;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 按顺序排列key的双向链表，头部是最早加入的key，移除任意key和移动到尾部都是O(1)。
+ *
+ * @param <K> key的类型
+ */
+final class LinkedKeyDeque<K> {
+
+    private final Map<K, Node<K>> nodes = new HashMap<>();
+
+    private Node<K> head;
+
+    private Node<K> tail;
+
+    int size() {
+        return nodes.size();
+    }
+
+    boolean isEmpty() {
+        return nodes.isEmpty();
+    }
+
+    boolean contains(K key) {
+        return nodes.containsKey(key);
+    }
+
+    void addLast(K key) {
+        Node<K> node = new Node<>(key);
+        nodes.put(key, node);
+        link(node);
+    }
+
+    boolean remove(K key) {
+        Node<K> node = nodes.remove(key);
+        if (node == null) return false;
+        unlink(node);
+        return true;
+    }
+
+    boolean moveToLast(K key) {
+        Node<K> node = nodes.get(key);
+        if (node == null) return false;
+        if (node != tail) {
+            unlink(node);
+            link(node);
+        }
+        return true;
+    }
+
+    K peekFirst() {
+        return head == null ? null : head.key;
+    }
+
+    K peekLast() {
+        return tail == null ? null : tail.key;
+    }
+
+    K pollFirst() {
+        if (head == null) return null;
+        K key = head.key;
+        remove(key);
+        return key;
+    }
+
+    private void link(Node<K> node) {
+        node.prev = tail;
+        node.next = null;
+        if (tail == null) {
+            head = node;
+        } else {
+            tail.next = node;
+        }
+        tail = node;
+    }
+
+    private void unlink(Node<K> node) {
+        if (node.prev == null) {
+            head = node.next;
+        } else {
+            node.prev.next = node.next;
+        }
+        if (node.next == null) {
+            tail = node.prev;
+        } else {
+            node.next.prev = node.prev;
+        }
+        node.prev = null;
+        node.next = null;
+    }
+
+    private static final class Node<K> {
+
+        private final K key;
+
+        private Node<K> prev;
+
+        private Node<K> next;
+
+        Node(K key) {
+            this.key = key;
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package asia.liuyunxuan.ioc.aspect.cache;
+
+/**
+ * 最近最少使用淘汰策略，淘汰最久没有被访问的条目。
+ *
+ * @param <K> 缓存key的类型
+ * @author liuyunxuan
+ * @since 1.0
+ */
+public class LruEvictionPolicy<K> implements EvictionPolicy<K> {
+
+    private final LinkedKeyDeque<K> keys = new LinkedKeyDeque<>();
+
+    @Override
+    public void recordInsert(K key) {
+        keys.addLast(key);
+    }
+
+    @Override
+    public void recordAccess(K key) {
+        keys.moveToLast(key);
+    }
+
+    @Override
+    public void recordRemoval(K key) {
+        keys.remove(key);
+    }
+
+    @Override
+    public K evict() {
+        return keys.pollFirst();
+    }
+}
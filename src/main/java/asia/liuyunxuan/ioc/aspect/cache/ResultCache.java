@@ -0,0 +1,449 @@
+package asia.liuyunxuan.ioc.aspect.cache;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 有界的进程内缓存，{@link CachingInterceptor}用它保存方法调用的结果。
+ * <p>
+ * 缓存的特性：
+ * <ul>
+ *     <li>按{@link Weigher}计算的权重之和限制大小，超过最大权重时由{@link EvictionPolicy}选择淘汰的条目</li>
+ *     <li>可以设置写入后的存活时间，过期的条目在下次访问时移除</li>
+ *     <li>同一个key同时未命中时只有一个线程执行加载，其它线程等待同一个结果，避免缓存击穿</li>
+ *     <li>记录命中、未命中、加载、淘汰和过期次数</li>
+ * </ul>
+ * 条目保存在{@link ConcurrentHashMap}中，命中时不加锁：访问记录先写入按线程分段的有界读缓冲区，
+ * 积累到一定数量或者下次写入时再由持有淘汰锁的线程批量交给淘汰策略，与Caffeine的做法相同。
+ * 读缓冲区满或者写入冲突时丢弃这次访问记录，淘汰顺序是近似的，但读操作永远不会阻塞。
+ * 条目的修改和淘汰策略由淘汰锁保护，加载在锁外执行。null结果同样会被缓存，加载抛出的异常不会被缓存。
+ *
+ * @param <K> 缓存key的类型
+ * @author liuyunxuan
+ * @since 1.0
+ */
+public class ResultCache<K> {
+
+    /**
+     * 缓存中null值的占位对象
+     */
+    private static final Object NULL_VALUE = new Object();
+
+    /**
+     * 查找结果中表示未命中的占位对象
+     */
+    private static final Object MISSING = new Object();
+
+    /**
+     * 每段读缓冲区的大小，必须是2的幂
+     */
+    private static final int READ_BUFFER_SIZE = 16;
+
+    private static final int READ_BUFFER_MASK = READ_BUFFER_SIZE - 1;
+
+    /**
+     * 一段读缓冲区积累的访问记录达到该数量时尝试交给淘汰策略
+     */
+    private static final int READ_BUFFER_DRAIN_THRESHOLD = 4;
+
+    /**
+     * 读缓冲区的段数，处理器数量的4倍向上取2的幂，线程按id分散到各段，减少写入冲突
+     */
+    private static final int READ_BUFFER_STRIPES = Math.min(64, Integer.highestOneBit(Runtime.getRuntime().availableProcessors() * 4 - 1) << 1);
+
+    private final Map<K, Entry> entries = new ConcurrentHashMap<>();
+
+    /**
+     * 保护条目的修改、淘汰策略和weightedSize
+     */
+    private final ReentrantLock evictionLock = new ReentrantLock();
+
+    /**
+     * 命中的key，等待交给淘汰策略
+     */
+    private final ReadBuffer[] readBuffers = new ReadBuffer[READ_BUFFER_STRIPES];
+
+    private final EvictionPolicy<K> policy;
+
+    private final long maximumWeight;
+
+    private final Weigher weigher;
+
+    /**
+     * 写入后的存活时间，单位纳秒，小于等于0表示不过期
+     */
+    private final long expireAfterWriteNanos;
+
+    /**
+     * 正在加载的key，同一个key的并发请求共用一个加载结果
+     */
+    private final Map<K, CompletableFuture<Object>> loading = new ConcurrentHashMap<>();
+
+    private long weightedSize;
+
+    private final LongAdder hitCount = new LongAdder();
+    private final LongAdder missCount = new LongAdder();
+    private final LongAdder loadSuccessCount = new LongAdder();
+    private final LongAdder loadFailureCount = new LongAdder();
+    private final LongAdder coalescedLoadCount = new LongAdder();
+    private final LongAdder evictionCount = new LongAdder();
+    private final LongAdder expirationCount = new LongAdder();
+
+    /**
+     * 构造按条目数限制大小、不会过期的缓存
+     *
+     * @param policy 淘汰策略
+     * @param maximumSize 最大条目数
+     */
+    public ResultCache(EvictionPolicy<K> policy, long maximumSize) {
+        this(policy, maximumSize, Weigher.SINGLETON, 0, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 构造缓存
+     *
+     * @param policy 淘汰策略
+     * @param maximumWeight 最大权重
+     * @param weigher 条目权重计算器
+     * @param expireAfterWrite 写入后的存活时间，小于等于0表示不过期
+     * @param unit 存活时间的单位
+     */
+    public ResultCache(EvictionPolicy<K> policy, long maximumWeight, Weigher weigher, long expireAfterWrite, TimeUnit unit) {
+        if (maximumWeight <= 0) {
+            throw new IllegalArgumentException("maximumWeight must be positive");
+        }
+        this.policy = policy;
+        this.maximumWeight = maximumWeight;
+        this.weigher = weigher;
+        this.expireAfterWriteNanos = expireAfterWrite <= 0 ? 0 : unit.toNanos(expireAfterWrite);
+        for (int i = 0; i < readBuffers.length; i++) {
+            readBuffers[i] = new ReadBuffer();
+        }
+    }
+
+    /**
+     * 加载值的回调，允许抛出任意异常
+     */
+    @FunctionalInterface
+    public interface Loader {
+
+        /**
+         * 加载值
+         *
+         * @return 加载的值，可以为null
+         * @throws Throwable 加载失败时抛出
+         */
+        Object load() throws Throwable;
+    }
+
+    /**
+     * 获取缓存的值，未命中时通过loader加载并写入缓存。
+     * <p>
+     * 多个线程同时请求同一个未命中的key时，只有一个线程调用loader，其它线程等待并得到同一个结果或异常。
+     *
+     * @param key 缓存的key
+     * @param loader 未命中时加载值的回调
+     * @return 缓存的值或者加载的值
+     * @throws Throwable loader抛出的异常
+     */
+    public Object get(K key, Loader loader) throws Throwable {
+        Object value = lookup(key, true);
+        if (value != MISSING) {
+            return unmask(value);
+        }
+        CompletableFuture<Object> future = new CompletableFuture<>();
+        CompletableFuture<Object> inFlight = loading.putIfAbsent(key, future);
+        if (inFlight != null) {
+            coalescedLoadCount.increment();
+            try {
+                return inFlight.get();
+            } catch (ExecutionException e) {
+                throw e.getCause();
+            }
+        }
+        try {
+            // 在获得加载权之前，其它线程可能刚好完成了加载
+            value = lookup(key, false);
+            if (value == MISSING) {
+                try {
+                    value = loader.load();
+                } catch (Throwable e) {
+                    loadFailureCount.increment();
+                    future.completeExceptionally(e);
+                    throw e;
+                }
+                loadSuccessCount.increment();
+                put(key, value);
+            } else {
+                value = unmask(value);
+            }
+            future.complete(value);
+            return value;
+        } finally {
+            loading.remove(key, future);
+        }
+    }
+
+    /**
+     * 写入缓存，已存在的值会被替换。权重超过最大权重的值不会被缓存。
+     *
+     * @param key 缓存的key
+     * @param value 缓存的值，可以为null
+     */
+    public void put(K key, Object value) {
+        int weight = weigher.weigh(key, value);
+        if (weight < 0) {
+            throw new IllegalArgumentException("Weight must not be negative");
+        }
+        long expireAt = expireAfterWriteNanos > 0 ? System.nanoTime() + expireAfterWriteNanos : 0;
+        evictionLock.lock();
+        try {
+            // 淘汰之前先让策略看到已经发生的访问
+            drainReadBuffer();
+            Entry previous = entries.remove(key);
+            if (previous != null) {
+                weightedSize -= previous.weight;
+                policy.recordRemoval(key);
+            }
+            if (weight > maximumWeight) {
+                return;
+            }
+            // 先为新条目腾出空间，新条目不会在写入时立即被淘汰
+            while (weightedSize + weight > maximumWeight) {
+                K victim = policy.evict();
+                if (victim == null) break;
+                Entry evicted = entries.remove(victim);
+                if (evicted != null) {
+                    weightedSize -= evicted.weight;
+                    evictionCount.increment();
+                }
+            }
+            entries.put(key, new Entry(value == null ? NULL_VALUE : value, weight, expireAt));
+            weightedSize += weight;
+            policy.recordInsert(key);
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    /**
+     * 移除一个条目
+     *
+     * @param key 缓存的key
+     */
+    public void invalidate(K key) {
+        evictionLock.lock();
+        try {
+            Entry entry = entries.remove(key);
+            if (entry != null) {
+                weightedSize -= entry.weight;
+                policy.recordRemoval(key);
+            }
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    /**
+     * 移除所有条目
+     */
+    public void invalidateAll() {
+        evictionLock.lock();
+        try {
+            drainReadBuffer();
+            for (K key : entries.keySet()) {
+                policy.recordRemoval(key);
+            }
+            entries.clear();
+            weightedSize = 0;
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    /**
+     * 判断是否缓存了指定key，过期的条目视为不存在，不影响统计信息和淘汰顺序
+     *
+     * @param key 缓存的key
+     * @return 如果缓存了未过期的值返回true
+     */
+    public boolean containsKey(K key) {
+        Entry entry = entries.get(key);
+        return entry != null && !entry.isExpired(System.nanoTime());
+    }
+
+    /**
+     * 获取条目数量，包括尚未移除的过期条目
+     *
+     * @return 条目数量
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * 获取所有条目的权重之和
+     *
+     * @return 权重之和
+     */
+    public long getWeightedSize() {
+        evictionLock.lock();
+        try {
+            return weightedSize;
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    /**
+     * 获取统计信息的快照
+     *
+     * @return 统计信息
+     */
+    public CacheStats getStats() {
+        return new CacheStats(hitCount.sum(), missCount.sum(), loadSuccessCount.sum(), loadFailureCount.sum(),
+                coalescedLoadCount.sum(), evictionCount.sum(), expirationCount.sum());
+    }
+
+    private Object lookup(K key, boolean recordStats) {
+        Entry entry = entries.get(key);
+        if (entry != null && entry.isExpired(System.nanoTime())) {
+            expire(key, entry);
+            entry = null;
+        }
+        if (entry == null) {
+            if (recordStats) {
+                missCount.increment();
+                // 未命中之后本来就要加载，直接加锁记录
+                evictionLock.lock();
+                try {
+                    drainReadBuffer();
+                    policy.recordMiss(key);
+                } finally {
+                    evictionLock.unlock();
+                }
+            }
+            return MISSING;
+        }
+        if (recordStats) {
+            hitCount.increment();
+            afterRead(key);
+        }
+        return entry.value;
+    }
+
+    private void expire(K key, Entry entry) {
+        evictionLock.lock();
+        try {
+            if (entries.remove(key, entry)) {
+                weightedSize -= entry.weight;
+                policy.recordRemoval(key);
+                expirationCount.increment();
+            }
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    /**
+     * 把命中的key写入当前线程所在段的读缓冲区，缓冲区满或者与其它线程冲突时丢弃
+     */
+    private void afterRead(K key) {
+        ReadBuffer buffer = readBuffers[(int) Thread.currentThread().getId() & (READ_BUFFER_STRIPES - 1)];
+        if (buffer.offer(key) >= READ_BUFFER_DRAIN_THRESHOLD && evictionLock.tryLock()) {
+            try {
+                drainReadBuffer();
+            } finally {
+                evictionLock.unlock();
+            }
+        }
+    }
+
+    /**
+     * 把读缓冲区中的访问记录交给淘汰策略，调用时必须持有淘汰锁
+     */
+    @SuppressWarnings("unchecked")
+    private void drainReadBuffer() {
+        for (ReadBuffer buffer : readBuffers) {
+            long readCount = buffer.readCount;
+            long writeCount = buffer.writeCount.get();
+            for (; readCount < writeCount; readCount++) {
+                int index = (int) (readCount & READ_BUFFER_MASK);
+                Object key = buffer.keys.get(index);
+                if (key == null) {
+                    // 写入者已经占到位置但还没有写入key，留到下次处理
+                    break;
+                }
+                buffer.keys.lazySet(index, null);
+                // 已经被移除的条目不再记录访问
+                if (entries.containsKey(key)) {
+                    policy.recordAccess((K) key);
+                }
+            }
+            buffer.readCount = readCount;
+        }
+    }
+
+    private static Object unmask(Object value) {
+        return value == NULL_VALUE ? null : value;
+    }
+
+    private static final class Entry {
+
+        private final Object value;
+
+        private final int weight;
+
+        /**
+         * 过期时间，为0表示不过期
+         */
+        private final long expireAt;
+
+        Entry(Object value, int weight, long expireAt) {
+            this.value = value;
+            this.weight = weight;
+            this.expireAt = expireAt;
+        }
+
+        boolean isExpired(long now) {
+            return expireAt != 0 && now - expireAt >= 0;
+        }
+    }
+
+    /**
+     * 一段有界的读缓冲区，多个线程写入，持有淘汰锁的线程读取
+     */
+    private static final class ReadBuffer {
+
+        private final AtomicReferenceArray<Object> keys = new AtomicReferenceArray<>(READ_BUFFER_SIZE);
+
+        private final AtomicLong writeCount = new AtomicLong();
+
+        /**
+         * 已经交给淘汰策略的访问记录数，只在持有淘汰锁时修改
+         */
+        private volatile long readCount;
+
+        /**
+         * 写入一个key，缓冲区满或者写入冲突时丢弃
+         *
+         * @return 写入后等待处理的记录数
+         */
+        long offer(Object key) {
+            long write = writeCount.get();
+            long pending = write - readCount;
+            if (pending < READ_BUFFER_SIZE && writeCount.compareAndSet(write, write + 1)) {
+                keys.lazySet((int) (write & READ_BUFFER_MASK), key);
+                pending++;
+            }
+            return pending;
+        }
+    }
+}
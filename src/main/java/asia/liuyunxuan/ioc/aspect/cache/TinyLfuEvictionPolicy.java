@@ -0,0 +1,96 @@
+package asia.liuyunxuan.ioc.aspect.cache;
+
+/**
+ * W-TinyLFU淘汰策略，兼顾访问的时间局部性和访问频率。
+ * <p>
+ * 条目分为三段：
+ * <ul>
+ *     <li>窗口段：新写入的条目先进入窗口，占条目总数的1%，按LRU顺序移出到试用段</li>
+ *     <li>试用段：从窗口移出的条目在这里等待淘汰或者再次命中</li>
+ *     <li>保护段：试用段中再次命中的条目，占主区（试用段加保护段）的80%，超出时按LRU顺序降回试用段</li>
+ * </ul>
+ * 淘汰时由最近从窗口移出的条目和试用段中最久未访问的条目比较{@link FrequencySketch}估算的访问频率，
+ * 频率低的一方被淘汰。命中和未命中都会累计频率，因此只访问一次的扫描型请求不会挤掉经常访问的条目。
+ *
+ * @param <K> 缓存key的类型
+ * @author liuyunxuan
+ * @since 1.0
+ */
+public class TinyLfuEvictionPolicy<K> implements EvictionPolicy<K> {
+
+    private final FrequencySketch sketch;
+
+    private final LinkedKeyDeque<K> window = new LinkedKeyDeque<>();
+
+    private final LinkedKeyDeque<K> probation = new LinkedKeyDeque<>();
+
+    private final LinkedKeyDeque<K> protectedSegment = new LinkedKeyDeque<>();
+
+    /**
+     * 构造W-TinyLFU淘汰策略
+     *
+     * @param expectedSize 预计的最大条目数，用于确定频率统计的精度
+     */
+    public TinyLfuEvictionPolicy(long expectedSize) {
+        this.sketch = new FrequencySketch(expectedSize);
+    }
+
+    @Override
+    public void recordInsert(K key) {
+        sketch.increment(key);
+        window.addLast(key);
+        int windowSize = Math.max(1, size() / 100);
+        while (window.size() > windowSize) {
+            probation.addLast(window.pollFirst());
+        }
+    }
+
+    @Override
+    public void recordAccess(K key) {
+        sketch.increment(key);
+        if (window.moveToLast(key) || protectedSegment.moveToLast(key)) {
+            return;
+        }
+        if (probation.remove(key)) {
+            protectedSegment.addLast(key);
+            int protectedSize = Math.max(1, (probation.size() + protectedSegment.size()) * 4 / 5);
+            while (protectedSegment.size() > protectedSize) {
+                probation.addLast(protectedSegment.pollFirst());
+            }
+        }
+    }
+
+    @Override
+    public void recordMiss(K key) {
+        sketch.increment(key);
+    }
+
+    @Override
+    public void recordRemoval(K key) {
+        if (!window.remove(key) && !probation.remove(key)) {
+            protectedSegment.remove(key);
+        }
+    }
+
+    @Override
+    public K evict() {
+        if (probation.size() >= 2) {
+            K candidate = probation.peekLast();
+            K victim = probation.peekFirst();
+            K evicted = sketch.frequency(candidate) > sketch.frequency(victim) ? victim : candidate;
+            probation.remove(evicted);
+            return evicted;
+        }
+        if (!probation.isEmpty()) {
+            return probation.pollFirst();
+        }
+        if (!protectedSegment.isEmpty()) {
+            return protectedSegment.pollFirst();
+        }
+        return window.pollFirst();
+    }
+
+    private int size() {
+        return window.size() + probation.size() + protectedSegment.size();
+    }
+}
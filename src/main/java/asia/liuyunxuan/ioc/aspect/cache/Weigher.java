@@ -0,0 +1,25 @@
+package asia.liuyunxuan.ioc.aspect.cache;
+
+/**
+ * 计算缓存条目的权重，{@link ResultCache}按条目权重之和限制缓存大小。
+ *
+ * @author liuyunxuan
+ * @since 1.0
+ */
+@FunctionalInterface
+public interface Weigher {
+
+    /**
+     * 每个条目权重都为1的计算器，此时最大权重就是最大条目数
+     */
+    Weigher SINGLETON = (key, value) -> 1;
+
+    /**
+     * 计算条目的权重
+     *
+     * @param key 缓存的key
+     * @param value 缓存的值，可能为null
+     * @return 条目的权重，不能为负数
+     */
+    int weigh(Object key, Object value);
+}
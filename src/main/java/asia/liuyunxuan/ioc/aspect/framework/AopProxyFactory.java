@@ -0,0 +1,23 @@
+package asia.liuyunxuan.ioc.aspect.framework;
+
+import asia.liuyunxuan.ioc.aspect.AdvisedSupport;
+
+/**
+ * AOP代理的创建工厂。
+ * <p>
+ * 每次调用都为给定的{@link AdvisedSupport}返回一个新的{@link AopProxy}，
+ * 不同Bean的代理互不共享状态，多个线程可以同时创建代理。
+ *
+ * @see DefaultAopProxyFactory
+ */
+public interface AopProxyFactory {
+
+    /**
+     * 为给定的通知配置创建AOP代理。
+     *
+     * @param advised 包含目标对象和通知的配置信息
+     * @param proxyName 代理策略名称，例如"jdk"、"cglib"或"bytecode"，为null时根据配置决定
+     * @return 新的AOP代理实例
+     */
+    AopProxy createAopProxy(AdvisedSupport advised, String proxyName);
+}
@@ -0,0 +1,508 @@
+package asia.liuyunxuan.ioc.aspect.framework;
+
+import asia.liuyunxuan.ioc.aspect.AdvisedSupport;
+import asia.liuyunxuan.ioc.aspect.TargetSource;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 基于ASM生成字节码的AOP代理实现。
+ * <p>
+ * 与JDK动态代理一样，代理类实现目标对象的全部接口，但每个目标类型都会生成一个专用的代理类：
+ * <ul>
+ *     <li>没有通知的方法直接通过接口调用目标对象，不经过反射也不经过{@link net.sf.cglib.proxy.MethodProxy}</li>
+ *     <li>每个方法的拦截器链在创建代理时预先计算好，保存在代理对象中，调用时只需按下标读取数组</li>
+ *     <li>拦截器链走完后，通过生成的{@link Dispatcher#dispatch}按方法下标直接调用目标方法</li>
+ * </ul>
+ * 通过{@code proxyName}为{@code bytecode}选择该实现。和CGLIB代理一样，方法的拦截器链在创建代理时确定。
+ * 目标对象有非公共接口时无法在独立的类加载器中实现这些接口，此时退回JDK动态代理。
+ * 目标源不是静态的时候，没有通知的方法也交给{@link #invokeAdvised}，以便在调用结束后归还目标对象。
+ */
+public class BytecodeAopProxy implements AopProxy {
+
+    private static final Object[] NO_ARGS = new Object[0];
+
+    private static final String ADVISED_SUPPORT = Type.getInternalName(AdvisedSupport.class);
+    private static final String TARGET_SOURCE = Type.getInternalName(TargetSource.class);
+    private static final String INTERCEPTOR = Type.getDescriptor(MethodInterceptor.class);
+    private static final String INTERCEPTORS = Type.getDescriptor(MethodInterceptor[][].class);
+    private static final String METHODS = Type.getDescriptor(Method[].class);
+    private static final String DISPATCHER = Type.getInternalName(Dispatcher.class);
+    private static final String SELF = Type.getInternalName(BytecodeAopProxy.class);
+
+    private static final AtomicInteger CLASS_COUNTER = new AtomicInteger();
+
+    /** 每个线程复用的调用对象 */
+    private static final ThreadLocal<BytecodeMethodInvocation> INVOCATIONS = ThreadLocal.withInitial(BytecodeMethodInvocation::new);
+
+    /** key为目标类型，value为生成的代理类，目标类型有非公共接口时为null */
+    private static final ClassValue<ProxyClass> PROXY_CLASSES = new ClassValue<ProxyClass>() {
+        @Override
+        protected ProxyClass computeValue(Class<?> targetClass) {
+            return generate(targetClass);
+        }
+    };
+
+    private AdvisedSupport advised;
+
+    /**
+     * 使用给定的通知支持创建字节码代理。
+     *
+     * @param advised 包含目标对象和通知的配置信息
+     */
+    public BytecodeAopProxy(AdvisedSupport advised) {
+        this.advised = advised;
+    }
+
+    /**
+     * 默认构造函数。
+     */
+    public BytecodeAopProxy() {
+    }
+
+    /**
+     * 设置代理的通知支持。
+     *
+     * @param advised 包含目标对象和通知的配置信息
+     */
+    @Override
+    public void setAdvised(AdvisedSupport advised) {
+        this.advised = advised;
+    }
+
+    /**
+     * 创建字节码代理实例。
+     * <p>
+     * 代理类按目标类型缓存，每个代理实例持有按方法下标排列的拦截器链。
+     *
+     * @return 代理对象实例
+     */
+    @Override
+    public Object getProxy() {
+        Class<?> targetClass = advised.getTargetSource().getTargetType();
+        ProxyClass proxyClass = PROXY_CLASSES.get(targetClass);
+        if (proxyClass == null) {
+            return new JdkDynamicAopProxy(advised).getProxy();
+        }
+        MethodInterceptor[][] chains = new MethodInterceptor[proxyClass.methods.length][];
+        for (int i = 0; i < chains.length; i++) {
+            chains[i] = advised.getInterceptors(proxyClass.methods[i], targetClass);
+        }
+        try {
+            return proxyClass.constructor.newInstance(advised, chains, proxyClass.methods);
+        } catch (InvocationTargetException e) {
+            throw new IllegalStateException("Failed to create bytecode proxy for [" + targetClass.getName() + "]", e.getTargetException());
+        } catch (InstantiationException | IllegalAccessException e) {
+            throw new IllegalStateException("Failed to create bytecode proxy for [" + targetClass.getName() + "]", e);
+        }
+    }
+
+    /**
+     * 执行有通知或者目标源非静态的方法调用，供生成的代理类调用。
+     *
+     * @param dispatcher 代理对象，负责在拦截器链走完后调用目标方法
+     * @param index 方法下标
+     * @param advised 代理的通知配置
+     * @param method 被调用的方法
+     * @param args 方法参数
+     * @param interceptors 该方法的拦截器链
+     * @return 方法调用结果
+     * @throws Throwable 拦截器或目标方法抛出的异常
+     */
+    public static Object invokeAdvised(Dispatcher dispatcher, int index, AdvisedSupport advised, Method method, Object[] args,
+                                       MethodInterceptor[] interceptors) throws Throwable {
+        TargetSource targetSource = advised.getTargetSource();
+        Object target = targetSource.getTarget();
+        try {
+            if (interceptors.length == 0) {
+                return dispatcher.dispatch(index, target, args);
+            }
+            if (advised.isReuseInvocation()) {
+                BytecodeMethodInvocation invocation = INVOCATIONS.get();
+                if (invocation.acquire(target, method, args, interceptors)) {
+                    invocation.dispatcher = dispatcher;
+                    invocation.index = index;
+                    try {
+                        return invocation.proceed();
+                    } finally {
+                        invocation.dispatcher = null;
+                        invocation.release();
+                    }
+                }
+            }
+            return new BytecodeMethodInvocation(target, method, args, interceptors, dispatcher, index).proceed();
+        } finally {
+            if (!targetSource.isStatic()) {
+                targetSource.releaseTarget(target);
+            }
+        }
+    }
+
+    /**
+     * 生成的代理类实现的接口，按方法下标直接调用目标方法。
+     */
+    public interface Dispatcher {
+
+        /**
+         * 调用目标方法。
+         *
+         * @param index 方法下标
+         * @param target 目标对象
+         * @param args 方法参数
+         * @return 方法调用结果，基本类型会被装箱，void方法返回null
+         * @throws Throwable 目标方法抛出的异常
+         */
+        Object dispatch(int index, Object target, Object[] args) throws Throwable;
+    }
+
+    private static class BytecodeMethodInvocation extends ReflectiveMethodInvocation {
+
+        private Dispatcher dispatcher;
+
+        private int index;
+
+        public BytecodeMethodInvocation() {
+        }
+
+        public BytecodeMethodInvocation(Object target, Method method, Object[] arguments, MethodInterceptor[] interceptors, Dispatcher dispatcher, int index) {
+            super(target, method, arguments, interceptors);
+            this.dispatcher = dispatcher;
+            this.index = index;
+        }
+
+        @Override
+        protected Object invokeJoinpoint() throws Throwable {
+            return dispatcher.dispatch(index, target, arguments == null ? NO_ARGS : arguments);
+        }
+    }
+
+    /**
+     * 生成的代理类，以及按下标排列的代理方法
+     */
+    private static final class ProxyClass {
+
+        private final Constructor<?> constructor;
+
+        private final Method[] methods;
+
+        ProxyClass(Constructor<?> constructor, Method[] methods) {
+            this.constructor = constructor;
+            this.methods = methods;
+        }
+    }
+
+    /**
+     * 在目标类加载器之下定义代理类，框架自身的类从框架的类加载器加载
+     */
+    private static final class ProxyClassLoader extends ClassLoader {
+
+        ProxyClassLoader(ClassLoader parent) {
+            super(parent);
+        }
+
+        @Override
+        protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+            try {
+                return super.loadClass(name, resolve);
+            } catch (ClassNotFoundException e) {
+                return BytecodeAopProxy.class.getClassLoader().loadClass(name);
+            }
+        }
+
+        Class<?> define(String name, byte[] bytes) {
+            return defineClass(name, bytes, 0, bytes.length);
+        }
+    }
+
+    private static ProxyClass generate(Class<?> targetClass) {
+        Class<?>[] interfaces = targetClass.getInterfaces();
+        for (Class<?> ifc : interfaces) {
+            if (!Modifier.isPublic(ifc.getModifiers())) return null;
+        }
+        Method[] methods = collectMethods(interfaces);
+        String className = BytecodeAopProxy.class.getPackage().getName() + ".BytecodeProxy_" + targetClass.getSimpleName() + "_" + CLASS_COUNTER.incrementAndGet();
+        byte[] bytes = new ProxyClassGenerator(className.replace('.', '/'), interfaces, methods).generate();
+        ClassLoader parent = targetClass.getClassLoader() != null ? targetClass.getClassLoader() : BytecodeAopProxy.class.getClassLoader();
+        Class<?> proxyClass = new ProxyClassLoader(parent).define(className, bytes);
+        try {
+            return new ProxyClass(proxyClass.getConstructor(AdvisedSupport.class, MethodInterceptor[][].class, Method[].class), methods);
+        } catch (NoSuchMethodException e) {
+            throw new IllegalStateException("Generated proxy class has no matching constructor", e);
+        }
+    }
+
+    /**
+     * 收集接口的全部方法，以及与JDK动态代理一样转发的equals、hashCode和toString，按方法签名去重
+     */
+    private static Method[] collectMethods(Class<?>[] interfaces) {
+        Map<String, Method> methods = new LinkedHashMap<>();
+        try {
+            methods.put("equals(Ljava/lang/Object;)", Object.class.getMethod("equals", Object.class));
+            methods.put("hashCode()", Object.class.getMethod("hashCode"));
+            methods.put("toString()", Object.class.getMethod("toString"));
+        } catch (NoSuchMethodException e) {
+            throw new IllegalStateException(e);
+        }
+        for (Class<?> ifc : interfaces) {
+            for (Method method : ifc.getMethods()) {
+                if (Modifier.isStatic(method.getModifiers())) continue;
+                String descriptor = Type.getMethodDescriptor(method);
+                methods.putIfAbsent(method.getName() + descriptor.substring(0, descriptor.indexOf(')') + 1), method);
+            }
+        }
+        return methods.values().toArray(new Method[0]);
+    }
+
+    /**
+     * 生成代理类的字节码。
+     * <p>
+     * 代理类持有{@link AdvisedSupport}、按方法下标排列的拦截器链和方法对象，
+     * 每个代理方法先读取拦截器链，链为空且目标源是静态的时候直接调用目标对象，否则交给{@link #invokeAdvised}。
+     */
+    private static final class ProxyClassGenerator {
+
+        private final String className;
+
+        private final Class<?>[] interfaces;
+
+        private final Method[] methods;
+
+        private final ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_FRAMES | ClassWriter.COMPUTE_MAXS) {
+            @Override
+            protected String getCommonSuperClass(String type1, String type2) {
+                return "java/lang/Object";
+            }
+        };
+
+        ProxyClassGenerator(String className, Class<?>[] interfaces, Method[] methods) {
+            this.className = className;
+            this.interfaces = interfaces;
+            this.methods = methods;
+        }
+
+        byte[] generate() {
+            List<String> interfaceNames = new ArrayList<>();
+            for (Class<?> ifc : interfaces) {
+                interfaceNames.add(Type.getInternalName(ifc));
+            }
+            interfaceNames.add(DISPATCHER);
+            cw.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC | Opcodes.ACC_FINAL | Opcodes.ACC_SUPER, className, null, "java/lang/Object", interfaceNames.toArray(new String[0]));
+            cw.visitField(Opcodes.ACC_PRIVATE | Opcodes.ACC_FINAL, "advised", "L" + ADVISED_SUPPORT + ";", null, null).visitEnd();
+            cw.visitField(Opcodes.ACC_PRIVATE | Opcodes.ACC_FINAL, "chains", INTERCEPTORS, null, null).visitEnd();
+            cw.visitField(Opcodes.ACC_PRIVATE | Opcodes.ACC_FINAL, "methods", METHODS, null, null).visitEnd();
+            generateConstructor();
+            for (int i = 0; i < methods.length; i++) {
+                generateProxyMethod(i, methods[i]);
+            }
+            generateDispatch();
+            cw.visitEnd();
+            return cw.toByteArray();
+        }
+
+        private void generateConstructor() {
+            MethodVisitor mv = cw.visitMethod(Opcodes.ACC_PUBLIC, "<init>", "(L" + ADVISED_SUPPORT + ";" + INTERCEPTORS + METHODS + ")V", null, null);
+            mv.visitCode();
+            mv.visitVarInsn(Opcodes.ALOAD, 0);
+            mv.visitMethodInsn(Opcodes.INVOKESPECIAL, "java/lang/Object", "<init>", "()V", false);
+            mv.visitVarInsn(Opcodes.ALOAD, 0);
+            mv.visitVarInsn(Opcodes.ALOAD, 1);
+            mv.visitFieldInsn(Opcodes.PUTFIELD, className, "advised", "L" + ADVISED_SUPPORT + ";");
+            mv.visitVarInsn(Opcodes.ALOAD, 0);
+            mv.visitVarInsn(Opcodes.ALOAD, 2);
+            mv.visitFieldInsn(Opcodes.PUTFIELD, className, "chains", INTERCEPTORS);
+            mv.visitVarInsn(Opcodes.ALOAD, 0);
+            mv.visitVarInsn(Opcodes.ALOAD, 3);
+            mv.visitFieldInsn(Opcodes.PUTFIELD, className, "methods", METHODS);
+            mv.visitInsn(Opcodes.RETURN);
+            mv.visitMaxs(0, 0);
+            mv.visitEnd();
+        }
+
+        private void generateProxyMethod(int index, Method method) {
+            Class<?>[] parameterTypes = method.getParameterTypes();
+            Class<?>[] exceptionTypes = method.getExceptionTypes();
+            String[] exceptions = new String[exceptionTypes.length];
+            for (int i = 0; i < exceptionTypes.length; i++) {
+                exceptions[i] = Type.getInternalName(exceptionTypes[i]);
+            }
+            MethodVisitor mv = cw.visitMethod(Opcodes.ACC_PUBLIC | Opcodes.ACC_FINAL, method.getName(), Type.getMethodDescriptor(method), null, exceptions);
+            mv.visitCode();
+
+            // 参数之后的局部变量：目标源和拦截器链
+            int sourceSlot = 1;
+            for (Class<?> parameterType : parameterTypes) {
+                sourceSlot += Type.getType(parameterType).getSize();
+            }
+            int chainSlot = sourceSlot + 1;
+
+            mv.visitVarInsn(Opcodes.ALOAD, 0);
+            mv.visitFieldInsn(Opcodes.GETFIELD, className, "advised", "L" + ADVISED_SUPPORT + ";");
+            mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, ADVISED_SUPPORT, "getTargetSource", "()L" + TARGET_SOURCE + ";", false);
+            mv.visitVarInsn(Opcodes.ASTORE, sourceSlot);
+
+            mv.visitVarInsn(Opcodes.ALOAD, 0);
+            mv.visitFieldInsn(Opcodes.GETFIELD, className, "chains", INTERCEPTORS);
+            pushInt(mv, index);
+            mv.visitInsn(Opcodes.AALOAD);
+            mv.visitVarInsn(Opcodes.ASTORE, chainSlot);
+
+            // 没有通知且目标源是静态的时候直接调用目标对象
+            Label advised = new Label();
+            mv.visitVarInsn(Opcodes.ALOAD, chainSlot);
+            mv.visitInsn(Opcodes.ARRAYLENGTH);
+            mv.visitJumpInsn(Opcodes.IFNE, advised);
+            mv.visitVarInsn(Opcodes.ALOAD, sourceSlot);
+            mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, TARGET_SOURCE, "isStatic", "()Z", false);
+            mv.visitJumpInsn(Opcodes.IFEQ, advised);
+            mv.visitVarInsn(Opcodes.ALOAD, sourceSlot);
+            mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, TARGET_SOURCE, "getTarget", "()Ljava/lang/Object;", false);
+            mv.visitTypeInsn(Opcodes.CHECKCAST, Type.getInternalName(method.getDeclaringClass()));
+            int slot = 1;
+            for (Class<?> parameterType : parameterTypes) {
+                Type type = Type.getType(parameterType);
+                mv.visitVarInsn(type.getOpcode(Opcodes.ILOAD), slot);
+                slot += type.getSize();
+            }
+            invokeTarget(mv, method);
+            mv.visitInsn(Type.getType(method.getReturnType()).getOpcode(Opcodes.IRETURN));
+
+            // 其余情况装箱参数，交给invokeAdvised获取目标对象并进入拦截器链
+            mv.visitLabel(advised);
+            mv.visitVarInsn(Opcodes.ALOAD, 0);
+            pushInt(mv, index);
+            mv.visitVarInsn(Opcodes.ALOAD, 0);
+            mv.visitFieldInsn(Opcodes.GETFIELD, className, "advised", "L" + ADVISED_SUPPORT + ";");
+            mv.visitVarInsn(Opcodes.ALOAD, 0);
+            mv.visitFieldInsn(Opcodes.GETFIELD, className, "methods", METHODS);
+            pushInt(mv, index);
+            mv.visitInsn(Opcodes.AALOAD);
+            pushInt(mv, parameterTypes.length);
+            mv.visitTypeInsn(Opcodes.ANEWARRAY, "java/lang/Object");
+            slot = 1;
+            for (int i = 0; i < parameterTypes.length; i++) {
+                Type type = Type.getType(parameterTypes[i]);
+                mv.visitInsn(Opcodes.DUP);
+                pushInt(mv, i);
+                mv.visitVarInsn(type.getOpcode(Opcodes.ILOAD), slot);
+                box(mv, parameterTypes[i]);
+                mv.visitInsn(Opcodes.AASTORE);
+                slot += type.getSize();
+            }
+            mv.visitVarInsn(Opcodes.ALOAD, chainSlot);
+            mv.visitMethodInsn(Opcodes.INVOKESTATIC, SELF, "invokeAdvised",
+                    "(L" + DISPATCHER + ";IL" + ADVISED_SUPPORT + ";Ljava/lang/reflect/Method;[Ljava/lang/Object;[" + INTERCEPTOR + ")Ljava/lang/Object;", false);
+            Class<?> returnType = method.getReturnType();
+            if (returnType == void.class) {
+                mv.visitInsn(Opcodes.POP);
+                mv.visitInsn(Opcodes.RETURN);
+            } else {
+                unbox(mv, returnType);
+                mv.visitInsn(Type.getType(returnType).getOpcode(Opcodes.IRETURN));
+            }
+            mv.visitMaxs(0, 0);
+            mv.visitEnd();
+        }
+
+        private void generateDispatch() {
+            MethodVisitor mv = cw.visitMethod(Opcodes.ACC_PUBLIC | Opcodes.ACC_FINAL, "dispatch", "(ILjava/lang/Object;[Ljava/lang/Object;)Ljava/lang/Object;", null, new String[]{"java/lang/Throwable"});
+            mv.visitCode();
+            Label defaultLabel = new Label();
+            Label[] labels = new Label[methods.length];
+            for (int i = 0; i < labels.length; i++) {
+                labels[i] = new Label();
+            }
+            mv.visitVarInsn(Opcodes.ILOAD, 1);
+            mv.visitTableSwitchInsn(0, methods.length - 1, defaultLabel, labels);
+            for (int i = 0; i < methods.length; i++) {
+                Method method = methods[i];
+                mv.visitLabel(labels[i]);
+                mv.visitVarInsn(Opcodes.ALOAD, 2);
+                mv.visitTypeInsn(Opcodes.CHECKCAST, Type.getInternalName(method.getDeclaringClass()));
+                Class<?>[] parameterTypes = method.getParameterTypes();
+                for (int p = 0; p < parameterTypes.length; p++) {
+                    mv.visitVarInsn(Opcodes.ALOAD, 3);
+                    pushInt(mv, p);
+                    mv.visitInsn(Opcodes.AALOAD);
+                    unbox(mv, parameterTypes[p]);
+                }
+                invokeTarget(mv, method);
+                if (method.getReturnType() == void.class) {
+                    mv.visitInsn(Opcodes.ACONST_NULL);
+                } else {
+                    box(mv, method.getReturnType());
+                }
+                mv.visitInsn(Opcodes.ARETURN);
+            }
+            mv.visitLabel(defaultLabel);
+            mv.visitTypeInsn(Opcodes.NEW, "java/lang/IllegalArgumentException");
+            mv.visitInsn(Opcodes.DUP);
+            mv.visitLdcInsn("No proxied method at index");
+            mv.visitMethodInsn(Opcodes.INVOKESPECIAL, "java/lang/IllegalArgumentException", "<init>", "(Ljava/lang/String;)V", false);
+            mv.visitInsn(Opcodes.ATHROW);
+            mv.visitMaxs(0, 0);
+            mv.visitEnd();
+        }
+
+        private static void invokeTarget(MethodVisitor mv, Method method) {
+            Class<?> owner = method.getDeclaringClass();
+            if (owner.isInterface()) {
+                mv.visitMethodInsn(Opcodes.INVOKEINTERFACE, Type.getInternalName(owner), method.getName(), Type.getMethodDescriptor(method), true);
+            } else {
+                mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, Type.getInternalName(owner), method.getName(), Type.getMethodDescriptor(method), false);
+            }
+        }
+
+        private static void pushInt(MethodVisitor mv, int value) {
+            if (value >= -1 && value <= 5) {
+                mv.visitInsn(Opcodes.ICONST_0 + value);
+            } else if (value <= Byte.MAX_VALUE) {
+                mv.visitIntInsn(Opcodes.BIPUSH, value);
+            } else if (value <= Short.MAX_VALUE) {
+                mv.visitIntInsn(Opcodes.SIPUSH, value);
+            } else {
+                mv.visitLdcInsn(value);
+            }
+        }
+
+        private static void box(MethodVisitor mv, Class<?> type) {
+            if (!type.isPrimitive()) return;
+            Type boxed = boxedType(type);
+            mv.visitMethodInsn(Opcodes.INVOKESTATIC, boxed.getInternalName(), "valueOf", "(" + Type.getDescriptor(type) + ")" + boxed.getDescriptor(), false);
+        }
+
+        private static void unbox(MethodVisitor mv, Class<?> type) {
+            if (!type.isPrimitive()) {
+                if (type != Object.class) mv.visitTypeInsn(Opcodes.CHECKCAST, Type.getInternalName(type));
+                return;
+            }
+            Type boxed = boxedType(type);
+            mv.visitTypeInsn(Opcodes.CHECKCAST, boxed.getInternalName());
+            mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, boxed.getInternalName(), type.getName() + "Value", "()" + Type.getDescriptor(type), false);
+        }
+
+        private static Type boxedType(Class<?> type) {
+            if (type == int.class) return Type.getType(Integer.class);
+            if (type == long.class) return Type.getType(Long.class);
+            if (type == boolean.class) return Type.getType(Boolean.class);
+            if (type == double.class) return Type.getType(Double.class);
+            if (type == float.class) return Type.getType(Float.class);
+            if (type == char.class) return Type.getType(Character.class);
+            if (type == byte.class) return Type.getType(Byte.class);
+            return Type.getType(Short.class);
+        }
+    }
+}
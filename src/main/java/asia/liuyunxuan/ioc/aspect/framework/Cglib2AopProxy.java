@@ -1,17 +1,30 @@
 package asia.liuyunxuan.ioc.aspect.framework;
 
 import asia.liuyunxuan.ioc.aspect.AdvisedSupport;
-import net.sf.cglib.proxy.Enhancer;
+import asia.liuyunxuan.ioc.aspect.TargetSource;
+import asia.liuyunxuan.ioc.common.CglibClassCache;
+import net.sf.cglib.proxy.Callback;
+import net.sf.cglib.proxy.CallbackFilter;
+import net.sf.cglib.proxy.Dispatcher;
 import net.sf.cglib.proxy.MethodInterceptor;
 import net.sf.cglib.proxy.MethodProxy;
 
 import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.HashSet;
+import java.util.Set;
 
 /**
  * 基于CGLIB的AOP代理实现。
  * <p>
  * 该实现使用CGLIB动态生成目标类的子类作为代理，通过方法拦截实现AOP功能。
  * 相比JDK动态代理，CGLIB可以代理没有实现接口的类，但会带来一定的性能开销。
+ * <p>
+ * 生成代理类时通过{@link CallbackFilter}逐个方法判断是否需要通知：需要通知的方法进入拦截器链，
+ * 其余公共方法交给{@link Dispatcher}直接调用目标对象，不分配方法调用对象也不查询拦截器链。
+ * 方法的路由在生成代理类时确定，代理创建之后再修改{@link AdvisedSupport}的通知配置不会改变路由。
+ * 开启调用对象复用时，有通知的调用使用当前线程的{@link CglibMethodInvocation}。
+ * 目标源不是静态的时候，所有方法都进入拦截器，以便在调用结束后归还目标对象。
  */
 public class Cglib2AopProxy implements AopProxy{
     private AdvisedSupport advised;
@@ -41,24 +54,114 @@ public class Cglib2AopProxy implements AopProxy{
         this.advised = advised;
     }
 
+    /** 进入拦截器链的回调下标 */
+    private static final int AOP_PROXY = 0;
+
+    /** 直接调用目标对象的回调下标 */
+    private static final int INVOKE_TARGET = 1;
+
     /**
      * 创建CGLIB代理实例。
      * <p>
-     * 使用CGLIB的Enhancer创建目标类的子类，并设置方法拦截器。
+     * 按方法是否需要通知设置不同的回调，代理类从{@link CglibClassCache}获取，
+     * 结构相同的代理只生成一次类。代理实例不执行目标类型的构造函数，
+     * 因此{@link asia.liuyunxuan.ioc.aspect.target.LazyInitTargetSource}在创建代理时不会产生目标类型的实例。
      *
      * @return 代理对象实例
      */
     @Override
     public Object getProxy() {
-        Enhancer enhancer = new Enhancer();
-        enhancer.setSuperclass(advised.getTargetSource().getTarget().getClass());
-        enhancer.setInterfaces(advised.getTargetSource().getTargetClass());
-        enhancer.setCallback(new DynamicAdvisedInterceptor(advised));
-        return enhancer.create();
+        TargetSource targetSource = advised.getTargetSource();
+        Class<?> targetClass = targetSource.getTargetType();
+        Callback[] callbacks = new Callback[]{new DynamicAdvisedInterceptor(advised), new TargetDispatcher(advised)};
+        return CglibClassCache.newInstanceWithoutConstructor(targetClass, targetSource.getTargetClass(), new ProxyCallbackFilter(advised, targetClass), callbacks);
+    }
+
+    /**
+     * 按方法是否需要通知选择回调。
+     * <p>
+     * 路由按方法签名计算，并参与equals和hashCode，
+     * 通知位置相同的代理可以共用缓存的代理类。
+     */
+    private static class ProxyCallbackFilter implements CallbackFilter {
+
+        /** 需要通知的方法签名 */
+        private final Set<String> advisedSignatures = new HashSet<>();
+
+        /** 目标源是否静态，非静态时所有方法都需要进入拦截器归还目标 */
+        private final boolean staticTarget;
+
+        public ProxyCallbackFilter(AdvisedSupport advised, Class<?> targetClass) {
+            this.staticTarget = advised.getTargetSource().isStatic();
+            for (Class<?> clazz = targetClass; clazz != null; clazz = clazz.getSuperclass()) {
+                collectAdvisedSignatures(advised, targetClass, clazz.getDeclaredMethods());
+            }
+            for (Class<?> ifc : advised.getTargetSource().getTargetClass()) {
+                collectAdvisedSignatures(advised, targetClass, ifc.getMethods());
+            }
+        }
+
+        private void collectAdvisedSignatures(AdvisedSupport advised, Class<?> targetClass, Method[] methods) {
+            for (Method method : methods) {
+                if (Modifier.isStatic(method.getModifiers()) || Modifier.isPrivate(method.getModifiers())) continue;
+                if (advised.getInterceptors(method, targetClass).length > 0) {
+                    advisedSignatures.add(signature(method));
+                }
+            }
+        }
+
+        private static String signature(Method method) {
+            StringBuilder signature = new StringBuilder(method.getName()).append('(');
+            for (Class<?> parameterType : method.getParameterTypes()) {
+                signature.append(parameterType.getName()).append(',');
+            }
+            return signature.append(')').toString();
+        }
+
+        @Override
+        public int accept(Method method) {
+            // 非公共方法可能无法从代理类直接调用，仍然交给拦截器通过MethodProxy调用
+            if (!staticTarget || !Modifier.isPublic(method.getModifiers()) || advisedSignatures.contains(signature(method))) {
+                return AOP_PROXY;
+            }
+            return INVOKE_TARGET;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return this == other || other instanceof ProxyCallbackFilter
+                    && staticTarget == ((ProxyCallbackFilter) other).staticTarget
+                    && advisedSignatures.equals(((ProxyCallbackFilter) other).advisedSignatures);
+        }
+
+        @Override
+        public int hashCode() {
+            return advisedSignatures.hashCode() * 31 + (staticTarget ? 1 : 0);
+        }
+    }
+
+    /**
+     * 不需要通知的方法直接转发给目标对象，每次调用都从目标源获取目标
+     */
+    private static class TargetDispatcher implements Dispatcher {
+
+        private final AdvisedSupport advised;
+
+        public TargetDispatcher(AdvisedSupport advised) {
+            this.advised = advised;
+        }
+
+        @Override
+        public Object loadObject() {
+            return advised.getTargetSource().getTarget();
+        }
     }
 
     private static class DynamicAdvisedInterceptor implements MethodInterceptor {
 
+        /** 每个线程复用的调用对象 */
+        private static final ThreadLocal<CglibMethodInvocation> INVOCATIONS = ThreadLocal.withInitial(CglibMethodInvocation::new);
+
         private final AdvisedSupport advised;
 
         public DynamicAdvisedInterceptor(AdvisedSupport advised) {
@@ -67,25 +170,53 @@ public class Cglib2AopProxy implements AopProxy{
 
         @Override
         public Object intercept(Object o, Method method, Object[] objects, MethodProxy methodProxy) throws Throwable {
-            CglibMethodInvocation methodInvocation = new CglibMethodInvocation(advised.getTargetSource().getTarget(), method, objects, methodProxy);
-            if (advised.getMethodMatcher().matches(method, advised.getTargetSource().getTarget().getClass())) {
-                return advised.getMethodInterceptor().invoke(methodInvocation);
+            TargetSource targetSource = advised.getTargetSource();
+            Object target = targetSource.getTarget();
+            try {
+                return invokeTarget(target, method, objects, methodProxy);
+            } finally {
+                if (!targetSource.isStatic()) {
+                    targetSource.releaseTarget(target);
+                }
+            }
+        }
+
+        private Object invokeTarget(Object target, Method method, Object[] objects, MethodProxy methodProxy) throws Throwable {
+            org.aopalliance.intercept.MethodInterceptor[] interceptors = advised.getInterceptors(method, target.getClass());
+            if (interceptors.length == 0) {
+                return methodProxy.invoke(target, objects);
+            }
+            if (!advised.isReuseInvocation()) {
+                return new CglibMethodInvocation(target, method, objects, interceptors, methodProxy).proceed();
+            }
+            CglibMethodInvocation invocation = INVOCATIONS.get();
+            if (!invocation.acquire(target, method, objects, interceptors)) {
+                return new CglibMethodInvocation(target, method, objects, interceptors, methodProxy).proceed();
+            }
+            invocation.methodProxy = methodProxy;
+            try {
+                return invocation.proceed();
+            } finally {
+                invocation.methodProxy = null;
+                invocation.release();
             }
-            return methodInvocation.proceed();
         }
     }
 
     private static class CglibMethodInvocation extends ReflectiveMethodInvocation {
 
-        private final MethodProxy methodProxy;
+        private MethodProxy methodProxy;
+
+        public CglibMethodInvocation() {
+        }
 
-        public CglibMethodInvocation(Object target, Method method, Object[] arguments, MethodProxy methodProxy) {
-            super(target, method, arguments);
+        public CglibMethodInvocation(Object target, Method method, Object[] arguments, org.aopalliance.intercept.MethodInterceptor[] interceptors, MethodProxy methodProxy) {
+            super(target, method, arguments, interceptors);
             this.methodProxy = methodProxy;
         }
 
         @Override
-        public Object proceed() throws Throwable {
+        protected Object invokeJoinpoint() throws Throwable {
             return this.methodProxy.invoke(this.target, this.arguments);
         }
 
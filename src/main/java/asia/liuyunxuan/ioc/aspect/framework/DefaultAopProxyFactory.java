@@ -0,0 +1,60 @@
+package asia.liuyunxuan.ioc.aspect.framework;
+
+import asia.liuyunxuan.ioc.aspect.AdvisedSupport;
+import asia.liuyunxuan.ioc.extension.ExtensionLoader;
+
+import java.io.IOException;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * {@link AopProxyFactory}的默认实现。
+ * <p>
+ * 代理实现仍然通过{@link ExtensionLoader}按名称注册，但不再使用扩展加载器缓存的单例，
+ * 而是按名称缓存实现类接收{@link AdvisedSupport}的构造函数，每次创建代理都构造新的实例。
+ * 默认策略下，配置了proxyTargetClass时使用CGLIB代理，否则使用JDK动态代理。
+ */
+public class DefaultAopProxyFactory implements AopProxyFactory {
+
+    static {
+        try {
+            ExtensionLoader.getInstance().loadExtension(AopProxy.class);
+        } catch (IOException | ClassNotFoundException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * key为代理策略名称，value为代理实现的构造函数
+     */
+    private final Map<String, Constructor<? extends AopProxy>> constructors = new ConcurrentHashMap<>();
+
+    @Override
+    public AopProxy createAopProxy(AdvisedSupport advised, String proxyName) {
+        if (proxyName == null || proxyName.isEmpty()) {
+            proxyName = advised.isProxyTargetClass() ? "cglib" : "jdk";
+        }
+        Constructor<? extends AopProxy> constructor = constructors.computeIfAbsent(proxyName, this::resolveConstructor);
+        try {
+            return constructor.newInstance(advised);
+        } catch (InvocationTargetException e) {
+            throw new IllegalStateException("Failed to create AopProxy [" + proxyName + "]", e.getTargetException());
+        } catch (InstantiationException | IllegalAccessException e) {
+            throw new IllegalStateException("Failed to create AopProxy [" + proxyName + "]", e);
+        }
+    }
+
+    private Constructor<? extends AopProxy> resolveConstructor(String proxyName) {
+        Class<? extends AopProxy> proxyClass = ExtensionLoader.getInstance().getExtensionClass(AopProxy.class, proxyName);
+        if (proxyClass == null) {
+            throw new IllegalArgumentException("No AopProxy registered with name [" + proxyName + "]");
+        }
+        try {
+            return proxyClass.getConstructor(AdvisedSupport.class);
+        } catch (NoSuchMethodException e) {
+            throw new IllegalArgumentException("AopProxy [" + proxyClass.getName() + "] must declare a constructor taking AdvisedSupport", e);
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package asia.liuyunxuan.ioc.aspect.framework;
 
 import asia.liuyunxuan.ioc.aspect.AdvisedSupport;
+import asia.liuyunxuan.ioc.aspect.TargetSource;
 import org.aopalliance.intercept.MethodInterceptor;
 
 import java.lang.reflect.InvocationHandler;
@@ -14,6 +15,10 @@ import java.lang.reflect.Proxy;
  * 创建基于接口的代理对象。要求目标类必须实现至少一个接口。
  */
 public class JdkDynamicAopProxy implements AopProxy, InvocationHandler {
+
+    /** 每个线程复用的调用对象 */
+    private static final ThreadLocal<ReflectiveMethodInvocation> INVOCATIONS = ThreadLocal.withInitial(ReflectiveMethodInvocation::new);
+
     private AdvisedSupport advised;
 
     /**
@@ -55,7 +60,9 @@ public class JdkDynamicAopProxy implements AopProxy, InvocationHandler {
     /**
      * 处理代理对象的方法调用。
      * <p>
-     * 如果方法匹配切点表达式，则应用通知；否则直接调用目标方法。
+     * 拦截器链按方法缓存在{@link AdvisedSupport}中，链为空时通过缓存的方法句柄直接调用目标方法，否则应用通知。
+     * 开启调用对象复用时，有通知的调用使用当前线程的调用对象，嵌套调用才会新建。
+     * 每次调用都从目标源获取目标对象，非静态的目标源在调用结束后归还目标。
      *
      * @param proxy 代理对象
      * @param method 被调用的方法
@@ -65,10 +72,33 @@ public class JdkDynamicAopProxy implements AopProxy, InvocationHandler {
      */
     @Override
     public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
-        if (advised.getMethodMatcher().matches(method, advised.getTargetSource().getTarget().getClass())) {
-            MethodInterceptor methodInterceptor = advised.getMethodInterceptor();
-            return methodInterceptor.invoke(new ReflectiveMethodInvocation(advised.getTargetSource().getTarget(), method, args));
+        TargetSource targetSource = advised.getTargetSource();
+        Object target = targetSource.getTarget();
+        try {
+            return invokeTarget(target, method, args);
+        } finally {
+            if (!targetSource.isStatic()) {
+                targetSource.releaseTarget(target);
+            }
+        }
+    }
+
+    private Object invokeTarget(Object target, Method method, Object[] args) throws Throwable {
+        MethodInterceptor[] interceptors = advised.getInterceptors(method, target.getClass());
+        if (interceptors.length == 0) {
+            return TargetMethodInvoker.invoke(target, method, args);
+        }
+        if (!advised.isReuseInvocation()) {
+            return new ReflectiveMethodInvocation(target, method, args, interceptors).proceed();
+        }
+        ReflectiveMethodInvocation invocation = INVOCATIONS.get();
+        if (!invocation.acquire(target, method, args, interceptors)) {
+            return new ReflectiveMethodInvocation(target, method, args, interceptors).proceed();
+        }
+        try {
+            return invocation.proceed();
+        } finally {
+            invocation.release();
         }
-        return method.invoke(advised.getTargetSource().getTarget(), args);
     }
 }
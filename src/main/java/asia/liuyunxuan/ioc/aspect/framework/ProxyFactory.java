@@ -1,34 +1,43 @@
 package asia.liuyunxuan.ioc.aspect.framework;
 
 import asia.liuyunxuan.ioc.aspect.AdvisedSupport;
-import asia.liuyunxuan.ioc.extension.ExtensionLoader;
-
-import java.io.IOException;
 
 /**
  * AOP代理工厂，负责创建和管理AOP代理实例。
  * <p>
- * 该工厂类支持两种代理方式：
+ * 该工厂类支持三种代理方式：
  * <ul>
  *     <li>JDK动态代理 - 基于接口的代理实现</li>
  *     <li>CGLIB代理 - 基于类的代理实现</li>
+ *     <li>字节码代理 - 为每个目标类型生成专用代理类，需要通过代理名称显式指定</li>
  * </ul>
  * 代理类型的选择基于目标对象的配置（是否强制使用CGLIB）以及可选的显式代理名称指定。
+ * 代理实例由{@link AopProxyFactory}为每个通知配置单独创建，可以在多个线程中同时使用。
  */
 public class ProxyFactory {
 
+    /**
+     * 默认的代理创建工厂，无状态，所有ProxyFactory共用
+     */
+    private static final AopProxyFactory DEFAULT_AOP_PROXY_FACTORY = new DefaultAopProxyFactory();
+
     private final AdvisedSupport advisedSupport;
 
+    private final AopProxyFactory aopProxyFactory;
+
     public ProxyFactory(AdvisedSupport advisedSupport) {
-        this.advisedSupport = advisedSupport;
+        this(advisedSupport, DEFAULT_AOP_PROXY_FACTORY);
     }
-    static {
-        try {
-            ExtensionLoader.getInstance().loadExtension(AopProxy.class);
-        } catch (IOException | ClassNotFoundException e) {
-            
-            throw new RuntimeException(e);
-        }
+
+    /**
+     * 使用指定的代理创建工厂。
+     *
+     * @param advisedSupport 包含目标对象和通知的配置信息
+     * @param aopProxyFactory 代理创建工厂
+     */
+    public ProxyFactory(AdvisedSupport advisedSupport, AopProxyFactory aopProxyFactory) {
+        this.advisedSupport = advisedSupport;
+        this.aopProxyFactory = aopProxyFactory;
     }
 
     /**
@@ -46,34 +55,22 @@ public class ProxyFactory {
     /**
      * 获取指定代理策略的代理对象。
      *
-     * @param proxyName 代理策略名称，可以是"jdk"或"cglib"。如果为null，则使用默认策略
+     * @param proxyName 代理策略名称，可以是"jdk"、"cglib"或"bytecode"。如果为null，则使用默认策略
      * @return 代理对象实例
      */
     public Object getProxy(String proxyName) {
-        AopProxy aopProxy = createAopProxy(proxyName);
-        return aopProxy.getProxy();
+        return createAopProxy(proxyName).getProxy();
     }
-    
+
     /**
      * 创建AOP代理对象。
+     * <p>
+     * 每次都由{@link AopProxyFactory}创建新的代理实例，不同Bean并发创建代理时不会互相覆盖通知配置。
      *
-     * @param proxyName 代理策略名称，可以是"jdk"或"cglib"。如果为null，则根据配置决定
+     * @param proxyName 代理策略名称，可以是"jdk"、"cglib"或"bytecode"。如果为null，则根据配置决定
      * @return AOP代理实例
      */
     private AopProxy createAopProxy(String proxyName) {
-        AopProxy proxy;
-        
-        if (proxyName != null && !proxyName.isEmpty()) {
-            proxy = ExtensionLoader.getInstance().get(proxyName);
-        } else if (advisedSupport.isProxyTargetClass()) {
-            // 默认代理策略
-            proxy = ExtensionLoader.getInstance().get("cglib");
-        } else {
-            proxy = ExtensionLoader.getInstance().get("jdk");
-        }
-        
-        // 使用接口方法设置AdvisedSupport，不需要类型判断和强制转换
-        proxy.setAdvised(this.advisedSupport);
-        return proxy;
+        return aopProxyFactory.createAopProxy(advisedSupport, proxyName);
     }
 }
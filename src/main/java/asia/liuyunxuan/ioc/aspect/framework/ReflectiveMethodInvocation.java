@@ -1,5 +1,6 @@
 package asia.liuyunxuan.ioc.aspect.framework;
 
+import org.aopalliance.intercept.MethodInterceptor;
 import org.aopalliance.intercept.MethodInvocation;
 import java.lang.reflect.AccessibleObject;
 import java.lang.reflect.Method;
@@ -8,27 +9,94 @@ import java.lang.reflect.Method;
  * 基于反射的方法调用实现。
  * <p>
  * 该类封装了目标方法的调用信息，包括目标对象、方法和参数，
- * 并通过反射机制执行实际的方法调用。作为AOP调用链中的基础调用实现。
+ * 并通过缓存的方法句柄执行实际的方法调用。作为AOP调用链中的基础调用实现。
+ * <p>
+ * 拦截器链以数组形式预先计算好，每次{@link #proceed()}按下标调用下一个拦截器，
+ * 链走完后再调用目标方法，因此一层代理就可以应用任意数量的通知。
+ * <p>
+ * 开启{@link asia.liuyunxuan.ioc.aspect.AdvisedSupport#setReuseInvocation 调用对象复用}后，
+ * 代理在每个线程上复用同一个调用对象，有通知的调用不再分配新的调用对象。
+ * 这种模式下拦截器不能在{@code invoke}返回之后继续持有调用对象。
  */
 public class ReflectiveMethodInvocation implements MethodInvocation {
+
+    private static final MethodInterceptor[] NO_INTERCEPTORS = new MethodInterceptor[0];
+
     /** 目标对象 */
-    protected final Object target;
+    protected Object target;
     /** 要调用的方法 */
-    protected final Method method;
+    protected Method method;
     /** 方法调用的参数 */
-    protected final Object[] arguments;
+    protected Object[] arguments;
+    /** 需要依次执行的拦截器链 */
+    protected MethodInterceptor[] interceptors;
+    /** 下一个要执行的拦截器下标 */
+    private int currentInterceptorIndex;
+    /** 复用模式下标记调用对象是否正在使用，嵌套调用时不能复用 */
+    private boolean inUse;
 
     /**
-     * 创建方法调用实例。
+     * 创建供线程复用的空调用对象，使用前需要通过{@link #acquire}填充调用信息。
+     */
+    protected ReflectiveMethodInvocation() {
+        this.interceptors = NO_INTERCEPTORS;
+    }
+
+    /**
+     * 创建不带拦截器的方法调用实例。
      *
      * @param target 目标对象
      * @param method 要调用的方法
      * @param arguments 方法参数
      */
     public ReflectiveMethodInvocation(Object target, Method method, Object[] arguments) {
+        this(target, method, arguments, NO_INTERCEPTORS);
+    }
+
+    /**
+     * 创建方法调用实例。
+     *
+     * @param target 目标对象
+     * @param method 要调用的方法
+     * @param arguments 方法参数
+     * @param interceptors 按顺序执行的拦截器链
+     */
+    public ReflectiveMethodInvocation(Object target, Method method, Object[] arguments, MethodInterceptor[] interceptors) {
         this.target = target;
         this.method = method;
         this.arguments = arguments;
+        this.interceptors = interceptors;
+    }
+
+    /**
+     * 占用复用的调用对象并填充本次调用的信息。
+     *
+     * @param target 目标对象
+     * @param method 要调用的方法
+     * @param arguments 方法参数
+     * @param interceptors 按顺序执行的拦截器链
+     * @return 如果调用对象正被外层调用使用则返回false，调用方需要另行创建调用对象
+     */
+    boolean acquire(Object target, Method method, Object[] arguments, MethodInterceptor[] interceptors) {
+        if (inUse) return false;
+        this.inUse = true;
+        this.target = target;
+        this.method = method;
+        this.arguments = arguments;
+        this.interceptors = interceptors;
+        this.currentInterceptorIndex = 0;
+        return true;
+    }
+
+    /**
+     * 释放复用的调用对象，清除对目标对象和参数的引用。
+     */
+    void release() {
+        this.target = null;
+        this.method = null;
+        this.arguments = null;
+        this.interceptors = NO_INTERCEPTORS;
+        this.inUse = false;
     }
 
     /**
@@ -54,14 +122,29 @@ public class ReflectiveMethodInvocation implements MethodInvocation {
     /**
      * 执行方法调用。
      * <p>
-     * 使用反射机制调用目标对象的方法。
+     * 依次调用拦截器链中的下一个拦截器，拦截器全部执行完后调用目标方法。
      *
      * @return 方法调用的结果
      * @throws Throwable 如果方法调用过程中发生异常
      */
     @Override
     public Object proceed() throws Throwable {
-        return method.invoke(target, arguments);
+        if (currentInterceptorIndex == interceptors.length) {
+            return invokeJoinpoint();
+        }
+        return interceptors[currentInterceptorIndex++].invoke(this);
+    }
+
+    /**
+     * 调用目标方法。
+     * <p>
+     * 通过按目标类型缓存的方法句柄调用目标对象的方法，目标方法的异常原样抛出。
+     *
+     * @return 方法调用的结果
+     * @throws Throwable 如果方法调用过程中发生异常
+     */
+    protected Object invokeJoinpoint() throws Throwable {
+        return TargetMethodInvoker.invoke(target, method, arguments);
     }
 
     /**
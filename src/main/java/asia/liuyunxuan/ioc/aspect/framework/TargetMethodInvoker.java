@@ -0,0 +1,87 @@
+package asia.liuyunxuan.ioc.aspect.framework;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 通过{@link MethodHandle}调用目标方法。
+ * <p>
+ * 每个方法按目标类型只解析一次，结果是已经展开参数数组的方法句柄，类型统一为{@code (Object, Object[])Object}，
+ * 调用时使用{@link MethodHandle#invokeExact}，不再有{@link Method#invoke}每次调用的访问检查，
+ * 目标方法抛出的异常也会原样抛出，而不是包装成{@link java.lang.reflect.InvocationTargetException}。
+ */
+final class TargetMethodInvoker {
+
+    private static final Object[] NO_ARGS = new Object[0];
+
+    private static final MethodType INVOKER_TYPE = MethodType.methodType(Object.class, Object.class, Object[].class);
+
+    /** key为目标类型，value为该类型下每个方法对应的方法句柄 */
+    private static final ClassValue<Map<Method, MethodHandle>> HANDLES = new ClassValue<Map<Method, MethodHandle>>() {
+        @Override
+        protected Map<Method, MethodHandle> computeValue(Class<?> type) {
+            return new ConcurrentHashMap<>();
+        }
+    };
+
+    private TargetMethodInvoker() {
+    }
+
+    /**
+     * 调用目标对象的方法。
+     *
+     * @param target 目标对象
+     * @param method 要调用的方法
+     * @param args 方法参数，没有参数时可以为null
+     * @return 方法调用的结果
+     * @throws Throwable 目标方法抛出的异常
+     */
+    static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        Map<Method, MethodHandle> handles = HANDLES.get(target.getClass());
+        MethodHandle handle = handles.get(method);
+        if (handle == null) {
+            handle = resolve(target.getClass(), method);
+            handles.put(method, handle);
+        }
+        Object[] arguments = args == null ? NO_ARGS : args;
+        return (Object) handle.invokeExact(target, arguments);
+    }
+
+    /**
+     * 解析方法句柄，目标类型是公共类时优先使用目标类型上的实现方法，便于JIT按具体类型内联。
+     */
+    private static MethodHandle resolve(Class<?> targetClass, Method method) throws IllegalAccessException {
+        Method resolved = method;
+        if (Modifier.isPublic(targetClass.getModifiers()) && method.getDeclaringClass() != targetClass) {
+            try {
+                resolved = targetClass.getMethod(method.getName(), method.getParameterTypes());
+            } catch (NoSuchMethodException ex) {
+                // 非公共方法或者无法在目标类型上找到，保持原方法
+            }
+        }
+        MethodHandle handle;
+        try {
+            handle = MethodHandles.publicLookup().unreflect(resolved);
+        } catch (IllegalAccessException ex) {
+            // 调用方传入的Method对象可能被共享，只修改自己获取的副本的访问标记
+            Method accessible = copyOf(resolved);
+            accessible.setAccessible(true);
+            handle = MethodHandles.lookup().unreflect(accessible);
+        }
+        // 可变参数方法的句柄会收集多余的参数，参数数组已经按声明的参数展开，需要固定参数个数
+        return handle.asFixedArity().asSpreader(Object[].class, method.getParameterCount()).asType(INVOKER_TYPE);
+    }
+
+    private static Method copyOf(Method method) {
+        try {
+            return method.getDeclaringClass().getDeclaredMethod(method.getName(), method.getParameterTypes());
+        } catch (NoSuchMethodException ex) {
+            throw new IllegalStateException("Method disappeared from " + method.getDeclaringClass().getName() + ": " + method, ex);
+        }
+    }
+}
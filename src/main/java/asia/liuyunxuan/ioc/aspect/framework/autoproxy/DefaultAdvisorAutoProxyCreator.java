@@ -3,6 +3,8 @@ package asia.liuyunxuan.ioc.aspect.framework.autoproxy;
 import asia.liuyunxuan.ioc.aspect.*;
 import asia.liuyunxuan.ioc.aspect.aspectj.AspectJExpressionPointcutAspectAdvisor;
 import asia.liuyunxuan.ioc.aspect.framework.ProxyFactory;
+import asia.liuyunxuan.ioc.aspect.framework.weaving.WeavingSupport;
+import asia.liuyunxuan.ioc.aspect.framework.weaving.Woven;
 import asia.liuyunxuan.ioc.component.ComponentException;
 import asia.liuyunxuan.ioc.component.PropertyValues;
 import asia.liuyunxuan.ioc.component.container.ComponentFactoryAware;
@@ -10,12 +12,15 @@ import asia.liuyunxuan.ioc.component.container.ComponentProvider;
 import asia.liuyunxuan.ioc.component.container.config.InstantiationAwareBeanPostProcessor;
 import asia.liuyunxuan.ioc.component.container.support.DefaultRegistry;
 import org.aopalliance.aop.Advice;
-import org.aopalliance.intercept.MethodInterceptor;
 
-import java.util.Collection;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * AOP自动代理创建器的默认实现，负责为匹配的Bean自动创建代理对象。
@@ -30,17 +35,24 @@ import java.util.Set;
  * 工作流程：
  * <ol>
  *     <li>在Bean实例化后，检查是否需要创建代理</li>
- *     <li>收集系统中所有的AspectJ切面配置</li>
+ *     <li>收集系统中所有的切点通知器，包括AspectJ表达式和名称模式两种切点</li>
  *     <li>判断Bean是否匹配切点表达式</li>
- *     <li>如果匹配，则创建代理对象</li>
+ *     <li>如果匹配，则把所有匹配的切面按顺序放入同一个代理对象</li>
  * </ol>
+ * <p>
+ * 切面列表按容器中Bean定义的版本号缓存，只有注册了新的Bean定义后才会重新查找；
+ * 每个Bean类型的类过滤结果也会随同一份缓存保存，没有切面匹配的Bean只需一次Map查询。
  *
  * @see InstantiationAwareBeanPostProcessor
  * @see ComponentFactoryAware
  * @see AspectJExpressionPointcutAspectAdvisor
+ * @see NamePatternPointcutAspectAdvisor
  */
 public class DefaultAdvisorAutoProxyCreator implements InstantiationAwareBeanPostProcessor, ComponentFactoryAware {
 
+    /** 清除织入Bean拦截器链的销毁回调名称后缀 */
+    private static final String WEAVING_DISPOSER_SUFFIX = "#weaving";
+
     /** 用于访问和管理Bean的工厂 */
     private DefaultRegistry beanFactory;
 
@@ -55,8 +67,23 @@ public class DefaultAdvisorAutoProxyCreator implements InstantiationAwareBeanPos
         this.proxyName = proxyName;
     }
 
+    /** 是否让创建的代理复用方法调用对象 */
+    private boolean reuseInvocation = false;
+
+    /**
+     * 设置创建的代理是否在每个线程上复用方法调用对象
+     * @param reuseInvocation true表示复用调用对象，所有切面的拦截器都不能在调用结束后持有调用对象
+     */
+    public void setReuseInvocation(boolean reuseInvocation) {
+        this.reuseInvocation = reuseInvocation;
+    }
+
     /** 用于存储已经被提前代理的Bean名称，防止重复代理 */
     private final Set<Object> earlyProxyReferences = Collections.synchronizedSet(new HashSet<>());
+
+    /** 当前Bean定义版本下的切面缓存 */
+    private volatile AdvisorCache advisorCache;
+
     /**
      * 设置BeanFactory，用于后续获取Advisor
      *
@@ -112,6 +139,9 @@ public class DefaultAdvisorAutoProxyCreator implements InstantiationAwareBeanPos
      *     <li>不是AOP基础设施类</li>
      *     <li>存在匹配的切面</li>
      * </ul>
+     * 所有类过滤匹配的切面都会加入同一个代理，方法级的匹配在调用时由拦截器链缓存完成。
+     * 加载时已经织入的Bean不创建代理，切面注册到Bean实例上，由字节码直接执行通知，
+     * 单例Bean的切面在容器销毁单例时清除。
      *
      * @param bean 原始的Bean实例
      * @param beanName Bean的名称
@@ -120,26 +150,87 @@ public class DefaultAdvisorAutoProxyCreator implements InstantiationAwareBeanPos
     protected Object wrapIfNecessary(Object bean, String beanName) {
         if (isInfrastructureClass(bean.getClass())) return bean;
 
-        Collection<AspectJExpressionPointcutAspectAdvisor> advisors = beanFactory.getBeansOfType(AspectJExpressionPointcutAspectAdvisor.class).values();
+        PointcutAspectAdvisor[] advisors = getAdvisorCache().getEligibleAdvisors(bean.getClass());
+        if (bean instanceof Woven) {
+            WeavingSupport.register(bean, advisors);
+            if (advisors.length > 0 && beanFactory.containsBeanDefinition(beanName) && beanFactory.getBeanDefinition(beanName).isSingleton()) {
+                // 先于Bean自身的销毁方法注册，按注册的逆序销毁时Bean的销毁方法仍然执行通知
+                beanFactory.registerDisposableBean(beanName + WEAVING_DISPOSER_SUFFIX, () -> WeavingSupport.unregister(bean));
+            }
+            return bean;
+        }
+        if (advisors.length == 0) return bean;
+
+        // 所有匹配的切面合并到同一层代理中，按顺序组成拦截器链
+        AdvisedSupport advisedSupport = new AdvisedSupport();
+        advisedSupport.setTargetSource(new TargetSource(bean));
+        for (PointcutAspectAdvisor advisor : advisors) {
+            advisedSupport.addAdvisor(advisor);
+        }
+        advisedSupport.setProxyTargetClass(true);
+        advisedSupport.setReuseInvocation(reuseInvocation);
+
+        // 返回代理对象
+        return new ProxyFactory(advisedSupport).getProxy(proxyName);
+    }
 
-        for (AspectJExpressionPointcutAspectAdvisor advisor : advisors) {
-            ClassFilter classFilter = advisor.getPointcut().getClassFilter();
-            // 过滤匹配类
-            if (!classFilter.matches(bean.getClass())) continue;
+    /**
+     * 获取与当前Bean定义版本一致的切面缓存，版本变化时重新查找所有切面，
+     * 切面按order排序，order相同时按Bean名称排序
+     *
+     * @return 切面缓存
+     */
+    private AdvisorCache getAdvisorCache() {
+        long generation = beanFactory.getDefinitionGeneration();
+        AdvisorCache cache = this.advisorCache;
+        if (cache == null || cache.generation != generation) {
+            // 先读取版本号再查找切面，查找期间注册的新定义会在下一次调用时触发重建
+            List<Map.Entry<String, PointcutAspectAdvisor>> entries = new ArrayList<>(beanFactory.getBeansOfType(PointcutAspectAdvisor.class).entrySet());
+            entries.sort(Comparator.comparingInt((Map.Entry<String, PointcutAspectAdvisor> entry) -> entry.getValue().getOrder()).thenComparing(Map.Entry::getKey));
+            List<PointcutAspectAdvisor> advisors = new ArrayList<>(entries.size());
+            for (Map.Entry<String, PointcutAspectAdvisor> entry : entries) {
+                advisors.add(entry.getValue());
+            }
+            cache = new AdvisorCache(generation, advisors);
+            this.advisorCache = cache;
+        }
+        return cache;
+    }
 
-            AdvisedSupport advisedSupport = new AdvisedSupport();
+    /**
+     * 某个Bean定义版本下的切面列表，以及按Bean类型记录的类过滤结果
+     */
+    private static final class AdvisorCache {
+
+        private static final PointcutAspectAdvisor[] NO_ADVISORS = new PointcutAspectAdvisor[0];
+
+        private final long generation;
 
-            TargetSource targetSource = new TargetSource(bean);
-            advisedSupport.setTargetSource(targetSource);
-            advisedSupport.setMethodInterceptor((MethodInterceptor) advisor.getAdvice());
-            advisedSupport.setMethodMatcher(advisor.getPointcut().getMethodMatcher());
-            advisedSupport.setProxyTargetClass(true);
+        private final List<PointcutAspectAdvisor> advisors;
 
-            // 返回代理对象
-            return new ProxyFactory(advisedSupport).getProxy(proxyName);
+        /** key为Bean类型，value为类过滤匹配该类型的切面 */
+        private final Map<Class<?>, PointcutAspectAdvisor[]> eligibleAdvisors = new ConcurrentHashMap<>();
+
+        AdvisorCache(long generation, List<PointcutAspectAdvisor> advisors) {
+            this.generation = generation;
+            this.advisors = advisors;
         }
 
-        return bean;
+        PointcutAspectAdvisor[] getEligibleAdvisors(Class<?> beanClass) {
+            if (advisors.isEmpty()) return NO_ADVISORS;
+            PointcutAspectAdvisor[] result = eligibleAdvisors.get(beanClass);
+            if (result == null) {
+                List<PointcutAspectAdvisor> matched = new ArrayList<>();
+                for (PointcutAspectAdvisor advisor : advisors) {
+                    ClassFilter classFilter = advisor.getPointcut().getClassFilter();
+                    // 过滤匹配类
+                    if (classFilter.matches(beanClass)) matched.add(advisor);
+                }
+                result = matched.isEmpty() ? NO_ADVISORS : matched.toArray(NO_ADVISORS);
+                eligibleAdvisors.put(beanClass, result);
+            }
+            return result;
+        }
     }
 
     /**
@@ -0,0 +1,41 @@
+package asia.liuyunxuan.ioc.aspect.framework.weaving;
+
+import java.lang.instrument.Instrumentation;
+
+/**
+ * 加载时织入的Java代理入口。
+ * <p>
+ * 启动参数中以逗号分隔需要织入的类名或包名：
+ * <pre>
+ * java -javaagent:ioc.jar=com.example.service,com.example.repository -jar app.jar
+ * </pre>
+ * 代理只转换注册之后首次加载的类，通过{@code agentmain}动态加载时已经加载的类不会被织入。
+ *
+ * @author liuyunxuan
+ * @see WeavingTransformer
+ * @since 1.0
+ */
+public final class WeavingAgent {
+
+    private WeavingAgent() {
+    }
+
+    public static void premain(String agentArgs, Instrumentation instrumentation) {
+        instrumentation.addTransformer(new WeavingTransformer(parseIncludes(agentArgs)));
+    }
+
+    public static void agentmain(String agentArgs, Instrumentation instrumentation) {
+        premain(agentArgs, instrumentation);
+    }
+
+    private static String[] parseIncludes(String agentArgs) {
+        if (agentArgs == null || agentArgs.trim().isEmpty()) {
+            throw new IllegalArgumentException("Weaving agent requires the classes or packages to weave, e.g. -javaagent:ioc.jar=com.example.service");
+        }
+        String[] includes = agentArgs.split(",");
+        for (int i = 0; i < includes.length; i++) {
+            includes[i] = includes[i].trim();
+        }
+        return includes;
+    }
+}
@@ -0,0 +1,77 @@
+package asia.liuyunxuan.ioc.aspect.framework.weaving;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * 加载时织入的类加载器，无法使用{@code -javaagent}时用于加载需要织入的类。
+ * <p>
+ * 织入范围内的类由该加载器从父加载器的资源中读取并织入后定义，其余类委托父加载器加载。
+ * 织入的类只对通过该加载器加载的代码可见，通常用它加载应用的入口类或者容器的Bean类型。
+ * 无法织入的类（例如ASM不支持的类文件版本）报告异常后按原始字节码定义。
+ *
+ * @author liuyunxuan
+ * @see WeavingTransformer
+ * @since 1.0
+ */
+public class WeavingClassLoader extends ClassLoader {
+
+    static {
+        registerAsParallelCapable();
+    }
+
+    private final WeavingTransformer transformer;
+
+    /**
+     * 创建织入类加载器
+     *
+     * @param parent 父加载器，织入范围内的类文件也从这里读取
+     * @param includes 需要织入的类名或包名
+     */
+    public WeavingClassLoader(ClassLoader parent, String... includes) {
+        super(parent);
+        this.transformer = new WeavingTransformer(includes);
+    }
+
+    @Override
+    protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+        if (!transformer.isIncluded(name)) {
+            return super.loadClass(name, resolve);
+        }
+        synchronized (getClassLoadingLock(name)) {
+            Class<?> loaded = findLoadedClass(name);
+            if (loaded == null) {
+                byte[] bytes = readClass(name);
+                if (bytes == null) {
+                    return super.loadClass(name, resolve);
+                }
+                // 与代理方式一致，织入失败时报告异常并加载原始的类
+                byte[] woven = WeavingTransformer.weaveOrReport(name, bytes);
+                if (woven != null) {
+                    bytes = woven;
+                }
+                loaded = defineClass(name, bytes, 0, bytes.length);
+            }
+            if (resolve) {
+                resolveClass(loaded);
+            }
+            return loaded;
+        }
+    }
+
+    private byte[] readClass(String name) throws ClassNotFoundException {
+        try (InputStream in = getParent().getResourceAsStream(name.replace('.', '/') + ".class")) {
+            if (in == null) return null;
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return out.toByteArray();
+        } catch (IOException e) {
+            throw new ClassNotFoundException(name, e);
+        }
+    }
+}
@@ -0,0 +1,267 @@
+package asia.liuyunxuan.ioc.aspect.framework.weaving;
+
+import asia.liuyunxuan.ioc.aspect.AdvisedSupport;
+import asia.liuyunxuan.ioc.aspect.AspectAdvisor;
+import asia.liuyunxuan.ioc.aspect.framework.ReflectiveMethodInvocation;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.objectweb.asm.Type;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 织入类的运行时支持，负责注册拦截器链和执行有通知的方法调用。
+ * <p>
+ * 每个织入的类按{@link WeavingTransformer}分配的下标记录原方法和改名后的方法体，
+ * {@link #register}按切面计算每个方法的拦截器链并写入对象的拦截器链字段，
+ * 织入的方法发现自己有拦截器链时调用{@link #invoke}，拦截器链走完后通过方法句柄调用原方法体。
+ * <p>
+ * 拦截器链属于实例，由创建该实例的容器注册，容器销毁单例时通过{@link #unregister}清除，
+ * 不同容器中同一个类的实例互不影响，没有注册过的实例直接执行原方法体。
+ * 与代理不同，织入的方法在对象内部互相调用时同样会执行通知。
+ * <p>
+ * 拦截器看到的目标对象就是织入的对象，调用它的公共方法会再次执行通知。
+ * 需要绕过通知直接调用目标方法的拦截器（例如对冲和批量调用）应使用{@link #newJoinpointInvocation}。
+ *
+ * @author liuyunxuan
+ * @since 1.0
+ */
+public final class WeavingSupport {
+
+    private static final MethodType INVOKER_TYPE = MethodType.methodType(Object.class, Object.class, Object[].class);
+
+    private static final MethodInterceptor[] NO_INTERCEPTORS = new MethodInterceptor[0];
+
+    private static final ClassValue<WovenClass> WOVEN_CLASSES = new ClassValue<WovenClass>() {
+        @Override
+        protected WovenClass computeValue(Class<?> type) {
+            return new WovenClass(type);
+        }
+    };
+
+    private WeavingSupport() {
+    }
+
+    /**
+     * 查找对象类型中被织入的类，对象类型可以是织入类的子类，例如CGLIB生成的子类
+     *
+     * @param type 对象的类型
+     * @return 直接实现了{@link Woven}的类，没有被织入时返回null
+     */
+    public static Class<?> getWovenClass(Class<?> type) {
+        for (Class<?> current = type; current != null; current = current.getSuperclass()) {
+            if (Arrays.asList(current.getInterfaces()).contains(Woven.class)) {
+                return current;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 为织入的对象注册切面，计算每个织入方法的拦截器链并写入对象。
+     * <p>
+     * 拦截器链按类缓存最近一次注册的切面数组，自动代理创建器按Bean类型缓存切面数组，因此同类型的Bean只计算一次。
+     * 没有切面匹配时清除对象上的拦截器链。
+     *
+     * @param bean 织入的对象
+     * @param advisors 按顺序排列的切面
+     */
+    public static void register(Object bean, AspectAdvisor[] advisors) {
+        WovenClass woven = getWoven(bean);
+        woven.setChains(bean, woven.getChains(advisors));
+    }
+
+    /**
+     * 清除对象上注册的拦截器链，之后织入的方法直接执行原方法体
+     *
+     * @param bean 织入的对象
+     */
+    public static void unregister(Object bean) {
+        getWoven(bean).setChains(bean, null);
+    }
+
+    private static WovenClass getWoven(Object bean) {
+        Class<?> wovenClass = getWovenClass(bean.getClass());
+        if (wovenClass == null) {
+            throw new IllegalArgumentException("Object of type [" + bean.getClass().getName() + "] is not woven");
+        }
+        return WOVEN_CLASSES.get(wovenClass);
+    }
+
+    /**
+     * 创建直接调用目标方法、不执行任何通知的调用对象。
+     * <p>
+     * 目标对象是织入的对象时调用方法体本身，不会再次进入织入的拦截器链，其余情况与
+     * {@link ReflectiveMethodInvocation}相同。
+     *
+     * @param target 目标对象
+     * @param method 要调用的方法
+     * @param arguments 方法参数
+     * @return 不带拦截器的调用对象
+     */
+    public static ReflectiveMethodInvocation newJoinpointInvocation(Object target, Method method, Object[] arguments) {
+        Class<?> wovenClass = getWovenClass(target.getClass());
+        if (wovenClass != null) {
+            WovenClass woven = WOVEN_CLASSES.get(wovenClass);
+            int index = woven.indexOf(method);
+            // 子类重写了该方法时调用子类的实现
+            if (index >= 0 && (target.getClass() == wovenClass || isNotOverridden(target.getClass(), woven.methods[index]))) {
+                return new WovenMethodInvocation(target, woven.methods[index], arguments, NO_INTERCEPTORS, woven.invokers[index]);
+            }
+        }
+        return new ReflectiveMethodInvocation(target, method, arguments);
+    }
+
+    private static boolean isNotOverridden(Class<?> type, Method wovenMethod) {
+        try {
+            return type.getMethod(wovenMethod.getName(), wovenMethod.getParameterTypes()).getDeclaringClass() == wovenMethod.getDeclaringClass();
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    /**
+     * 获取织入的方法，数组下标即织入时分配的方法下标
+     *
+     * @param wovenClass 织入的类
+     * @return 织入的方法
+     */
+    public static Method[] getWovenMethods(Class<?> wovenClass) {
+        return WOVEN_CLASSES.get(wovenClass).methods.clone();
+    }
+
+    /**
+     * 执行有通知的方法调用，供织入的方法调用。
+     *
+     * @param wovenClass 织入的类
+     * @param index 方法下标
+     * @param target 被调用的对象
+     * @param args 方法参数
+     * @param interceptors 该方法的拦截器链
+     * @return 方法调用结果
+     * @throws Throwable 拦截器或原方法体抛出的异常
+     */
+    public static Object invoke(Class<?> wovenClass, int index, Object target, Object[] args, MethodInterceptor[] interceptors) throws Throwable {
+        WovenClass woven = WOVEN_CLASSES.get(wovenClass);
+        return new WovenMethodInvocation(target, woven.methods[index], args, interceptors, woven.invokers[index]).proceed();
+    }
+
+    private static final class WovenMethodInvocation extends ReflectiveMethodInvocation {
+
+        private final MethodHandle invoker;
+
+        WovenMethodInvocation(Object target, Method method, Object[] arguments, MethodInterceptor[] interceptors, MethodHandle invoker) {
+            super(target, method, arguments, interceptors);
+            this.invoker = invoker;
+        }
+
+        @Override
+        protected Object invokeJoinpoint() throws Throwable {
+            return (Object) invoker.invokeExact(target, arguments);
+        }
+    }
+
+    /**
+     * 一个织入类的方法、方法体的方法句柄和拦截器链字段，按织入时的下标排列。
+     * <p>
+     * 拦截器链只与切面有关，最近一次注册的切面和计算出的拦截器链缓存在这里，由同类型的实例共享。
+     */
+    private static final class WovenClass {
+
+        private final Method[] methods;
+
+        private final MethodHandle[] invokers;
+
+        private final Field chainsField;
+
+        private final Class<?> wovenClass;
+
+        /**
+         * 最近一次注册的切面
+         */
+        private AspectAdvisor[] advisors;
+
+        /**
+         * 最近一次注册的切面对应的拦截器链，没有方法需要通知时为null
+         */
+        private MethodInterceptor[][] chains;
+
+        WovenClass(Class<?> wovenClass) {
+            Map<String, Method> bodies = new TreeMap<>();
+            for (Method method : wovenClass.getDeclaredMethods()) {
+                String name = method.getName();
+                if (name.endsWith(WeavingTransformer.WOVEN_SUFFIX)) {
+                    String originalName = name.substring(0, name.length() - WeavingTransformer.WOVEN_SUFFIX.length());
+                    bodies.put(originalName + Type.getMethodDescriptor(method), method);
+                }
+            }
+            this.methods = new Method[bodies.size()];
+            this.invokers = new MethodHandle[bodies.size()];
+            int index = 0;
+            try {
+                for (Method body : bodies.values()) {
+                    String originalName = body.getName().substring(0, body.getName().length() - WeavingTransformer.WOVEN_SUFFIX.length());
+                    methods[index] = wovenClass.getDeclaredMethod(originalName, body.getParameterTypes());
+                    body.setAccessible(true);
+                    // 方法体保留了可变参数标记，参数数组已经按声明的参数展开，需要固定参数个数
+                    invokers[index] = MethodHandles.lookup().unreflect(body).asFixedArity()
+                            .asSpreader(Object[].class, body.getParameterCount()).asType(INVOKER_TYPE);
+                    index++;
+                }
+                this.chainsField = wovenClass.getField(WeavingTransformer.CHAINS_FIELD);
+            } catch (ReflectiveOperationException e) {
+                throw new IllegalStateException("Class [" + wovenClass.getName() + "] is not a valid woven class", e);
+            }
+            this.wovenClass = wovenClass;
+        }
+
+        synchronized MethodInterceptor[][] getChains(AspectAdvisor[] advisors) {
+            if (this.advisors == advisors) return chains;
+            AdvisedSupport advisedSupport = new AdvisedSupport();
+            for (AspectAdvisor advisor : advisors) {
+                advisedSupport.addAdvisor(advisor);
+            }
+            MethodInterceptor[][] chains = new MethodInterceptor[methods.length][];
+            boolean advised = false;
+            for (int i = 0; i < chains.length; i++) {
+                MethodInterceptor[] interceptors = advisedSupport.getInterceptors(methods[i], wovenClass);
+                if (interceptors.length > 0) {
+                    chains[i] = interceptors;
+                    advised = true;
+                }
+            }
+            this.chains = advised ? chains : null;
+            this.advisors = advisors;
+            return this.chains;
+        }
+
+        void setChains(Object bean, MethodInterceptor[][] chains) {
+            try {
+                chainsField.set(bean, chains);
+            } catch (IllegalAccessException e) {
+                throw new IllegalStateException("Failed to register advisors for woven class [" + wovenClass.getName() + "]", e);
+            }
+        }
+
+        /**
+         * 按名称和参数类型查找织入的方法，接口方法同样可以找到实现它的织入方法
+         *
+         * @return 方法下标，不是织入的方法时返回-1
+         */
+        int indexOf(Method method) {
+            for (int i = 0; i < methods.length; i++) {
+                if (methods[i].equals(method) || (methods[i].getName().equals(method.getName())
+                        && Arrays.equals(methods[i].getParameterTypes(), method.getParameterTypes()))) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+    }
+}
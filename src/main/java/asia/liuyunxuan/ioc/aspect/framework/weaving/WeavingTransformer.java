@@ -0,0 +1,426 @@
+package asia.liuyunxuan.ioc.aspect.framework.weaving;
+
+import asia.liuyunxuan.ioc.common.ErrorReporter;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.objectweb.asm.AnnotationVisitor;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.TypePath;
+
+import java.lang.instrument.ClassFileTransformer;
+import java.security.ProtectionDomain;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 加载时织入的字节码转换器，为指定范围内的类织入通知的调用入口。
+ * <p>
+ * 类中每个公共的实例方法{@code m}被改写为两个方法：
+ * <ul>
+ *     <li>原来的方法体移到私有方法{@code m$woven}中</li>
+ *     <li>{@code m}保留原来的签名、注解和异常声明，先读取对象上的字段{@code $$weavingChains}，
+ *     该方法没有拦截器链时直接调用{@code m$woven}，否则交给{@link WeavingSupport#invoke}执行拦截器链</li>
+ * </ul>
+ * 类还会实现{@link Woven}接口，拦截器链由自动代理创建器在创建Bean时通过{@link WeavingSupport#register}写入对象，
+ * 容器销毁单例时清除。
+ * 没有通知的方法只多一次字段读取和一次私有方法调用，JIT内联之后与原方法没有区别。
+ * <p>
+ * 织入范围按类名匹配，匹配项可以是完整的类名，也可以是包名，包名同时匹配子包中的类。
+ * 接口、注解、枚举以及已经织入过的类不会被改写。
+ *
+ * @author liuyunxuan
+ * @see WeavingAgent
+ * @see WeavingClassLoader
+ * @since 1.0
+ */
+public class WeavingTransformer implements ClassFileTransformer {
+
+    static final String CHAINS_FIELD = "$$weavingChains";
+
+    static final String WOVEN_SUFFIX = "$woven";
+
+    private static final String CHAINS = Type.getDescriptor(MethodInterceptor[][].class);
+
+    private static final String INTERCEPTORS = Type.getDescriptor(MethodInterceptor[].class);
+
+    private static final String WOVEN = Type.getInternalName(Woven.class);
+
+    private static final String SUPPORT = Type.getInternalName(WeavingSupport.class);
+
+    private static final String INVOKE_DESCRIPTOR = "(Ljava/lang/Class;ILjava/lang/Object;[Ljava/lang/Object;" + INTERCEPTORS + ")Ljava/lang/Object;";
+
+    private final String[] includes;
+
+    /**
+     * 创建转换器
+     *
+     * @param includes 需要织入的类名或包名
+     */
+    public WeavingTransformer(String... includes) {
+        this.includes = includes.clone();
+    }
+
+    /**
+     * 判断类是否在织入范围内
+     *
+     * @param className 类的完整名称，以点分隔
+     * @return 在织入范围内返回true
+     */
+    public boolean isIncluded(String className) {
+        for (String include : includes) {
+            if (className.equals(include) || className.startsWith(include + ".")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public byte[] transform(ClassLoader loader, String className, Class<?> classBeingRedefined,
+                            ProtectionDomain protectionDomain, byte[] classfileBuffer) {
+        // 已经加载的类不能增加字段和方法，只转换首次加载的类
+        if (className == null || classBeingRedefined != null || !isIncluded(className.replace('/', '.'))) {
+            return null;
+        }
+        return weaveOrReport(className.replace('/', '.'), classfileBuffer);
+    }
+
+    /**
+     * 织入类的字节码，织入失败时报告异常并按未织入处理，例如ASM无法读取的类文件版本
+     *
+     * @param className 类的完整名称，以点分隔
+     * @param classfileBuffer 原始的类文件
+     * @return 织入后的类文件，类不需要织入或者织入失败时返回null
+     */
+    static byte[] weaveOrReport(String className, byte[] classfileBuffer) {
+        try {
+            return weave(classfileBuffer);
+        } catch (RuntimeException e) {
+            // 转换器抛出的异常会被JVM忽略，报告后按未织入加载
+            ErrorReporter.report("Failed to weave class " + className, e);
+            return null;
+        }
+    }
+
+    /**
+     * 织入类的字节码
+     *
+     * @param classfileBuffer 原始的类文件
+     * @return 织入后的类文件，类不需要织入时返回null
+     */
+    public static byte[] weave(byte[] classfileBuffer) {
+        ClassReader reader = new ClassReader(classfileBuffer);
+        MethodCollector collector = new MethodCollector();
+        reader.accept(collector, ClassReader.SKIP_CODE | ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+        if (!collector.weavable || collector.methods.isEmpty()) {
+            return null;
+        }
+        // 方法下标按名称和描述符排序，运行时用同样的顺序找到对应的方法
+        Map<String, Integer> indexes = new HashMap<>();
+        String[] keys = collector.methods.toArray(new String[0]);
+        Arrays.sort(keys);
+        for (int i = 0; i < keys.length; i++) {
+            indexes.put(keys[i], i);
+        }
+        ClassWriter writer = new ClassWriter(reader, ClassWriter.COMPUTE_MAXS);
+        reader.accept(new WeavingClassVisitor(writer, indexes), 0);
+        return writer.toByteArray();
+    }
+
+    /**
+     * 第一遍读取，判断类是否可以织入并收集需要织入的方法
+     */
+    private static final class MethodCollector extends ClassVisitor {
+
+        private final List<String> methods = new ArrayList<>();
+
+        private boolean weavable;
+
+        MethodCollector() {
+            super(Opcodes.ASM9);
+        }
+
+        @Override
+        public void visit(int version, int access, String name, String signature, String superName, String[] interfaces) {
+            weavable = (version & 0xFFFF) >= Opcodes.V1_5
+                    && (access & (Opcodes.ACC_INTERFACE | Opcodes.ACC_ANNOTATION | Opcodes.ACC_ENUM)) == 0
+                    && (interfaces == null || !Arrays.asList(interfaces).contains(WOVEN));
+        }
+
+        @Override
+        public MethodVisitor visitMethod(int access, String name, String descriptor, String signature, String[] exceptions) {
+            if (isWeavable(access, name)) {
+                methods.add(name + descriptor);
+            }
+            return null;
+        }
+    }
+
+    static boolean isWeavable(int access, String name) {
+        return (access & Opcodes.ACC_PUBLIC) != 0
+                && (access & (Opcodes.ACC_STATIC | Opcodes.ACC_ABSTRACT | Opcodes.ACC_NATIVE | Opcodes.ACC_SYNTHETIC | Opcodes.ACC_BRIDGE)) == 0
+                && name.charAt(0) != '<';
+    }
+
+    /**
+     * 第二遍读取，改写方法并添加标记接口和拦截器链字段
+     */
+    private static final class WeavingClassVisitor extends ClassVisitor {
+
+        private final Map<String, Integer> indexes;
+
+        private String owner;
+
+        private int version;
+
+        WeavingClassVisitor(ClassVisitor cv, Map<String, Integer> indexes) {
+            super(Opcodes.ASM9, cv);
+            this.indexes = indexes;
+        }
+
+        @Override
+        public void visit(int version, int access, String name, String signature, String superName, String[] interfaces) {
+            this.owner = name;
+            this.version = version & 0xFFFF;
+            String[] wovenInterfaces = interfaces == null ? new String[1] : Arrays.copyOf(interfaces, interfaces.length + 1);
+            wovenInterfaces[wovenInterfaces.length - 1] = WOVEN;
+            super.visit(version, access, name, signature, superName, wovenInterfaces);
+        }
+
+        @Override
+        public MethodVisitor visitMethod(int access, String name, String descriptor, String signature, String[] exceptions) {
+            Integer index = indexes.get(name + descriptor);
+            if (index == null || !isWeavable(access, name)) {
+                return super.visitMethod(access, name, descriptor, signature, exceptions);
+            }
+            MethodVisitor entry = super.visitMethod(access, name, descriptor, signature, exceptions);
+            int bodyAccess = Opcodes.ACC_PRIVATE | (access & (Opcodes.ACC_SYNCHRONIZED | Opcodes.ACC_VARARGS | Opcodes.ACC_STRICT));
+            MethodVisitor body = super.visitMethod(bodyAccess, name + WOVEN_SUFFIX, descriptor, signature, exceptions);
+            return new SplittingMethodVisitor(body, entry, name, descriptor, index);
+        }
+
+        @Override
+        public void visitEnd() {
+            super.visitField(Opcodes.ACC_PUBLIC | Opcodes.ACC_VOLATILE | Opcodes.ACC_TRANSIENT | Opcodes.ACC_SYNTHETIC,
+                    CHAINS_FIELD, CHAINS, null, null).visitEnd();
+            super.visitEnd();
+        }
+
+        /**
+         * 方法体写入私有方法，注解写入保留原名的入口方法，方法结束时生成入口方法的代码
+         */
+        private final class SplittingMethodVisitor extends MethodVisitor {
+
+            private final MethodVisitor entry;
+
+            private final String name;
+
+            private final String descriptor;
+
+            private final int index;
+
+            SplittingMethodVisitor(MethodVisitor body, MethodVisitor entry, String name, String descriptor, int index) {
+                super(Opcodes.ASM9, body);
+                this.entry = entry;
+                this.name = name;
+                this.descriptor = descriptor;
+                this.index = index;
+            }
+
+            @Override
+            public void visitParameter(String parameterName, int access) {
+                entry.visitParameter(parameterName, access);
+                super.visitParameter(parameterName, access);
+            }
+
+            @Override
+            public AnnotationVisitor visitAnnotationDefault() {
+                return entry.visitAnnotationDefault();
+            }
+
+            @Override
+            public AnnotationVisitor visitAnnotation(String annotationDescriptor, boolean visible) {
+                return entry.visitAnnotation(annotationDescriptor, visible);
+            }
+
+            @Override
+            public AnnotationVisitor visitTypeAnnotation(int typeRef, TypePath typePath, String annotationDescriptor, boolean visible) {
+                return entry.visitTypeAnnotation(typeRef, typePath, annotationDescriptor, visible);
+            }
+
+            @Override
+            public void visitAnnotableParameterCount(int parameterCount, boolean visible) {
+                entry.visitAnnotableParameterCount(parameterCount, visible);
+            }
+
+            @Override
+            public AnnotationVisitor visitParameterAnnotation(int parameter, String annotationDescriptor, boolean visible) {
+                return entry.visitParameterAnnotation(parameter, annotationDescriptor, visible);
+            }
+
+            @Override
+            public void visitEnd() {
+                super.visitEnd();
+                generateEntry();
+            }
+
+            private void generateEntry() {
+                Type[] argumentTypes = Type.getArgumentTypes(descriptor);
+                Type returnType = Type.getReturnType(descriptor);
+                int chainsSlot = 1;
+                for (Type argumentType : argumentTypes) {
+                    chainsSlot += argumentType.getSize();
+                }
+                int chainSlot = chainsSlot + 1;
+                MethodVisitor mv = entry;
+                mv.visitCode();
+
+                // 对象没有注册拦截器链，或者该方法没有通知时直接调用原方法体
+                Label direct = new Label();
+                mv.visitVarInsn(Opcodes.ALOAD, 0);
+                mv.visitFieldInsn(Opcodes.GETFIELD, owner, CHAINS_FIELD, CHAINS);
+                mv.visitInsn(Opcodes.DUP);
+                mv.visitVarInsn(Opcodes.ASTORE, chainsSlot);
+                mv.visitJumpInsn(Opcodes.IFNULL, direct);
+                mv.visitVarInsn(Opcodes.ALOAD, chainsSlot);
+                pushInt(mv, index);
+                mv.visitInsn(Opcodes.AALOAD);
+                mv.visitInsn(Opcodes.DUP);
+                mv.visitVarInsn(Opcodes.ASTORE, chainSlot);
+                mv.visitJumpInsn(Opcodes.IFNULL, direct);
+
+                // 装箱参数，交给WeavingSupport执行拦截器链
+                mv.visitLdcInsn(Type.getObjectType(owner));
+                pushInt(mv, index);
+                mv.visitVarInsn(Opcodes.ALOAD, 0);
+                pushInt(mv, argumentTypes.length);
+                mv.visitTypeInsn(Opcodes.ANEWARRAY, "java/lang/Object");
+                int slot = 1;
+                for (int i = 0; i < argumentTypes.length; i++) {
+                    mv.visitInsn(Opcodes.DUP);
+                    pushInt(mv, i);
+                    mv.visitVarInsn(argumentTypes[i].getOpcode(Opcodes.ILOAD), slot);
+                    box(mv, argumentTypes[i]);
+                    mv.visitInsn(Opcodes.AASTORE);
+                    slot += argumentTypes[i].getSize();
+                }
+                mv.visitVarInsn(Opcodes.ALOAD, chainSlot);
+                mv.visitMethodInsn(Opcodes.INVOKESTATIC, SUPPORT, "invoke", INVOKE_DESCRIPTOR, false);
+                if (returnType.getSort() == Type.VOID) {
+                    mv.visitInsn(Opcodes.POP);
+                    mv.visitInsn(Opcodes.RETURN);
+                } else {
+                    unbox(mv, returnType);
+                    mv.visitInsn(returnType.getOpcode(Opcodes.IRETURN));
+                }
+
+                mv.visitLabel(direct);
+                if (version >= Opcodes.V1_6) {
+                    mv.visitFrame(Opcodes.F_FULL, argumentTypes.length + 1, frameLocals(argumentTypes), 0, new Object[0]);
+                }
+                mv.visitVarInsn(Opcodes.ALOAD, 0);
+                slot = 1;
+                for (Type argumentType : argumentTypes) {
+                    mv.visitVarInsn(argumentType.getOpcode(Opcodes.ILOAD), slot);
+                    slot += argumentType.getSize();
+                }
+                mv.visitMethodInsn(Opcodes.INVOKESPECIAL, owner, name + WOVEN_SUFFIX, descriptor, false);
+                mv.visitInsn(returnType.getOpcode(Opcodes.IRETURN));
+                mv.visitMaxs(0, 0);
+                mv.visitEnd();
+            }
+
+            private Object[] frameLocals(Type[] argumentTypes) {
+                Object[] locals = new Object[argumentTypes.length + 1];
+                locals[0] = owner;
+                for (int i = 0; i < argumentTypes.length; i++) {
+                    switch (argumentTypes[i].getSort()) {
+                        case Type.BOOLEAN:
+                        case Type.CHAR:
+                        case Type.BYTE:
+                        case Type.SHORT:
+                        case Type.INT:
+                            locals[i + 1] = Opcodes.INTEGER;
+                            break;
+                        case Type.FLOAT:
+                            locals[i + 1] = Opcodes.FLOAT;
+                            break;
+                        case Type.LONG:
+                            locals[i + 1] = Opcodes.LONG;
+                            break;
+                        case Type.DOUBLE:
+                            locals[i + 1] = Opcodes.DOUBLE;
+                            break;
+                        case Type.ARRAY:
+                            locals[i + 1] = argumentTypes[i].getDescriptor();
+                            break;
+                        default:
+                            locals[i + 1] = argumentTypes[i].getInternalName();
+                    }
+                }
+                return locals;
+            }
+        }
+    }
+
+    private static void pushInt(MethodVisitor mv, int value) {
+        if (value >= -1 && value <= 5) {
+            mv.visitInsn(Opcodes.ICONST_0 + value);
+        } else if (value <= Byte.MAX_VALUE) {
+            mv.visitIntInsn(Opcodes.BIPUSH, value);
+        } else if (value <= Short.MAX_VALUE) {
+            mv.visitIntInsn(Opcodes.SIPUSH, value);
+        } else {
+            mv.visitLdcInsn(value);
+        }
+    }
+
+    private static void box(MethodVisitor mv, Type type) {
+        Type boxed = boxedType(type);
+        if (boxed == null) return;
+        mv.visitMethodInsn(Opcodes.INVOKESTATIC, boxed.getInternalName(), "valueOf", "(" + type.getDescriptor() + ")" + boxed.getDescriptor(), false);
+    }
+
+    private static void unbox(MethodVisitor mv, Type type) {
+        Type boxed = boxedType(type);
+        if (boxed == null) {
+            if (!type.getDescriptor().equals("Ljava/lang/Object;")) {
+                mv.visitTypeInsn(Opcodes.CHECKCAST, type.getSort() == Type.ARRAY ? type.getDescriptor() : type.getInternalName());
+            }
+            return;
+        }
+        mv.visitTypeInsn(Opcodes.CHECKCAST, boxed.getInternalName());
+        mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, boxed.getInternalName(), type.getClassName() + "Value", "()" + type.getDescriptor(), false);
+    }
+
+    private static Type boxedType(Type type) {
+        switch (type.getSort()) {
+            case Type.BOOLEAN:
+                return Type.getType(Boolean.class);
+            case Type.CHAR:
+                return Type.getType(Character.class);
+            case Type.BYTE:
+                return Type.getType(Byte.class);
+            case Type.SHORT:
+                return Type.getType(Short.class);
+            case Type.INT:
+                return Type.getType(Integer.class);
+            case Type.FLOAT:
+                return Type.getType(Float.class);
+            case Type.LONG:
+                return Type.getType(Long.class);
+            case Type.DOUBLE:
+                return Type.getType(Double.class);
+            default:
+                return null;
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package asia.liuyunxuan.ioc.aspect.framework.weaving;
+
+/**
+ * 织入时自动添加到类上的标记接口。
+ * <p>
+ * 实现了该接口的Bean在字节码中直接执行通知，自动代理创建器不再为它们创建代理。
+ * 应用代码不需要也不应该直接实现该接口。
+ *
+ * @author liuyunxuan
+ * @see WeavingTransformer
+ * @since 1.0
+ */
+public interface Woven {
+}
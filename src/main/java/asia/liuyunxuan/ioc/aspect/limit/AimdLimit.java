@@ -0,0 +1,77 @@
+package asia.liuyunxuan.ioc.aspect.limit;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 加性增、乘性减（AIMD）的并发上限算法。
+ * <p>
+ * 调用耗时超过阈值或者调用失败时把上限乘以回退系数，否则在并发数达到上限一半时把上限加一。
+ * 并发数很低时不增加上限，避免空闲期间上限无限增长。
+ *
+ * @author liuyunxuan
+ * @since 1.0
+ */
+public class AimdLimit implements LimitAlgorithm {
+
+    private final int minLimit;
+
+    private final int maxLimit;
+
+    private final long latencyThresholdNanos;
+
+    private final double backoffRatio;
+
+    private volatile int limit;
+
+    /**
+     * 构造AIMD算法，回退系数为0.9
+     *
+     * @param initialLimit 初始上限
+     * @param minLimit 最小上限
+     * @param maxLimit 最大上限
+     * @param latencyThreshold 视为过载的调用耗时，单位毫秒
+     */
+    public AimdLimit(int initialLimit, int minLimit, int maxLimit, long latencyThreshold) {
+        this(initialLimit, minLimit, maxLimit, latencyThreshold, 0.9);
+    }
+
+    /**
+     * 构造AIMD算法
+     *
+     * @param initialLimit 初始上限
+     * @param minLimit 最小上限
+     * @param maxLimit 最大上限
+     * @param latencyThreshold 视为过载的调用耗时，单位毫秒
+     * @param backoffRatio 过载时上限乘以的系数，取值在0和1之间
+     */
+    public AimdLimit(int initialLimit, int minLimit, int maxLimit, long latencyThreshold, double backoffRatio) {
+        if (backoffRatio <= 0 || backoffRatio >= 1) {
+            throw new IllegalArgumentException("backoffRatio must be between 0 and 1");
+        }
+        this.limit = initialLimit;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.latencyThresholdNanos = TimeUnit.MILLISECONDS.toNanos(latencyThreshold);
+        this.backoffRatio = backoffRatio;
+    }
+
+    @Override
+    public int getLimit() {
+        return limit;
+    }
+
+    @Override
+    public synchronized void onSample(long rttNanos, int inFlight) {
+        int current = limit;
+        if (rttNanos > latencyThresholdNanos) {
+            limit = Math.max(minLimit, (int) (current * backoffRatio));
+        } else if (inFlight * 2 >= current) {
+            limit = Math.min(maxLimit, current + 1);
+        }
+    }
+
+    @Override
+    public synchronized void onDrop(long rttNanos, int inFlight) {
+        limit = Math.max(minLimit, (int) (limit * backoffRatio));
+    }
+}
@@ -0,0 +1,278 @@
+package asia.liuyunxuan.ioc.aspect.limit;
+
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 限制并发调用数的拦截器，上限由{@link LimitAlgorithm}根据观察到的耗时自适应调整。
+ * <p>
+ * 正在执行的调用数达到上限时，新的调用默认立即失败，抛出{@link LimitExceededException}；
+ * 设置了queueTimeout时最多maxQueueSize个调用排队等待空位，等待超时同样失败。
+ * 这样下游变慢时上限随之降低，多余的请求尽早失败，而不是在调用方无限堆积。
+ * <p>
+ * 每个通知器使用自己的拦截器实例，即为一组方法单独限流。算法在第一次调用时按属性创建：
+ * <ul>
+ *     <li>algorithm：aimd、vegas或gradient，默认gradient，也可以通过{@link #setLimitAlgorithm}直接指定</li>
+ *     <li>initialLimit、minLimit、maxLimit：初始、最小和最大上限，默认20、1和200</li>
+ *     <li>latencyThreshold：aimd算法视为过载的耗时，单位毫秒，默认100</li>
+ *     <li>queueTimeout：排队等待的最长时间，单位毫秒，默认0即不排队</li>
+ *     <li>maxQueueSize：最多排队的调用数，默认100</li>
+ * </ul>
+ * 目标方法抛出异常（包括下游超时）是最直接的过载信号，这类调用作为失败样本交给{@link LimitAlgorithm#onDrop}，
+ * aimd和vegas算法据此降低上限，gradient算法只按耗时调整。
+ * 上限升高时同时唤醒排队的调用，而不是等到下一次调用结束。
+ *
+ * @author liuyunxuan
+ * @since 1.0
+ */
+public class ConcurrencyLimitInterceptor implements MethodInterceptor {
+
+    private String algorithm = "gradient";
+
+    private int initialLimit = 20;
+
+    private int minLimit = 1;
+
+    private int maxLimit = 200;
+
+    private long latencyThreshold = 100;
+
+    private long queueTimeout;
+
+    private int maxQueueSize = 100;
+
+    private volatile LimitAlgorithm limitAlgorithm;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    /**
+     * 正在排队的调用数，只在持有锁时修改
+     */
+    private volatile int waiting;
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private final Condition released = lock.newCondition();
+
+    private final LongAdder successCount = new LongAdder();
+
+    private final LongAdder failureCount = new LongAdder();
+
+    private final LongAdder rejectedCount = new LongAdder();
+
+    @Override
+    public Object invoke(MethodInvocation invocation) throws Throwable {
+        LimitAlgorithm limitAlgorithm = getLimitAlgorithm();
+        int concurrency = tryAcquire(limitAlgorithm);
+        if (concurrency < 0) {
+            concurrency = acquireQueued(limitAlgorithm);
+            if (concurrency < 0) {
+                rejectedCount.increment();
+                throw new LimitExceededException("Concurrency limit " + limitAlgorithm.getLimit() + " exceeded for " + invocation.getMethod());
+            }
+        }
+        long start = System.nanoTime();
+        boolean success = false;
+        try {
+            Object result = invocation.proceed();
+            success = true;
+            return result;
+        } finally {
+            int limit = limitAlgorithm.getLimit();
+            if (success) {
+                limitAlgorithm.onSample(System.nanoTime() - start, concurrency);
+                successCount.increment();
+            } else {
+                limitAlgorithm.onDrop(System.nanoTime() - start, concurrency);
+                failureCount.increment();
+            }
+            release(limitAlgorithm.getLimit() > limit);
+        }
+    }
+
+    /**
+     * 并发数未达到上限时占用一个位置
+     *
+     * @return 占用后的并发数，达到上限时返回-1
+     */
+    private int tryAcquire(LimitAlgorithm limitAlgorithm) {
+        for (;;) {
+            int current = inFlight.get();
+            if (current >= limitAlgorithm.getLimit()) {
+                return -1;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return current + 1;
+            }
+        }
+    }
+
+    private int acquireQueued(LimitAlgorithm limitAlgorithm) throws InterruptedException {
+        if (queueTimeout <= 0) return -1;
+        lock.lock();
+        try {
+            if (waiting >= maxQueueSize) return -1;
+            waiting++;
+            try {
+                long nanos = TimeUnit.MILLISECONDS.toNanos(queueTimeout);
+                for (;;) {
+                    int concurrency = tryAcquire(limitAlgorithm);
+                    if (concurrency > 0) return concurrency;
+                    if (nanos <= 0) return -1;
+                    nanos = released.awaitNanos(nanos);
+                }
+            } finally {
+                waiting--;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 释放一个位置并唤醒排队的调用
+     *
+     * @param limitRaised 上限是否刚刚升高，升高时空位不止一个，唤醒所有排队的调用
+     */
+    private void release(boolean limitRaised) {
+        inFlight.decrementAndGet();
+        // 排队的线程在持有锁时检查空位，释放后加锁通知不会丢失唤醒
+        if (waiting > 0) {
+            lock.lock();
+            try {
+                if (limitRaised) {
+                    released.signalAll();
+                } else {
+                    released.signal();
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * 获取上限算法，第一次调用时按属性创建
+     *
+     * @return 上限算法
+     */
+    public LimitAlgorithm getLimitAlgorithm() {
+        LimitAlgorithm limitAlgorithm = this.limitAlgorithm;
+        if (limitAlgorithm == null) {
+            synchronized (this) {
+                limitAlgorithm = this.limitAlgorithm;
+                if (limitAlgorithm == null) {
+                    limitAlgorithm = createLimitAlgorithm();
+                    this.limitAlgorithm = limitAlgorithm;
+                }
+            }
+        }
+        return limitAlgorithm;
+    }
+
+    private LimitAlgorithm createLimitAlgorithm() {
+        String name = algorithm == null ? "gradient" : algorithm.toLowerCase();
+        switch (name) {
+            case "aimd":
+                return new AimdLimit(initialLimit, minLimit, maxLimit, latencyThreshold);
+            case "vegas":
+                return new VegasLimit(initialLimit, minLimit, maxLimit);
+            case "gradient":
+                return new GradientLimit(initialLimit, minLimit, maxLimit);
+            default:
+                throw new IllegalArgumentException("Unknown limit algorithm [" + algorithm + "]");
+        }
+    }
+
+    /**
+     * 获取当前的并发上限
+     *
+     * @return 并发上限
+     */
+    public int getLimit() {
+        return getLimitAlgorithm().getLimit();
+    }
+
+    /**
+     * 获取正在执行的调用数
+     *
+     * @return 正在执行的调用数
+     */
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    /**
+     * 获取正在排队的调用数
+     *
+     * @return 正在排队的调用数
+     */
+    public int getQueued() {
+        return waiting;
+    }
+
+    /**
+     * 获取正常返回的调用数
+     *
+     * @return 成功调用数
+     */
+    public long getSuccessCount() {
+        return successCount.sum();
+    }
+
+    /**
+     * 获取目标方法抛出异常的调用数
+     *
+     * @return 失败调用数
+     */
+    public long getFailureCount() {
+        return failureCount.sum();
+    }
+
+    /**
+     * 获取因为达到上限被拒绝的调用数
+     *
+     * @return 拒绝调用数
+     */
+    public long getRejectedCount() {
+        return rejectedCount.sum();
+    }
+
+    public synchronized void setLimitAlgorithm(LimitAlgorithm limitAlgorithm) {
+        this.limitAlgorithm = limitAlgorithm;
+    }
+
+    public void setAlgorithm(String algorithm) {
+        this.algorithm = algorithm;
+    }
+
+    public void setInitialLimit(int initialLimit) {
+        this.initialLimit = initialLimit;
+    }
+
+    public void setMinLimit(int minLimit) {
+        this.minLimit = minLimit;
+    }
+
+    public void setMaxLimit(int maxLimit) {
+        this.maxLimit = maxLimit;
+    }
+
+    public void setLatencyThreshold(long latencyThreshold) {
+        this.latencyThreshold = latencyThreshold;
+    }
+
+    public void setQueueTimeout(long queueTimeout) {
+        this.queueTimeout = queueTimeout;
+    }
+
+    public void setMaxQueueSize(int maxQueueSize) {
+        this.maxQueueSize = maxQueueSize;
+    }
+}
@@ -0,0 +1,117 @@
+package asia.liuyunxuan.ioc.aspect.limit;
+
+/**
+ * 基于耗时梯度的并发上限算法。
+ * <p>
+ * 梯度为{@code tolerance * 无负载耗时 / 近期耗时}，限制在0.5到1之间，耗时接近无负载耗时时梯度为1。
+ * 近期耗时是样本耗时的指数移动平均，下游排队不公平时单个样本的耗时可能很短，不能说明是否过载。
+ * 新的上限为{@code limit * 梯度 + sqrt(limit)}，其中sqrt(limit)是允许的排队长度，
+ * 再按smoothing系数和当前上限做指数平滑，避免上限随单个样本剧烈波动。
+ * 和{@link VegasLimit}一样，无负载耗时取观察到的最小耗时，每经过probeInterval个样本降低上限后重新测量。
+ *
+ * @author liuyunxuan
+ * @since 1.0
+ */
+public class GradientLimit implements LimitAlgorithm {
+
+    private final int minLimit;
+
+    private final int maxLimit;
+
+    private final double tolerance;
+
+    private final double smoothing;
+
+    private final int probeInterval;
+
+    /**
+     * 平滑后的上限，{@link #getLimit()}取整返回
+     */
+    private double estimatedLimit;
+
+    private volatile int limit;
+
+    private long rttNoLoad;
+
+    /**
+     * 近期耗时的指数移动平均，每个样本的权重为0.1
+     */
+    private double recentRtt;
+
+    private int samplesSinceProbe;
+
+    /**
+     * 是否正在重新测量无负载耗时
+     */
+    private boolean probing;
+
+    /**
+     * 构造梯度算法，允许耗时上升到无负载耗时的2倍，平滑系数为0.2，每1000个样本重新测量无负载耗时
+     *
+     * @param initialLimit 初始上限
+     * @param minLimit 最小上限
+     * @param maxLimit 最大上限
+     */
+    public GradientLimit(int initialLimit, int minLimit, int maxLimit) {
+        this(initialLimit, minLimit, maxLimit, 2.0, 0.2, 1000);
+    }
+
+    /**
+     * 构造梯度算法
+     *
+     * @param initialLimit 初始上限
+     * @param minLimit 最小上限
+     * @param maxLimit 最大上限
+     * @param tolerance 耗时相对无负载耗时的容忍倍数，不小于1
+     * @param smoothing 平滑系数，取值在0和1之间，越大上限变化越快
+     * @param probeInterval 重新测量无负载耗时的样本间隔
+     */
+    public GradientLimit(int initialLimit, int minLimit, int maxLimit, double tolerance, double smoothing, int probeInterval) {
+        if (tolerance < 1) {
+            throw new IllegalArgumentException("tolerance must not be less than 1");
+        }
+        if (smoothing <= 0 || smoothing > 1) {
+            throw new IllegalArgumentException("smoothing must be in (0, 1]");
+        }
+        this.estimatedLimit = initialLimit;
+        this.limit = initialLimit;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.tolerance = tolerance;
+        this.smoothing = smoothing;
+        this.probeInterval = probeInterval;
+    }
+
+    @Override
+    public int getLimit() {
+        return limit;
+    }
+
+    @Override
+    public synchronized void onSample(long rttNanos, int inFlight) {
+        if (rttNanos <= 0) return;
+        if (++samplesSinceProbe >= probeInterval) {
+            // 降低上限，等并发数降下来后再测量无负载耗时
+            samplesSinceProbe = 0;
+            estimatedLimit = Math.max(minLimit, Math.sqrt(estimatedLimit));
+            limit = (int) estimatedLimit;
+            probing = true;
+        }
+        if (probing) {
+            if (inFlight > limit) return;
+            probing = false;
+            rttNoLoad = rttNanos;
+            return;
+        }
+        if (rttNoLoad == 0 || rttNanos < rttNoLoad) {
+            rttNoLoad = rttNanos;
+        }
+        recentRtt = recentRtt == 0 ? rttNanos : recentRtt * 0.9 + rttNanos * 0.1;
+        // 并发数远低于上限时耗时不能说明上限是否合适
+        if (inFlight * 2 < estimatedLimit) return;
+        double gradient = Math.max(0.5, Math.min(1.0, tolerance * rttNoLoad / recentRtt));
+        double newLimit = estimatedLimit * gradient + Math.sqrt(estimatedLimit);
+        estimatedLimit = Math.max(minLimit, Math.min(maxLimit, estimatedLimit * (1 - smoothing) + newLimit * smoothing));
+        limit = (int) estimatedLimit;
+    }
+}
@@ -0,0 +1,38 @@
+package asia.liuyunxuan.ioc.aspect.limit;
+
+/**
+ * 并发上限的调整算法，根据每次调用的耗时和当时的并发数调整允许的最大并发数。
+ * <p>
+ * {@link ConcurrencyLimitInterceptor}在调用正常返回后提交样本，抛出异常后提交失败样本，多个线程会同时调用，实现类需要保证线程安全。
+ * 内置的实现有{@link AimdLimit}、{@link VegasLimit}和{@link GradientLimit}。
+ *
+ * @author liuyunxuan
+ * @since 1.0
+ */
+public interface LimitAlgorithm {
+
+    /**
+     * 获取当前允许的最大并发数
+     *
+     * @return 并发上限
+     */
+    int getLimit();
+
+    /**
+     * 提交一次调用的样本
+     *
+     * @param rttNanos 调用耗时，单位纳秒
+     * @param inFlight 调用开始时正在执行的调用数，包括本次调用
+     */
+    void onSample(long rttNanos, int inFlight);
+
+    /**
+     * 提交一次失败调用的样本，目标方法抛出异常（包括超时）通常意味着下游过载。
+     * 默认不做处理，只按耗时调整的算法可以忽略失败。
+     *
+     * @param rttNanos 调用耗时，单位纳秒
+     * @param inFlight 调用开始时正在执行的调用数，包括本次调用
+     */
+    default void onDrop(long rttNanos, int inFlight) {
+    }
+}
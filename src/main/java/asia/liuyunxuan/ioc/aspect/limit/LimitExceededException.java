@@ -0,0 +1,14 @@
+package asia.liuyunxuan.ioc.aspect.limit;
+
+/**
+ * 调用因为并发数达到上限被拒绝时抛出。
+ *
+ * @author liuyunxuan
+ * @since 1.0
+ */
+public class LimitExceededException extends IllegalStateException {
+
+    public LimitExceededException(String message) {
+        super(message);
+    }
+}
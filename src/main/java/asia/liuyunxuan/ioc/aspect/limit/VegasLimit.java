@@ -0,0 +1,107 @@
+package asia.liuyunxuan.ioc.aspect.limit;
+
+/**
+ * 参考TCP Vegas的并发上限算法，根据估算的排队长度调整上限。
+ * <p>
+ * 以观察到的最小耗时作为无负载耗时，估算排队长度为{@code limit * (1 - 无负载耗时 / 本次耗时)}：
+ * 排队长度小于alpha（3 * log10(limit)）时增加上限，大于beta（6 * log10(limit)）时减少上限，
+ * 每次调整的幅度为log10(limit)，至少为1。每经过probeInterval个样本把上限降为sqrt(limit)，
+ * 待并发数降下来后重新测量无负载耗时，以适应下游性能的变化。
+ *
+ * @author liuyunxuan
+ * @since 1.0
+ */
+public class VegasLimit implements LimitAlgorithm {
+
+    private final int minLimit;
+
+    private final int maxLimit;
+
+    private final int probeInterval;
+
+    private volatile int limit;
+
+    /**
+     * 观察到的最小耗时，单位纳秒，为0表示尚未测量
+     */
+    private long rttNoLoad;
+
+    private int samplesSinceProbe;
+
+    /**
+     * 是否正在重新测量无负载耗时
+     */
+    private boolean probing;
+
+    /**
+     * 构造Vegas算法，每1000个样本重新测量无负载耗时
+     *
+     * @param initialLimit 初始上限
+     * @param minLimit 最小上限
+     * @param maxLimit 最大上限
+     */
+    public VegasLimit(int initialLimit, int minLimit, int maxLimit) {
+        this(initialLimit, minLimit, maxLimit, 1000);
+    }
+
+    /**
+     * 构造Vegas算法
+     *
+     * @param initialLimit 初始上限
+     * @param minLimit 最小上限
+     * @param maxLimit 最大上限
+     * @param probeInterval 重新测量无负载耗时的样本间隔
+     */
+    public VegasLimit(int initialLimit, int minLimit, int maxLimit, int probeInterval) {
+        this.limit = initialLimit;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.probeInterval = probeInterval;
+    }
+
+    @Override
+    public int getLimit() {
+        return limit;
+    }
+
+    @Override
+    public synchronized void onSample(long rttNanos, int inFlight) {
+        if (rttNanos <= 0) return;
+        if (++samplesSinceProbe >= probeInterval) {
+            // 降低上限，等并发数降下来后再测量无负载耗时
+            samplesSinceProbe = 0;
+            limit = Math.max(minLimit, (int) Math.sqrt(limit));
+            probing = true;
+        }
+        if (probing) {
+            if (inFlight > limit) return;
+            probing = false;
+            rttNoLoad = rttNanos;
+            return;
+        }
+        if (rttNoLoad == 0 || rttNanos < rttNoLoad) {
+            rttNoLoad = rttNanos;
+            return;
+        }
+        int current = limit;
+        double queueSize = current * (1 - (double) rttNoLoad / rttNanos);
+        double log = Math.max(1, Math.log10(current));
+        if (queueSize < 3 * log) {
+            // 并发数远低于上限时不增加上限
+            if (inFlight * 2 >= current) {
+                limit = Math.min(maxLimit, (int) (current + log));
+            }
+        } else if (queueSize > 6 * log) {
+            limit = Math.max(minLimit, (int) (current - log));
+        }
+    }
+
+    /**
+     * 调用失败时按排队过多的情况处理，上限减去log10(上限)
+     */
+    @Override
+    public synchronized void onDrop(long rttNanos, int inFlight) {
+        int current = limit;
+        limit = Math.max(minLimit, (int) (current - Math.max(1, Math.log10(current))));
+    }
+}
@@ -0,0 +1,136 @@
+package asia.liuyunxuan.ioc.aspect.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 无锁的耗时直方图，按对数线性分桶记录纳秒耗时。
+ * <p>
+ * 小于32纳秒的值每个值一个桶；更大的值按2的幂分段，每段再等分为16个桶，
+ * 桶宽不超过段内数值的1/16，因此任意百分位的相对误差在6.25%以内。
+ * 桶数固定为624个，覆盖约73分钟以内的耗时，更大的值记在最后一个桶中。
+ * <p>
+ * 记录只是一次{@link AtomicLongArray#incrementAndGet}，不分配对象，可以在调用路径上使用。
+ * 读取百分位时遍历所有桶，结果是并发记录过程中的近似值。
+ *
+ * @author liuyunxuan
+ * @since 1.0
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 5;
+
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+
+    private static final int SUB_BUCKET_HALF = SUB_BUCKET_COUNT >> 1;
+
+    private static final long MAX_VALUE = (1L << 42) - 1;
+
+    static final int BUCKET_COUNT = bucketIndex(MAX_VALUE) + 1;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+
+    /**
+     * 记录一次耗时
+     *
+     * @param nanos 耗时，单位纳秒，负数按0记录
+     */
+    public void record(long nanos) {
+        buckets.incrementAndGet(bucketIndex(nanos));
+    }
+
+    /**
+     * 获取记录的次数
+     *
+     * @return 记录的次数
+     */
+    public long getCount() {
+        long count = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            count += buckets.get(i);
+        }
+        return count;
+    }
+
+    /**
+     * 获取指定百分位的耗时
+     *
+     * @param percentile 百分位，取值在0到100之间，例如99.9
+     * @return 该百分位所在桶的上界，单位纳秒，没有记录时返回0
+     */
+    public long getValueAtPercentile(double percentile) {
+        long[] counts = new long[BUCKET_COUNT];
+        long total = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            counts[i] = buckets.get(i);
+            total += counts[i];
+        }
+        return valueAtPercentile(counts, total, percentile);
+    }
+
+    /**
+     * 把各个桶的记录数累加到数组中，用于合并多个直方图
+     *
+     * @param counts 长度为{@link #BUCKET_COUNT}的数组
+     * @return 本直方图的记录数
+     */
+    long addCountsTo(long[] counts) {
+        long total = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            long count = buckets.get(i);
+            counts[i] += count;
+            total += count;
+        }
+        return total;
+    }
+
+    /**
+     * 清空所有记录
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            buckets.set(i, 0);
+        }
+    }
+
+    static long valueAtPercentile(long[] counts, long total, double percentile) {
+        if (total == 0) return 0;
+        double bounded = Math.min(100, Math.max(0, percentile));
+        long rank = Math.max(1, (long) Math.ceil(bounded / 100 * total));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return highestValueOf(i);
+            }
+        }
+        return highestValueOf(counts.length - 1);
+    }
+
+    static int bucketIndex(long value) {
+        long bounded = Math.min(MAX_VALUE, Math.max(0, value));
+        if (bounded < SUB_BUCKET_COUNT) {
+            return (int) bounded;
+        }
+        int shift = 64 - Long.numberOfLeadingZeros(bounded) - SUB_BUCKET_BITS;
+        int subBucket = (int) (bounded >>> shift);
+        return SUB_BUCKET_COUNT + (shift - 1) * SUB_BUCKET_HALF + subBucket - SUB_BUCKET_HALF;
+    }
+
+    static long lowestValueOf(int index) {
+        if (index < SUB_BUCKET_COUNT) {
+            return index;
+        }
+        int offset = index - SUB_BUCKET_COUNT;
+        int shift = offset / SUB_BUCKET_HALF + 1;
+        long subBucket = offset % SUB_BUCKET_HALF + SUB_BUCKET_HALF;
+        return subBucket << shift;
+    }
+
+    static long highestValueOf(int index) {
+        if (index < SUB_BUCKET_COUNT) {
+            return index;
+        }
+        int shift = (index - SUB_BUCKET_COUNT) / SUB_BUCKET_HALF + 1;
+        return lowestValueOf(index) + (1L << shift) - 1;
+    }
+}
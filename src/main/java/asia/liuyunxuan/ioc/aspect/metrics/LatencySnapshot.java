@@ -0,0 +1,87 @@
+package asia.liuyunxuan.ioc.aspect.metrics;
+
+/**
+ * 某一时刻方法耗时统计的只读快照，耗时单位均为纳秒。
+ *
+ * @author liuyunxuan
+ * @see MethodMetrics#snapshot()
+ * @since 1.0
+ */
+public final class LatencySnapshot {
+
+    private final String name;
+
+    private final long[] counts;
+
+    private final long count;
+
+    private final long errorCount;
+
+    private final long totalNanos;
+
+    private final long maxNanos;
+
+    LatencySnapshot(String name, long[] counts, long count, long errorCount, long totalNanos, long maxNanos) {
+        this.name = name;
+        this.counts = counts;
+        this.count = count;
+        this.errorCount = errorCount;
+        this.totalNanos = totalNanos;
+        this.maxNanos = maxNanos;
+    }
+
+    /**
+     * 获取指定百分位的耗时
+     *
+     * @param percentile 百分位，取值在0到100之间
+     * @return 耗时，相对误差在6.25%以内，没有记录时返回0
+     */
+    public long getValueAtPercentile(double percentile) {
+        return Math.min(maxNanos, LatencyHistogram.valueAtPercentile(counts, count, percentile));
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public long getErrorCount() {
+        return errorCount;
+    }
+
+    public long getMeanNanos() {
+        return count == 0 ? 0 : totalNanos / count;
+    }
+
+    public long getMaxNanos() {
+        return maxNanos;
+    }
+
+    public long getP50() {
+        return getValueAtPercentile(50);
+    }
+
+    public long getP99() {
+        return getValueAtPercentile(99);
+    }
+
+    public long getP999() {
+        return getValueAtPercentile(99.9);
+    }
+
+    @Override
+    public String toString() {
+        return name + " count=" + count + " errors=" + errorCount
+                + " mean=" + format(getMeanNanos()) + " p50=" + format(getP50()) + " p99=" + format(getP99())
+                + " p999=" + format(getP999()) + " max=" + format(maxNanos);
+    }
+
+    private static String format(long nanos) {
+        if (nanos < 1_000) return nanos + "ns";
+        if (nanos < 1_000_000) return String.format("%.1fus", nanos / 1e3);
+        return String.format("%.1fms", nanos / 1e6);
+    }
+}
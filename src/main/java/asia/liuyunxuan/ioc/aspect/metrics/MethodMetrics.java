@@ -0,0 +1,94 @@
+package asia.liuyunxuan.ioc.aspect.metrics;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 一个方法的耗时和异常统计。
+ * <p>
+ * 耗时记录在多个{@link LatencyHistogram}分段中，调用线程按线程id选择分段，
+ * 多个线程同时调用同一个方法时很少更新同一个计数，避免直方图本身成为热点方法的瓶颈。
+ * 读取时合并所有分段得到{@link LatencySnapshot}。记录过程不分配对象。
+ *
+ * @author liuyunxuan
+ * @since 1.0
+ */
+public class MethodMetrics {
+
+    private final String name;
+
+    private final LatencyHistogram[] stripes;
+
+    private final int mask;
+
+    private final LongAdder errorCount = new LongAdder();
+
+    private final LongAdder totalNanos = new LongAdder();
+
+    private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+
+    /**
+     * 创建方法统计
+     *
+     * @param name 方法名称，用于输出
+     * @param stripes 直方图的分段数，会向上取整为2的幂
+     */
+    public MethodMetrics(String name, int stripes) {
+        int size = 1;
+        while (size < stripes) {
+            size <<= 1;
+        }
+        this.name = name;
+        this.stripes = new LatencyHistogram[size];
+        for (int i = 0; i < size; i++) {
+            this.stripes[i] = new LatencyHistogram();
+        }
+        this.mask = size - 1;
+    }
+
+    /**
+     * 记录一次调用
+     *
+     * @param nanos 调用耗时，单位纳秒
+     * @param error 调用是否抛出了异常
+     */
+    @SuppressWarnings("deprecation")
+    public void record(long nanos, boolean error) {
+        stripes[(int) Thread.currentThread().getId() & mask].record(nanos);
+        totalNanos.add(nanos);
+        maxNanos.accumulate(nanos);
+        if (error) {
+            errorCount.increment();
+        }
+    }
+
+    /**
+     * 合并所有分段，生成当前统计的快照
+     *
+     * @return 统计快照
+     */
+    public LatencySnapshot snapshot() {
+        long[] counts = new long[LatencyHistogram.BUCKET_COUNT];
+        long count = 0;
+        for (LatencyHistogram stripe : stripes) {
+            count += stripe.addCountsTo(counts);
+        }
+        return new LatencySnapshot(name, counts, count, errorCount.sum(), totalNanos.sum(), maxNanos.get());
+    }
+
+    /**
+     * 清空统计，清空过程中记录的调用可能部分丢失
+     */
+    public void reset() {
+        for (LatencyHistogram stripe : stripes) {
+            stripe.reset();
+        }
+        errorCount.reset();
+        totalNanos.reset();
+        maxNanos.reset();
+    }
+
+    public String getName() {
+        return name;
+    }
+}
@@ -0,0 +1,113 @@
+package asia.liuyunxuan.ioc.aspect.metrics;
+
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+
+import java.lang.reflect.Method;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 记录方法耗时和异常次数的拦截器，每个被调用的方法一个{@link MethodMetrics}。
+ * <p>
+ * 调用路径上只有一次方法统计的查找和一次直方图计数，不分配对象，可以在生产环境中长期开启。
+ * 配合自动代理使用时，用切点选择需要统计的Bean：
+ * <pre>
+ * &lt;bean id="metricsInterceptor" class="asia.liuyunxuan.ioc.aspect.metrics.MetricsInterceptor"/&gt;
+ * &lt;bean class="asia.liuyunxuan.ioc.aspect.aspectj.AspectJExpressionPointcutAspectAdvisor"&gt;
+ *     &lt;property name="expression" value="execution(* com.example.service..*(..))"/&gt;
+ *     &lt;property name="advice" ref="metricsInterceptor"/&gt;
+ *     &lt;property name="order" value="0"/&gt;
+ * &lt;/bean&gt;
+ * </pre>
+ * order较小时统计的耗时包含后续所有拦截器的耗时。
+ * 通过{@link #getSnapshots()}或{@link #report()}随时导出统计结果。
+ * <p>
+ * stripes属性设置每个方法的直方图分段数，默认为不小于处理器数量的2的幂，最多16。
+ *
+ * @author liuyunxuan
+ * @since 1.0
+ */
+public class MetricsInterceptor implements MethodInterceptor {
+
+    private int stripes = Math.min(16, Runtime.getRuntime().availableProcessors());
+
+    /**
+     * 每个方法的统计，key为被调用的方法，JDK代理时为接口方法
+     */
+    private final Map<Method, MethodMetrics> metrics = new ConcurrentHashMap<>();
+
+    @Override
+    public Object invoke(MethodInvocation invocation) throws Throwable {
+        Method method = invocation.getMethod();
+        MethodMetrics methodMetrics = metrics.get(method);
+        if (methodMetrics == null) {
+            methodMetrics = metrics.computeIfAbsent(method, this::createMetrics);
+        }
+        long start = System.nanoTime();
+        boolean error = true;
+        try {
+            Object result = invocation.proceed();
+            error = false;
+            return result;
+        } finally {
+            methodMetrics.record(System.nanoTime() - start, error);
+        }
+    }
+
+    private MethodMetrics createMetrics(Method method) {
+        return new MethodMetrics(method.getDeclaringClass().getSimpleName() + "." + method.getName(), stripes);
+    }
+
+    /**
+     * 获取方法的统计快照
+     *
+     * @param method 被调用的方法
+     * @return 统计快照，方法没有被调用过时返回null
+     */
+    public LatencySnapshot getSnapshot(Method method) {
+        MethodMetrics methodMetrics = metrics.get(method);
+        return methodMetrics == null ? null : methodMetrics.snapshot();
+    }
+
+    /**
+     * 获取所有方法的统计快照，按方法名称排序
+     *
+     * @return key为方法的统计快照
+     */
+    public Map<Method, LatencySnapshot> getSnapshots() {
+        Map<Method, LatencySnapshot> snapshots = new LinkedHashMap<>();
+        metrics.entrySet().stream()
+                .sorted(Comparator.comparing(entry -> entry.getValue().getName()))
+                .forEach(entry -> snapshots.put(entry.getKey(), entry.getValue().snapshot()));
+        return snapshots;
+    }
+
+    /**
+     * 把所有方法的统计输出为文本，每个方法一行
+     *
+     * @return 统计结果
+     */
+    public String report() {
+        StringBuilder report = new StringBuilder();
+        for (LatencySnapshot snapshot : getSnapshots().values()) {
+            report.append(snapshot).append(System.lineSeparator());
+        }
+        return report.toString();
+    }
+
+    /**
+     * 清空所有方法的统计
+     */
+    public void reset() {
+        for (MethodMetrics methodMetrics : metrics.values()) {
+            methodMetrics.reset();
+        }
+    }
+
+    public void setStripes(int stripes) {
+        this.stripes = stripes;
+    }
+}
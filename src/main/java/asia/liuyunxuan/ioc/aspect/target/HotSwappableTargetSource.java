@@ -0,0 +1,62 @@
+package asia.liuyunxuan.ioc.aspect.target;
+
+import asia.liuyunxuan.ioc.aspect.TargetSource;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 可热替换的目标源，可以在不重新创建代理的情况下原子地替换目标对象。
+ * <p>
+ * 替换之后开始的调用使用新的目标对象，替换时正在执行的调用仍然使用原来的目标对象。
+ * 新的目标对象必须是创建目标源时目标对象类型的实例，以保证已经生成的代理类仍然可以调用它。
+ *
+ * @author liuyunxuan
+ * @since 1.0
+ */
+public class HotSwappableTargetSource extends TargetSource {
+
+    private final Class<?> targetType;
+
+    private final AtomicReference<Object> target;
+
+    /**
+     * 构造一个可热替换的目标源
+     *
+     * @param initialTarget 初始的目标对象
+     */
+    public HotSwappableTargetSource(Object initialTarget) {
+        if (initialTarget == null) {
+            throw new IllegalArgumentException("Target object must not be null");
+        }
+        this.targetType = initialTarget.getClass();
+        this.target = new AtomicReference<>(initialTarget);
+    }
+
+    @Override
+    public Class<?> getTargetType() {
+        return targetType;
+    }
+
+    @Override
+    public boolean isStatic() {
+        return false;
+    }
+
+    @Override
+    public Object getTarget() {
+        return target.get();
+    }
+
+    /**
+     * 替换目标对象。
+     *
+     * @param newTarget 新的目标对象
+     * @return 被替换的目标对象
+     */
+    public Object swap(Object newTarget) {
+        if (!targetType.isInstance(newTarget)) {
+            throw new IllegalArgumentException("Target object must be an instance of [" + targetType.getName() + "]");
+        }
+        return target.getAndSet(newTarget);
+    }
+}
@@ -0,0 +1,68 @@
+package asia.liuyunxuan.ioc.aspect.target;
+
+import asia.liuyunxuan.ioc.aspect.TargetSource;
+import asia.liuyunxuan.ioc.component.container.ObjectFactory;
+
+/**
+ * 延迟创建的目标源，第一次调用代理方法时才创建目标对象。
+ * <p>
+ * 创建代理只需要目标对象的类型，构造开销大的目标对象在真正使用之前不会创建。
+ * 目标对象只创建一次，之后所有调用都使用同一个目标对象。
+ *
+ * @param <T> 目标对象类型
+ * @author liuyunxuan
+ * @since 1.0
+ */
+public class LazyInitTargetSource<T> extends TargetSource {
+
+    private final Class<T> targetType;
+
+    private final ObjectFactory<? extends T> targetFactory;
+
+    private volatile T target;
+
+    /**
+     * 构造一个延迟创建的目标源
+     *
+     * @param targetType 目标对象类型
+     * @param targetFactory 创建目标对象的工厂
+     */
+    public LazyInitTargetSource(Class<T> targetType, ObjectFactory<? extends T> targetFactory) {
+        this.targetType = targetType;
+        this.targetFactory = targetFactory;
+    }
+
+    @Override
+    public Class<?> getTargetType() {
+        return targetType;
+    }
+
+    /**
+     * 获取目标对象，第一次调用时创建。
+     *
+     * @return 目标对象
+     */
+    @Override
+    public Object getTarget() {
+        T result = target;
+        if (result == null) {
+            synchronized (this) {
+                result = target;
+                if (result == null) {
+                    result = targetFactory.getObject();
+                    target = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 判断目标对象是否已经创建
+     *
+     * @return 如果已经创建返回true
+     */
+    public boolean isInitialized() {
+        return target != null;
+    }
+}
@@ -0,0 +1,166 @@
+package asia.liuyunxuan.ioc.aspect.target;
+
+import asia.liuyunxuan.ioc.aspect.TargetSource;
+import asia.liuyunxuan.ioc.component.container.ObjectFactory;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 池化的目标源，适用于非线程安全的目标对象。
+ * <p>
+ * 每次调用从有界的对象池中借出一个目标对象，调用结束后归还，同一时刻一个目标对象只被一个调用使用。
+ * 池中没有空闲对象且未达到上限时通过{@link ObjectFactory}创建新的目标对象，
+ * 达到上限时等待其它调用归还，超过等待时间抛出{@link IllegalStateException}。
+ *
+ * @param <T> 目标对象类型
+ * @author liuyunxuan
+ * @since 1.0
+ */
+public class PooledTargetSource<T> extends TargetSource {
+
+    private final Class<T> targetType;
+
+    private final ObjectFactory<? extends T> targetFactory;
+
+    private final int maxSize;
+
+    /**
+     * 借出目标对象的最长等待时间，单位毫秒
+     */
+    private final long maxWait;
+
+    /**
+     * 控制同时借出的目标对象数量
+     */
+    private final Semaphore permits;
+
+    /**
+     * 空闲的目标对象
+     */
+    private final Queue<T> idleTargets = new ConcurrentLinkedQueue<>();
+
+    /**
+     * 已创建的目标对象数量
+     */
+    private final AtomicInteger createdCount = new AtomicInteger();
+
+    /**
+     * 构造一个池化的目标源，借出目标对象时一直等待
+     *
+     * @param targetType 目标对象类型
+     * @param targetFactory 创建目标对象的工厂
+     * @param maxSize 池中目标对象的最大数量
+     */
+    public PooledTargetSource(Class<T> targetType, ObjectFactory<? extends T> targetFactory, int maxSize) {
+        this(targetType, targetFactory, maxSize, Long.MAX_VALUE);
+    }
+
+    /**
+     * 构造一个池化的目标源
+     *
+     * @param targetType 目标对象类型
+     * @param targetFactory 创建目标对象的工厂
+     * @param maxSize 池中目标对象的最大数量
+     * @param maxWait 借出目标对象的最长等待时间，单位毫秒
+     */
+    public PooledTargetSource(Class<T> targetType, ObjectFactory<? extends T> targetFactory, int maxSize, long maxWait) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("maxSize must be positive");
+        }
+        this.targetType = targetType;
+        this.targetFactory = targetFactory;
+        this.maxSize = maxSize;
+        this.maxWait = maxWait;
+        this.permits = new Semaphore(maxSize, true);
+    }
+
+    @Override
+    public Class<?> getTargetType() {
+        return targetType;
+    }
+
+    @Override
+    public boolean isStatic() {
+        return false;
+    }
+
+    /**
+     * 从池中借出一个目标对象，没有空闲对象时创建新的目标对象或者等待归还。
+     *
+     * @return 本次调用独占的目标对象
+     */
+    @Override
+    public Object getTarget() {
+        try {
+            if (!permits.tryAcquire(maxWait, TimeUnit.MILLISECONDS)) {
+                throw new IllegalStateException("No pooled target of type [" + targetType.getName() + "] available within " + maxWait + "ms");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for pooled target of type [" + targetType.getName() + "]", e);
+        }
+        T target = idleTargets.poll();
+        if (target != null) {
+            return target;
+        }
+        try {
+            target = targetFactory.getObject();
+            createdCount.incrementAndGet();
+            return target;
+        } catch (RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * 把目标对象归还到池中。
+     *
+     * @param target 本次调用使用的目标对象
+     */
+    @Override
+    public void releaseTarget(Object target) {
+        idleTargets.offer(targetType.cast(target));
+        permits.release();
+    }
+
+    /**
+     * 获取池中目标对象的最大数量
+     *
+     * @return 最大数量
+     */
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * 获取当前借出的目标对象数量
+     *
+     * @return 借出数量
+     */
+    public int getActiveCount() {
+        return maxSize - permits.availablePermits();
+    }
+
+    /**
+     * 获取当前空闲的目标对象数量
+     *
+     * @return 空闲数量
+     */
+    public int getIdleCount() {
+        return idleTargets.size();
+    }
+
+    /**
+     * 获取已创建的目标对象数量
+     *
+     * @return 创建数量
+     */
+    public int getCreatedCount() {
+        return createdCount.get();
+    }
+}
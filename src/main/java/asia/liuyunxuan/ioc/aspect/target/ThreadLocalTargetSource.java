@@ -0,0 +1,73 @@
+package asia.liuyunxuan.ioc.aspect.target;
+
+import asia.liuyunxuan.ioc.aspect.TargetSource;
+import asia.liuyunxuan.ioc.component.container.ObjectFactory;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 线程隔离的目标源，每个线程使用自己的目标对象。
+ * <p>
+ * 线程第一次调用时通过{@link ObjectFactory}创建目标对象并保存在{@link ThreadLocal}中，
+ * 之后该线程的调用都使用同一个目标对象，线程之间不共享目标，调用时也没有任何锁竞争。
+ * 目标对象随线程一起回收，适合线程数量有限的线程池，或者生命周期很短、每个线程只用一次的虚拟线程。
+ *
+ * @param <T> 目标对象类型
+ * @author liuyunxuan
+ * @since 1.0
+ */
+public class ThreadLocalTargetSource<T> extends TargetSource {
+
+    private final Class<T> targetType;
+
+    private final ThreadLocal<T> targets;
+
+    /**
+     * 已创建的目标对象数量
+     */
+    private final AtomicInteger createdCount = new AtomicInteger();
+
+    /**
+     * 构造一个线程隔离的目标源
+     *
+     * @param targetType 目标对象类型
+     * @param targetFactory 创建目标对象的工厂
+     */
+    public ThreadLocalTargetSource(Class<T> targetType, ObjectFactory<? extends T> targetFactory) {
+        this.targetType = targetType;
+        this.targets = ThreadLocal.withInitial(() -> {
+            T target = targetFactory.getObject();
+            createdCount.incrementAndGet();
+            return target;
+        });
+    }
+
+    @Override
+    public Class<?> getTargetType() {
+        return targetType;
+    }
+
+    @Override
+    public boolean isStatic() {
+        return false;
+    }
+
+    /**
+     * 获取当前线程的目标对象，第一次调用时创建。
+     *
+     * @return 当前线程的目标对象
+     */
+    @Override
+    public Object getTarget() {
+        return targets.get();
+    }
+
+    /**
+     * 获取已创建的目标对象数量
+     *
+     * @return 创建数量
+     */
+    public int getCreatedCount() {
+        return createdCount.get();
+    }
+}
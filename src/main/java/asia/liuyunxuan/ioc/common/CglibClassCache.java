@@ -0,0 +1,274 @@
+package asia.liuyunxuan.ioc.common;
+
+import asia.liuyunxuan.ioc.component.ComponentException;
+import net.sf.cglib.proxy.Callback;
+import net.sf.cglib.proxy.CallbackFilter;
+import net.sf.cglib.proxy.Enhancer;
+import net.sf.cglib.proxy.Factory;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * CGLIB生成类的缓存，供AOP代理和CGLIB实例化策略共用。
+ *
+ * <p>生成的子类按父类、接口、回调类型和回调过滤器缓存，同样结构的代理和原型Bean只会生成一次类，
+ * 之后的实例直接通过缓存的构造函数创建，创建前用{@link Enhancer#registerCallbacks}绑定当前线程的回调，
+ * 与生成类实现的{@link net.sf.cglib.proxy.Factory#newInstance(Callback[])}方式相同，
+ * 不需要每次创建{@link Enhancer}，元空间也不会随Bean的创建持续增长。
+ *
+ * <p>缓存通过{@link ClassValue}挂在父类上，生成类和父类位于同一个类加载器中，
+ * 父类所在的类加载器被回收时缓存随之回收，缓存本身不会让类和类加载器常驻。
+ *
+ * @author liuyunxuan
+ * @since 1.0
+ */
+public class CglibClassCache {
+
+    private static final Class<?>[] NO_TYPES = new Class<?>[0];
+
+    /**
+     * 以父类为key的生成类缓存
+     */
+    private static final ClassValue<Map<ClassKey, GeneratedClass>> CLASS_CACHE = new ClassValue<Map<ClassKey, GeneratedClass>>() {
+        @Override
+        protected Map<ClassKey, GeneratedClass> computeValue(Class<?> type) {
+            return new ConcurrentHashMap<>();
+        }
+    };
+
+    /**
+     * 累计生成的类数量
+     */
+    private static final AtomicInteger GENERATED_CLASSES = new AtomicInteger();
+
+    /**
+     * 使用默认构造函数创建CGLIB生成类的实例。
+     *
+     * @param superclass 父类
+     * @param interfaces 需要实现的接口，可以为null
+     * @param callbackFilter 回调过滤器，只有一个回调时可以为null
+     * @param callbacks 回调，顺序与过滤器返回的下标一致
+     * @return 生成类的实例
+     */
+    public static Object newInstance(Class<?> superclass, Class<?>[] interfaces, CallbackFilter callbackFilter, Callback[] callbacks) {
+        return newInstance(superclass, interfaces, callbackFilter, callbacks, NO_TYPES, null);
+    }
+
+    /**
+     * 使用指定构造函数创建CGLIB生成类的实例。
+     *
+     * @param superclass 父类
+     * @param interfaces 需要实现的接口，可以为null
+     * @param callbackFilter 回调过滤器，只有一个回调时可以为null
+     * @param callbacks 回调，顺序与过滤器返回的下标一致
+     * @param argumentTypes 构造函数参数类型
+     * @param args 构造函数参数
+     * @return 生成类的实例
+     * @throws ComponentException 实例化失败时抛出
+     */
+    public static Object newInstance(Class<?> superclass, Class<?>[] interfaces, CallbackFilter callbackFilter, Callback[] callbacks, Class<?>[] argumentTypes, Object[] args) {
+        Class<?>[] callbackTypes = new Class<?>[callbacks.length];
+        for (int i = 0; i < callbacks.length; i++) {
+            callbackTypes[i] = callbacks[i].getClass();
+        }
+        GeneratedClass generatedClass = getGeneratedClass(new ClassKey(superclass, interfaces, callbackTypes, callbackFilter));
+        return generatedClass.newInstance(callbacks, argumentTypes, args);
+    }
+
+    /**
+     * 不调用任何构造函数创建CGLIB生成类的实例，父类的构造函数不会执行。
+     * 用于AOP代理，代理对象只负责转发，不需要初始化父类的状态，
+     * 延迟创建的目标对象也不会因为创建代理而执行构造函数。
+     * 运行时不支持跳过构造函数时退回到默认构造函数。
+     *
+     * @param superclass 父类
+     * @param interfaces 需要实现的接口，可以为null
+     * @param callbackFilter 回调过滤器，只有一个回调时可以为null
+     * @param callbacks 回调，顺序与过滤器返回的下标一致
+     * @return 生成类的实例
+     */
+    public static Object newInstanceWithoutConstructor(Class<?> superclass, Class<?>[] interfaces, CallbackFilter callbackFilter, Callback[] callbacks) {
+        Class<?>[] callbackTypes = new Class<?>[callbacks.length];
+        for (int i = 0; i < callbacks.length; i++) {
+            callbackTypes[i] = callbacks[i].getClass();
+        }
+        GeneratedClass generatedClass = getGeneratedClass(new ClassKey(superclass, interfaces, callbackTypes, callbackFilter));
+        return generatedClass.newInstanceWithoutConstructor(callbacks);
+    }
+
+    /**
+     * 获取累计生成的类数量，已经随类加载器回收的类也计算在内。
+     *
+     * @return 生成类数量
+     */
+    public static int size() {
+        return GENERATED_CLASSES.get();
+    }
+
+    private static GeneratedClass getGeneratedClass(ClassKey key) {
+        Map<ClassKey, GeneratedClass> classes = CLASS_CACHE.get(key.superclass);
+        GeneratedClass generatedClass = classes.get(key);
+        if (generatedClass == null) {
+            generatedClass = classes.computeIfAbsent(key, ClassKey::generate);
+        }
+        return generatedClass;
+    }
+
+    /**
+     * 生成类的缓存key
+     */
+    private static final class ClassKey {
+
+        private final Class<?> superclass;
+        private final Class<?>[] interfaces;
+        private final Class<?>[] callbackTypes;
+        private final CallbackFilter callbackFilter;
+        private final int hashCode;
+
+        ClassKey(Class<?> superclass, Class<?>[] interfaces, Class<?>[] callbackTypes, CallbackFilter callbackFilter) {
+            this.superclass = superclass;
+            this.interfaces = interfaces == null ? NO_TYPES : interfaces;
+            this.callbackTypes = callbackTypes;
+            this.callbackFilter = callbackFilter;
+            this.hashCode = Objects.hash(superclass, Arrays.hashCode(this.interfaces), Arrays.hashCode(callbackTypes), callbackFilter);
+        }
+
+        GeneratedClass generate() {
+            Enhancer enhancer = new Enhancer();
+            enhancer.setSuperclass(superclass);
+            if (interfaces.length > 0) enhancer.setInterfaces(interfaces);
+            enhancer.setCallbackTypes(callbackTypes);
+            if (callbackFilter != null) enhancer.setCallbackFilter(callbackFilter);
+            GeneratedClass generatedClass = new GeneratedClass(enhancer.createClass());
+            GENERATED_CLASSES.incrementAndGet();
+            return generatedClass;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof ClassKey)) return false;
+            ClassKey other = (ClassKey) o;
+            return superclass == other.superclass && Arrays.equals(interfaces, other.interfaces)
+                    && Arrays.equals(callbackTypes, other.callbackTypes) && Objects.equals(callbackFilter, other.callbackFilter);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+
+    /**
+     * 生成类以及按参数类型缓存的构造函数
+     */
+    private static final class GeneratedClass {
+
+        private final Class<?> type;
+
+        private final Map<ArgumentTypes, Constructor<?>> constructors = new ConcurrentHashMap<>();
+
+        /**
+         * 跳过构造函数的序列化构造函数，第一次使用时创建，运行时不支持时为null
+         */
+        private volatile Constructor<?> serializationConstructor;
+
+        private volatile boolean serializationConstructorResolved;
+
+        GeneratedClass(Class<?> type) {
+            this.type = type;
+        }
+
+        Object newInstance(Callback[] callbacks, Class<?>[] argumentTypes, Object[] args) {
+            Constructor<?> constructor = constructors.computeIfAbsent(new ArgumentTypes(argumentTypes), key -> {
+                try {
+                    Constructor<?> ctor = type.getDeclaredConstructor(key.types);
+                    ctor.setAccessible(true);
+                    return ctor;
+                } catch (NoSuchMethodException e) {
+                    throw new ComponentException("No matching constructor on generated class " + type.getName(), e);
+                }
+            });
+            Enhancer.registerCallbacks(type, callbacks);
+            try {
+                return constructor.newInstance(args);
+            } catch (InvocationTargetException e) {
+                throw new ComponentException("Failed to instantiate [" + type.getSuperclass().getName() + "]", e.getTargetException());
+            } catch (InstantiationException | IllegalAccessException e) {
+                throw new ComponentException("Failed to instantiate [" + type.getSuperclass().getName() + "]", e);
+            } finally {
+                Enhancer.registerCallbacks(type, null);
+            }
+        }
+
+        Object newInstanceWithoutConstructor(Callback[] callbacks) {
+            Constructor<?> constructor = getSerializationConstructor();
+            if (constructor == null) {
+                return newInstance(callbacks, NO_TYPES, null);
+            }
+            try {
+                Factory instance = (Factory) constructor.newInstance();
+                instance.setCallbacks(callbacks);
+                return instance;
+            } catch (InvocationTargetException e) {
+                throw new ComponentException("Failed to instantiate [" + type.getSuperclass().getName() + "]", e.getTargetException());
+            } catch (InstantiationException | IllegalAccessException e) {
+                throw new ComponentException("Failed to instantiate [" + type.getSuperclass().getName() + "]", e);
+            }
+        }
+
+        private Constructor<?> getSerializationConstructor() {
+            if (!serializationConstructorResolved) {
+                synchronized (this) {
+                    if (!serializationConstructorResolved) {
+                        serializationConstructor = createSerializationConstructor(type);
+                        serializationConstructorResolved = true;
+                    }
+                }
+            }
+            return serializationConstructor;
+        }
+    }
+
+    /**
+     * 通过{@code sun.reflect.ReflectionFactory}创建只执行{@link Object}构造函数的构造器，
+     * 与反序列化创建对象的方式相同
+     */
+    private static Constructor<?> createSerializationConstructor(Class<?> type) {
+        try {
+            Class<?> factoryClass = Class.forName("sun.reflect.ReflectionFactory");
+            Object reflectionFactory = factoryClass.getMethod("getReflectionFactory").invoke(null);
+            Constructor<?> constructor = (Constructor<?>) factoryClass.getMethod("newConstructorForSerialization", Class.class, Constructor.class)
+                    .invoke(reflectionFactory, type, Object.class.getDeclaredConstructor());
+            if (constructor != null) constructor.setAccessible(true);
+            return constructor;
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    private static final class ArgumentTypes {
+
+        private final Class<?>[] types;
+
+        ArgumentTypes(Class<?>[] types) {
+            this.types = types;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return this == o || o instanceof ArgumentTypes && Arrays.equals(types, ((ArgumentTypes) o).types);
+        }
+
+        @Override
+        public int hashCode() {
+            return Arrays.hashCode(types);
+        }
+    }
+}
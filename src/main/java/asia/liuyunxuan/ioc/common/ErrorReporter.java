@@ -0,0 +1,35 @@
+package asia.liuyunxuan.ioc.common;
+
+import asia.liuyunxuan.ioc.component.ComponentException;
+
+/**
+ * 报告无法抛给调用方的异常，例如后台线程中的异步任务、事件监听器和类加载时的织入失败。
+ *
+ * <p>异常包装成{@link ComponentException}后交给当前线程的{@link Thread.UncaughtExceptionHandler}处理，
+ * 没有设置处理器时由线程组输出到标准错误流。应用可以通过
+ * {@link Thread#setDefaultUncaughtExceptionHandler}把这些异常转到自己的日志系统。
+ *
+ * @author liuyunxuan
+ * @since 1.0
+ */
+public final class ErrorReporter {
+
+    private ErrorReporter() {
+    }
+
+    /**
+     * 报告一个异常，报告过程不会抛出异常。
+     *
+     * @param message 发生异常的场景
+     * @param ex 异常
+     */
+    public static void report(String message, Throwable ex) {
+        Thread thread = Thread.currentThread();
+        Thread.UncaughtExceptionHandler handler = thread.getUncaughtExceptionHandler();
+        try {
+            handler.uncaughtException(thread, new ComponentException(message, ex));
+        } catch (Throwable ignored) {
+            // 处理器自身的异常没有更合适的去处，忽略
+        }
+    }
+}
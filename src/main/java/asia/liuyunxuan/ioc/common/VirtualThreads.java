@@ -0,0 +1,46 @@
+package asia.liuyunxuan.ioc.common;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * 在支持虚拟线程的运行时上创建虚拟线程执行器。
+ *
+ * <p>项目以Java 8编译，{@code Executors.newVirtualThreadPerTaskExecutor}只能通过反射调用，
+ * 工厂方法只查找一次。
+ *
+ * @author liuyunxuan
+ * @since 1.0
+ */
+public final class VirtualThreads {
+
+    private static final Method FACTORY = findFactory();
+
+    private VirtualThreads() {
+    }
+
+    private static Method findFactory() {
+        try {
+            return Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 创建每个任务一个虚拟线程的执行器
+     *
+     * @return 执行器，运行时不支持虚拟线程时返回null
+     */
+    public static ExecutorService newVirtualThreadPerTaskExecutor() {
+        if (FACTORY == null) {
+            return null;
+        }
+        try {
+            return (ExecutorService) FACTORY.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+}
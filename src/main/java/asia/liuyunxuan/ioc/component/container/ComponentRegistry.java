@@ -10,7 +10,7 @@ import java.util.Map;
  * 这个接口定义了访问容器中bean定义的方法，可以：
  * <ul>
  *     <li>列出容器中所有bean的名称</li>
- *     <li>按照类型查找bean</li>
+ *     <li>按照类型查找bean及其名称</li>
  *     <li>检查容器中特定名称的bean定义</li>
  * </ul>
  * <p>
@@ -32,6 +32,14 @@ public interface ComponentRegistry extends ComponentProvider {
      */
     <T> Map<String, T> getBeansOfType(Class<T> type) throws ComponentException;
 
+    /**
+     * 返回可以赋值给指定类型的所有bean名称，不会触发bean的实例化
+     *
+     * @param type bean的类型
+     * @return bean名称的数组，没有匹配时返回空数组
+     */
+    String[] getBeanNamesForType(Class<?> type);
+
     /**
      * 返回容器中所有bean定义的名称
      *
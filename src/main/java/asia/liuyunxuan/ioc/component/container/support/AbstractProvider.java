@@ -92,6 +92,9 @@ public abstract class AbstractProvider extends FactoryComponentRegistrySupport i
 
     /**
      * 获取Bean的实际实现方法。处理FactoryBean，并支持单例缓存。
+     * <p>
+     * 单例的创建经由{@link #getSingleton(String, asia.liuyunxuan.ioc.component.container.ObjectFactory)}完成，
+     * 多个线程并发获取同一个尚未创建的单例时只会创建一次。
      *
      * @param <T> Bean 的类型
      * @param name Bean的名称
@@ -107,7 +110,13 @@ public abstract class AbstractProvider extends FactoryComponentRegistrySupport i
         }
 
         ComponentDefinition componentDefinition = getBeanDefinition(name);
-        Object bean = createBean(name, componentDefinition, args);
+        Object bean;
+        if (componentDefinition.isSingleton()) {
+            // 同一个单例同一时刻只允许一个线程创建，其他线程等待创建结果
+            bean = getSingleton(name, () -> createBean(name, componentDefinition, args));
+        } else {
+            bean = createBean(name, componentDefinition, args);
+        }
         return (T) getObjectForBeanInstance(bean, name);
     }
 
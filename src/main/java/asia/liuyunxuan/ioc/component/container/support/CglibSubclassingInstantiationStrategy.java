@@ -2,7 +2,8 @@ package asia.liuyunxuan.ioc.component.container.support;
 
 import asia.liuyunxuan.ioc.component.ComponentException;
 import asia.liuyunxuan.ioc.component.container.config.ComponentDefinition;
-import net.sf.cglib.proxy.Enhancer;
+import asia.liuyunxuan.ioc.common.CglibClassCache;
+import net.sf.cglib.proxy.Callback;
 import net.sf.cglib.proxy.NoOp;
 
 import java.lang.reflect.Constructor;
@@ -13,9 +14,13 @@ import java.lang.reflect.Constructor;
  * 该策略使用CGLib的Enhancer来创建目标类的子类，通过这种方式实现Bean的实例化。
  * 相比于JDK反射方式，CGLib方式可以实例化没有实现接口的类，并且在某些场景下性能更好。
  * 但需要注意的是，CGLib不能代理final类。
+ * <p>
+ * 生成的子类缓存在{@link CglibClassCache}中，同一个类的原型Bean只会生成一次子类。
  */
 public class CglibSubclassingInstantiationStrategy implements InstantiationStrategy {
 
+    private static final Callback[] CALLBACKS = new Callback[]{NoOp.INSTANCE};
+
     public CglibSubclassingInstantiationStrategy() {
     }
 
@@ -32,15 +37,8 @@ public class CglibSubclassingInstantiationStrategy implements InstantiationStrat
      */
     @Override
     public Object instantiate(ComponentDefinition componentDefinition, String beanName, Constructor<?> ctor, Object[] args) throws ComponentException {
-        Enhancer enhancer = new Enhancer();
-        enhancer.setSuperclass(componentDefinition.getBeanClass());
-        enhancer.setCallback(new NoOp() {
-            @Override
-            public int hashCode() {
-                return super.hashCode();
-            }
-        });
-        if (null == ctor) return enhancer.create();
-        return enhancer.create(ctor.getParameterTypes(), args);
+        Class<?> beanClass = componentDefinition.getBeanClass();
+        if (null == ctor) return CglibClassCache.newInstance(beanClass, null, null, CALLBACKS);
+        return CglibClassCache.newInstance(beanClass, null, null, CALLBACKS, ctor.getParameterTypes(), args);
     }
 }
@@ -4,10 +4,11 @@ import asia.liuyunxuan.ioc.component.ComponentException;
 import asia.liuyunxuan.ioc.component.container.ConfigurableRegistry;
 import asia.liuyunxuan.ioc.component.container.config.ComponentDefinition;
 
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
-import java.util.List;
+import java.util.LinkedHashSet;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 
 /**
@@ -25,6 +26,9 @@ import java.util.concurrent.ConcurrentHashMap;
  * 作为{@link ConfigurableRegistry}的实现，它提供了可配置的Bean工厂功能。
  * 
  * <p>该类使用{@link ConcurrentHashMap}存储Bean定义，保证了线程安全性。
+ * 注册Bean定义时会同步维护一份类型索引，把Bean的类、所有父类和接口映射到Bean名称，
+ * 按类型查找Bean时只需一次索引查询，不需要遍历全部Bean定义。
+ * 注册时还会把Bean类型记录到{@link MethodAnnotationIndex}，供注解切点按注解查找方法。
  * 它支持以下主要操作：
  * <ul>
  *     <li>通过名称和类型获取Bean</li>
@@ -45,15 +49,101 @@ public class DefaultRegistry extends AbstractAutowireCapableProvider implements
      */
     private final Map<String, ComponentDefinition> beanDefinitionMap = new ConcurrentHashMap<>();
 
+    /**
+     * 类型索引，key为Bean的类及其所有父类和接口，value为可以赋值给该类型的Bean名称
+     */
+    private final Map<Class<?>, Set<String>> beanNamesByType = new ConcurrentHashMap<>();
+
+    /**
+     * Bean类型的方法注解索引，供注解切点使用
+     */
+    private final MethodAnnotationIndex methodAnnotationIndex = new MethodAnnotationIndex();
+
+    /**
+     * Bean定义的版本号，每次注册Bean定义时递增，供需要缓存Bean定义查询结果的组件判断缓存是否失效
+     */
+    private volatile long definitionGeneration;
+
     /**
      * 注册一个新的Bean定义。
+     * <p>
+     * 同名的Bean定义会被覆盖，类型索引随之更新。
      *
      * @param beanName Bean的名称
      * @param componentDefinition Bean的定义信息
      */
     @Override
     public void registerBeanDefinition(String beanName, ComponentDefinition componentDefinition) {
-        beanDefinitionMap.put(beanName, componentDefinition);
+        synchronized (this.beanNamesByType) {
+            ComponentDefinition previous = beanDefinitionMap.put(beanName, componentDefinition);
+            if (previous != null) {
+                for (Class<?> type : getTypeHierarchy(previous.getBeanClass())) {
+                    Set<String> beanNames = beanNamesByType.get(type);
+                    if (beanNames != null) beanNames.remove(beanName);
+                }
+            }
+            for (Class<?> type : getTypeHierarchy(componentDefinition.getBeanClass())) {
+                beanNamesByType.computeIfAbsent(type, key -> ConcurrentHashMap.newKeySet()).add(beanName);
+            }
+            definitionGeneration++;
+        }
+        methodAnnotationIndex.register(componentDefinition.getBeanClass());
+    }
+
+    /**
+     * 获取Bean类型的方法注解索引。
+     *
+     * @return 方法注解索引
+     */
+    public MethodAnnotationIndex getMethodAnnotationIndex() {
+        return methodAnnotationIndex;
+    }
+
+    /**
+     * 获取当前Bean定义的版本号。
+     * <p>
+     * 版本号在每次注册Bean定义后递增，版本号不变说明按类型查找的结果也不会变化。
+     *
+     * @return Bean定义的版本号
+     */
+    public long getDefinitionGeneration() {
+        return definitionGeneration;
+    }
+
+    /**
+     * 获取可以赋值给指定类型的所有Bean名称，不会触发Bean的实例化。
+     *
+     * @param type Bean的类型
+     * @return 匹配的Bean名称数组，没有匹配时返回空数组
+     */
+    @Override
+    public String[] getBeanNamesForType(Class<?> type) {
+        Set<String> beanNames = beanNamesByType.get(type);
+        return beanNames == null ? new String[0] : beanNames.toArray(new String[0]);
+    }
+
+    /**
+     * 收集类型本身、所有父类以及直接和间接实现的接口。
+     *
+     * @param beanClass Bean的类型
+     * @return 类型层次结构中的所有类型
+     */
+    private static Set<Class<?>> getTypeHierarchy(Class<?> beanClass) {
+        Set<Class<?>> types = new LinkedHashSet<>();
+        for (Class<?> clazz = beanClass; clazz != null; clazz = clazz.getSuperclass()) {
+            collectInterfaces(clazz, types);
+        }
+        if (beanClass != null && beanClass.isInterface()) {
+            types.add(Object.class);
+        }
+        return types;
+    }
+
+    private static void collectInterfaces(Class<?> clazz, Set<Class<?>> types) {
+        if (!types.add(clazz)) return;
+        for (Class<?> ifc : clazz.getInterfaces()) {
+            collectInterfaces(ifc, types);
+        }
     }
 
     /**
@@ -74,16 +164,13 @@ public class DefaultRegistry extends AbstractAutowireCapableProvider implements
      * @return 所有匹配类型的Bean实例，key为Bean的名称
      * @throws ComponentException 如果获取Bean失败
      */
-    @SuppressWarnings({"rawtypes", "unchecked"})
+    @SuppressWarnings("unchecked")
     @Override
     public <T> Map<String, T> getBeansOfType(Class<T> type) throws ComponentException {
         Map<String, T> result = new HashMap<>();
-        beanDefinitionMap.forEach((beanName, beanDefinition) -> {
-            Class beanClass = beanDefinition.getBeanClass();
-            if (type.isAssignableFrom(beanClass)) {
-                result.put(beanName, (T) getBean(beanName));
-            }
-        });
+        for (String beanName : getBeanNamesForType(type)) {
+            result.put(beanName, (T) getBean(beanName));
+        }
         return result;
     }
 
@@ -130,20 +217,13 @@ public class DefaultRegistry extends AbstractAutowireCapableProvider implements
      * @return 匹配类型的Bean实例
      * @throws ComponentException 如果找不到或找到多个匹配的Bean
      */
-    @SuppressWarnings("rawtypes")
     @Override
     public <T> T getBean(Class<T> requiredType) throws ComponentException {
-        List<String> beanNames = new ArrayList<>();
-        for (Map.Entry<String, ComponentDefinition> entry : beanDefinitionMap.entrySet()) {
-            Class beanClass = entry.getValue().getBeanClass();
-            if (requiredType.isAssignableFrom(beanClass)) {
-                beanNames.add(entry.getKey());
-            }
-        }
-        if (1 == beanNames.size()) {
-            return getBean(beanNames.get(0), requiredType);
+        String[] beanNames = getBeanNamesForType(requiredType);
+        if (1 == beanNames.length) {
+            return getBean(beanNames[0], requiredType);
         }
 
-        throw new ComponentException(requiredType + "expected single bean but found " + beanNames.size() + ": " + beanNames);
+        throw new ComponentException(requiredType + "expected single bean but found " + beanNames.length + ": " + Arrays.toString(beanNames));
     }
 }
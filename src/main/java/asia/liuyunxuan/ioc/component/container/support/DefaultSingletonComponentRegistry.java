@@ -5,11 +5,12 @@ import asia.liuyunxuan.ioc.component.container.DisposableComponent;
 import asia.liuyunxuan.ioc.component.container.ObjectFactory;
 import asia.liuyunxuan.ioc.component.container.config.SingletonBeanRegistry;
 
-import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.Map;
-import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * 默认的单例Bean注册表实现类。
@@ -21,6 +22,14 @@ import java.util.concurrent.ConcurrentHashMap;
  * <li>二级缓存（earlySingletonObjects）：用于存储原始的Bean对象</li>
  * <li>三级缓存（singletonFactories）：用于存储Bean的工厂对象</li>
  * </ul>
+ * <p>
+ * 单例的创建支持多线程并发访问：
+ * <ul>
+ * <li>一级缓存的读取是无锁的快速路径</li>
+ * <li>同一个Bean名称同一时刻最多只有一个线程在创建，其他线程等待创建完成后直接复用结果</li>
+ * <li>二级、三级缓存中的早期引用只对正在创建该Bean的线程可见，避免其他线程拿到未初始化完成的对象</li>
+ * <li>两个线程互相等待对方正在创建的Bean时，等待方退回到对方的早期引用，与单线程循环依赖的处理方式一致</li>
+ * </ul>
  */
 public class DefaultSingletonComponentRegistry implements SingletonBeanRegistry {
 
@@ -30,13 +39,23 @@ public class DefaultSingletonComponentRegistry implements SingletonBeanRegistry
     private final Map<String, Object> singletonObjects = new ConcurrentHashMap<>();
 
     // 二级缓存，提前暴漏对象，没有完全实例化的对象
-    protected final Map<String, Object> earlySingletonObjects = new HashMap<>();
+    protected final Map<String, Object> earlySingletonObjects = new ConcurrentHashMap<>();
 
     // 三级缓存，存放代理对象
-    private final Map<String, ObjectFactory<?>> singletonFactories = new HashMap<>();
+    private final Map<String, ObjectFactory<?>> singletonFactories = new ConcurrentHashMap<>();
 
+    // 并行创建单例时多个线程同时注册，读写都需要持有该Map的监视器
     private final Map<String, DisposableComponent> disposableBeans = new LinkedHashMap<>();
 
+    // 每个名称对应的锁，用于FactoryBean产品等不经过单例创建流程的缓存
+    private final Map<String, ReentrantLock> singletonLocks = new ConcurrentHashMap<>();
+
+    // 正在创建中的单例，保证同一个单例只会被创建一次，等待的线程阻塞在创建结束的通知上
+    private final Map<String, SingletonCreation> singletonsCurrentlyInCreation = new ConcurrentHashMap<>();
+
+    // 正在等待其他线程创建单例的线程，value为等待的Bean名称，用于检测跨线程的循环等待
+    private final Map<Thread, String> threadsAwaitingSingleton = new ConcurrentHashMap<>();
+
     /**
      * 获取单例Bean。
      * <p>
@@ -44,6 +63,9 @@ public class DefaultSingletonComponentRegistry implements SingletonBeanRegistry
      * 1. 先从一级缓存singletonObjects中获取
      * 2. 如果没有，再从二级缓存earlySingletonObjects中获取
      * 3. 如果还没有，则尝试从三级缓存singletonFactories中获取并放入二级缓存
+     * <p>
+     * 二级、三级缓存只对正在创建该Bean的线程开放，其他线程在Bean创建完成前得到null，
+     * 随后通过{@link #getSingleton(String, ObjectFactory)}等待创建结果。
      *
      * @param beanName Bean的名称
      * @return 单例Bean实例，如果不存在则返回null
@@ -52,21 +74,166 @@ public class DefaultSingletonComponentRegistry implements SingletonBeanRegistry
     public Object getSingleton(String beanName) {
         Object singletonObject = singletonObjects.get(beanName);
         if (null == singletonObject) {
-            singletonObject = earlySingletonObjects.get(beanName);
-            // 判断二级缓存中是否有对象，这个对象就是代理对象，因为只有代理对象才会放到三级缓存中
-            if (null == singletonObject) {
-                ObjectFactory<?> singletonFactory = singletonFactories.get(beanName);
-                if (singletonFactory != null) {
-                    singletonObject = singletonFactory.getObject();
-                    // 把三级缓存中的代理对象中的真实对象获取出来，放入二级缓存中
-                    earlySingletonObjects.put(beanName, singletonObject);
+            SingletonCreation creation = singletonsCurrentlyInCreation.get(beanName);
+            if (null == creation || creation.creator == Thread.currentThread()) {
+                singletonObject = getEarlySingleton(beanName);
+            }
+        }
+        return singletonObject;
+    }
+
+    /**
+     * 获取单例Bean，如果不存在则通过给定的工厂创建。
+     * <p>
+     * 对同一个Bean名称，同一时刻只有一个线程执行创建，其余线程阻塞等待，
+     * 创建完成后直接返回一级缓存中的实例。
+     *
+     * @param beanName Bean的名称
+     * @param singletonFactory 用于创建Bean的工厂
+     * @return 单例Bean实例
+     * @throws ComponentException 如果当前线程重复请求一个正在创建中的Bean，或创建过程中发生异常
+     */
+    public Object getSingleton(String beanName, ObjectFactory<?> singletonFactory) {
+        Thread currentThread = Thread.currentThread();
+        while (true) {
+            Object singletonObject = singletonObjects.get(beanName);
+            if (null != singletonObject) {
+                return singletonObject;
+            }
+
+            SingletonCreation creation = new SingletonCreation(currentThread);
+            SingletonCreation existing = singletonsCurrentlyInCreation.putIfAbsent(beanName, creation);
+            if (null == existing) {
+                return createSingleton(beanName, singletonFactory, creation);
+            }
+            if (existing.creator == currentThread) {
+                throw new ComponentException("Requested bean is currently in creation: Is there an unresolvable circular reference? " + beanName);
+            }
+            if (!awaitSingleton(beanName, existing)) {
+                // 跨线程循环等待，退回到对方线程暴露的早期引用
+                singletonObject = getEarlySingleton(beanName);
+                if (null == singletonObject) {
+                    throw new ComponentException("Singleton '" + beanName + "' is being created by another thread that is waiting for the current thread");
+                }
+                return singletonObject;
+            }
+            // 创建完成或者创建失败，重新检查一级缓存，失败时由当前线程重新创建
+        }
+    }
+
+    private Object createSingleton(String beanName, ObjectFactory<?> singletonFactory, SingletonCreation creation) {
+        try {
+            // 在登记为创建者之前，其他线程可能刚好完成了创建
+            Object singletonObject = singletonObjects.get(beanName);
+            if (null != singletonObject) {
+                return singletonObject;
+            }
+            boolean created = false;
+            try {
+                singletonObject = singletonFactory.getObject();
+                created = true;
+            } finally {
+                if (!created) {
+                    earlySingletonObjects.remove(beanName);
                     singletonFactories.remove(beanName);
                 }
             }
+            if (null != singletonObject && !singletonObjects.containsKey(beanName)) {
+                registerSingleton(beanName, singletonObject);
+            }
+            return singletonObject;
+        } finally {
+            singletonsCurrentlyInCreation.remove(beanName, creation);
+            creation.done.complete(null);
+        }
+    }
+
+    /**
+     * 获取指定名称对应的创建锁，同一个名称始终返回同一把锁。
+     *
+     * @param name 锁的名称，通常是Bean的名称
+     * @return 可重入锁
+     */
+    protected ReentrantLock getSingletonLock(String name) {
+        return singletonLocks.computeIfAbsent(name, key -> new ReentrantLock());
+    }
+
+    /**
+     * 从二级、三级缓存中获取早期引用，三级缓存中的工厂最多只会被调用一次。
+     *
+     * @param beanName Bean的名称
+     * @return 早期引用，如果不存在则返回null
+     */
+    private Object getEarlySingleton(String beanName) {
+        Object singletonObject = earlySingletonObjects.get(beanName);
+        // 判断二级缓存中是否有对象，这个对象就是代理对象，因为只有代理对象才会放到三级缓存中
+        if (null == singletonObject) {
+            synchronized (this.earlySingletonObjects) {
+                singletonObject = earlySingletonObjects.get(beanName);
+                if (null == singletonObject) {
+                    ObjectFactory<?> singletonFactory = singletonFactories.get(beanName);
+                    if (singletonFactory != null) {
+                        singletonObject = singletonFactory.getObject();
+                        // 把三级缓存中的代理对象中的真实对象获取出来，放入二级缓存中
+                        if (null != singletonObject) {
+                            earlySingletonObjects.put(beanName, singletonObject);
+                        }
+                        singletonFactories.remove(beanName);
+                    }
+                }
+            }
         }
         return singletonObject;
     }
 
+    /**
+     * 阻塞等待其他线程完成单例的创建。开始等待之前先登记等待关系，再沿等待链检查，
+     * 如果创建该Bean的线程（直接或间接）正在等待当前线程，说明发生了跨线程的循环依赖，此时放弃等待。
+     * 两个线程同时形成循环时，后登记的一方一定能看到先登记的一方，至少有一方放弃等待。
+     *
+     * @param beanName Bean的名称
+     * @param creation 其他线程正在进行的创建
+     * @return 创建结束返回true，检测到循环等待返回false
+     */
+    private boolean awaitSingleton(String beanName, SingletonCreation creation) {
+        Thread currentThread = Thread.currentThread();
+        threadsAwaitingSingleton.put(currentThread, beanName);
+        try {
+            if (isWaitingForCurrentThread(beanName, currentThread)) {
+                return false;
+            }
+            creation.done.get();
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ComponentException("Interrupted while waiting for singleton '" + beanName + "'", e);
+        } catch (ExecutionException e) {
+            // done只会正常完成
+            throw new ComponentException("Failed to wait for singleton '" + beanName + "'", e.getCause());
+        } finally {
+            threadsAwaitingSingleton.remove(currentThread);
+        }
+    }
+
+    /**
+     * 沿着"等待的Bean -> 创建它的线程 -> 该线程等待的Bean"链路查找，判断是否回到当前线程。
+     */
+    private boolean isWaitingForCurrentThread(String beanName, Thread currentThread) {
+        String awaited = beanName;
+        for (int i = 0; i < singletonsCurrentlyInCreation.size() + 1 && awaited != null; i++) {
+            SingletonCreation creation = singletonsCurrentlyInCreation.get(awaited);
+            if (creation == null) {
+                return false;
+            }
+            Thread owner = creation.creator;
+            if (owner == currentThread) {
+                return true;
+            }
+            awaited = threadsAwaitingSingleton.get(owner);
+        }
+        return false;
+    }
+
     /**
      * 注册单例Bean。
      *
@@ -102,7 +269,9 @@ public class DefaultSingletonComponentRegistry implements SingletonBeanRegistry
      * @param bean 需要销毁的Bean实例
      */
     public void registerDisposableBean(String beanName, DisposableComponent bean) {
-        disposableBeans.put(beanName, bean);
+        synchronized (disposableBeans) {
+            disposableBeans.put(beanName, bean);
+        }
     }
 
     /**
@@ -112,12 +281,17 @@ public class DefaultSingletonComponentRegistry implements SingletonBeanRegistry
      */
 
     public void destroySingletons() {
-        Set<String> keySet = this.disposableBeans.keySet();
-        String[] disposableBeanNames = keySet.toArray(new String[0]);
+        String[] disposableBeanNames;
+        synchronized (disposableBeans) {
+            disposableBeanNames = disposableBeans.keySet().toArray(new String[0]);
+        }
 
         for (int i = disposableBeanNames.length - 1; i >= 0; i--) {
             String beanName = disposableBeanNames[i];
-            DisposableComponent disposableComponent = disposableBeans.remove(beanName);
+            DisposableComponent disposableComponent;
+            synchronized (disposableBeans) {
+                disposableComponent = disposableBeans.remove(beanName);
+            }
             if (disposableComponent != null) {
                 try {
                     disposableComponent.destroy();
@@ -129,4 +303,18 @@ public class DefaultSingletonComponentRegistry implements SingletonBeanRegistry
         }
     }
 
+    /**
+     * 一次正在进行的单例创建，记录负责创建的线程，创建结束（无论成功与否）时完成done
+     */
+    private static final class SingletonCreation {
+
+        final Thread creator;
+
+        final CompletableFuture<Void> done = new CompletableFuture<>();
+
+        SingletonCreation(Thread creator) {
+            this.creator = creator;
+        }
+    }
+
 }
@@ -5,6 +5,7 @@ import asia.liuyunxuan.ioc.component.container.FactoryComponent;
 
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * FactoryBean注册表的支持类。
@@ -33,7 +34,7 @@ public abstract class FactoryComponentRegistrySupport extends DefaultSingletonCo
     /**
      * 从FactoryBean获取对象。
      * <p>
-     * 如果FactoryBean配置为单例，则会缓存创建的对象。
+     * 如果FactoryBean配置为单例，则会缓存创建的对象，并发调用时只会创建一次。
      *
      * @param factory FactoryBean实例
      * @param beanName Bean的名称
@@ -43,8 +44,18 @@ public abstract class FactoryComponentRegistrySupport extends DefaultSingletonCo
         if (factory.isSingleton()) {
             Object object = this.factoryBeanObjectCache.get(beanName);
             if (object == null) {
-                object = doGetObjectFromFactoryBean(factory, beanName);
-                this.factoryBeanObjectCache.put(beanName, (object != null ? object : NULL_OBJECT));
+                // 同一个名称共用一把锁，保证FactoryComponent#getObject对同一个名称只调用一次
+                ReentrantLock lock = getSingletonLock(beanName);
+                lock.lock();
+                try {
+                    object = this.factoryBeanObjectCache.get(beanName);
+                    if (object == null) {
+                        object = doGetObjectFromFactoryBean(factory, beanName);
+                        this.factoryBeanObjectCache.put(beanName, (object != null ? object : NULL_OBJECT));
+                    }
+                } finally {
+                    lock.unlock();
+                }
             }
             return (object != NULL_OBJECT ? object : null);
         } else {
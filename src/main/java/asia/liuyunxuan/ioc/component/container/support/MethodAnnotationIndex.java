@@ -0,0 +1,162 @@
+package asia.liuyunxuan.ioc.component.container.support;
+
+import asia.liuyunxuan.ioc.common.ClassUtils;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 方法注解索引，记录容器中Bean类型的哪些方法标注了哪些注解。
+ *
+ * <p>Bean定义注册时（包括XML定义和类路径扫描得到的定义）只记录Bean的类型，
+ * 第一次查询时才一次性读取所有已记录类型的方法注解，之后注册的类型立即建立索引。
+ * 容器中没有使用注解切点时不会产生任何反射开销。
+ *
+ * <p>索引以注解类型为key，记录标注了该注解的Bean类型及其方法。接口方法上的注解对实现方法同样生效，
+ * 反之亦然，因此JDK代理传入的接口方法和CGLIB代理传入的类方法都可以直接查到。
+ * 接口包括父接口以及父类实现的接口，与{@link asia.liuyunxuan.ioc.aspect.AnnotationJoinPointSelector}反射读取注解的结果一致。
+ * 索引建立后，判断一个类是否包含注解方法、一个方法是否标注了注解都只是一次集合查询。
+ *
+ * @author liuyunxuan
+ * @since 1.0
+ */
+public class MethodAnnotationIndex {
+
+    /**
+     * 已注册的Bean类型，value表示是否已经建立索引
+     */
+    private final Map<Class<?>, Boolean> beanClasses = new ConcurrentHashMap<>();
+
+    /**
+     * key为注解类型，value为该注解所在的Bean类型及其标注了该注解的方法
+     */
+    private final Map<Class<? extends Annotation>, Map<Class<?>, Set<Method>>> index = new ConcurrentHashMap<>();
+
+    /**
+     * 是否已经有人查询过索引，查询之后注册的类型立即建立索引
+     */
+    private volatile boolean active;
+
+    /**
+     * 记录一个Bean类型。
+     *
+     * @param beanClass Bean的类型
+     */
+    public void register(Class<?> beanClass) {
+        if (beanClass == null || beanClasses.containsKey(beanClass)) return;
+        synchronized (this) {
+            if (beanClasses.putIfAbsent(beanClass, Boolean.FALSE) == null && active) {
+                indexClass(beanClass);
+            }
+        }
+    }
+
+    /**
+     * 判断Bean类型中是否有方法标注了指定注解。
+     *
+     * @param annotationType 注解类型
+     * @param beanClass Bean的类型，可以是CGLIB生成的子类
+     * @return 如果有方法标注了该注解返回true
+     */
+    public boolean hasAnnotatedMethods(Class<? extends Annotation> annotationType, Class<?> beanClass) {
+        return getAnnotatedMethods(annotationType, beanClass) != null;
+    }
+
+    /**
+     * 判断方法是否标注了指定注解。
+     *
+     * @param annotationType 注解类型
+     * @param method 方法，可以是接口方法，也可以是Bean类型上的方法
+     * @param beanClass Bean的类型，可以是CGLIB生成的子类
+     * @return 如果方法标注了该注解返回true
+     */
+    public boolean isAnnotated(Class<? extends Annotation> annotationType, Method method, Class<?> beanClass) {
+        Set<Method> methods = getAnnotatedMethods(annotationType, beanClass);
+        return methods != null && methods.contains(method);
+    }
+
+    /**
+     * 获取包含指定注解方法的所有Bean类型。
+     *
+     * @param annotationType 注解类型
+     * @return 只读的Bean类型集合
+     */
+    public Set<Class<?>> getAnnotatedClasses(Class<? extends Annotation> annotationType) {
+        ensureActive();
+        Map<Class<?>, Set<Method>> classes = index.get(annotationType);
+        return classes == null ? Collections.emptySet() : Collections.unmodifiableSet(classes.keySet());
+    }
+
+    private Set<Method> getAnnotatedMethods(Class<? extends Annotation> annotationType, Class<?> beanClass) {
+        ensureActive();
+        Map<Class<?>, Set<Method>> classes = index.get(annotationType);
+        if (classes == null) return null;
+        Set<Method> methods = classes.get(beanClass);
+        if (methods == null && ClassUtils.isCglibProxyClass(beanClass)) {
+            methods = classes.get(beanClass.getSuperclass());
+        }
+        return methods;
+    }
+
+    /**
+     * 第一次查询时为所有已注册的类型建立索引
+     */
+    private void ensureActive() {
+        if (active) return;
+        synchronized (this) {
+            if (active) return;
+            for (Class<?> beanClass : beanClasses.keySet()) {
+                indexClass(beanClass);
+            }
+            active = true;
+        }
+    }
+
+    private void indexClass(Class<?> beanClass) {
+        if (Boolean.TRUE.equals(beanClasses.put(beanClass, Boolean.TRUE))) return;
+        Set<Class<?>> interfaces = new LinkedHashSet<>();
+        for (Class<?> clazz = beanClass; clazz != null; clazz = clazz.getSuperclass()) {
+            collectInterfaces(clazz.getInterfaces(), interfaces);
+        }
+        for (Method method : beanClass.getMethods()) {
+            // 接口方法和实现方法共享同一组注解
+            List<Method> variants = new ArrayList<>();
+            variants.add(method);
+            for (Class<?> ifc : interfaces) {
+                try {
+                    variants.add(ifc.getMethod(method.getName(), method.getParameterTypes()));
+                } catch (NoSuchMethodException e) {
+                    // 接口没有声明该方法
+                }
+            }
+            for (Method variant : variants) {
+                for (Annotation annotation : variant.getAnnotations()) {
+                    for (Method annotated : variants) {
+                        addMethod(annotation.annotationType(), beanClass, annotated);
+                    }
+                }
+            }
+        }
+    }
+
+    private static void collectInterfaces(Class<?>[] candidates, Set<Class<?>> interfaces) {
+        for (Class<?> ifc : candidates) {
+            if (interfaces.add(ifc)) {
+                collectInterfaces(ifc.getInterfaces(), interfaces);
+            }
+        }
+    }
+
+    private void addMethod(Class<? extends Annotation> annotationType, Class<?> beanClass, Method method) {
+        index.computeIfAbsent(annotationType, key -> new ConcurrentHashMap<>())
+                .computeIfAbsent(beanClass, key -> ConcurrentHashMap.newKeySet())
+                .add(method);
+    }
+}
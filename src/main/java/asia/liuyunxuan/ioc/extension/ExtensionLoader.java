@@ -100,6 +100,22 @@ public class ExtensionLoader{
         return (V) singletonsObject.get(name);
     }
 
+    /**
+     * 根据扩展名获取对应的扩展实现类，不会创建实例。
+     * <p>
+     * 适用于每次使用都需要新实例、不能共享单例的扩展。按接口查找，不同接口下的同名扩展互不影响。
+     *
+     * @param interfaceClass 扩展接口
+     * @param name 扩展名称
+     * @param <T> 接口类型
+     * @return 扩展实现类，未注册时返回null
+     */
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    public <T> Class<? extends T> getExtensionClass(Class<T> interfaceClass, String name) {
+        Map<String, Class> classMap = extensionClassCaches.get(interfaceClass.getName());
+        return classMap == null ? null : (Class<? extends T>) classMap.get(name);
+    }
+
     /**
      * 获取指定接口的所有扩展实现
      *
@@ -1,6 +1,5 @@
 package asia.liuyunxuan.ioc.runtime.message;
 
-import asia.liuyunxuan.ioc.component.ComponentException;
 import asia.liuyunxuan.ioc.component.container.ComponentProvider;
 import asia.liuyunxuan.ioc.component.container.ComponentFactoryAware;
 import asia.liuyunxuan.ioc.runtime.Message;
@@ -9,16 +8,25 @@ import asia.liuyunxuan.ioc.common.ClassUtils;
 
 import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
+import java.lang.reflect.TypeVariable;
+import java.lang.reflect.WildcardType;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
-import java.util.LinkedHashSet;
-import java.util.LinkedList;
-import java.util.Set;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * 应用事件广播器的抽象实现，提供了基础的事件监听器管理和事件分发功能。
  * 
  * <p>此类实现了ApplicationEventMulticaster接口，提供了监听器注册表的管理
- * 以及事件类型匹配的核心逻辑。它使用反射机制来确定监听器是否支持特定类型的事件。
+ * 以及事件类型匹配的核心逻辑。监听器的事件类型在注册时通过反射解析一次，
+ * 之后按事件类型缓存匹配的监听器数组，添加或移除监听器时缓存失效，
+ * 因此广播事件时通常只需要一次缓存查找，没有监听器的事件类型同样如此。
  * 
  * <p>此类还实现了BeanFactoryAware接口，允许访问BeanFactory，以便在需要时
  * 获取其他Bean。
@@ -34,21 +42,35 @@ import java.util.Set;
  */
 public abstract class AbstractMessageMulticaster implements MessageMulticaster, ComponentFactoryAware {
 
+    private static final MessageSubscriber<?>[] NO_SUBSCRIBERS = new MessageSubscriber<?>[0];
+
+    /**
+     * 应用监听器及其事件类型，保持注册顺序并确保唯一性，只在持有锁时修改
+     */
+    private final Map<MessageSubscriber<?>, Class<?>> messageSubscribers = new LinkedHashMap<>();
+
     /**
-     * 应用监听器集合，存储所有注册的事件监听器。
-     * 使用LinkedHashSet保持注册顺序并确保唯一性。
+     * 注册表的只读快照，每次添加或移除监听器时重建
      */
-    public final Set<MessageSubscriber<Message>> messageSubscribers = new LinkedHashSet<>();
+    private volatile SubscriberRegistration[] registrations = new SubscriberRegistration[0];
 
     /**
-     * 添加一个应用监听器到注册表中。
+     * 事件类型到匹配监听器的缓存，添加或移除监听器时整体替换
+     */
+    private volatile Map<Class<?>, MessageSubscriber<?>[]> listenerCache = new ConcurrentHashMap<>();
+
+    /**
+     * 添加一个应用监听器到注册表中，同时解析监听器的事件类型。
      * 
      * @param listener 要添加的监听器，不能为null
      */
-    @SuppressWarnings("unchecked")
     @Override
     public void addApplicationListener(MessageSubscriber<?> listener) {
-        messageSubscribers.add((MessageSubscriber<Message>) listener);
+        synchronized (messageSubscribers) {
+            if (messageSubscribers.containsKey(listener)) return;
+            messageSubscribers.put(listener, resolveEventType(listener));
+            refreshRegistrations();
+        }
     }
 
     /**
@@ -58,7 +80,22 @@ public abstract class AbstractMessageMulticaster implements MessageMulticaster,
      */
     @Override
     public void removeApplicationListener(MessageSubscriber<?> listener) {
-        messageSubscribers.remove(listener);
+        synchronized (messageSubscribers) {
+            if (messageSubscribers.remove(listener) == null) return;
+            refreshRegistrations();
+        }
+    }
+
+    /**
+     * 先发布新的快照再替换缓存，读到新缓存的线程一定能读到新的快照
+     */
+    private void refreshRegistrations() {
+        List<SubscriberRegistration> snapshot = new ArrayList<>(messageSubscribers.size());
+        for (Map.Entry<MessageSubscriber<?>, Class<?>> entry : messageSubscribers.entrySet()) {
+            snapshot.add(new SubscriberRegistration(entry.getKey(), entry.getValue()));
+        }
+        registrations = snapshot.toArray(new SubscriberRegistration[0]);
+        listenerCache = new ConcurrentHashMap<>();
     }
 
     /**
@@ -77,53 +114,170 @@ public abstract class AbstractMessageMulticaster implements MessageMulticaster,
 
     /**
      * 获取支持给定事件的所有监听器。
-     * <p>此方法遍历所有注册的监听器，并使用supportsEvent方法
-     * 检查每个监听器是否支持给定的事件类型。
      * 
      * @param event 要处理的事件，不能为null
-     * @return 支持给定事件的监听器集合
+     * @return 支持给定事件的监听器集合，只读
      */
     @SuppressWarnings("rawtypes")
     protected Collection<MessageSubscriber> getApplicationListeners(Message event) {
-        LinkedList<MessageSubscriber> allListeners = new LinkedList<>();
-        for (MessageSubscriber<Message> listener : messageSubscribers) {
-            if (supportsEvent(listener, event)) allListeners.add(listener);
+        // Arrays.asList直接包装缓存的数组，set会改写缓存，必须再包装成只读列表
+        return Collections.unmodifiableList(Arrays.asList((MessageSubscriber[]) getApplicationListeners(event.getClass())));
+    }
+
+    /**
+     * 获取支持给定事件类型的所有监听器，按注册顺序排列。
+     * <p>结果按事件类型缓存，同一事件类型第二次广播时只需要一次缓存查找。
+     * 返回的数组是缓存本身，调用方不能修改。
+     *
+     * @param eventType 事件类型
+     * @return 支持该事件类型的监听器，没有时返回空数组
+     */
+    protected MessageSubscriber<?>[] getApplicationListeners(Class<? extends Message> eventType) {
+        Map<Class<?>, MessageSubscriber<?>[]> cache = this.listenerCache;
+        MessageSubscriber<?>[] listeners = cache.get(eventType);
+        if (listeners == null) {
+            listeners = retrieveApplicationListeners(eventType);
+            cache.put(eventType, listeners);
         }
-        return allListeners;
+        return listeners;
+    }
+
+    private MessageSubscriber<?>[] retrieveApplicationListeners(Class<?> eventType) {
+        List<MessageSubscriber<?>> listeners = new ArrayList<>();
+        for (SubscriberRegistration registration : registrations) {
+            if (registration.eventType.isAssignableFrom(eventType)) {
+                listeners.add(registration.subscriber);
+            }
+        }
+        return listeners.isEmpty() ? NO_SUBSCRIBERS : listeners.toArray(NO_SUBSCRIBERS);
     }
 
 
     /**
      * 检查给定的监听器是否支持给定的事件类型。
-     * <p>此方法使用反射机制来确定监听器声明的泛型类型，并检查
-     * 事件是否是该类型的实例或子类型。
-     * <p>此方法处理了CGLIB代理类的特殊情况，确保能够正确获取
-     * 目标类的泛型信息。
      * 
      * @param messageSubscriber 要检查的监听器，不能为null
      * @param event 要检查的事件，不能为null
      * @return 如果监听器支持给定事件类型，则返回true
-     * @throws ComponentException 如果无法解析事件类名
      */
-    @SuppressWarnings("rawtypes")
     protected boolean supportsEvent(MessageSubscriber<Message> messageSubscriber, Message event) {
-        Class<? extends MessageSubscriber> listenerClass = messageSubscriber.getClass();
+        Class<?> eventType;
+        synchronized (messageSubscribers) {
+            eventType = messageSubscribers.get(messageSubscriber);
+        }
+        if (eventType == null) {
+            eventType = resolveEventType(messageSubscriber);
+        }
+        return eventType.isAssignableFrom(event.getClass());
+    }
 
-        // 按照 CglibSubclassingInstantiationStrategy、SimpleInstantiationStrategy 不同的实例化类型，需要判断后获取目标 class
+    /**
+     * 解析监听器声明的事件类型。
+     * <p>沿监听器的父类和接口查找{@link MessageSubscriber}的泛型参数，
+     * CGLIB生成的子类会继续在父类中查找。泛型参数是类型变量时按父类和接口声明中的绑定继续解析，
+     * 例如{@code class X extends Base<FooEvent>}且{@code Base<E> implements MessageSubscriber<E>}时解析为FooEvent。
+     * 直接实现原始类型的{@link MessageSubscriber}（包括lambda）时监听所有事件。
+     *
+     * @param messageSubscriber 监听器，不能为null
+     * @return 监听器的事件类型
+     * @throws IllegalArgumentException 事件类型是无法确定的类型变量，例如直接创建的泛型监听器实例
+     */
+    protected Class<?> resolveEventType(MessageSubscriber<?> messageSubscriber) {
+        Class<?> listenerClass = messageSubscriber.getClass();
         Class<?> targetClass = ClassUtils.isCglibProxyClass(listenerClass) ? listenerClass.getSuperclass() : listenerClass;
-        Type genericInterface = targetClass.getGenericInterfaces()[0];
-
-        Type actualTypeArgument = ((ParameterizedType) genericInterface).getActualTypeArguments()[0];
-        String className = actualTypeArgument.getTypeName();
-        Class<?> eventClassName;
-        try {
-            eventClassName = Class.forName(className);
-        } catch (ClassNotFoundException e) {
-            throw new ComponentException("wrong message class name: " + className);
-        }
-        // 判定此 eventClassName 对象所表示的类或接口与指定的 message.getClass() 参数所表示的类或接口是否相同，或是否是其超类或超接口。
-        // isAssignableFrom是用来判断子类和父类的关系的，或者接口的实现类和接口的关系的，默认所有的类的终极父类都是Object。如果A.isAssignableFrom(B)结果是true，证明B可以转换成为A,也就是A可以由B转换而来。
-        return eventClassName.isAssignableFrom(event.getClass());
+        Type eventType = findEventType(targetClass, Collections.emptyMap());
+        if (eventType == null) return Message.class;
+        Class<?> eventClass = toClass(eventType);
+        if (eventClass == null) {
+            throw new IllegalArgumentException("Cannot resolve event type of listener [" + listenerClass.getName()
+                    + "]: type variable " + eventType + " is not bound by its class hierarchy");
+        }
+        return eventClass;
+    }
+
+    /**
+     * 在类的接口和父类中查找{@link MessageSubscriber}的泛型参数
+     *
+     * @param type 要查找的类
+     * @param bindings 该类的类型变量在子类声明中绑定的类型
+     * @return 泛型参数，可能是未绑定的类型变量；没有找到参数化的{@link MessageSubscriber}时返回null
+     */
+    private static Type findEventType(Class<?> type, Map<TypeVariable<?>, Type> bindings) {
+        for (Type genericInterface : type.getGenericInterfaces()) {
+            Type eventType = findEventTypeInSupertype(genericInterface, bindings);
+            if (eventType != null) return eventType;
+        }
+        Type superclass = type.getGenericSuperclass();
+        if (superclass == null || superclass == Object.class) return null;
+        return findEventTypeInSupertype(superclass, bindings);
+    }
+
+    private static Type findEventTypeInSupertype(Type supertype, Map<TypeVariable<?>, Type> bindings) {
+        if (supertype instanceof Class) {
+            Class<?> raw = (Class<?>) supertype;
+            // 原始类型的MessageSubscriber没有泛型参数，继承原始类型的父类时类型变量已被擦除
+            return raw != MessageSubscriber.class && MessageSubscriber.class.isAssignableFrom(raw)
+                    ? findEventType(raw, Collections.emptyMap()) : null;
+        }
+        if (!(supertype instanceof ParameterizedType)) return null;
+        ParameterizedType parameterizedType = (ParameterizedType) supertype;
+        Class<?> raw = (Class<?>) parameterizedType.getRawType();
+        if (!MessageSubscriber.class.isAssignableFrom(raw)) return null;
+        Type[] arguments = parameterizedType.getActualTypeArguments();
+        if (raw == MessageSubscriber.class) {
+            return resolve(arguments[0], bindings);
+        }
+        TypeVariable<?>[] typeParameters = raw.getTypeParameters();
+        Map<TypeVariable<?>, Type> rawBindings = new HashMap<>();
+        for (int i = 0; i < typeParameters.length; i++) {
+            rawBindings.put(typeParameters[i], resolve(arguments[i], bindings));
+        }
+        return findEventType(raw, rawBindings);
+    }
+
+    private static Type resolve(Type type, Map<TypeVariable<?>, Type> bindings) {
+        if (type instanceof TypeVariable) {
+            Type bound = bindings.get(type);
+            return bound != null ? bound : type;
+        }
+        if (type instanceof WildcardType) {
+            // MessageSubscriber<? extends E>按E的绑定解析
+            Type upperBound = ((WildcardType) type).getUpperBounds()[0];
+            return upperBound instanceof TypeVariable ? resolve(upperBound, bindings) : type;
+        }
+        return type;
+    }
+
+    /**
+     * 把解析出的泛型参数转换为事件类，通配符取上界，类型变量无法转换时返回null
+     */
+    private static Class<?> toClass(Type type) {
+        if (type instanceof Class) {
+            return (Class<?>) type;
+        }
+        if (type instanceof ParameterizedType) {
+            return (Class<?>) ((ParameterizedType) type).getRawType();
+        }
+        if (type instanceof WildcardType) {
+            Type[] upperBounds = ((WildcardType) type).getUpperBounds();
+            return upperBounds[0] == Object.class ? Message.class : toClass(upperBounds[0]);
+        }
+        return null;
+    }
+
+    /**
+     * 注册的监听器及其事件类型
+     */
+    private static final class SubscriberRegistration {
+
+        private final MessageSubscriber<?> subscriber;
+
+        private final Class<?> eventType;
+
+        SubscriberRegistration(MessageSubscriber<?> subscriber, Class<?> eventType) {
+            this.subscriber = subscriber;
+            this.eventType = eventType;
+        }
     }
 
 }
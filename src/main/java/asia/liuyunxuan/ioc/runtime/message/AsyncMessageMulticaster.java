@@ -0,0 +1,344 @@
+package asia.liuyunxuan.ioc.runtime.message;
+
+import asia.liuyunxuan.ioc.common.ErrorReporter;
+import asia.liuyunxuan.ioc.common.VirtualThreads;
+import asia.liuyunxuan.ioc.component.container.ComponentProvider;
+import asia.liuyunxuan.ioc.component.container.DisposableComponent;
+import asia.liuyunxuan.ioc.runtime.Message;
+import asia.liuyunxuan.ioc.runtime.MessageSubscriber;
+
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 异步的事件广播器，发布事件的线程把事件放入监听器的队列后立即返回。
+ * 
+ * <p>每个监听器有自己的事件队列，同一个监听器按发布顺序依次处理事件，
+ * 不同监听器在执行器的不同线程上并行处理。监听器抛出的异常交给{@link ErrorReporter}报告，
+ * 不影响其它监听器，也不影响同一监听器后续的事件。
+ * 
+ * <p>移除监听器时队列中已有的事件仍然处理完，队列空闲之后才丢弃，
+ * 因此移除后立即重新添加的监听器同样按发布顺序收到事件。
+ * 
+ * <p>事件的执行器可以通过{@link #setExecutor}指定，未指定时在第一次广播时创建：
+ * 运行时支持虚拟线程（JDK 21及以上）时每个任务使用一个虚拟线程，否则使用大小为处理器数量的线程池。
+ * 
+ * <p>在上下文中定义名为{@code messageMulticaster}的Bean即可替换默认的{@link SimpleMessageMulticaster}：
+ * <pre>
+ * &lt;bean id="messageMulticaster" class="asia.liuyunxuan.ioc.runtime.message.AsyncMessageMulticaster"/&gt;
+ * </pre>
+ * 上下文关闭时，发布关闭事件后调用{@link #destroy()}，在shutdownTimeout毫秒内等待已发布的事件处理完，
+ * 之后发布的事件在发布线程上同步处理。
+ *
+ * @author liuyunxuan
+ * @see AbstractMessageMulticaster
+ * @see SimpleMessageMulticaster
+ * @since 1.0
+ */
+public class AsyncMessageMulticaster extends AbstractMessageMulticaster implements DisposableComponent {
+
+    private Executor executor;
+
+    private long shutdownTimeout = 10_000;
+
+    /**
+     * 实际使用的执行器，第一次广播时创建
+     */
+    private volatile Executor activeExecutor;
+
+    /**
+     * 执行器是否由广播器创建，关闭时只关闭自己创建的执行器
+     */
+    private boolean ownsExecutor;
+
+    private volatile boolean closed;
+
+    /**
+     * 每个监听器的事件队列
+     */
+    private final Map<MessageSubscriber<?>, ListenerQueue> queues = new ConcurrentHashMap<>();
+
+    /**
+     * 已发布但还没有处理完的事件数
+     */
+    private final AtomicLong pending = new AtomicLong();
+
+    private final LongAdder errorCount = new LongAdder();
+
+    /**
+     * 创建异步事件广播器，执行器在第一次广播时创建
+     */
+    public AsyncMessageMulticaster() {
+    }
+
+    /**
+     * 创建异步事件广播器。
+     *
+     * @param componentProvider 要设置的BeanFactory
+     */
+    public AsyncMessageMulticaster(ComponentProvider componentProvider) {
+        setBeanFactory(componentProvider);
+    }
+
+    /**
+     * 把事件放入每个匹配监听器的队列，立即返回。
+     * 广播器关闭之后在当前线程上同步处理，监听器的队列中还有关闭时没有处理完的事件时排在这些事件之后，保持发布顺序。
+     *
+     * @param event 要广播的事件，不能为null
+     */
+    @Override
+    public void multicastEvent(Message event) {
+        MessageSubscriber<?>[] listeners = getApplicationListeners(event.getClass());
+        if (listeners.length == 0) return;
+        if (closed) {
+            Executor executor = activeExecutor;
+            for (MessageSubscriber<?> listener : listeners) {
+                ListenerQueue queue = executor == null ? null : queues.get(listener);
+                if (queue != null) {
+                    // 执行器已关闭时队列在发布线程上处理，先处理完排在前面的事件
+                    pending.incrementAndGet();
+                    if (queue.enqueue(event, executor)) continue;
+                    completed();
+                }
+                deliver(listener, event);
+            }
+            return;
+        }
+        Executor executor = getExecutor();
+        for (MessageSubscriber<?> listener : listeners) {
+            pending.incrementAndGet();
+            ListenerQueue queue;
+            do {
+                queue = queues.get(listener);
+                if (queue == null) {
+                    queue = queues.computeIfAbsent(listener, ListenerQueue::new);
+                }
+                // 队列在监听器移除后已经丢弃，此时换一个新的队列
+            } while (!queue.enqueue(event, executor));
+        }
+    }
+
+    @Override
+    public void removeApplicationListener(MessageSubscriber<?> listener) {
+        super.removeApplicationListener(listener);
+        // 已经入队的事件仍然由处理任务处理完，队列空闲后才丢弃，避免同一个监听器同时有两个队列
+        ListenerQueue queue = queues.get(listener);
+        if (queue != null) {
+            queue.remove();
+        }
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private void deliver(MessageSubscriber listener, Message event) {
+        try {
+            listener.onApplicationEvent(event);
+        } catch (Throwable e) {
+            errorCount.increment();
+            ErrorReporter.report("Unexpected exception in listener " + describe(listener) + " handling " + describe(event), e);
+        }
+    }
+
+    /**
+     * 报告异常时使用的描述，toString抛出异常时退回类名和identityHashCode
+     */
+    private static String describe(Object object) {
+        try {
+            return String.valueOf(object);
+        } catch (Throwable e) {
+            return object.getClass().getName() + "@" + Integer.toHexString(System.identityHashCode(object));
+        }
+    }
+
+    private void completed() {
+        if (pending.decrementAndGet() == 0) {
+            synchronized (pending) {
+                pending.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * 获取发布事件使用的执行器，第一次调用时创建
+     *
+     * @return 执行器
+     */
+    public Executor getExecutor() {
+        Executor executor = this.activeExecutor;
+        if (executor == null) {
+            synchronized (this) {
+                executor = this.activeExecutor;
+                if (executor == null) {
+                    if (this.executor != null) {
+                        executor = this.executor;
+                    } else {
+                        executor = createExecutor();
+                        ownsExecutor = true;
+                    }
+                    this.activeExecutor = executor;
+                }
+            }
+        }
+        return executor;
+    }
+
+    private static ExecutorService createExecutor() {
+        ExecutorService virtualThreadExecutor = VirtualThreads.newVirtualThreadPerTaskExecutor();
+        if (virtualThreadExecutor != null) {
+            return virtualThreadExecutor;
+        }
+        AtomicInteger threadNumber = new AtomicInteger();
+        return Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), runnable -> {
+            Thread thread = new Thread(runnable, "message-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * 停止异步处理，等待已发布的事件处理完，超时后不再等待。
+     * 广播器创建的执行器随之关闭，重复调用没有效果。
+     */
+    @Override
+    public void destroy() throws InterruptedException {
+        Executor executor;
+        synchronized (this) {
+            if (closed) return;
+            closed = true;
+            executor = this.activeExecutor;
+        }
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(shutdownTimeout);
+        synchronized (pending) {
+            long remaining;
+            while (pending.get() > 0 && (remaining = deadline - System.nanoTime()) > 0) {
+                TimeUnit.NANOSECONDS.timedWait(pending, remaining);
+            }
+        }
+        if (ownsExecutor && executor instanceof ExecutorService) {
+            ((ExecutorService) executor).shutdown();
+        }
+    }
+
+    /**
+     * 获取已发布但还没有处理完的事件数，一个事件对每个匹配的监听器各计一次
+     *
+     * @return 未处理完的事件数
+     */
+    public long getPendingCount() {
+        return pending.get();
+    }
+
+    /**
+     * 获取监听器抛出异常的次数
+     *
+     * @return 异常次数
+     */
+    public long getErrorCount() {
+        return errorCount.sum();
+    }
+
+    public void setExecutor(Executor executor) {
+        this.executor = executor;
+    }
+
+    public void setShutdownTimeout(long shutdownTimeout) {
+        this.shutdownTimeout = shutdownTimeout;
+    }
+
+    /**
+     * 一个监听器的事件队列，同一时刻最多有一个任务处理队列，保证事件按发布顺序处理。
+     * <p>
+     * 监听器移除后队列在空闲时丢弃，丢弃之后不再接受事件，发布线程改用新的队列。
+     * 入队和丢弃在队列的锁内完成，新队列只会在旧队列处理完所有事件之后出现。
+     */
+    private final class ListenerQueue implements Runnable {
+
+        private final MessageSubscriber<?> listener;
+
+        private final Queue<Message> events = new ConcurrentLinkedQueue<>();
+
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+
+        /**
+         * 监听器已经移除，队列空闲时丢弃
+         */
+        private boolean removed;
+
+        /**
+         * 队列已经从{@link #queues}中丢弃
+         */
+        private boolean discarded;
+
+        ListenerQueue(MessageSubscriber<?> listener) {
+            this.listener = listener;
+        }
+
+        /**
+         * 加入一个事件
+         *
+         * @return 队列已经丢弃时返回false
+         */
+        boolean enqueue(Message event, Executor executor) {
+            synchronized (this) {
+                if (discarded) return false;
+                events.offer(event);
+            }
+            schedule(executor);
+            return true;
+        }
+
+        void remove() {
+            synchronized (this) {
+                removed = true;
+            }
+            discardIfIdle();
+        }
+
+        private void discardIfIdle() {
+            synchronized (this) {
+                if (!removed || discarded || scheduled.get() || !events.isEmpty()) return;
+                discarded = true;
+            }
+            queues.remove(listener, this);
+        }
+
+        private void schedule(Executor executor) {
+            if (!scheduled.compareAndSet(false, true)) return;
+            try {
+                executor.execute(this);
+            } catch (RejectedExecutionException e) {
+                // 执行器已关闭或者已满时在发布线程上处理
+                run();
+            }
+        }
+
+        @Override
+        public void run() {
+            Message event;
+            while ((event = events.poll()) != null) {
+                try {
+                    deliver(listener, event);
+                } finally {
+                    completed();
+                }
+            }
+            scheduled.set(false);
+            // 清除标记之前入队的事件可能没有触发新的任务
+            if (!events.isEmpty()) {
+                schedule(activeExecutor != null ? activeExecutor : getExecutor());
+                return;
+            }
+            discardIfIdle();
+        }
+    }
+}
@@ -42,7 +42,7 @@ public class SimpleMessageMulticaster extends AbstractMessageMulticaster {
     @SuppressWarnings({"unchecked", "rawtypes"})
     @Override
     public void multicastEvent(final Message event) {
-        for (final MessageSubscriber listener : getApplicationListeners(event)) {
+        for (final MessageSubscriber listener : getApplicationListeners(event.getClass())) {
             listener.onApplicationEvent(event);
         }
     }
@@ -2,6 +2,7 @@ package asia.liuyunxuan.ioc.runtime.support;
 
 import asia.liuyunxuan.ioc.component.ComponentException;
 import asia.liuyunxuan.ioc.component.container.ConfigurableRegistry;
+import asia.liuyunxuan.ioc.component.container.DisposableComponent;
 import asia.liuyunxuan.ioc.component.container.config.ComponentProviderPostProcessor;
 import asia.liuyunxuan.ioc.component.container.config.BeanPostProcessor;
 import asia.liuyunxuan.ioc.runtime.Message;
@@ -13,6 +14,7 @@ import asia.liuyunxuan.ioc.runtime.message.ContextRefreshedEvent;
 import asia.liuyunxuan.ioc.runtime.message.SimpleMessageMulticaster;
 import asia.liuyunxuan.ioc.kernel.io.DefaultResourceLoader;
 
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Map;
 
@@ -129,10 +131,16 @@ public abstract class AbstractContext extends DefaultResourceLoader implements C
     /**
      * 初始化ApplicationEventMulticaster。
      * <p>
-     * 如果上下文中没有定义，则使用SimpleApplicationEventMulticaster。
+     * 如果上下文中定义了名为{@value #APPLICATION_EVENT_MULTICASTER_BEAN_NAME}的Bean（例如
+     * {@link asia.liuyunxuan.ioc.runtime.message.AsyncMessageMulticaster}），则使用该Bean，
+     * 否则使用SimpleApplicationEventMulticaster。
      */
     private void initApplicationEventMulticaster() {
         ConfigurableRegistry beanFactory = getBeanFactory();
+        if (Arrays.asList(beanFactory.getBeanDefinitionNames()).contains(APPLICATION_EVENT_MULTICASTER_BEAN_NAME)) {
+            messageMulticaster = beanFactory.getBean(APPLICATION_EVENT_MULTICASTER_BEAN_NAME, MessageMulticaster.class);
+            return;
+        }
         messageMulticaster = new SimpleMessageMulticaster(beanFactory);
         beanFactory.registerSingleton(APPLICATION_EVENT_MULTICASTER_BEAN_NAME, messageMulticaster);
     }
@@ -169,6 +177,11 @@ public abstract class AbstractContext extends DefaultResourceLoader implements C
         return getBeanFactory().getBeansOfType(type);
     }
 
+    @Override
+    public String[] getBeanNamesForType(Class<?> type) {
+        return getBeanFactory().getBeanNamesForType(type);
+    }
+
     @Override
     public String[] getBeanDefinitionNames() {
         return getBeanFactory().getBeanDefinitionNames();
@@ -200,15 +213,35 @@ public abstract class AbstractContext extends DefaultResourceLoader implements C
     /**
      * 关闭此应用上下文。
      * <p>
-     * 发布上下文关闭事件，并销毁所有单例Bean。
+     * 发布上下文关闭事件，等待事件广播器处理完已发布的事件，然后销毁所有单例Bean。
+     * 持有执行器的Bean（例如{@link asia.liuyunxuan.ioc.aspect.AsyncExecutionInterceptor}）在销毁时关闭执行器，
+     * 并等待已提交的任务完成。
+     * <p>
+     * 发布关闭事件或者等待事件处理失败时仍然销毁单例Bean；等待期间线程被中断时不再等待，并保留中断标记。
      */
     @Override
     public void close() {
-        // 发布容器关闭事件
-        publishEvent(new ContextClosedEvent(this));
+        try {
+            // 发布容器关闭事件
+            publishEvent(new ContextClosedEvent(this));
+
+            // 异步广播器需要在销毁其它Bean之前处理完已发布的事件
+            drainMessageMulticaster();
+        } finally {
+            // 执行销毁单例bean的销毁方法
+            getBeanFactory().destroySingletons();
+        }
+    }
 
-        // 执行销毁单例bean的销毁方法
-        getBeanFactory().destroySingletons();
+    private void drainMessageMulticaster() {
+        if (!(messageMulticaster instanceof DisposableComponent)) return;
+        try {
+            ((DisposableComponent) messageMulticaster).destroy();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            throw new ComponentException("Failed to drain message multicaster", e);
+        }
     }
 
 }
@@ -2,42 +2,111 @@ package asia.liuyunxuan.ioc;
 
 import asia.liuyunxuan.ioc.aspect.*;
 import asia.liuyunxuan.ioc.aspect.aspectj.AspectJExpressionJoinPointSelector;
+import asia.liuyunxuan.ioc.aspect.aspectj.AspectJExpressionPointcutAspectAdvisor;
+import asia.liuyunxuan.ioc.aspect.cache.CachingInterceptor;
+import asia.liuyunxuan.ioc.aspect.cache.EvictionPolicy;
+import asia.liuyunxuan.ioc.aspect.cache.LfuEvictionPolicy;
+import asia.liuyunxuan.ioc.aspect.cache.LruEvictionPolicy;
+import asia.liuyunxuan.ioc.aspect.cache.ResultCache;
+import asia.liuyunxuan.ioc.aspect.cache.TinyLfuEvictionPolicy;
+import asia.liuyunxuan.ioc.aspect.framework.adapter.MethodBeforeAdviceInterceptor;
+import asia.liuyunxuan.ioc.aspect.framework.autoproxy.DefaultAdvisorAutoProxyCreator;
+import asia.liuyunxuan.ioc.aspect.framework.BytecodeAopProxy;
 import asia.liuyunxuan.ioc.aspect.framework.Cglib2AopProxy;
 import asia.liuyunxuan.ioc.aspect.framework.JdkDynamicAopProxy;
+import asia.liuyunxuan.ioc.aspect.framework.ProxyFactory;
 import asia.liuyunxuan.ioc.aspect.framework.ReflectiveMethodInvocation;
+import asia.liuyunxuan.ioc.aspect.framework.weaving.WeavingClassLoader;
+import asia.liuyunxuan.ioc.aspect.framework.weaving.WeavingSupport;
+import asia.liuyunxuan.ioc.aspect.framework.weaving.WeavingTransformer;
+import asia.liuyunxuan.ioc.aspect.framework.weaving.Woven;
+import asia.liuyunxuan.ioc.aspect.limit.AimdLimit;
+import asia.liuyunxuan.ioc.aspect.limit.ConcurrencyLimitInterceptor;
+import asia.liuyunxuan.ioc.aspect.limit.LimitExceededException;
+import asia.liuyunxuan.ioc.aspect.metrics.LatencySnapshot;
+import asia.liuyunxuan.ioc.aspect.metrics.MethodMetrics;
+import asia.liuyunxuan.ioc.aspect.metrics.MetricsInterceptor;
+import asia.liuyunxuan.ioc.aspect.target.HotSwappableTargetSource;
+import asia.liuyunxuan.ioc.aspect.target.LazyInitTargetSource;
+import asia.liuyunxuan.ioc.aspect.target.PooledTargetSource;
+import asia.liuyunxuan.ioc.aspect.target.ThreadLocalTargetSource;
+import asia.liuyunxuan.ioc.bean.ColdBean;
+import asia.liuyunxuan.ioc.bean.InjectedBean;
 import asia.liuyunxuan.ioc.bean.Student2Service;
 import asia.liuyunxuan.ioc.bean.StudentService;
 import asia.liuyunxuan.ioc.bean.UserDao;
 import asia.liuyunxuan.ioc.bean.UserService;
+import asia.liuyunxuan.ioc.common.CglibClassCache;
 import asia.liuyunxuan.ioc.common.MyComponentProviderPostProcessor;
 import asia.liuyunxuan.ioc.component.PropertyValue;
 import asia.liuyunxuan.ioc.component.PropertyValues;
+import asia.liuyunxuan.ioc.component.container.annotation.AutoInjectAnnotationComponentPostProcessor;
 import asia.liuyunxuan.ioc.component.container.config.ComponentDefinition;
 import asia.liuyunxuan.ioc.component.container.config.ComponentReference;
+import asia.liuyunxuan.ioc.component.container.support.CglibSubclassingInstantiationStrategy;
 import asia.liuyunxuan.ioc.component.container.support.DefaultRegistry;
 import asia.liuyunxuan.ioc.component.container.support.InstantiationStrategy;
 import asia.liuyunxuan.ioc.component.container.xml.XmlComponentDefinitionReader;
 import asia.liuyunxuan.ioc.common.MyBeanPostProcessor;
+import asia.liuyunxuan.ioc.runtime.MessageSubscriber;
+import asia.liuyunxuan.ioc.runtime.message.AsyncMessageMulticaster;
+import asia.liuyunxuan.ioc.runtime.message.ContextClosedEvent;
+import asia.liuyunxuan.ioc.runtime.message.ContextRefreshedEvent;
+import asia.liuyunxuan.ioc.runtime.message.SimpleMessageMulticaster;
 import asia.liuyunxuan.ioc.runtime.support.ClassPathXmlContext;
 import asia.liuyunxuan.ioc.kernel.io.DefaultResourceLoader;
 import asia.liuyunxuan.ioc.kernel.io.Resource;
 import asia.liuyunxuan.ioc.dependence.Husband;
+import asia.liuyunxuan.ioc.dependence.SpouseAdvice;
 import asia.liuyunxuan.ioc.dependence.Wife;
 import asia.liuyunxuan.ioc.event.CustomEvent;
+import asia.liuyunxuan.ioc.event.EventCounter;
+import asia.liuyunxuan.ioc.proxy.AuditService;
+import asia.liuyunxuan.ioc.proxy.CountingInterceptor;
+import asia.liuyunxuan.ioc.proxy.ICalculator;
+import asia.liuyunxuan.ioc.proxy.EchoService;
+import asia.liuyunxuan.ioc.proxy.IAuditService;
+import asia.liuyunxuan.ioc.proxy.IEchoService;
+import asia.liuyunxuan.ioc.proxy.IInventoryService;
+import asia.liuyunxuan.ioc.proxy.IProfileRepository;
+import asia.liuyunxuan.ioc.proxy.IQuoteService;
+import asia.liuyunxuan.ioc.proxy.ISearchIndex;
 import asia.liuyunxuan.ioc.proxy.IUserService;
+import asia.liuyunxuan.ioc.proxy.InventoryService;
+import asia.liuyunxuan.ioc.proxy.ProfileRepository;
+import asia.liuyunxuan.ioc.proxy.QuoteService;
+import asia.liuyunxuan.ioc.proxy.SearchIndex;
+import asia.liuyunxuan.ioc.proxy.Timed;
 import asia.liuyunxuan.ioc.extension.ExtensionLoader;
 import net.sf.cglib.proxy.Enhancer;
 import net.sf.cglib.proxy.NoOp;
 import org.aopalliance.intercept.MethodInterceptor;
+import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 
 import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.PrintStream;
 import java.lang.reflect.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
 import java.util.stream.Collectors;
 
 public class ApiTest {
@@ -321,4 +390,1539 @@ public class ApiTest {
         });
     }
 
+    @Test
+    public void test_concurrent_singleton() throws Exception {
+        int threads = 64;
+        int beans = 200;
+        DefaultRegistry beanFactory = new DefaultRegistry();
+        for (int i = 0; i < beans; i++) {
+            beanFactory.registerBeanDefinition("coldBean" + i, new ComponentDefinition(ColdBean.class));
+        }
+        ColdBean.INSTANCES.set(0);
+
+        // 64 个线程同时按相同顺序获取冷启动的单例
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        Future<?>[] futures = new Future<?>[threads];
+        for (int t = 0; t < threads; t++) {
+            futures[t] = executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < beans; i++) {
+                    Assert.assertNotNull(beanFactory.getBean("coldBean" + i));
+                }
+                return null;
+            });
+        }
+        long begin = System.nanoTime();
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        long cost = System.nanoTime() - begin;
+        executor.shutdown();
+        executor.awaitTermination(10, TimeUnit.SECONDS);
+
+        System.out.println("线程数：" + threads + "，Bean数：" + beans + "，实例化次数：" + ColdBean.INSTANCES.get());
+        System.out.println("耗时：" + TimeUnit.NANOSECONDS.toMillis(cost) + "ms，吞吐：" + (threads * beans * 1_000_000_000L / cost) + " getBean/s");
+        Assert.assertEquals(beans, ColdBean.INSTANCES.get());
+        for (int i = 0; i < beans; i++) {
+            Assert.assertSame(beanFactory.getBean("coldBean" + i), beanFactory.getBean("coldBean" + i));
+        }
+    }
+
+    @Test
+    public void test_type_index() {
+        for (int beans : new int[]{1_000, 10_000, 50_000}) {
+            DefaultRegistry beanFactory = new DefaultRegistry();
+            AutoInjectAnnotationComponentPostProcessor processor = new AutoInjectAnnotationComponentPostProcessor();
+            processor.setBeanFactory(beanFactory);
+            beanFactory.addBeanPostProcessor(processor);
+
+            beanFactory.registerBeanDefinition("userDao", new ComponentDefinition(UserDao.class));
+            for (int i = 0; i < beans; i++) {
+                beanFactory.registerBeanDefinition("injectedBean" + i, new ComponentDefinition(InjectedBean.class));
+            }
+            Assert.assertEquals(beans, beanFactory.getBeanNamesForType(InjectedBean.class).length);
+            Assert.assertEquals(beans + 1, beanFactory.getBeanNamesForType(Object.class).length);
+
+            // 每个 Bean 的 @AutoInject 字段都会按类型查找一次
+            long begin = System.nanoTime();
+            beanFactory.preInstantiateSingletons();
+            long cost = System.nanoTime() - begin;
+
+            InjectedBean injectedBean = beanFactory.getBean("injectedBean0", InjectedBean.class);
+            Assert.assertSame(beanFactory.getBean(UserDao.class), injectedBean.getUserDao());
+            System.out.println("Bean数：" + beans + "，刷新耗时：" + TimeUnit.NANOSECONDS.toMillis(cost) + "ms");
+        }
+    }
+
+    @Test
+    public void test_advisor_cache() {
+        int advisors = 20, beans = 5_000;
+        DefaultRegistry beanFactory = new DefaultRegistry();
+        DefaultAdvisorAutoProxyCreator autoProxyCreator = new DefaultAdvisorAutoProxyCreator();
+        autoProxyCreator.setBeanFactory(beanFactory);
+        beanFactory.addBeanPostProcessor(autoProxyCreator);
+
+        beanFactory.registerBeanDefinition("spouseAdvice", new ComponentDefinition(SpouseAdvice.class));
+        PropertyValues interceptorValues = new PropertyValues();
+        interceptorValues.addPropertyValue(new PropertyValue("advice", new ComponentReference("spouseAdvice")));
+        beanFactory.registerBeanDefinition("methodInterceptor", new ComponentDefinition(MethodBeforeAdviceInterceptor.class, interceptorValues));
+        for (int i = 0; i < advisors; i++) {
+            PropertyValues advisorValues = new PropertyValues();
+            advisorValues.addPropertyValue(new PropertyValue("expression", "execution(* asia.liuyunxuan.ioc.bean.UserDao.queryUserName" + i + "*(..))"));
+            advisorValues.addPropertyValue(new PropertyValue("advice", new ComponentReference("methodInterceptor")));
+            beanFactory.registerBeanDefinition("advisor" + i, new ComponentDefinition(AspectJExpressionPointcutAspectAdvisor.class, advisorValues));
+        }
+        for (int i = 0; i < beans; i++) {
+            beanFactory.registerBeanDefinition("injectedBean" + i, new ComponentDefinition(InjectedBean.class));
+        }
+
+        // 没有切面匹配 InjectedBean，每个 Bean 只需要检查一次是否需要代理
+        long begin = System.nanoTime();
+        beanFactory.preInstantiateSingletons();
+        long cost = System.nanoTime() - begin;
+        Assert.assertSame(InjectedBean.class, beanFactory.getBean("injectedBean0").getClass());
+        System.out.println("切面数：" + advisors + "，Bean数：" + beans + "，刷新耗时：" + TimeUnit.NANOSECONDS.toMillis(cost) + "ms");
+
+        // 注册新的 Bean 定义后切面缓存失效，匹配的 Bean 依然会被代理
+        beanFactory.registerBeanDefinition("userDao", new ComponentDefinition(UserDao.class));
+        Assert.assertNotSame(UserDao.class, beanFactory.getBean("userDao").getClass());
+    }
+
+    @Test
+    public void test_proxy_invocation() {
+        CountingInterceptor interceptor = new CountingInterceptor();
+        AdvisedSupport advisedSupport = new AdvisedSupport();
+        advisedSupport.setTargetSource(new TargetSource(new EchoService()));
+        advisedSupport.setMethodInterceptor(interceptor);
+        advisedSupport.setMethodMatcher(new AspectJExpressionJoinPointSelector("execution(* asia.liuyunxuan.ioc.proxy.IEchoService.echo(..))"));
+
+        IEchoService jdkProxy = (IEchoService) new JdkDynamicAopProxy(advisedSupport).getProxy();
+        IEchoService cglibProxy = (IEchoService) new Cglib2AopProxy(advisedSupport).getProxy();
+        int calls = 1_000_000;
+        for (IEchoService proxy : new IEchoService[]{jdkProxy, cglibProxy}) {
+            String name = proxy == jdkProxy ? "jdk" : "cglib";
+            // 预热后再计时，echo 匹配切点，length 不匹配
+            benchmarkCalls(proxy, calls);
+            long[] costs = benchmarkCalls(proxy, calls);
+            System.out.println(name + " 代理，有通知调用：" + costs[0] / calls + "ns/次，无通知调用：" + costs[1] / calls + "ns/次");
+        }
+        Assert.assertEquals(4L * calls, interceptor.getCount());
+
+        // 通知位置相同的代理共用同一个代理类
+        AdvisedSupport otherAdvised = new AdvisedSupport();
+        otherAdvised.setTargetSource(new TargetSource(new EchoService()));
+        otherAdvised.setMethodInterceptor(new CountingInterceptor());
+        otherAdvised.setMethodMatcher(new AspectJExpressionJoinPointSelector("execution(* asia.liuyunxuan.ioc.proxy.IEchoService.echo(..))"));
+        Assert.assertSame(cglibProxy.getClass(), new Cglib2AopProxy(otherAdvised).getProxy().getClass());
+    }
+
+    @Test
+    public void test_target_method_invoker() throws Throwable {
+        // 基本类型返回值按包装类型返回
+        Method length = IEchoService.class.getMethod("length", String.class);
+        Assert.assertEquals(5, new ReflectiveMethodInvocation(new EchoService(), length, new Object[]{"hello"}).proceed());
+        Method getAsInt = java.util.function.IntSupplier.class.getMethod("getAsInt");
+        Assert.assertEquals(42, new ReflectiveMethodInvocation(new PrivateTask(), getAsInt, null).proceed());
+
+        // 私有类上的方法需要放开访问检查，调用方传入的Method不受影响
+        Method call = PrivateTask.class.getDeclaredMethod("call");
+        try {
+            new ReflectiveMethodInvocation(new PrivateTask(), call, null).proceed();
+            Assert.fail();
+        } catch (IOException e) {
+            // 目标方法的异常原样抛出，不包装成InvocationTargetException
+            Assert.assertEquals("call failed", e.getMessage());
+        }
+        // 传入的Method没有被放开访问检查，公共查找仍然无法访问私有类的方法
+        try {
+            java.lang.invoke.MethodHandles.publicLookup().unreflect(call);
+            Assert.fail();
+        } catch (IllegalAccessException e) {
+            // 预期的访问失败
+        }
+
+        // 可变参数方法按声明的参数数组调用，有通知和没有通知的JDK代理调用都不会再次收集参数
+        for (String expression : new String[]{"execution(* asia.liuyunxuan.ioc.proxy.IEchoService.join(..))",
+                "execution(* asia.liuyunxuan.ioc.proxy.IEchoService.echo(..))"}) {
+            AdvisedSupport advisedSupport = new AdvisedSupport();
+            advisedSupport.setTargetSource(new TargetSource(new EchoService()));
+            advisedSupport.setMethodInterceptor(new CountingInterceptor());
+            advisedSupport.setMethodMatcher(new AspectJExpressionJoinPointSelector(expression));
+            IEchoService jdkProxy = (IEchoService) new JdkDynamicAopProxy(advisedSupport).getProxy();
+            Assert.assertEquals("a,b", jdkProxy.join("a", "b"));
+            Assert.assertEquals("", jdkProxy.join());
+        }
+    }
+
+    private static class PrivateTask implements java.util.function.IntSupplier, java.util.concurrent.Callable<Object> {
+
+        @Override
+        public int getAsInt() {
+            return 42;
+        }
+
+        @Override
+        public Object call() throws IOException {
+            throw new IOException("call failed");
+        }
+    }
+
+    @Test
+    public void test_invocation_allocation() {
+        com.sun.management.ThreadMXBean threadMXBean = (com.sun.management.ThreadMXBean) java.lang.management.ManagementFactory.getThreadMXBean();
+        int calls = 1_000_000;
+        for (boolean reuse : new boolean[]{false, true}) {
+            CountingInterceptor interceptor = new CountingInterceptor();
+            AdvisedSupport advisedSupport = new AdvisedSupport();
+            advisedSupport.setTargetSource(new TargetSource(new EchoService()));
+            advisedSupport.setMethodInterceptor(interceptor);
+            advisedSupport.setMethodMatcher(new AspectJExpressionJoinPointSelector("execution(* asia.liuyunxuan.ioc.proxy.IEchoService.echo(..))"));
+            advisedSupport.setReuseInvocation(reuse);
+            IEchoService jdkProxy = (IEchoService) new JdkDynamicAopProxy(advisedSupport).getProxy();
+            IEchoService cglibProxy = (IEchoService) new Cglib2AopProxy(advisedSupport).getProxy();
+            for (IEchoService proxy : new IEchoService[]{jdkProxy, cglibProxy}) {
+                // 预热后再统计当前线程分配的字节数
+                advisedCalls(proxy, calls);
+                long begin = threadMXBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+                long cost = advisedCalls(proxy, calls);
+                long bytes = (threadMXBean.getThreadAllocatedBytes(Thread.currentThread().getId()) - begin) / calls;
+                System.out.println((proxy == jdkProxy ? "jdk" : "cglib") + " 代理，复用调用对象：" + reuse + "，有通知调用：" + cost / calls + "ns/次，" + bytes + "字节/次");
+                // 复用时每次调用只剩下参数数组的分配
+                if (reuse) Assert.assertTrue(bytes <= 32);
+            }
+            Assert.assertEquals(4L * calls, interceptor.getCount());
+        }
+
+        // 拦截器内部再次调用代理时，嵌套调用使用新的调用对象
+        AdvisedSupport advisedSupport = new AdvisedSupport();
+        advisedSupport.setTargetSource(new TargetSource(new EchoService()));
+        advisedSupport.setReuseInvocation(true);
+        IEchoService[] holder = new IEchoService[1];
+        advisedSupport.setMethodInterceptor(invocation -> {
+            Object result = invocation.proceed();
+            return "echo".equals(invocation.getArguments()[0]) ? holder[0].echo("nested") + result : result;
+        });
+        advisedSupport.setMethodMatcher(new AspectJExpressionJoinPointSelector("execution(* asia.liuyunxuan.ioc.proxy.IEchoService.echo(..))"));
+        holder[0] = (IEchoService) new Cglib2AopProxy(advisedSupport).getProxy();
+        Assert.assertEquals("nestedecho", holder[0].echo("echo"));
+        holder[0] = (IEchoService) new JdkDynamicAopProxy(advisedSupport).getProxy();
+        Assert.assertEquals("nestedecho", holder[0].echo("echo"));
+    }
+
+    @Test
+    public void test_bytecode_proxy() {
+        CountingInterceptor interceptor = new CountingInterceptor();
+        AdvisedSupport advisedSupport = new AdvisedSupport();
+        EchoService target = new EchoService();
+        advisedSupport.setTargetSource(new TargetSource(target));
+        advisedSupport.setMethodInterceptor(interceptor);
+        advisedSupport.setMethodMatcher(new AspectJExpressionJoinPointSelector("execution(* asia.liuyunxuan.ioc.proxy.IEchoService.echo(..))"));
+
+        IEchoService bytecodeProxy = (IEchoService) new BytecodeAopProxy(advisedSupport).getProxy();
+        Assert.assertEquals("hello", bytecodeProxy.echo("hello"));
+        Assert.assertEquals(5, bytecodeProxy.length("hello"));
+        Assert.assertEquals(1L, interceptor.getCount());
+        Assert.assertEquals(target.hashCode(), bytecodeProxy.hashCode());
+        Assert.assertEquals(target.toString(), bytecodeProxy.toString());
+        // 同一目标类型共用一个代理类
+        Assert.assertSame(bytecodeProxy.getClass(), new BytecodeAopProxy(advisedSupport).getProxy().getClass());
+
+        IEchoService jdkProxy = (IEchoService) new JdkDynamicAopProxy(advisedSupport).getProxy();
+        IEchoService cglibProxy = (IEchoService) new Cglib2AopProxy(advisedSupport).getProxy();
+        int calls = 1_000_000;
+        for (IEchoService proxy : new IEchoService[]{jdkProxy, cglibProxy, bytecodeProxy}) {
+            String name = proxy == jdkProxy ? "jdk" : proxy == cglibProxy ? "cglib" : "bytecode";
+            benchmarkCalls(proxy, calls);
+            long[] costs = benchmarkCalls(proxy, calls);
+            System.out.println(name + " 代理，有通知调用：" + costs[0] / calls + "ns/次，无通知调用：" + costs[1] / calls + "ns/次");
+        }
+        Assert.assertEquals(1L + 6L * calls, interceptor.getCount());
+
+        // 通过自动代理创建器的 proxyName 选择字节码代理
+        DefaultRegistry beanFactory = new DefaultRegistry();
+        DefaultAdvisorAutoProxyCreator autoProxyCreator = new DefaultAdvisorAutoProxyCreator();
+        autoProxyCreator.setBeanFactory(beanFactory);
+        autoProxyCreator.setProxyName("bytecode");
+        beanFactory.addBeanPostProcessor(autoProxyCreator);
+        beanFactory.registerSingleton("countingInterceptor", new CountingInterceptor());
+        PropertyValues advisorValues = new PropertyValues();
+        advisorValues.addPropertyValue(new PropertyValue("expression", "execution(* asia.liuyunxuan.ioc.proxy.IEchoService.echo(..))"));
+        advisorValues.addPropertyValue(new PropertyValue("advice", new ComponentReference("countingInterceptor")));
+        beanFactory.registerBeanDefinition("advisor", new ComponentDefinition(AspectJExpressionPointcutAspectAdvisor.class, advisorValues));
+        beanFactory.registerBeanDefinition("echoService", new ComponentDefinition(EchoService.class));
+        IEchoService echoService = beanFactory.getBean("echoService", IEchoService.class);
+        Assert.assertEquals("hello", echoService.echo("hello"));
+        Assert.assertSame(bytecodeProxy.getClass(), echoService.getClass());
+        Assert.assertEquals(1L, beanFactory.getBean("countingInterceptor", CountingInterceptor.class).getCount());
+    }
+
+    @Test
+    public void test_concurrent_proxy_creation() throws Exception {
+        String[] proxyNames = {"jdk", "cglib", "bytecode"};
+        ExecutorService executor = Executors.newFixedThreadPool(16);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Boolean>> futures = new ArrayList<>();
+        for (int i = 0; i < 600; i++) {
+            String proxyName = proxyNames[i % proxyNames.length];
+            futures.add(executor.submit(() -> {
+                CountingInterceptor interceptor = new CountingInterceptor();
+                EchoService target = new EchoService();
+                AdvisedSupport advisedSupport = new AdvisedSupport();
+                advisedSupport.setTargetSource(new TargetSource(target));
+                advisedSupport.setMethodInterceptor(interceptor);
+                advisedSupport.setMethodMatcher(new AspectJExpressionJoinPointSelector("execution(* asia.liuyunxuan.ioc.proxy.IEchoService.echo(..))"));
+                start.await();
+                // 每个代理只能调用到自己的目标对象和拦截器
+                IEchoService proxy = (IEchoService) new ProxyFactory(advisedSupport).getProxy(proxyName);
+                return "hello".equals(proxy.echo("hello"))
+                        && interceptor.getCount() == 1L
+                        && target.toString().equals(proxy.toString());
+            }));
+        }
+        start.countDown();
+        for (Future<Boolean> future : futures) {
+            Assert.assertTrue(future.get());
+        }
+        executor.shutdown();
+    }
+
+    @Test
+    public void test_target_source() throws Exception {
+        String[] proxyNames = {"jdk", "cglib", "bytecode"};
+        for (String proxyName : proxyNames) {
+            // 池化：并发调用时同时使用的目标对象不超过上限，调用结束后全部归还
+            PooledTargetSource<EchoService> pooled = new PooledTargetSource<>(EchoService.class, EchoService::new, 2);
+            IEchoService pooledProxy = (IEchoService) new ProxyFactory(targetSourceAdvised(pooled)).getProxy(proxyName);
+            ExecutorService executor = Executors.newFixedThreadPool(8);
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                futures.add(executor.submit(() -> {
+                    for (int j = 0; j < 1000; j++) {
+                        Assert.assertEquals("hello", pooledProxy.echo("hello"));
+                        Assert.assertEquals(5, pooledProxy.length("hello"));
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+            Assert.assertTrue(pooled.getCreatedCount() <= 2);
+            Assert.assertEquals(0, pooled.getActiveCount());
+            Assert.assertEquals(pooled.getCreatedCount(), pooled.getIdleCount());
+
+            // 线程隔离：每个线程使用自己的目标对象
+            ThreadLocalTargetSource<EchoService> threadLocal = new ThreadLocalTargetSource<>(EchoService.class, EchoService::new);
+            IEchoService threadLocalProxy = (IEchoService) new ProxyFactory(targetSourceAdvised(threadLocal)).getProxy(proxyName);
+            String mainTarget = threadLocalProxy.toString();
+            Assert.assertEquals(mainTarget, threadLocalProxy.toString());
+            Assert.assertFalse(mainTarget.equals(executor.submit(threadLocalProxy::toString).get()));
+            Assert.assertEquals(2, threadLocal.getCreatedCount());
+            executor.shutdown();
+
+            // 热替换：替换目标后不需要重新创建代理
+            EchoService first = new EchoService();
+            EchoService second = new EchoService();
+            HotSwappableTargetSource swappable = new HotSwappableTargetSource(first);
+            IEchoService swappableProxy = (IEchoService) new ProxyFactory(targetSourceAdvised(swappable)).getProxy(proxyName);
+            Assert.assertEquals(first.toString(), swappableProxy.toString());
+            Assert.assertSame(first, swappable.swap(second));
+            Assert.assertEquals(second.toString(), swappableProxy.toString());
+            Assert.assertEquals("hello", swappableProxy.echo("hello"));
+
+            // 延迟创建：创建代理不会创建目标对象
+            LazyInitTargetSource<EchoService> lazy = new LazyInitTargetSource<>(EchoService.class, EchoService::new);
+            IEchoService lazyProxy = (IEchoService) new ProxyFactory(targetSourceAdvised(lazy)).getProxy(proxyName);
+            Assert.assertFalse(lazy.isInitialized());
+            Assert.assertEquals("hello", lazyProxy.echo("hello"));
+            Assert.assertTrue(lazy.isInitialized());
+            Assert.assertEquals(lazy.getTarget().toString(), lazyProxy.toString());
+
+            // 没有接口的类型同样不会因为创建代理而执行构造函数
+            if (!"jdk".equals(proxyName)) {
+                int instances = ColdBean.INSTANCES.get();
+                LazyInitTargetSource<ColdBean> lazyCold = new LazyInitTargetSource<>(ColdBean.class, ColdBean::new);
+                Object coldProxy = new ProxyFactory(targetSourceAdvised(lazyCold)).getProxy(proxyName);
+                Assert.assertEquals(instances, ColdBean.INSTANCES.get());
+                Assert.assertEquals(lazyCold.getTarget().hashCode(), coldProxy.hashCode());
+                Assert.assertEquals(instances + 1, ColdBean.INSTANCES.get());
+            }
+        }
+    }
+
+    private static AdvisedSupport targetSourceAdvised(TargetSource targetSource) {
+        AdvisedSupport advisedSupport = new AdvisedSupport();
+        advisedSupport.setTargetSource(targetSource);
+        advisedSupport.setMethodInterceptor(new CountingInterceptor());
+        advisedSupport.setMethodMatcher(new AspectJExpressionJoinPointSelector("execution(* asia.liuyunxuan.ioc.proxy.IEchoService.echo(..))"));
+        return advisedSupport;
+    }
+
+    @Test
+    public void test_pointcut_parse_cache() throws Exception {
+        int advisors = 500, expressions = 10;
+        DefaultRegistry beanFactory = new DefaultRegistry();
+        DefaultAdvisorAutoProxyCreator autoProxyCreator = new DefaultAdvisorAutoProxyCreator();
+        autoProxyCreator.setBeanFactory(beanFactory);
+        beanFactory.addBeanPostProcessor(autoProxyCreator);
+        beanFactory.registerSingleton("countingInterceptor", new CountingInterceptor());
+        for (int i = 0; i < advisors; i++) {
+            // 大量通知器只使用少量不同的表达式
+            PropertyValues advisorValues = new PropertyValues();
+            advisorValues.addPropertyValue(new PropertyValue("expression", "execution(* asia.liuyunxuan.ioc.bean.UserDao.parseCache" + i % expressions + "*(..))"));
+            advisorValues.addPropertyValue(new PropertyValue("advice", new ComponentReference("countingInterceptor")));
+            beanFactory.registerBeanDefinition("advisor" + i, new ComponentDefinition(AspectJExpressionPointcutAspectAdvisor.class, advisorValues));
+        }
+        beanFactory.registerBeanDefinition("userDao", new ComponentDefinition(UserDao.class));
+
+        long parses = AspectJExpressionJoinPointSelector.getParseCount();
+        long begin = System.nanoTime();
+        beanFactory.preInstantiateSingletons();
+        long cost = System.nanoTime() - begin;
+        long parsed = AspectJExpressionJoinPointSelector.getParseCount() - parses;
+        System.out.println("通知器数：" + advisors + "，表达式解析次数：" + parsed + "，刷新耗时：" + TimeUnit.NANOSECONDS.toMillis(cost) + "ms");
+        Assert.assertEquals(expressions, parsed);
+
+        // 同一个通知器被并发获取切点时只创建一次
+        AspectJExpressionPointcutAspectAdvisor advisor = new AspectJExpressionPointcutAspectAdvisor();
+        advisor.setExpression("execution(* asia.liuyunxuan.ioc.bean.UserDao.parseCacheConcurrent*(..))");
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<JoinPointSelector>> futures = new ArrayList<>();
+        for (int i = 0; i < 64; i++) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                return advisor.getPointcut();
+            }));
+        }
+        start.countDown();
+        JoinPointSelector pointcut = futures.get(0).get();
+        for (Future<JoinPointSelector> future : futures) {
+            Assert.assertSame(pointcut, future.get());
+        }
+        executor.shutdown();
+    }
+
+    @Test
+    public void test_name_pattern_pointcut() throws Exception {
+        Method echo = IEchoService.class.getMethod("echo", String.class);
+        Method length = IEchoService.class.getMethod("length", String.class);
+        String[] expressions = {
+                "execution(* asia.liuyunxuan.ioc.proxy.IEchoService.echo(..))",
+                "execution(* asia.liuyunxuan.ioc.proxy.*.e*o(..))",
+                "execution(* asia.liuyunxuan.ioc..*Service.*(..))",
+                "execution(* asia.liuyunxuan.ioc.bean.*.*(..))"
+        };
+        // 方法匹配结果与 AspectJ 表达式一致，类过滤比 AspectJ 的快速匹配更精确
+        for (String expression : expressions) {
+            AspectJExpressionJoinPointSelector aspectj = new AspectJExpressionJoinPointSelector(expression);
+            NamePatternJoinPointSelector namePattern = new NamePatternJoinPointSelector(expression);
+            Assert.assertEquals(expression, !expression.contains(".bean."), namePattern.matches(EchoService.class));
+            Assert.assertEquals(expression, aspectj.matches(echo, EchoService.class), namePattern.matches(echo, EchoService.class));
+            Assert.assertEquals(expression, aspectj.matches(length, EchoService.class), namePattern.matches(length, EchoService.class));
+        }
+        NamePatternJoinPointSelector annotated = new NamePatternJoinPointSelector("@annotation(asia.liuyunxuan.ioc.proxy.Timed) || within(asia.liuyunxuan.ioc.bean.*)");
+        Assert.assertTrue(annotated.matches(echo, EchoService.class));
+        Assert.assertFalse(annotated.matches(length, EchoService.class));
+        Assert.assertTrue(annotated.matches(UserDao.class));
+        Assert.assertFalse(annotated.matches(Husband.class));
+
+        // 编译和匹配耗时对比
+        int rounds = 2_000;
+        for (int round = 0; round < 2; round++) {
+            long begin = System.nanoTime();
+            for (int i = 0; i < rounds; i++) {
+                AspectJExpressionJoinPointSelector selector = new AspectJExpressionJoinPointSelector("execution(* asia.liuyunxuan.ioc..*Service.length" + i + "(..))");
+                selector.matches(EchoService.class);
+                selector.matches(length, EchoService.class);
+            }
+            long aspectjCost = System.nanoTime() - begin;
+            begin = System.nanoTime();
+            for (int i = 0; i < rounds; i++) {
+                NamePatternJoinPointSelector selector = new NamePatternJoinPointSelector("execution(* asia.liuyunxuan.ioc..*Service.length" + i + "(..))");
+                selector.matches(EchoService.class);
+                selector.matches(length, EchoService.class);
+            }
+            long namePatternCost = System.nanoTime() - begin;
+            System.out.println("第" + (round + 1) + "轮，AspectJ切点：" + aspectjCost / rounds + "ns/个，名称模式切点：" + namePatternCost / rounds + "ns/个");
+        }
+
+        // 与 AspectJ 通知器相同的配置方式
+        DefaultRegistry beanFactory = new DefaultRegistry();
+        DefaultAdvisorAutoProxyCreator autoProxyCreator = new DefaultAdvisorAutoProxyCreator();
+        autoProxyCreator.setBeanFactory(beanFactory);
+        beanFactory.addBeanPostProcessor(autoProxyCreator);
+        beanFactory.registerSingleton("countingInterceptor", new CountingInterceptor());
+        PropertyValues advisorValues = new PropertyValues();
+        advisorValues.addPropertyValue(new PropertyValue("expression", "execution(* asia.liuyunxuan.ioc.proxy.IEchoService.echo(..))"));
+        advisorValues.addPropertyValue(new PropertyValue("advice", new ComponentReference("countingInterceptor")));
+        beanFactory.registerBeanDefinition("advisor", new ComponentDefinition(NamePatternPointcutAspectAdvisor.class, advisorValues));
+        beanFactory.registerBeanDefinition("echoService", new ComponentDefinition(EchoService.class));
+        IEchoService echoService = beanFactory.getBean("echoService", IEchoService.class);
+        Assert.assertEquals("hello", echoService.echo("hello"));
+        Assert.assertEquals(5, echoService.length("hello"));
+        Assert.assertEquals(1L, beanFactory.getBean("countingInterceptor", CountingInterceptor.class).getCount());
+    }
+
+    @Test
+    public void test_result_cache() throws Throwable {
+        DefaultRegistry beanFactory = new DefaultRegistry();
+        DefaultAdvisorAutoProxyCreator autoProxyCreator = new DefaultAdvisorAutoProxyCreator();
+        autoProxyCreator.setBeanFactory(beanFactory);
+        beanFactory.addBeanPostProcessor(autoProxyCreator);
+        beanFactory.registerSingleton("cachingInterceptor", new CachingInterceptor());
+        PropertyValues advisorValues = new PropertyValues();
+        advisorValues.addPropertyValue(new PropertyValue("annotationType", "asia.liuyunxuan.ioc.aspect.cache.Cacheable"));
+        advisorValues.addPropertyValue(new PropertyValue("advice", new ComponentReference("cachingInterceptor")));
+        beanFactory.registerBeanDefinition("cacheAdvisor", new ComponentDefinition(AnnotationPointcutAspectAdvisor.class, advisorValues));
+        beanFactory.registerBeanDefinition("quoteService", new ComponentDefinition(QuoteService.class));
+
+        IQuoteService quoteService = beanFactory.getBean("quoteService", IQuoteService.class);
+        CachingInterceptor cachingInterceptor = beanFactory.getBean("cachingInterceptor", CachingInterceptor.class);
+        Assert.assertEquals(quoteService.quote("AAPL"), quoteService.quote("AAPL"));
+        Assert.assertEquals(1, quoteService.getCalls());
+        Assert.assertEquals(1L, cachingInterceptor.getStats().getHitCount());
+
+        // 同一类型的另一个Bean不会拿到其它Bean缓存的结果
+        beanFactory.registerBeanDefinition("otherQuoteService", new ComponentDefinition(QuoteService.class));
+        IQuoteService otherQuoteService = beanFactory.getBean("otherQuoteService", IQuoteService.class);
+        Assert.assertEquals(quoteService.quote("AAPL"), otherQuoteService.quote("AAPL"));
+        Assert.assertEquals(1, otherQuoteService.getCalls());
+        Assert.assertEquals(1, quoteService.getCalls());
+
+        // 并发请求同一个未命中的key只调用一次目标方法
+        ExecutorService executor = Executors.newFixedThreadPool(16);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Long>> futures = new ArrayList<>();
+        for (int i = 0; i < 16; i++) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                return quoteService.quote("MSFT");
+            }));
+        }
+        start.countDown();
+        for (Future<Long> future : futures) {
+            Assert.assertEquals((long) "MSFT".hashCode(), (long) future.get());
+        }
+        executor.shutdown();
+        Assert.assertEquals(2, quoteService.getCalls());
+        System.out.println("结果缓存统计：" + cachingInterceptor.getStats());
+
+        // 淘汰策略：LRU 淘汰最久未访问的条目，LFU 淘汰命中次数最少的条目
+        ResultCache<String> lru = new ResultCache<>(new LruEvictionPolicy<>(), 2);
+        lru.put("a", 1);
+        lru.put("b", 2);
+        Assert.assertEquals(1, lru.get("a", () -> 0));
+        lru.put("c", 3);
+        Assert.assertTrue(lru.containsKey("a"));
+        Assert.assertFalse(lru.containsKey("b"));
+        ResultCache<String> lfu = new ResultCache<>(new LfuEvictionPolicy<>(), 2);
+        lfu.put("a", 1);
+        lfu.put("b", 2);
+        lfu.get("b", () -> 0);
+        lfu.get("b", () -> 0);
+        lfu.get("a", () -> 0);
+        lfu.put("c", 3);
+        Assert.assertTrue(lfu.containsKey("b"));
+        Assert.assertFalse(lfu.containsKey("a"));
+        Assert.assertEquals(1L, lfu.getStats().getEvictionCount());
+
+        // 按权重限制大小，写入后过期
+        ResultCache<String> weighted = new ResultCache<>(new LruEvictionPolicy<>(), 10, (key, value) -> ((String) value).length(), 50, TimeUnit.MILLISECONDS);
+        weighted.put("a", "abcd");
+        weighted.put("b", "abcd");
+        weighted.put("c", "abcd");
+        Assert.assertEquals(8L, weighted.getWeightedSize());
+        weighted.put("huge", "abcdefghijk");
+        Assert.assertFalse(weighted.containsKey("huge"));
+        Thread.sleep(80);
+        Assert.assertEquals("new", weighted.get("b", () -> "new"));
+        Assert.assertEquals(1L, weighted.getStats().getExpirationCount());
+
+        // 热点访问夹杂一次性扫描时比较各淘汰策略的命中率
+        int capacity = 100, requests = 200_000;
+        for (String policy : new String[]{"lru", "lfu", "tinylfu"}) {
+            cacheWorkload(policy, capacity, requests);
+            long begin = System.nanoTime();
+            double hitRate = cacheWorkload(policy, capacity, requests);
+            long cost = System.nanoTime() - begin;
+            System.out.println(policy + " 淘汰策略，命中率：" + String.format("%.3f", hitRate) + "，" + cost / requests + "ns/次");
+            if ("tinylfu".equals(policy)) {
+                Assert.assertTrue(hitRate > 0.2);
+            }
+        }
+
+        // 多线程同时命中时读路径不加锁
+        ResultCache<Integer> hot = new ResultCache<>(new TinyLfuEvictionPolicy<>(capacity), capacity);
+        for (int i = 0; i < 64; i++) {
+            hot.put(i, i);
+        }
+        int threads = 8, reads = 500_000;
+        ExecutorService readers = Executors.newFixedThreadPool(threads);
+        for (int round = 0; round < 2; round++) {
+            CountDownLatch ready = new CountDownLatch(1);
+            List<Future<?>> readFutures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                int offset = t;
+                readFutures.add(readers.submit(() -> {
+                    ready.await();
+                    hotReads(hot, reads, offset);
+                    return null;
+                }));
+            }
+            long begin = System.nanoTime();
+            ready.countDown();
+            for (Future<?> future : readFutures) {
+                future.get();
+            }
+            long cost = System.nanoTime() - begin;
+            System.out.println("第" + (round + 1) + "轮，" + threads + " 个线程并发命中：" + cost / reads + "ns/" + threads + "次");
+        }
+        readers.shutdown();
+        Assert.assertEquals(2L * threads * reads, hot.getStats().getHitCount());
+        Assert.assertEquals(64, hot.size());
+    }
+
+    private static void hotReads(ResultCache<Integer> cache, int reads, int offset) throws Exception {
+        try {
+            for (int i = 0; i < reads; i++) {
+                Integer key = (i + offset) & 63;
+                Assert.assertEquals(key, cache.get(key, () -> -1));
+            }
+        } catch (Exception | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * 四分之一的请求访问 80 个热点 key，其余请求是只访问一次的扫描，返回命中率
+     */
+    private static double cacheWorkload(String policy, int capacity, int requests) throws Throwable {
+        EvictionPolicy<Integer> evictionPolicy = "lru".equals(policy) ? new LruEvictionPolicy<>()
+                : "lfu".equals(policy) ? new LfuEvictionPolicy<>() : new TinyLfuEvictionPolicy<>(capacity);
+        ResultCache<Integer> cache = new ResultCache<>(evictionPolicy, capacity);
+        Random random = new Random(42);
+        int scanKey = 1_000_000;
+        for (int i = 0; i < requests; i++) {
+            Integer key = random.nextInt(4) == 0 ? random.nextInt(80) : scanKey++;
+            cache.get(key, () -> key);
+        }
+        return cache.getStats().getHitRate();
+    }
+
+    @Test
+    public void test_async_execution() throws Exception {
+        DefaultRegistry beanFactory = new DefaultRegistry();
+        DefaultAdvisorAutoProxyCreator autoProxyCreator = new DefaultAdvisorAutoProxyCreator();
+        autoProxyCreator.setBeanFactory(beanFactory);
+        beanFactory.addBeanPostProcessor(autoProxyCreator);
+        PropertyValues interceptorValues = new PropertyValues();
+        interceptorValues.addPropertyValue(new PropertyValue("poolSize", 4));
+        beanFactory.registerBeanDefinition("asyncExecutionInterceptor", new ComponentDefinition(AsyncExecutionInterceptor.class, interceptorValues));
+        PropertyValues advisorValues = new PropertyValues();
+        advisorValues.addPropertyValue(new PropertyValue("annotationType", "asia.liuyunxuan.ioc.aspect.Async"));
+        advisorValues.addPropertyValue(new PropertyValue("advice", new ComponentReference("asyncExecutionInterceptor")));
+        beanFactory.registerBeanDefinition("asyncAdvisor", new ComponentDefinition(AnnotationPointcutAspectAdvisor.class, advisorValues));
+        beanFactory.registerBeanDefinition("auditService", new ComponentDefinition(AuditService.class));
+
+        IAuditService auditService = beanFactory.getBean("auditService", IAuditService.class);
+        String caller = Thread.currentThread().getName();
+        Assert.assertFalse(caller.equals(auditService.currentThreadName().get()));
+
+        // 调用线程不等待审计日志写完
+        long begin = System.nanoTime();
+        for (int i = 0; i < 4; i++) {
+            auditService.record("event" + i);
+        }
+        long cost = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - begin);
+        System.out.println("异步提交 4 条审计日志耗时：" + cost + "ms");
+        Assert.assertTrue(cost < 100);
+        Assert.assertTrue(auditService.getRecords().isEmpty());
+
+        // 关闭容器时等待已提交的任务完成并关闭线程池
+        AsyncExecutionInterceptor interceptor = beanFactory.getBean("asyncExecutionInterceptor", AsyncExecutionInterceptor.class);
+        ExecutorService executor = interceptor.getExecutor();
+        beanFactory.destroySingletons();
+        Assert.assertTrue(executor.isTerminated());
+        Assert.assertEquals(4, auditService.getRecords().size());
+
+        // 返回Object的方法同步执行，返回值不会变成future
+        Assert.assertTrue(auditService.lastRecord() instanceof String);
+
+        // 关闭之后的异步调用不会再创建新的线程池
+        try {
+            auditService.record("closed");
+            Assert.fail();
+        } catch (IllegalStateException e) {
+            Assert.assertEquals("AsyncExecutionInterceptor has been destroyed", e.getMessage());
+        }
+
+        // 外部传入的执行器由调用方关闭
+        ExecutorService external = Executors.newSingleThreadExecutor();
+        AsyncExecutionInterceptor externalInterceptor = new AsyncExecutionInterceptor();
+        externalInterceptor.setExecutor(external);
+        Assert.assertSame(external, externalInterceptor.getExecutor());
+        externalInterceptor.destroy();
+        Assert.assertFalse(external.isShutdown());
+        external.shutdown();
+    }
+
+    @Test
+    public void test_single_flight() throws Exception {
+        SingleFlightInterceptor singleFlight = new SingleFlightInterceptor();
+        QuoteService target = new QuoteService();
+        AdvisedSupport advisedSupport = new AdvisedSupport();
+        advisedSupport.setTargetSource(new TargetSource(target));
+        advisedSupport.setMethodInterceptor(singleFlight);
+        advisedSupport.setMethodMatcher(new AspectJExpressionJoinPointSelector("execution(* asia.liuyunxuan.ioc.proxy.IQuoteService.quote(..))"));
+        IQuoteService quoteService = (IQuoteService) new ProxyFactory(advisedSupport).getProxy();
+
+        // 64 个线程同时以相同参数调用，只有少数调用到达目标方法
+        int threads = 64;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Long>> futures = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                return quoteService.quote("CONFIG");
+            }));
+        }
+        start.countDown();
+        for (Future<Long> future : futures) {
+            Assert.assertEquals((long) "CONFIG".hashCode(), (long) future.get());
+        }
+        System.out.println("并发相同调用数：" + threads + "，目标方法调用次数：" + target.getCalls() + "，合并次数：" + singleFlight.getCoalescedCount());
+        Assert.assertEquals(threads, singleFlight.getExecutionCount() + singleFlight.getCoalescedCount());
+        Assert.assertTrue(target.getCalls() < threads / 4);
+
+        // 自定义 key 并设置等待超时：第一个调用阻塞时，其余调用等待超时后失败
+        SingleFlightInterceptor timeoutFlight = new SingleFlightInterceptor();
+        timeoutFlight.setKeyGenerator(invocation -> ((String) invocation.getArguments()[0]).toLowerCase());
+        timeoutFlight.setTimeout(50);
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AdvisedSupport blockingAdvised = new AdvisedSupport();
+        blockingAdvised.setTargetSource(new TargetSource(new QuoteService()));
+        blockingAdvised.setMethodInterceptor(timeoutFlight);
+        blockingAdvised.setMethodMatcher(new AspectJExpressionJoinPointSelector("execution(* asia.liuyunxuan.ioc.proxy.IQuoteService.quote(..))"));
+        blockingAdvised.addAdvisor(() -> (MethodInterceptor) invocation -> {
+            if ("quote".equals(invocation.getMethod().getName())) {
+                entered.countDown();
+                release.await();
+            }
+            return invocation.proceed();
+        });
+        IQuoteService blockingService = (IQuoteService) new ProxyFactory(blockingAdvised).getProxy();
+        Future<Long> first = executor.submit(() -> blockingService.quote("key"));
+        entered.await();
+        try {
+            blockingService.quote("KEY");
+            Assert.fail("waiting for the in-flight call should time out");
+        } catch (IllegalStateException e) {
+            Assert.assertEquals(1L, timeoutFlight.getCoalescedCount());
+        }
+        release.countDown();
+        Assert.assertEquals((long) "key".hashCode(), (long) first.get());
+        executor.shutdown();
+    }
+
+    @Test
+    public void test_micro_batching() throws Exception {
+        MicroBatchingInterceptor batching = new MicroBatchingInterceptor();
+        batching.setMaxBatchSize(16);
+        batching.setMaxDelay(10);
+        ProfileRepository target = new ProfileRepository();
+        AdvisedSupport advisedSupport = new AdvisedSupport();
+        advisedSupport.setTargetSource(new TargetSource(target));
+        advisedSupport.setMethodInterceptor(batching);
+        advisedSupport.setMethodMatcher(new AnnotationJoinPointSelector(Batched.class));
+        IProfileRepository repository = (IProfileRepository) new ProxyFactory(advisedSupport).getProxy();
+
+        // 64 个线程同时单个查询，合并为少量批量查询
+        int threads = 64;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<String>> futures = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            int id = i % 40;
+            futures.add(executor.submit(() -> {
+                start.await();
+                return repository.load(id);
+            }));
+        }
+        start.countDown();
+        for (int i = 0; i < threads; i++) {
+            Assert.assertEquals("profile-" + i % 40, futures.get(i).get());
+        }
+        System.out.println("单个查询数：" + threads + "，批量查询次数：" + batching.getBatchCount()
+                + "，平均批次大小：" + String.format("%.1f", batching.getAverageBatchSize())
+                + "，平均等待：" + TimeUnit.NANOSECONDS.toMicros(batching.getAverageWaitNanos()) + "us");
+        Assert.assertEquals(threads, batching.getItemCount());
+        Assert.assertTrue(batching.getBatchCount() < threads);
+        for (Integer size : target.getBatchSizes()) {
+            Assert.assertTrue(size <= 16);
+        }
+
+        // 返回 CompletableFuture 的方法立即返回，批量方法按参数顺序返回结果
+        long batches = batching.getBatchCount();
+        CompletableFuture<String> first = repository.loadAsync(1);
+        CompletableFuture<String> second = repository.loadAsync(2);
+        Assert.assertEquals("profile-1", first.get());
+        Assert.assertEquals("profile-2", second.get());
+        Assert.assertEquals(batches + 1, batching.getBatchCount());
+
+        // 没有声明批量方法的调用直接执行
+        Assert.assertEquals("profile-7", repository.loadAll(Collections.singletonList(7)).get(7));
+
+        // 返回 Object 的方法等待批量调用完成，得到的是结果而不是 future
+        Assert.assertEquals("profile-3", repository.find(3));
+        executor.shutdown();
+        batching.destroy();
+
+        // 关闭之后拒绝调用，不会重新创建线程池
+        try {
+            repository.load(1);
+            Assert.fail();
+        } catch (IllegalStateException e) {
+            Assert.assertTrue(e.getMessage().contains("destroyed"));
+        }
+    }
+
+    @Test
+    public void test_concurrency_limit() throws Exception {
+        for (String algorithm : new String[]{"aimd", "vegas", "gradient"}) {
+            ConcurrencyLimitInterceptor limiter = new ConcurrencyLimitInterceptor();
+            limiter.setAlgorithm(algorithm);
+            limiter.setInitialLimit(32);
+            limiter.setLatencyThreshold(5);
+            IInventoryService inventory = limitedInventory(limiter);
+
+            // 下游只能同时处理 4 个请求，24 个线程持续调用。线程数低于初始上限，
+            // 上限保持 32 时不会拒绝，出现拒绝说明上限已经随耗时降到 24 以下
+            int[] result = inventoryLoad(inventory, 24, 80);
+            System.out.println(algorithm + "：成功 " + result[0] + "，拒绝 " + result[1] + "，最终上限 " + limiter.getLimit());
+            Assert.assertTrue(result[1] > 0);
+            Assert.assertEquals(result[1], limiter.getRejectedCount());
+            Assert.assertEquals(0, limiter.getInFlight());
+        }
+
+        // 失败的调用是过载信号，aimd 算法随之降低上限
+        ConcurrencyLimitInterceptor failing = new ConcurrencyLimitInterceptor();
+        failing.setAlgorithm("aimd");
+        failing.setInitialLimit(20);
+        IInventoryService failingInventory = limitedInventory(failing);
+        for (int i = 0; i < 5; i++) {
+            try {
+                failingInventory.reserve(0);
+                Assert.fail();
+            } catch (IllegalArgumentException e) {
+                // 预期的失败
+            }
+        }
+        Assert.assertEquals(5, failing.getFailureCount());
+        Assert.assertTrue(failing.getLimit() < 20);
+
+        // 排队模式下超过上限的请求等待空位，而不是立即失败
+        ConcurrencyLimitInterceptor limiter = new ConcurrencyLimitInterceptor();
+        limiter.setLimitAlgorithm(new AimdLimit(4, 1, 4, 1000));
+        limiter.setQueueTimeout(10_000);
+        int[] result = inventoryLoad(limitedInventory(limiter), 16, 10);
+        Assert.assertEquals(160, result[0]);
+        Assert.assertEquals(0, limiter.getRejectedCount());
+        Assert.assertEquals(0, limiter.getInFlight());
+        Assert.assertEquals(0, limiter.getQueued());
+    }
+
+    private static IInventoryService limitedInventory(ConcurrencyLimitInterceptor limiter) {
+        AdvisedSupport advisedSupport = new AdvisedSupport();
+        advisedSupport.setTargetSource(new TargetSource(new InventoryService()));
+        advisedSupport.setMethodInterceptor(limiter);
+        advisedSupport.setMethodMatcher(new AspectJExpressionJoinPointSelector("execution(* asia.liuyunxuan.ioc.proxy.IInventoryService.*(..))"));
+        return (IInventoryService) new ProxyFactory(advisedSupport).getProxy();
+    }
+
+    private static int[] inventoryLoad(IInventoryService inventory, int threads, int callsPerThread) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        AtomicInteger succeeded = new AtomicInteger();
+        AtomicInteger rejected = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(threads);
+        for (int i = 0; i < threads; i++) {
+            executor.execute(() -> {
+                try {
+                    for (int call = 0; call < callsPerThread; call++) {
+                        try {
+                            inventory.reserve(1);
+                            succeeded.incrementAndGet();
+                        } catch (LimitExceededException e) {
+                            rejected.incrementAndGet();
+                            LockSupport.parkNanos(1_000_000);
+                        }
+                    }
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+        Assert.assertTrue(done.await(30, TimeUnit.SECONDS));
+        executor.shutdown();
+        return new int[]{succeeded.get(), rejected.get()};
+    }
+
+    @Test
+    public void test_hedged_invocation() throws Exception {
+        HedgingInterceptor hedging = new HedgingInterceptor();
+        // 耗时样本集中在 1ms 附近，取 p99 避免正常调用的抖动耗尽对冲预算
+        hedging.setPercentile(99);
+        SearchIndex target = new SearchIndex();
+        AdvisedSupport advisedSupport = new AdvisedSupport();
+        advisedSupport.setTargetSource(new TargetSource(target));
+        advisedSupport.setMethodInterceptor(hedging);
+        advisedSupport.setMethodMatcher(new AspectJExpressionJoinPointSelector("execution(* asia.liuyunxuan.ioc.proxy.ISearchIndex.*(..))"));
+        ISearchIndex index = (ISearchIndex) new ProxyFactory(advisedSupport).getProxy();
+
+        // 样本不足时不对冲，直接执行并记录耗时
+        for (int i = 0; i < 20; i++) {
+            Assert.assertEquals("doc:" + i, index.lookup(String.valueOf(i)));
+        }
+        Assert.assertEquals(0, hedging.getHedgeCount());
+        Method lookup = ISearchIndex.class.getMethod("lookup", String.class);
+        Assert.assertTrue(hedging.getHedgeDelay(lookup) > 0);
+
+        // 每 25 次有一次慢调用，对冲调用越过慢调用，最大耗时远小于 50ms
+        int calls = 200;
+        long worst = 0;
+        for (int i = 0; i < calls; i++) {
+            long begin = System.nanoTime();
+            Assert.assertEquals("doc:" + i, index.lookup(String.valueOf(i)));
+            worst = Math.max(worst, System.nanoTime() - begin);
+        }
+        System.out.println("对冲延迟：" + TimeUnit.NANOSECONDS.toMicros(hedging.getHedgeDelay(lookup)) + "us，对冲次数：" + hedging.getHedgeCount()
+                + "，对冲胜出：" + hedging.getHedgeWinCount() + "，最大耗时：" + TimeUnit.NANOSECONDS.toMillis(worst) + "ms");
+        Assert.assertTrue(hedging.getHedgeWinCount() > 0);
+        Assert.assertTrue(worst < TimeUnit.MILLISECONDS.toNanos(40));
+        Assert.assertTrue(hedging.getHedgeCount() <= hedging.getCallCount() * 0.1 + 10);
+        // 调用线程只等待结果，取消输掉的调用不会中断调用方
+        Assert.assertFalse(Thread.currentThread().isInterrupted());
+
+        // 不响应中断的慢调用留在线程池中执行完，调用方在对冲胜出时立即返回
+        for (int i = 0; i < 20; i++) {
+            Assert.assertEquals("doc:" + i, index.scan(String.valueOf(i)));
+        }
+        long wins = hedging.getHedgeWinCount();
+        worst = 0;
+        for (int i = 0; i < calls; i++) {
+            long begin = System.nanoTime();
+            Assert.assertEquals("doc:" + i, index.scan(String.valueOf(i)));
+            worst = Math.max(worst, System.nanoTime() - begin);
+        }
+        System.out.println("不响应中断的调用，对冲胜出：" + (hedging.getHedgeWinCount() - wins) + "，最大耗时：" + TimeUnit.NANOSECONDS.toMillis(worst) + "ms");
+        Assert.assertTrue(hedging.getHedgeWinCount() > wins);
+        Assert.assertTrue(worst < TimeUnit.MILLISECONDS.toNanos(40));
+
+        // 非幂等方法不对冲
+        Assert.assertEquals(1, index.reindex());
+        Assert.assertEquals(-1, hedging.getHedgeDelay(ISearchIndex.class.getMethod("reindex")));
+        hedging.destroy();
+        try {
+            index.lookup("closed");
+            Assert.fail();
+        } catch (IllegalStateException e) {
+            Assert.assertEquals("HedgingInterceptor has been destroyed", e.getMessage());
+        }
+
+        // 通过setExecutor设置的线程池由调用方关闭
+        ExecutorService shared = Executors.newCachedThreadPool();
+        HedgingInterceptor injected = new HedgingInterceptor();
+        injected.setExecutor(shared);
+        advisedSupport.setMethodInterceptor(injected);
+        ISearchIndex sharedIndex = (ISearchIndex) new ProxyFactory(advisedSupport).getProxy();
+        for (int i = 0; i < 30; i++) {
+            Assert.assertEquals("doc:" + i, sharedIndex.lookup(String.valueOf(i)));
+        }
+        injected.destroy();
+        Assert.assertFalse(shared.isShutdown());
+        shared.shutdown();
+    }
+
+    @Test
+    public void test_method_metrics() throws Exception {
+        DefaultRegistry beanFactory = new DefaultRegistry();
+        DefaultAdvisorAutoProxyCreator autoProxyCreator = new DefaultAdvisorAutoProxyCreator();
+        autoProxyCreator.setBeanFactory(beanFactory);
+        beanFactory.addBeanPostProcessor(autoProxyCreator);
+        MetricsInterceptor metrics = new MetricsInterceptor();
+        beanFactory.registerSingleton("metricsInterceptor", metrics);
+        PropertyValues advisorValues = new PropertyValues();
+        advisorValues.addPropertyValue(new PropertyValue("expression", "execution(* asia.liuyunxuan.ioc.proxy.IEchoService.*(..))"));
+        advisorValues.addPropertyValue(new PropertyValue("advice", new ComponentReference("metricsInterceptor")));
+        beanFactory.registerBeanDefinition("metricsAdvisor", new ComponentDefinition(AspectJExpressionPointcutAspectAdvisor.class, advisorValues));
+        beanFactory.registerBeanDefinition("echoService", new ComponentDefinition(EchoService.class));
+        IEchoService echoService = beanFactory.getBean("echoService", IEchoService.class);
+
+        // 多个线程同时调用同一个方法，记录分散在不同的分段中
+        int threads = 8;
+        int calls = 50_000;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch done = new CountDownLatch(threads);
+        long begin = System.nanoTime();
+        for (int i = 0; i < threads; i++) {
+            executor.execute(() -> {
+                for (int call = 0; call < calls; call++) {
+                    echoService.echo("hello");
+                }
+                done.countDown();
+            });
+        }
+        Assert.assertTrue(done.await(30, TimeUnit.SECONDS));
+        long cost = System.nanoTime() - begin;
+        executor.shutdown();
+        for (int i = 0; i < 10; i++) {
+            try {
+                echoService.length(null);
+                Assert.fail();
+            } catch (NullPointerException expected) {
+                // 异常计入错误次数
+            }
+        }
+
+        Map<String, LatencySnapshot> snapshots = new HashMap<>();
+        for (LatencySnapshot snapshot : metrics.getSnapshots().values()) {
+            snapshots.put(snapshot.getName(), snapshot);
+        }
+        LatencySnapshot echo = snapshots.get("EchoService.echo");
+        LatencySnapshot length = snapshots.get("EchoService.length");
+        System.out.print(metrics.report());
+        System.out.println("并发调用：" + cost / ((long) threads * calls) + "ns/次");
+        Assert.assertEquals((long) threads * calls, echo.getCount());
+        Assert.assertEquals(0, echo.getErrorCount());
+        Assert.assertEquals(10, length.getCount());
+        Assert.assertEquals(10, length.getErrorCount());
+        Assert.assertTrue(echo.getP50() <= echo.getP99());
+        Assert.assertTrue(echo.getP99() <= echo.getP999());
+        Assert.assertTrue(echo.getP999() <= echo.getMaxNanos());
+
+        // 百分位的相对误差不超过 6.25%
+        MethodMetrics uniform = new MethodMetrics("uniform", 4);
+        for (long micros = 1; micros <= 10_000; micros++) {
+            uniform.record(TimeUnit.MICROSECONDS.toNanos(micros), false);
+        }
+        LatencySnapshot snapshot = uniform.snapshot();
+        Assert.assertEquals(5_000_000, snapshot.getP50(), 5_000_000 * 0.0625);
+        Assert.assertEquals(9_900_000, snapshot.getP99(), 9_900_000 * 0.0625);
+        Assert.assertEquals(10_000_000, snapshot.getMaxNanos());
+        metrics.reset();
+        Assert.assertEquals(0, metrics.getSnapshots().values().iterator().next().getCount());
+    }
+
+    @Test
+    public void test_load_time_weaving() throws Throwable {
+        WeavingClassLoader weavingClassLoader = new WeavingClassLoader(getClass().getClassLoader(),
+                "asia.liuyunxuan.ioc.proxy.EchoService", "asia.liuyunxuan.ioc.proxy.Calculator");
+        Class<?> echoClass = weavingClassLoader.loadClass("asia.liuyunxuan.ioc.proxy.EchoService");
+        Class<?> calculatorClass = weavingClassLoader.loadClass("asia.liuyunxuan.ioc.proxy.Calculator");
+        Assert.assertTrue(Woven.class.isAssignableFrom(echoClass));
+        // 较新版本的编译器生成的类文件（Java 17，主版本号61）同样可以织入
+        byte[] echoBytes;
+        try (InputStream in = getClass().getResourceAsStream("/asia/liuyunxuan/ioc/proxy/EchoService.class")) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            echoBytes = out.toByteArray();
+        }
+        echoBytes[6] = 0;
+        echoBytes[7] = 61;
+        Assert.assertNotNull(WeavingTransformer.weave(echoBytes));
+        // 注解保留在原来的方法上
+        Assert.assertTrue(echoClass.getMethod("echo", String.class).isAnnotationPresent(Timed.class));
+
+        DefaultRegistry beanFactory = new DefaultRegistry();
+        DefaultAdvisorAutoProxyCreator autoProxyCreator = new DefaultAdvisorAutoProxyCreator();
+        autoProxyCreator.setBeanFactory(beanFactory);
+        beanFactory.addBeanPostProcessor(autoProxyCreator);
+        CountingInterceptor interceptor = new CountingInterceptor();
+        beanFactory.registerSingleton("countingInterceptor", interceptor);
+        PropertyValues advisorValues = new PropertyValues();
+        advisorValues.addPropertyValue(new PropertyValue("expression",
+                "execution(* asia.liuyunxuan.ioc.proxy.IEchoService.echo(..)) || execution(* asia.liuyunxuan.ioc.proxy.IEchoService.join(..))"
+                        + " || execution(* asia.liuyunxuan.ioc.proxy.ICalculator.add(..))"));
+        advisorValues.addPropertyValue(new PropertyValue("advice", new ComponentReference("countingInterceptor")));
+        beanFactory.registerBeanDefinition("countingAdvisor", new ComponentDefinition(AspectJExpressionPointcutAspectAdvisor.class, advisorValues));
+        beanFactory.registerBeanDefinition("echoService", new ComponentDefinition(echoClass));
+        beanFactory.registerBeanDefinition("calculator", new ComponentDefinition(calculatorClass));
+
+        // 织入的 Bean 不创建代理，通知在方法内部执行
+        IEchoService echoService = beanFactory.getBean("echoService", IEchoService.class);
+        Assert.assertSame(echoClass, echoService.getClass());
+        Assert.assertEquals("hello", echoService.echo("hello"));
+        Assert.assertEquals(5, echoService.length("hello"));
+        Assert.assertEquals(1, interceptor.getCount());
+
+        // 基本类型、数组参数和返回值，以及对象内部的调用同样执行通知
+        ICalculator calculator = beanFactory.getBean("calculator", ICalculator.class);
+        Assert.assertSame(calculatorClass, calculator.getClass());
+        Assert.assertEquals(5L, calculator.add(2L, 3L));
+        Assert.assertEquals(7.5, calculator.scale(2.5, 3), 0.0);
+        Assert.assertEquals(8L, calculator.twice(4L));
+        Assert.assertArrayEquals(new int[]{4, 2}, calculator.digits("42"));
+        calculator.clear();
+        Assert.assertEquals(3, interceptor.getCount());
+
+        // 可变参数方法的通知和绕过通知的调用都按声明的参数数组传参
+        Assert.assertEquals("a,b", echoService.join("a", "b"));
+        Assert.assertEquals(4, interceptor.getCount());
+        Method join = IEchoService.class.getMethod("join", String[].class);
+        Assert.assertEquals("c,d", WeavingSupport.newJoinpointInvocation(echoService, join, new Object[]{new String[]{"c", "d"}}).proceed());
+        Assert.assertEquals(4, interceptor.getCount());
+
+        int calls = 5_000_000;
+        IEchoService proxied = (IEchoService) new ProxyFactory(advisedEcho()).getProxy("bytecode");
+        for (int round = 0; round < 2; round++) {
+            long[] woven = benchmarkCalls(echoService, calls);
+            long[] proxy = benchmarkCalls(proxied, calls);
+            System.out.println("第" + (round + 1) + "轮，织入有通知：" + woven[0] / calls + "ns/次，无通知：" + woven[1] / calls
+                    + "ns/次；字节码代理有通知：" + proxy[0] / calls + "ns/次，无通知：" + proxy[1] / calls + "ns/次");
+        }
+    }
+
+    @Test
+    public void test_woven_hedging() throws Exception {
+        WeavingClassLoader weavingClassLoader = new WeavingClassLoader(getClass().getClassLoader(), "asia.liuyunxuan.ioc.proxy.SearchIndex");
+        Class<?> searchClass = weavingClassLoader.loadClass("asia.liuyunxuan.ioc.proxy.SearchIndex");
+
+        DefaultRegistry beanFactory = new DefaultRegistry();
+        DefaultAdvisorAutoProxyCreator autoProxyCreator = new DefaultAdvisorAutoProxyCreator();
+        autoProxyCreator.setBeanFactory(beanFactory);
+        beanFactory.addBeanPostProcessor(autoProxyCreator);
+        HedgingInterceptor hedging = new HedgingInterceptor();
+        beanFactory.registerSingleton("hedging", hedging);
+        PropertyValues advisorValues = new PropertyValues();
+        advisorValues.addPropertyValue(new PropertyValue("expression", "execution(* asia.liuyunxuan.ioc.proxy.ISearchIndex.lookup(..))"));
+        advisorValues.addPropertyValue(new PropertyValue("advice", new ComponentReference("hedging")));
+        beanFactory.registerBeanDefinition("hedgingAdvisor", new ComponentDefinition(AspectJExpressionPointcutAspectAdvisor.class, advisorValues));
+        beanFactory.registerBeanDefinition("searchIndex", new ComponentDefinition(searchClass));
+
+        ISearchIndex index = beanFactory.getBean("searchIndex", ISearchIndex.class);
+        Assert.assertSame(searchClass, index.getClass());
+        int calls = 220;
+        for (int i = 0; i < calls; i++) {
+            Assert.assertEquals("doc:" + i, index.lookup(String.valueOf(i)));
+        }
+        // 对冲调用直接执行方法体，不会再次进入织入的拦截器链
+        System.out.println("织入对冲次数：" + hedging.getHedgeCount() + "，对冲胜出：" + hedging.getHedgeWinCount());
+        Assert.assertEquals(calls, hedging.getCallCount());
+        Assert.assertTrue(hedging.getHedgeCount() > 0);
+        int lookups = (Integer) searchClass.getMethod("getLookups").invoke(index);
+        Assert.assertTrue(lookups <= calls + hedging.getHedgeCount());
+
+        // 拦截器链属于实例，销毁单例之后不再执行通知，新创建的实例同样没有通知
+        beanFactory.destroySingletons();
+        index.lookup("after");
+        ISearchIndex fresh = (ISearchIndex) searchClass.getDeclaredConstructor().newInstance();
+        fresh.lookup("fresh");
+        Assert.assertEquals(calls, hedging.getCallCount());
+        hedging.destroy();
+    }
+
+    @Test
+    public void test_message_multicaster() {
+        SimpleMessageMulticaster multicaster = new SimpleMessageMulticaster(null);
+        AtomicInteger customEvents = new AtomicInteger();
+        AtomicInteger allEvents = new AtomicInteger();
+        MessageSubscriber<CustomEvent> customListener = new MessageSubscriber<CustomEvent>() {
+            @Override
+            public void onApplicationEvent(CustomEvent event) {
+                customEvents.incrementAndGet();
+            }
+        };
+        multicaster.addApplicationListener(customListener);
+        multicaster.addApplicationListener(new MessageSubscriber<asia.liuyunxuan.ioc.runtime.Message>() {
+            @Override
+            public void onApplicationEvent(asia.liuyunxuan.ioc.runtime.Message event) {
+                allEvents.incrementAndGet();
+            }
+        });
+        // 其余监听器只关心关闭事件
+        for (int i = 0; i < 20; i++) {
+            multicaster.addApplicationListener(new MessageSubscriber<ContextClosedEvent>() {
+                @Override
+                public void onApplicationEvent(ContextClosedEvent event) {
+                    Assert.fail();
+                }
+            });
+        }
+
+        int events = 1_000_000;
+        CustomEvent customEvent = new CustomEvent(this, 1L, "hello");
+        ContextRefreshedEvent refreshedEvent = new ContextRefreshedEvent(this);
+        for (int round = 0; round < 2; round++) {
+            long begin = System.nanoTime();
+            for (int i = 0; i < events; i++) {
+                multicaster.multicastEvent(customEvent);
+            }
+            long matched = System.nanoTime() - begin;
+            begin = System.nanoTime();
+            for (int i = 0; i < events; i++) {
+                multicaster.multicastEvent(refreshedEvent);
+            }
+            long unmatched = System.nanoTime() - begin;
+            System.out.println("第" + (round + 1) + "轮，有监听器的事件：" + matched / events + "ns/次，只有通用监听器的事件：" + unmatched / events + "ns/次");
+        }
+        Assert.assertEquals(2 * events, customEvents.get());
+        Assert.assertEquals(4 * events, allEvents.get());
+
+        // 添加和移除监听器后缓存失效
+        multicaster.removeApplicationListener(customListener);
+        multicaster.multicastEvent(customEvent);
+        Assert.assertEquals(2 * events, customEvents.get());
+        multicaster.addApplicationListener(customListener);
+        multicaster.multicastEvent(customEvent);
+        Assert.assertEquals(2 * events + 1, customEvents.get());
+
+        // 事件类型通过父类的泛型绑定解析，监听器只收到声明的事件
+        EventCounter<CustomEvent> customCounter = new EventCounter<CustomEvent>() {
+        };
+        multicaster.addApplicationListener(customCounter);
+        multicaster.multicastEvent(refreshedEvent);
+        multicaster.multicastEvent(customEvent);
+        Assert.assertEquals(1, customCounter.getCount());
+        // 直接创建的泛型监听器无法确定事件类型，拒绝注册而不是监听所有事件
+        try {
+            multicaster.addApplicationListener(new EventCounter<CustomEvent>());
+            Assert.fail();
+        } catch (IllegalArgumentException e) {
+            Assert.assertTrue(e.getMessage().contains("EventCounter"));
+        }
+    }
+
+    @Test
+    public void test_async_multicaster() throws Exception {
+        AsyncMessageMulticaster multicaster = new AsyncMessageMulticaster(null);
+        int events = 200;
+        List<Long> received = Collections.synchronizedList(new ArrayList<>());
+        AtomicInteger slowEvents = new AtomicInteger();
+        // 慢监听器每个事件处理1ms，有序监听器记录收到的顺序，另一个监听器每隔一个事件抛出异常
+        multicaster.addApplicationListener(new MessageSubscriber<CustomEvent>() {
+            @Override
+            public void onApplicationEvent(CustomEvent event) {
+                LockSupport.parkNanos(1_000_000);
+                slowEvents.incrementAndGet();
+            }
+        });
+        multicaster.addApplicationListener(new MessageSubscriber<CustomEvent>() {
+            @Override
+            public void onApplicationEvent(CustomEvent event) {
+                received.add(event.getId());
+            }
+        });
+        multicaster.addApplicationListener(new MessageSubscriber<CustomEvent>() {
+            @Override
+            public void onApplicationEvent(CustomEvent event) {
+                if (event.getId() % 2 == 0) {
+                    throw new IllegalStateException("失败的事件：" + event.getId());
+                }
+            }
+        });
+
+        PrintStream err = System.err;
+        System.setErr(new PrintStream(new ByteArrayOutputStream()));
+        try {
+            long begin = System.nanoTime();
+            for (long i = 0; i < events; i++) {
+                multicaster.multicastEvent(new CustomEvent(this, i, "async"));
+            }
+            long publish = System.nanoTime() - begin;
+            System.out.println("发布" + events + "个事件耗时：" + publish / 1000 + "us，慢监听器已处理：" + slowEvents.get());
+            // 慢监听器至少需要200ms，发布线程不等待监听器
+            Assert.assertTrue(publish < TimeUnit.MILLISECONDS.toNanos(events));
+            Assert.assertTrue(multicaster.getPendingCount() > 0);
+
+            multicaster.destroy();
+            System.out.println("关闭时等待事件处理完耗时：" + (System.nanoTime() - begin) / 1_000_000 + "ms");
+        } finally {
+            System.setErr(err);
+        }
+        Assert.assertEquals(0, multicaster.getPendingCount());
+        Assert.assertEquals(events, slowEvents.get());
+        Assert.assertEquals(events / 2, multicaster.getErrorCount());
+        Assert.assertEquals(events, received.size());
+        for (int i = 0; i < events; i++) {
+            Assert.assertEquals(Long.valueOf(i), received.get(i));
+        }
+
+        // 关闭之后的事件在发布线程上同步处理
+        multicaster.multicastEvent(new CustomEvent(this, (long) events + 1, "sync"));
+        Assert.assertEquals(events + 1, slowEvents.get());
+
+        // 关闭超时时仍在队列中的事件先于关闭之后发布的事件处理
+        AsyncMessageMulticaster closing = new AsyncMessageMulticaster(null);
+        closing.setShutdownTimeout(10);
+        CountDownLatch blocked = new CountDownLatch(1);
+        List<Long> closingOrder = Collections.synchronizedList(new ArrayList<>());
+        closing.addApplicationListener(new MessageSubscriber<CustomEvent>() {
+            @Override
+            public void onApplicationEvent(CustomEvent event) {
+                if (event.getId() == 0) {
+                    try {
+                        blocked.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                closingOrder.add(event.getId());
+            }
+        });
+        closing.multicastEvent(new CustomEvent(this, 0L, "queued"));
+        closing.multicastEvent(new CustomEvent(this, 1L, "queued"));
+        closing.destroy();
+        Assert.assertEquals(2, closing.getPendingCount());
+        closing.multicastEvent(new CustomEvent(this, 2L, "closed"));
+        blocked.countDown();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (closing.getPendingCount() > 0 && System.nanoTime() < deadline) {
+            LockSupport.parkNanos(1_000_000);
+        }
+        Assert.assertEquals(Arrays.asList(0L, 1L, 2L), closingOrder);
+
+        // 监听器和事件的toString抛出异常时仍然报告监听器的异常，队列继续处理后续事件
+        AsyncMessageMulticaster failing = new AsyncMessageMulticaster(null);
+        AtomicInteger failingEvents = new AtomicInteger();
+        failing.addApplicationListener(new MessageSubscriber<CustomEvent>() {
+            @Override
+            public void onApplicationEvent(CustomEvent event) {
+                failingEvents.incrementAndGet();
+                throw new IllegalStateException("失败的事件：" + event.getId());
+            }
+
+            @Override
+            public String toString() {
+                throw new UnsupportedOperationException();
+            }
+        });
+        System.setErr(new PrintStream(new ByteArrayOutputStream()));
+        try {
+            for (long i = 0; i < 3; i++) {
+                failing.multicastEvent(new CustomEvent(this, i, "failing") {
+                    @Override
+                    public String toString() {
+                        throw new UnsupportedOperationException();
+                    }
+                });
+            }
+            failing.destroy();
+        } finally {
+            System.setErr(err);
+        }
+        Assert.assertEquals(0, failing.getPendingCount());
+        Assert.assertEquals(3, failingEvents.get());
+        Assert.assertEquals(3, failing.getErrorCount());
+
+        // 处理过程中移除再添加监听器，旧队列处理完之前不会出现第二个队列，事件仍然按发布顺序处理
+        AsyncMessageMulticaster reordering = new AsyncMessageMulticaster(null);
+        ExecutorService executor = Executors.newCachedThreadPool();
+        reordering.setExecutor(executor);
+        List<Long> ordered = Collections.synchronizedList(new ArrayList<>());
+        MessageSubscriber<CustomEvent> orderedListener = new MessageSubscriber<CustomEvent>() {
+            @Override
+            public void onApplicationEvent(CustomEvent event) {
+                LockSupport.parkNanos(200_000);
+                ordered.add(event.getId());
+            }
+        };
+        reordering.addApplicationListener(orderedListener);
+        for (long i = 0; i < 50; i++) {
+            reordering.multicastEvent(new CustomEvent(this, i, "before"));
+        }
+        reordering.removeApplicationListener(orderedListener);
+        reordering.addApplicationListener(orderedListener);
+        for (long i = 50; i < 100; i++) {
+            reordering.multicastEvent(new CustomEvent(this, i, "after"));
+        }
+        reordering.destroy();
+        executor.shutdown();
+        Assert.assertEquals(100, ordered.size());
+        for (int i = 0; i < 100; i++) {
+            Assert.assertEquals(Long.valueOf(i), ordered.get(i));
+        }
+    }
+
+    @Test
+    public void test_annotation_pointcut() throws Exception {
+        int beans = 5_000;
+        DefaultRegistry beanFactory = new DefaultRegistry();
+        DefaultAdvisorAutoProxyCreator autoProxyCreator = new DefaultAdvisorAutoProxyCreator();
+        autoProxyCreator.setBeanFactory(beanFactory);
+        beanFactory.addBeanPostProcessor(autoProxyCreator);
+        beanFactory.registerSingleton("countingInterceptor", new CountingInterceptor());
+        PropertyValues advisorValues = new PropertyValues();
+        advisorValues.addPropertyValue(new PropertyValue("annotationType", "asia.liuyunxuan.ioc.proxy.Timed"));
+        advisorValues.addPropertyValue(new PropertyValue("advice", new ComponentReference("countingInterceptor")));
+        beanFactory.registerBeanDefinition("timedAdvisor", new ComponentDefinition(AnnotationPointcutAspectAdvisor.class, advisorValues));
+        for (int i = 0; i < beans; i++) {
+            beanFactory.registerBeanDefinition("injectedBean" + i, new ComponentDefinition(InjectedBean.class));
+        }
+        beanFactory.registerBeanDefinition("echoService", new ComponentDefinition(EchoService.class));
+
+        // 没有注解方法的类只查询一次索引
+        long begin = System.nanoTime();
+        beanFactory.preInstantiateSingletons();
+        long cost = System.nanoTime() - begin;
+        System.out.println("Bean数：" + beans + "，注解切点刷新耗时：" + TimeUnit.NANOSECONDS.toMillis(cost) + "ms");
+        Assert.assertSame(InjectedBean.class, beanFactory.getBean("injectedBean0").getClass());
+        Assert.assertEquals(Arrays.asList(EchoService.class), new ArrayList<>(beanFactory.getMethodAnnotationIndex().getAnnotatedClasses(Timed.class)));
+
+        IEchoService echoService = beanFactory.getBean("echoService", IEchoService.class);
+        Assert.assertEquals("hello", echoService.echo("hello"));
+        Assert.assertEquals(5, echoService.length("hello"));
+        Assert.assertEquals(1L, beanFactory.getBean("countingInterceptor", CountingInterceptor.class).getCount());
+
+        // 没有索引时按反射读取注解，JDK 代理传入的接口方法同样匹配
+        AdvisedSupport advisedSupport = new AdvisedSupport();
+        advisedSupport.setTargetSource(new TargetSource(new EchoService()));
+        CountingInterceptor interceptor = new CountingInterceptor();
+        advisedSupport.setMethodInterceptor(interceptor);
+        advisedSupport.setMethodMatcher(new AnnotationJoinPointSelector(Timed.class));
+        IEchoService jdkProxy = (IEchoService) new JdkDynamicAopProxy(advisedSupport).getProxy();
+        jdkProxy.echo("hello");
+        jdkProxy.length("hello");
+        Assert.assertEquals(1L, interceptor.getCount());
+
+        // 父接口以及父类实现的接口上的注解，索引与反射读取的结果一致
+        asia.liuyunxuan.ioc.component.container.support.MethodAnnotationIndex index = new asia.liuyunxuan.ioc.component.container.support.MethodAnnotationIndex();
+        index.register(TimedLeaf.class);
+        AnnotationJoinPointSelector indexed = new AnnotationJoinPointSelector(Timed.class, index);
+        AnnotationJoinPointSelector reflective = new AnnotationJoinPointSelector(Timed.class);
+        Method interfaceMethod = TimedBase.class.getMethod("name");
+        Method classMethod = TimedLeaf.class.getMethod("name");
+        Assert.assertTrue(reflective.matches(interfaceMethod, TimedLeaf.class));
+        Assert.assertTrue(indexed.matches(interfaceMethod, TimedLeaf.class));
+        // 索引中接口方法上的注解对实现方法同样生效，CGLIB 代理传入的类方法也能匹配
+        Assert.assertTrue(indexed.matches(classMethod, TimedLeaf.class));
+        Assert.assertTrue(indexed.matches(TimedLeaf.class));
+    }
+
+    public interface TimedBase {
+
+        @Timed
+        String name();
+    }
+
+    public interface TimedChild extends TimedBase {
+    }
+
+    public static class TimedParent implements TimedChild {
+
+        @Override
+        public String name() {
+            return "parent";
+        }
+    }
+
+    public static class TimedLeaf extends TimedParent {
+    }
+
+    private long advisedCalls(IEchoService proxy, int calls) {
+        long sink = 0;
+        long begin = System.nanoTime();
+        for (int i = 0; i < calls; i++) {
+            sink += proxy.echo("hello").length();
+        }
+        long cost = System.nanoTime() - begin;
+        Assert.assertEquals(5L * calls, sink);
+        return cost;
+    }
+
+    private long[] benchmarkCalls(IEchoService proxy, int calls) {
+        long sink = 0;
+        long begin = System.nanoTime();
+        for (int i = 0; i < calls; i++) {
+            sink += proxy.echo("hello").length();
+        }
+        long advised = System.nanoTime() - begin;
+        begin = System.nanoTime();
+        for (int i = 0; i < calls; i++) {
+            sink += proxy.length("hello");
+        }
+        long unadvised = System.nanoTime() - begin;
+        Assert.assertEquals(10L * calls, sink);
+        return new long[]{advised, unadvised};
+    }
+
+    @Test
+    public void test_multi_advisor() {
+        List<String> records = new ArrayList<>();
+        DefaultRegistry beanFactory = new DefaultRegistry();
+        DefaultAdvisorAutoProxyCreator autoProxyCreator = new DefaultAdvisorAutoProxyCreator();
+        autoProxyCreator.setBeanFactory(beanFactory);
+        beanFactory.addBeanPostProcessor(autoProxyCreator);
+
+        // 两个切面作用在同一个方法上，order 小的先执行
+        for (int order : new int[]{2, 1}) {
+            MethodInterceptor interceptor = invocation -> {
+                records.add("advisor" + order);
+                return invocation.proceed();
+            };
+            beanFactory.registerSingleton("interceptor" + order, interceptor);
+            PropertyValues advisorValues = new PropertyValues();
+            advisorValues.addPropertyValue(new PropertyValue("expression", "execution(* asia.liuyunxuan.ioc.proxy.IEchoService.echo(..))"));
+            advisorValues.addPropertyValue(new PropertyValue("advice", new ComponentReference("interceptor" + order)));
+            advisorValues.addPropertyValue(new PropertyValue("order", order));
+            beanFactory.registerBeanDefinition("advisor" + order, new ComponentDefinition(AspectJExpressionPointcutAspectAdvisor.class, advisorValues));
+        }
+        beanFactory.registerBeanDefinition("echoService", new ComponentDefinition(EchoService.class));
+
+        IEchoService echoService = beanFactory.getBean("echoService", IEchoService.class);
+        Assert.assertEquals("hello", echoService.echo("hello"));
+        Assert.assertEquals(5, echoService.length("hello"));
+        // 只有一层代理，两个通知都按顺序执行
+        Assert.assertSame(EchoService.class, echoService.getClass().getSuperclass());
+        Assert.assertEquals(Arrays.asList("advisor1", "advisor2"), records);
+        System.out.println("测试结果：" + records);
+    }
+
+    @Test
+    public void test_proxy_class_cache() {
+        int instances = 20_000;
+        JoinPointSelector pointcut = new AspectJExpressionJoinPointSelector("execution(* asia.liuyunxuan.ioc.proxy.IEchoService.echo(..))");
+        CglibSubclassingInstantiationStrategy instantiationStrategy = new CglibSubclassingInstantiationStrategy();
+        ComponentDefinition componentDefinition = new ComponentDefinition(EchoService.class);
+        for (int round = 0; round < 2; round++) {
+            // 模拟原型 Bean 的反复创建，第一轮包含类生成和预热
+            long begin = System.nanoTime();
+            for (int i = 0; i < instances; i++) {
+                AdvisedSupport advisedSupport = new AdvisedSupport();
+                advisedSupport.setTargetSource(new TargetSource(new EchoService()));
+                advisedSupport.setMethodInterceptor(new CountingInterceptor());
+                advisedSupport.setMethodMatcher(pointcut.getMethodMatcher());
+                new Cglib2AopProxy(advisedSupport).getProxy();
+            }
+            long proxyCost = System.nanoTime() - begin;
+
+            begin = System.nanoTime();
+            for (int i = 0; i < instances; i++) {
+                instantiationStrategy.instantiate(componentDefinition, "echoService", null, null);
+            }
+            long subclassCost = System.nanoTime() - begin;
+            System.out.println("第" + (round + 1) + "轮，代理创建：" + proxyCost / instances + "ns/个，子类实例化：" + subclassCost / instances + "ns/个");
+        }
+        int generatedClasses = CglibClassCache.size();
+        new Cglib2AopProxy(advisedEcho()).getProxy();
+        instantiationStrategy.instantiate(componentDefinition, "echoService", null, null);
+        Assert.assertEquals(generatedClasses, CglibClassCache.size());
+    }
+
+    private AdvisedSupport advisedEcho() {
+        AdvisedSupport advisedSupport = new AdvisedSupport();
+        advisedSupport.setTargetSource(new TargetSource(new EchoService()));
+        advisedSupport.setMethodInterceptor(new CountingInterceptor());
+        advisedSupport.setMethodMatcher(new AspectJExpressionJoinPointSelector("execution(* asia.liuyunxuan.ioc.proxy.IEchoService.echo(..))"));
+        return advisedSupport;
+    }
+
 }
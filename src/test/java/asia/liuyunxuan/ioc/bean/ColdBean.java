@@ -0,0 +1,19 @@
+package asia.liuyunxuan.ioc.bean;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class ColdBean {
+
+    public static final AtomicInteger INSTANCES = new AtomicInteger();
+
+    public ColdBean() {
+        INSTANCES.incrementAndGet();
+        // 放大并发创建的时间窗口
+        try {
+            Thread.sleep(1);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+}
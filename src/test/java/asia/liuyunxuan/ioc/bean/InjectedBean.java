@@ -0,0 +1,14 @@
+package asia.liuyunxuan.ioc.bean;
+
+import asia.liuyunxuan.ioc.component.container.annotation.AutoInject;
+
+public class InjectedBean {
+
+    @AutoInject
+    private UserDao userDao;
+
+    public UserDao getUserDao() {
+        return userDao;
+    }
+
+}
@@ -0,0 +1,23 @@
+package asia.liuyunxuan.ioc.event;
+
+import asia.liuyunxuan.ioc.runtime.Message;
+import asia.liuyunxuan.ioc.runtime.MessageSubscriber;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 统计收到事件数的泛型监听器，事件类型由子类声明中的泛型参数决定
+ */
+public class EventCounter<E extends Message> implements MessageSubscriber<E> {
+
+    private final AtomicInteger count = new AtomicInteger();
+
+    @Override
+    public void onApplicationEvent(E event) {
+        count.incrementAndGet();
+    }
+
+    public int getCount() {
+        return count.get();
+    }
+}
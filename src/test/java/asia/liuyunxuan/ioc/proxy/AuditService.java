@@ -0,0 +1,37 @@
+package asia.liuyunxuan.ioc.proxy;
+
+import asia.liuyunxuan.ioc.aspect.Async;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+public class AuditService implements IAuditService {
+
+    private final List<String> records = new CopyOnWriteArrayList<>();
+
+    @Async
+    public void record(String event) {
+        try {
+            // 模拟写审计日志的耗时
+            Thread.sleep(100);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        records.add(event);
+    }
+
+    @Async
+    public CompletableFuture<String> currentThreadName() {
+        return CompletableFuture.completedFuture(Thread.currentThread().getName());
+    }
+
+    @Async
+    public Object lastRecord() {
+        return records.isEmpty() ? "none" : records.get(records.size() - 1);
+    }
+
+    public List<String> getRecords() {
+        return records;
+    }
+}
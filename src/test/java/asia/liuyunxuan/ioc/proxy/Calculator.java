@@ -0,0 +1,35 @@
+package asia.liuyunxuan.ioc.proxy;
+
+public class Calculator implements ICalculator {
+
+    private long total;
+
+    public long add(long a, long b) {
+        total += a + b;
+        return a + b;
+    }
+
+    public double scale(double value, int factor) {
+        return value * factor;
+    }
+
+    public long twice(long value) {
+        return add(value, value);
+    }
+
+    public void clear() {
+        total = 0;
+    }
+
+    public int[] digits(String number) {
+        int[] digits = new int[number.length()];
+        for (int i = 0; i < digits.length; i++) {
+            digits[i] = number.charAt(i) - '0';
+        }
+        return digits;
+    }
+
+    public long getTotal() {
+        return total;
+    }
+}
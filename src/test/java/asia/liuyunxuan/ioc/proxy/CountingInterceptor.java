@@ -0,0 +1,19 @@
+package asia.liuyunxuan.ioc.proxy;
+
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+
+public class CountingInterceptor implements MethodInterceptor {
+
+    private long count;
+
+    @Override
+    public Object invoke(MethodInvocation invocation) throws Throwable {
+        count++;
+        return invocation.proceed();
+    }
+
+    public long getCount() {
+        return count;
+    }
+}
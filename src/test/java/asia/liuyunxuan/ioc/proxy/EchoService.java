@@ -0,0 +1,17 @@
+package asia.liuyunxuan.ioc.proxy;
+
+public class EchoService implements IEchoService {
+
+    @Timed
+    public String echo(String message) {
+        return message;
+    }
+
+    public int length(String message) {
+        return message.length();
+    }
+
+    public String join(String... parts) {
+        return String.join(",", parts);
+    }
+}
@@ -0,0 +1,15 @@
+package asia.liuyunxuan.ioc.proxy;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+public interface IAuditService {
+
+    void record(String event);
+
+    CompletableFuture<String> currentThreadName();
+
+    Object lastRecord();
+
+    List<String> getRecords();
+}
@@ -0,0 +1,14 @@
+package asia.liuyunxuan.ioc.proxy;
+
+public interface ICalculator {
+
+    long add(long a, long b);
+
+    double scale(double value, int factor);
+
+    long twice(long value);
+
+    void clear();
+
+    int[] digits(String number);
+}
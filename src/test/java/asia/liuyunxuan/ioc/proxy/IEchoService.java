@@ -0,0 +1,10 @@
+package asia.liuyunxuan.ioc.proxy;
+
+public interface IEchoService {
+
+    String echo(String message);
+
+    int length(String message);
+
+    String join(String... parts);
+}
@@ -0,0 +1,6 @@
+package asia.liuyunxuan.ioc.proxy;
+
+public interface IInventoryService {
+
+    int reserve(int quantity);
+}
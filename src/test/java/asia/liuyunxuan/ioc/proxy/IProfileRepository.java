@@ -0,0 +1,20 @@
+package asia.liuyunxuan.ioc.proxy;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+public interface IProfileRepository {
+
+    String load(Integer id);
+
+    Object find(Integer id);
+
+    Map<Integer, String> loadAll(List<Integer> ids);
+
+    CompletableFuture<String> loadAsync(Integer id);
+
+    List<String> loadAllInOrder(List<Integer> ids);
+
+    List<Integer> getBatchSizes();
+}
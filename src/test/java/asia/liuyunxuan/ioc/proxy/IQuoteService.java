@@ -0,0 +1,8 @@
+package asia.liuyunxuan.ioc.proxy;
+
+public interface IQuoteService {
+
+    long quote(String symbol);
+
+    int getCalls();
+}
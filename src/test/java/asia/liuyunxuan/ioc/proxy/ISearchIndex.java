@@ -0,0 +1,10 @@
+package asia.liuyunxuan.ioc.proxy;
+
+public interface ISearchIndex {
+
+    String lookup(String term) throws InterruptedException;
+
+    String scan(String term);
+
+    int reindex();
+}
@@ -0,0 +1,25 @@
+package asia.liuyunxuan.ioc.proxy;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 模拟只能同时处理4个请求的下游服务，超过的请求在内部排队，耗时随并发数上升
+ */
+public class InventoryService implements IInventoryService {
+
+    private final Semaphore capacity = new Semaphore(4);
+
+    public int reserve(int quantity) {
+        if (quantity <= 0) {
+            throw new IllegalArgumentException("quantity must be positive");
+        }
+        capacity.acquireUninterruptibly();
+        try {
+            LockSupport.parkNanos(2_000_000);
+            return quantity;
+        } finally {
+            capacity.release();
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package asia.liuyunxuan.ioc.proxy;
+
+import asia.liuyunxuan.ioc.aspect.Batched;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+public class ProfileRepository implements IProfileRepository {
+
+    private final List<Integer> batchSizes = new CopyOnWriteArrayList<>();
+
+    @Batched("loadAll")
+    public String load(Integer id) {
+        throw new UnsupportedOperationException("load should be batched");
+    }
+
+    @Batched("loadAll")
+    public Object find(Integer id) {
+        throw new UnsupportedOperationException("find should be batched");
+    }
+
+    public Map<Integer, String> loadAll(List<Integer> ids) {
+        batchSizes.add(ids.size());
+        Map<Integer, String> profiles = new HashMap<>();
+        for (Integer id : ids) {
+            profiles.put(id, "profile-" + id);
+        }
+        return profiles;
+    }
+
+    @Batched("loadAllInOrder")
+    public CompletableFuture<String> loadAsync(Integer id) {
+        throw new UnsupportedOperationException("loadAsync should be batched");
+    }
+
+    public List<String> loadAllInOrder(List<Integer> ids) {
+        batchSizes.add(ids.size());
+        List<String> profiles = new ArrayList<>();
+        for (Integer id : ids) {
+            profiles.add("profile-" + id);
+        }
+        return profiles;
+    }
+
+    public List<Integer> getBatchSizes() {
+        return batchSizes;
+    }
+}
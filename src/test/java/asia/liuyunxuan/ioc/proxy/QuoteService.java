@@ -0,0 +1,26 @@
+package asia.liuyunxuan.ioc.proxy;
+
+import asia.liuyunxuan.ioc.aspect.cache.Cacheable;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class QuoteService implements IQuoteService {
+
+    private final AtomicInteger calls = new AtomicInteger();
+
+    @Cacheable
+    public long quote(String symbol) {
+        calls.incrementAndGet();
+        try {
+            // 模拟耗时的计算
+            Thread.sleep(20);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return symbol.hashCode();
+    }
+
+    public int getCalls() {
+        return calls.get();
+    }
+}
@@ -0,0 +1,45 @@
+package asia.liuyunxuan.ioc.proxy;
+
+import asia.liuyunxuan.ioc.aspect.Idempotent;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 模拟耗时不稳定的索引，每25次查询有一次耗时50ms，其余耗时1ms
+ */
+public class SearchIndex implements ISearchIndex {
+
+    private final AtomicInteger lookups = new AtomicInteger();
+
+    private final AtomicInteger scans = new AtomicInteger();
+
+    private final AtomicInteger reindexCalls = new AtomicInteger();
+
+    @Idempotent
+    public String lookup(String term) throws InterruptedException {
+        Thread.sleep(lookups.incrementAndGet() % 25 == 0 ? 50 : 1);
+        return "doc:" + term;
+    }
+
+    /**
+     * 与lookup耗时相同，但不响应中断，模拟阻塞的磁盘读取
+     */
+    @Idempotent
+    public String scan(String term) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(scans.incrementAndGet() % 25 == 0 ? 50 : 1);
+        for (long remaining; (remaining = deadline - System.nanoTime()) > 0; ) {
+            LockSupport.parkNanos(remaining);
+        }
+        return "doc:" + term;
+    }
+
+    public int reindex() {
+        return reindexCalls.incrementAndGet();
+    }
+
+    public int getLookups() {
+        return lookups.get();
+    }
+}